@@ -19,8 +19,14 @@ package com.robo4j.tools.magviz;
 
 import java.io.File;
 import java.net.URL;
+import java.nio.file.Paths;
 import java.util.List;
 
+import com.robo4j.tools.magviz.stream.FileTailSource;
+import com.robo4j.tools.magviz.stream.SampleSource;
+import com.robo4j.tools.magviz.stream.SocketSampleSource;
+import com.robo4j.tools.magviz.unit.MagnetometerStreamUnit;
+
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
@@ -37,10 +43,16 @@ import javafx.stage.Stage;
 public class MagViz extends Application {
 
 	private static final String MAGVIZ_FXML = "magviz.fxml";
+	private static final String OPTION_TAIL = "-tail";
+	private static final String OPTION_CONNECT = "-connect";
+
+	private MagVizController controller;
 
 	public static void main(String[] args) {
 		if (args.length == 0) {
-			System.out.println("This utility requires you to provide a csv file with magnetometer readings as the first argument.\nExiting...");
+			System.out.println("This utility requires you to provide a csv or binary sample file with magnetometer readings as the first argument.\n"
+					+ "To calibrate from live samples, use " + OPTION_TAIL + " <csv file being written> or " + OPTION_CONNECT
+					+ " <host:port of a " + MagnetometerStreamUnit.class.getSimpleName() + ">.\nExiting...");
 			System.exit(2);
 		}
 		Application.launch(args);
@@ -48,19 +60,29 @@ public class MagViz extends Application {
 
 	@Override
 	public void start(Stage stage) throws Exception {
-		File csvFile = parseFileParam();
-
 		URL file = Thread.currentThread().getContextClassLoader().getResource(MAGVIZ_FXML);
 		FXMLLoader fxmlLoader = new FXMLLoader(file);
 		BorderPane myPane = fxmlLoader.load();
-		MagVizController controller = fxmlLoader.getController();
-		controller.loadFile(csvFile);
+		controller = fxmlLoader.getController();
+		SampleSource source = parseStreamParams();
+		if (source != null) {
+			controller.startStreaming(source);
+		} else {
+			controller.loadFile(parseFileParam());
+		}
 		stage.setScene(new Scene(myPane, 800, 600));
 		myPane.setStyle("-fx-border-color:black");
 		initializeStage(stage);
 		stage.show();
 	}
 
+	@Override
+	public void stop() {
+		if (controller != null) {
+			controller.stopStreaming();
+		}
+	}
+
 	private void initializeStage(Stage stage) {
 		stage.setTitle("Magnetometer Calibration Utility");
 		stage.getIcons().add(createIcon("robo4j256.png"));
@@ -74,6 +96,21 @@ public class MagViz extends Application {
 		return new Image(getClass().getClassLoader().getResourceAsStream(iconName));
 	}
 
+	private SampleSource parseStreamParams() {
+		List<String> params = getParameters().getRaw();
+		if (params.size() < 2) {
+			return null;
+		}
+		switch (params.get(0)) {
+		case OPTION_TAIL:
+			return new FileTailSource(Paths.get(params.get(1)));
+		case OPTION_CONNECT:
+			return SocketSampleSource.parse(params.get(1));
+		default:
+			return null;
+		}
+	}
+
 	private File parseFileParam() {
 		List<String> params = getParameters().getRaw();
 		if (params.isEmpty()) {
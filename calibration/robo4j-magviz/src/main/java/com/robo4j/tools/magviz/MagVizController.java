@@ -18,22 +18,30 @@
 package com.robo4j.tools.magviz;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
-import java.util.stream.Collectors;
 
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.stat.descriptive.moment.Mean;
-import org.apache.commons.math3.stat.descriptive.moment.StandardDeviation;
 
+import com.robo4j.logging.SimpleLoggingUtil;
+import com.robo4j.tools.magviz.data.PointSamples;
 import com.robo4j.tools.magviz.ellipsoid.EllipsoidToSphereSolver;
+import com.robo4j.tools.magviz.ellipsoid.MagnetometerCorrection;
+import com.robo4j.tools.magviz.ellipsoid.NormalEquationAccumulator;
+import com.robo4j.tools.magviz.ellipsoid.OutlierFilter;
+import com.robo4j.tools.magviz.ellipsoid.RobustEllipsoidFitter;
 import com.robo4j.tools.magviz.ellipsoid.SolvedEllipsoidResult;
+import com.robo4j.tools.magviz.ellipsoid.SolverException;
+import com.robo4j.tools.magviz.stream.CoverageMap;
+import com.robo4j.tools.magviz.stream.SampleBuffer;
+import com.robo4j.tools.magviz.stream.SampleSource;
+import com.robo4j.tools.magviz.unit.CalibratedMagnetometerUnit;
 
 import javafx.animation.Animation;
 import javafx.animation.KeyFrame;
-import javafx.animation.KeyValue;
 import javafx.animation.ParallelTransition;
 import javafx.animation.PauseTransition;
 import javafx.animation.RotateTransition;
@@ -46,9 +54,11 @@ import javafx.fxml.FXML;
 import javafx.geometry.Point3D;
 import javafx.scene.AmbientLight;
 import javafx.scene.Group;
-import javafx.scene.Node;
 import javafx.scene.PerspectiveCamera;
 import javafx.scene.SubScene;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Button;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.Slider;
@@ -56,9 +66,8 @@ import javafx.scene.control.TextField;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.paint.Color;
-import javafx.scene.paint.Material;
-import javafx.scene.shape.Sphere;
 import javafx.scene.transform.Rotate;
+import javafx.stage.FileChooser;
 import javafx.util.Duration;
 
 /**
@@ -69,6 +78,8 @@ import javafx.util.Duration;
  */
 public class MagVizController {
 	static final String SEPARATOR = ";";
+	private static final long STREAM_REFRESH_MILLIS = 250;
+	private static final int MIN_STREAMED_SAMPLES = 50;
 	@FXML
 	private BorderPane animatedBorderPane;
 	@FXML
@@ -95,6 +106,13 @@ public class MagVizController {
 	@FXML
 	private Slider sliderSphereSize;
 
+	@FXML
+	private Canvas coverageCanvas;
+	@FXML
+	private Label coverageLabel;
+	@FXML
+	private Button stopStreamingButton;
+
 	// FIXME(Marcus/Jul 6, 2017): This thing should be broken up into smaller
 	// pieces at some point.
 	@FXML
@@ -123,57 +141,215 @@ public class MagVizController {
 	@FXML
 	private TextField m33;
 
-	private List<Point3D> points;
-	private List<Node> lastCorrectedSpheres;
-	private List<Node> rawSpheres;
-	private File lastLoaded;
+	private PointSamples samples;
+	private OutlierFilter outlierFilter;
+	private PointCloud rawCloud;
+	private PointCloud correctedCloud;
+	private final CoverageMap coverage = new CoverageMap();
+
+	// live streaming, only touched on the FX thread
+	private SampleSource source;
+	private SampleBuffer sampleBuffer;
+	private PointSamples streamedSamples;
+	private NormalEquationAccumulator streamedEquations;
+	private Timeline streamRefresh;
+	// the clouds are rebuilt whenever the samples doubled, new samples are appended in between
+	private int streamRebuiltSize;
+	private double streamRawFactor;
+	private MagnetometerCorrection streamCorrection;
+	private double streamCorrectedFactor;
+	private String streamFitError;
 
 	public void initialize() {
+		// the point size is part of the vertices, they are rewritten once the slider is released
 		sliderSphereSize.valueProperty().addListener(new ChangeListener<Number>() {
 			public void changed(ObservableValue<? extends Number> ov, Number old_val, Number new_val) {
-				updateSphereSizes(old_val, new_val);
+				if (!sliderSphereSize.isValueChanging()) {
+					updateSphereSizes(new_val);
+				}
+			}
+		});
+		sliderSphereSize.valueChangingProperty().addListener(new ChangeListener<Boolean>() {
+			public void changed(ObservableValue<? extends Boolean> ov, Boolean wasChanging, Boolean changing) {
+				if (!changing) {
+					updateSphereSizes(sliderSphereSize.getValue());
+				}
 			}
 		});
 	}
 
 	public void loadFile(File csvFile) {
-		lastLoaded = csvFile;
-		points = VisualizationToolkit.loadPointsFromFile(csvFile);
-		setupInitialScene(points);
+		samples = VisualizationToolkit.loadSamplesFromFile(csvFile);
+		outlierFilter = new OutlierFilter(samples);
+		setupInitialScene();
 	}
 
-	private void setupInitialScene(List<Point3D> points) {
-		solveSphereMapping(points);
-		initializeStats(points);
-		initializeSubScene(points);
+	private void setupInitialScene() {
+		showResult(outlierFilter.solve());
+		initializeStats();
+		initializeSubScene(samples);
 		fade(true, null);
 	}
 
-	private void initializeStats(List<Point3D> points) {
-		textNoOfPoints.setText(String.valueOf(points.size()));
+	/**
+	 * Calibrates from live samples instead of a file. The fit and the
+	 * visualization are refreshed a few times per second while samples
+	 * arrive, the coverage map shows the orientations still lacking samples.
+	 * Each refresh only adds the new samples to the fit, the point clouds
+	 * and the coverage map. The clouds are corrected and normalized anew
+	 * with the latest fit whenever the number of samples doubled, so the
+	 * work stays linear in the number of samples.
+	 *
+	 * @param source
+	 *            the source of the samples, closed by
+	 *            {@link #stopStreaming()}
+	 * @throws IOException
+	 *             if the source could not be opened
+	 */
+	public void startStreaming(SampleSource source) throws IOException {
+		stopStreaming();
+		this.source = source;
+		sampleBuffer = new SampleBuffer();
+		streamedSamples = new PointSamples();
+		streamedEquations = new NormalEquationAccumulator();
+		samples = streamedSamples;
+		outlierFilter = null;
+		streamRebuiltSize = 0;
+		streamFitError = null;
+		initializeSubScene(samples);
+		fade(true, null);
+		source.start(sampleBuffer);
+		streamRefresh = new Timeline(new KeyFrame(Duration.millis(STREAM_REFRESH_MILLIS), e -> refreshStream()));
+		streamRefresh.setCycleCount(Animation.INDEFINITE);
+		streamRefresh.play();
+		stopStreamingButton.setDisable(false);
+	}
+
+	/**
+	 * Stops streaming, the streamed samples can then be filtered like the
+	 * samples of a file.
+	 */
+	public void stopStreaming() {
+		if (source == null) {
+			return;
+		}
+		streamRefresh.stop();
+		try {
+			source.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		source = null;
+		refreshStream();
+		synchronized (this) {
+			// all samples with the final fit
+			rebuildStream();
+		}
+		if (streamedSamples.size() > 0) {
+			outlierFilter = new OutlierFilter(streamedSamples);
+		}
+		stopStreamingButton.setDisable(true);
+	}
+
+	@FXML
+	private void handleStopStreaming(ActionEvent event) {
+		stopStreaming();
+	}
+
+	private void refreshStream() {
+		final int from = streamedSamples.size();
+		int added = sampleBuffer.drainTo((x, y, z) -> {
+			streamedSamples.add(x, y, z);
+			streamedEquations.add(x, y, z);
+		});
+		if (added == 0) {
+			return;
+		}
+		if (streamedEquations.getCount() >= MIN_STREAMED_SAMPLES) {
+			try {
+				showResult(new EllipsoidToSphereSolver(streamedEquations).solve());
+				streamFitError = null;
+			} catch (RuntimeException e) {
+				// usually too little of the ellipsoid seen yet, logged once until a fit succeeds
+				if (streamFitError == null) {
+					streamFitError = String.valueOf(e.getMessage());
+					SimpleLoggingUtil.info(getClass(),
+							"no fit of " + streamedEquations.getCount() + " streamed samples yet: " + streamFitError);
+				}
+			}
+		}
+		synchronized (this) {
+			if (streamedSamples.size() >= 2 * streamRebuiltSize) {
+				rebuildStream();
+			} else {
+				appendStream(from);
+			}
+		}
+	}
+
+	/**
+	 * Corrects and normalizes all streamed samples with the current fit.
+	 */
+	private void rebuildStream() {
+		initializeStats();
+		streamRawFactor = VisualizationToolkit.getNormalizingFactor(samples);
+		rawCloud.setPositions(VisualizationToolkit.createNormalizedPositions(samples, 0, streamRawFactor));
+		streamCorrection = getCorrectionFromFields();
+		streamCorrectedFactor = getCorrectedNormalizingFactor(samples, streamCorrection);
+		correctedCloud.setPositions(updateCoverage(createCorrectedPositions(samples, 0, streamCorrection, streamCorrectedFactor)));
+		streamRebuiltSize = samples.size();
+	}
+
+	/**
+	 * Adds the samples from the given index on with the correction and the
+	 * scales of the last rebuild.
+	 */
+	private void appendStream(int from) {
+		textNoOfPoints.setText(String.valueOf(samples.size()));
+		final int added = samples.size() - from;
+		rawCloud.addPositions(VisualizationToolkit.createNormalizedPositions(samples, from, streamRawFactor), added);
+		correctedCloud.addPositions(addCoverage(createCorrectedPositions(samples, from, streamCorrection, streamCorrectedFactor), from), added);
+	}
+
+	private boolean isActive(int index) {
+		return outlierFilter == null || outlierFilter.isActive(index);
+	}
+
+	private void initializeStats() {
+		textNoOfPoints.setText(String.valueOf(outlierFilter == null ? samples.size() : outlierFilter.getActiveCount()));
 		Point3D center = getBiasFromFields();
 
 		double maxRadius = Double.MIN_VALUE;
 		Mean mean = new Mean();
 
-		for (Point3D p : points) {
-			maxRadius = Math.max(maxRadius, p.distance(center));
-			mean.increment(p.distance(center));
+		for (int i = 0; i < samples.size(); i++) {
+			if (isActive(i)) {
+				double dx = samples.getX(i) - center.getX();
+				double dy = samples.getY(i) - center.getY();
+				double dz = samples.getZ(i) - center.getZ();
+				double r = Math.sqrt(dx * dx + dy * dy + dz * dz);
+				maxRadius = Math.max(maxRadius, r);
+				mean.increment(r);
+			}
 		}
 		textMaxRadius.setText(String.valueOf(maxRadius));
 		textMeanRadius.setText(String.valueOf(mean.getResult()));
 	}
 
-	public synchronized void initializeSubScene(List<Point3D> rawPointList) {
+	public synchronized void initializeSubScene(PointSamples rawSamples) {
 		AmbientLight ambient = new AmbientLight(Color.WHITE);
 		Group pointsGroup = null;
 		Group correctedPointsGroup = null;
 
-		if (points != null && points.size() > 0) {
-			rawSpheres = VisualizationToolkit.createNormalizedSpheres(rawPointList, 1.5f, VisualizationToolkit.RED_MATERIAL);
-			pointsGroup = new Group(rawSpheres);
-			lastCorrectedSpheres = createCorrectedSpheres(rawPointList, 1.5f, VisualizationToolkit.BLACK_MATERIAL);
-			correctedPointsGroup = new Group(lastCorrectedSpheres);
+		if (rawSamples != null) {
+			rawCloud = new PointCloud(VisualizationToolkit.RED_MATERIAL);
+			rawCloud.setPositions(VisualizationToolkit.createNormalizedPositions(rawSamples));
+			rawCloud.setPointScale(0);
+			pointsGroup = new Group(rawCloud.getNode());
+			correctedCloud = new PointCloud(VisualizationToolkit.BLACK_MATERIAL);
+			correctedCloud.setPositions(updateCoverage(createCorrectedPositions(rawSamples)));
+			correctedCloud.setPointScale(0);
+			correctedPointsGroup = new Group(correctedCloud.getNode());
 		} else {
 			pointsGroup = new Group();
 			correctedPointsGroup = new Group();
@@ -233,52 +409,136 @@ public class MagVizController {
 
 	@FXML
 	private void updateVisualization(ActionEvent event) {
-		initializeSubScene(points);
+		initializeSubScene(samples);
+		updateFilteredPoints(false);
 		fade(checkRawData.isSelected(), checkCorrectedData.isSelected());
 	}
 
+	/**
+	 * Exports the bias and matrix set in the UI, for the
+	 * {@link CalibratedMagnetometerUnit} on the robot.
+	 */
+	@FXML
+	private void exportCorrection(ActionEvent event) {
+		FileChooser chooser = new FileChooser();
+		chooser.setTitle("Export Correction");
+		chooser.setInitialFileName("magnetometer.correction");
+		File file = chooser.showSaveDialog(animatedBorderPane.getScene().getWindow());
+		if (file == null) {
+			return;
+		}
+		try {
+			getCorrectionFromFields().store(file.toPath());
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Filters the points by the deviation of their corrected radius from the
+	 * mean, and fits the remaining ones. Works on the loaded points only, the
+	 * fit is updated with the points changing sides.
+	 */
 	@FXML
 	private void filterPoints(ActionEvent event) {
-		List<Point3D> pointsFromFile = VisualizationToolkit.loadPointsFromFile(lastLoaded);
-		solveSphereMapping(pointsFromFile);
-		points = filter(pointsFromFile);
-		setupInitialScene(points);
+		if (outlierFilter == null) {
+			return;
+		}
+		outlierFilter.setThreshold(VisualizationToolkit.getValue(textFilterStddev));
+		showResult(outlierFilter.solve());
+		initializeStats();
+		updateFilteredPoints(true);
 	}
 
-	private List<Point3D> filter(List<Point3D> originalPoints) {
-		initializeStats(originalPoints);
-		Point3D biasCorrectedCenter = getBiasFromFields();
+	/**
+	 * Fits robustly and keeps the inliers of the fit, for data with bursts of
+	 * garbage readings which skew the least squares fit the stddev filter
+	 * starts from.
+	 */
+	@FXML
+	private void robustFit(ActionEvent event) {
+		if (outlierFilter == null) {
+			return;
+		}
+		RobustEllipsoidFitter fitter = new RobustEllipsoidFitter();
+		try {
+			fitter.fit(outlierFilter.getSamples());
+		} catch (SolverException e) {
+			// too few samples or no usable hypothesis, the selection stays
+			SimpleLoggingUtil.error(getClass(), "robust fit failed: " + e.getMessage());
+			return;
+		}
+		outlierFilter.select(fitter::isInlier);
+		showResult(outlierFilter.solve());
+		initializeStats();
+		updateFilteredPoints(true);
+	}
 
-		double maxRadius = Double.MIN_VALUE;
-		Mean mean = new Mean();
-		StandardDeviation stddev = new StandardDeviation();
-		for (Point3D p : points) {
-			double r = p.distance(biasCorrectedCenter);
-			maxRadius = Math.max(maxRadius, r);
-			mean.increment(r);
-			stddev.increment(r);
+	/**
+	 * Hides the filtered points, and optionally moves the corrected points to
+	 * the correction set in the UI.
+	 */
+	private synchronized void updateFilteredPoints(boolean moveCorrected) {
+		if (rawCloud == null) {
+			return;
+		}
+		rawCloud.setVisible(this::isActive);
+		correctedCloud.setVisible(this::isActive);
+		if (moveCorrected) {
+			correctedCloud.setPositions(updateCoverage(createCorrectedPositions(samples)));
+		}
+	}
+
+	/**
+	 * Counts the directions of the corrected points not filtered out, and
+	 * draws the coverage map.
+	 *
+	 * @return the corrected positions
+	 */
+	private float[] updateCoverage(float[] correctedPositions) {
+		coverage.clear();
+		return addCoverage(correctedPositions, 0);
+	}
+
+	/**
+	 * Adds the directions of the corrected points not filtered out to the
+	 * coverage map, and draws it.
+	 *
+	 * @param from
+	 *            the index of the sample of the first position
+	 * @return the corrected positions
+	 */
+	private float[] addCoverage(float[] correctedPositions, int from) {
+		for (int i = 0; i < correctedPositions.length / 3; i++) {
+			if (isActive(from + i)) {
+				coverage.add(correctedPositions[i * 3], correctedPositions[i * 3 + 1], correctedPositions[i * 3 + 2]);
+			}
 		}
-		double meanResult = mean.getResult();
-		double stddevResult = stddev.getResult();
-		double allowedDeviation = stddevResult * VisualizationToolkit.getValue(textFilterStddev);
-
-		List<Point3D> filteredPoints = new ArrayList<>();
-		for (Point3D p : originalPoints) {
-			if (Math.abs(p.distance(biasCorrectedCenter) - meanResult) <= allowedDeviation) {
-				filteredPoints.add(p);
+		GraphicsContext g = coverageCanvas.getGraphicsContext2D();
+		double cellWidth = coverageCanvas.getWidth() / coverage.getSectors();
+		double cellHeight = coverageCanvas.getHeight() / coverage.getBands();
+		for (int band = 0; band < coverage.getBands(); band++) {
+			for (int sector = 0; sector < coverage.getSectors(); sector++) {
+				int count = coverage.getCount(band, sector);
+				g.setFill(count == 0 ? Color.LIGHTCORAL : coverage.isCovered(band, sector) ? Color.LIGHTGREEN : Color.KHAKI);
+				g.fillRect(sector * cellWidth, band * cellHeight, cellWidth - 1, cellHeight - 1);
 			}
 		}
-		return filteredPoints;
+		coverageLabel.setText(String.format("Coverage: %.0f%%", coverage.getCoverage() * 100));
+		return correctedPositions;
 	}
 
 	private void fade(Boolean showRaw, Boolean showCorrected) {
 		ArrayList<Animation> animations = new ArrayList<>();
 		synchronized (this) {
+			if (rawCloud == null) {
+				return;
+			}
 			if (showRaw != null) {
-				animations.addAll(Arrays.asList(VisualizationToolkit.createFadeAnimation(3000, rawSpheres, showRaw)));
+				animations.add(VisualizationToolkit.createFadeAnimation(2000, rawCloud, showRaw));
 			}
 			if (showCorrected != null) {
-				animations.addAll(Arrays.asList(VisualizationToolkit.createFadeAnimation(3000, lastCorrectedSpheres, showCorrected)));
+				animations.add(VisualizationToolkit.createFadeAnimation(2000, correctedCloud, showCorrected));
 			}
 		}
 		new ParallelTransition(animations.toArray(new Animation[0])).play();
@@ -304,9 +564,17 @@ public class MagVizController {
 		return matrix;
 	}
 
-	public void solveSphereMapping(List<Point3D> points) {
-		EllipsoidToSphereSolver solver = new EllipsoidToSphereSolver(points);
-		SolvedEllipsoidResult result = solver.solve();
+	private MagnetometerCorrection getCorrectionFromFields() {
+		Point3D bias = getBiasFromFields();
+		return new MagnetometerCorrection(new double[] { bias.getX(), bias.getY(), bias.getZ() },
+				Arrays.stream(getMatrixFromFields().getData()).flatMapToDouble(Arrays::stream).toArray());
+	}
+
+	public void solveSphereMapping(PointSamples samples) {
+		showResult(EllipsoidToSphereSolver.fromArrays(samples.getXs(), samples.getYs(), samples.getZs(), samples.size()).solve());
+	}
+
+	private void showResult(SolvedEllipsoidResult result) {
 		RealMatrix matrix = result.getTransformMatrix();
 		m11.setText(String.valueOf(matrix.getEntry(0, 0)));
 		m12.setText(String.valueOf(matrix.getEntry(0, 1)));
@@ -328,8 +596,8 @@ public class MagVizController {
 	 * Calculates the positions for the points from the bias and matrix set in
 	 * the UI. By default the UI is filled out with the solution for the bias
 	 * vector and transform matrix from solving the mapping from an ellipsoid to
-	 * a sphere. Finally, it creates little spheres to represent the corrected
-	 * points for visualization.
+	 * a sphere. The positions are normalized so that the farthest point not
+	 * filtered out has the radius 100.
 	 *
 	 * <p>
 	 * Notes: correctedPoint[3x1] = correctionMatrix[3x3] * biasedVector[3x1]
@@ -339,74 +607,59 @@ public class MagVizController {
 	 * = matrix of eigenVectors
 	 * </p>
 	 * 
-	 * @see VisualizationToolkit#createNormalizedSpheres(List, float, Material)
+	 * @see VisualizationToolkit#createNormalizedPositions(PointSamples)
 	 *
-	 * @param rawPoints
-	 *            raw point
-	 * @param diameter
-	 *            sphere diameter
-	 * @param material
-	 *            material the material of the sphere
-	 * @return list of Nodes for visualization
+	 * @param rawSamples
+	 *            raw samples
+	 * @return x, y, z of the corrected points for a {@link PointCloud}
 	 */
-	public List<Node> createCorrectedSpheres(List<Point3D> rawPoints, float diameter, Material material) {
-		Point3D bias = getBiasFromFields();
-		RealMatrix transformMatrix = getMatrixFromFields();
-
-		List<Point3D> correctedPoints = rawPoints.stream().map(p -> {
-			// calculation of corrected values
-			double valX = p.getX() - bias.getX();
-			double valY = p.getY() - bias.getY();
-			double valZ = p.getZ() - bias.getZ();
-
-			RealMatrix biasCompensatedPoint = new Array2DRowRealMatrix(1, 3);
-			biasCompensatedPoint.setRow(0, new double[] { valX, valY, valZ });
-
-			// mapping to sphere
-			RealMatrix resultMatrix = biasCompensatedPoint.multiply(transformMatrix.transpose());
-			double correctedX = (resultMatrix.getEntry(0, 0));
-			double correctedY = (resultMatrix.getEntry(0, 1));
-			double correctedZ = (resultMatrix.getEntry(0, 2));
-
-
-			return new Point3D(correctedX, correctedY, correctedZ);
-		}).collect(Collectors.toList());
-
-		return VisualizationToolkit.scale(VisualizationToolkit.createNormalizedSpheres(correctedPoints, 1.5f, material), 1 / 100.0f);
+	public float[] createCorrectedPositions(PointSamples rawSamples) {
+		MagnetometerCorrection correction = getCorrectionFromFields();
+		return createCorrectedPositions(rawSamples, 0, correction, getCorrectedNormalizingFactor(rawSamples, correction));
 	}
 
-	private void updateSphereSizes(Number fromValue, Number toVal) {
-		double fromSize = calculateSizeFromSliderValue(fromValue);
-		double toSize = calculateSizeFromSliderValue(fromValue);
-		List<Node> allNodes = null;
-		synchronized (this) {
-			allNodes = getAllSphereNodes();
+	/**
+	 * @return the factor scaling the farthest corrected sample not filtered
+	 *         out to the radius 100
+	 */
+	private double getCorrectedNormalizingFactor(PointSamples rawSamples, MagnetometerCorrection correction) {
+		double[] corrected = new double[3];
+		double maxRadius = 0;
+		for (int i = 0; i < rawSamples.size(); i++) {
+			if (isActive(i)) {
+				correction.correct(rawSamples.getX(i), rawSamples.getY(i), rawSamples.getZ(i), corrected, 0);
+				maxRadius = Math.max(maxRadius,
+						Math.sqrt(corrected[0] * corrected[0] + corrected[1] * corrected[1] + corrected[2] * corrected[2]));
+			}
 		}
-		resizeSpheres(allNodes, fromSize, toSize);
+		return maxRadius > 0 ? 100.0 / maxRadius : 1;
 	}
 
-	private void resizeSpheres(List<Node> allNodes, double fromSize, double toSize) {
-		Animation[] animations = new Animation[allNodes.size()];
-
-		for (int i = 0; i < animations.length; i++) {
-			Sphere s = (Sphere) allNodes.get(i);
-			Timeline timeline = new Timeline();
-			timeline.getKeyFrames().add(new KeyFrame(Duration.millis(20), new KeyValue(s.radiusProperty(), fromSize / 2)));
-			timeline.getKeyFrames().add(new KeyFrame(Duration.millis(1000), new KeyValue(s.radiusProperty(), toSize / 2)));
-			animations[i] = timeline;
+	/**
+	 * @return x, y, z of the corrected samples from the given index on
+	 */
+	private float[] createCorrectedPositions(PointSamples rawSamples, int from, MagnetometerCorrection correction,
+			double normalizingFactor) {
+		double[] corrected = new double[3];
+		float[] positions = new float[(rawSamples.size() - from) * 3];
+		for (int i = from, j = 0; i < rawSamples.size(); i++, j += 3) {
+			correction.correct(rawSamples.getX(i), rawSamples.getY(i), rawSamples.getZ(i), corrected, 0);
+			positions[j] = (float) (corrected[0] * normalizingFactor);
+			positions[j + 1] = (float) (corrected[1] * normalizingFactor);
+			positions[j + 2] = (float) (corrected[2] * normalizingFactor);
 		}
-		new ParallelTransition(animations).play();
+		return positions;
 	}
 
-	private List<Node> getAllSphereNodes() {
-		List<Node> allNodes = new ArrayList<>();
-		if (rawSpheres != null) {
-			allNodes.addAll(rawSpheres);
-		}
-		if (lastCorrectedSpheres != null) {
-			allNodes.addAll(lastCorrectedSpheres);
+	private void updateSphereSizes(Number sliderValue) {
+		double size = calculateSizeFromSliderValue(sliderValue);
+		synchronized (this) {
+			if (rawCloud == null) {
+				return;
+			}
+			rawCloud.setPointSize(size);
+			correctedCloud.setPointSize(size);
 		}
-		return allNodes;
 	}
 
 	private double calculateSizeFromSliderValue(Number sliderValue) {
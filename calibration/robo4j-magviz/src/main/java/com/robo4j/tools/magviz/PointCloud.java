@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.scene.Node;
+import javafx.scene.paint.Material;
+import javafx.scene.shape.CullFace;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+
+/**
+ * A point cloud rendered as a single {@link TriangleMesh}, with a small
+ * tetrahedron per point, instead of a scene graph node per point. When there
+ * are more visible points than the point budget, only every n:th of them is
+ * shown.
+ *
+ * The vertex and face arrays are reused, so changing the positions, the
+ * visibility or the point size only rewrites them. Appended points only add
+ * their own vertices and faces, as long as the points shown before stay the
+ * same.
+ *
+ * The point scale does not change the vertices, it scales the whole node
+ * around the origin. Animating it, e.g. for fading in and out, therefore
+ * costs no mesh updates. A cloud scaled to zero is not rendered at all.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class PointCloud {
+	public static final int DEFAULT_POINT_BUDGET = 50000;
+	public static final double DEFAULT_POINT_SIZE = 1.5;
+
+	private static final float K = (float) (1 / Math.sqrt(3));
+	// regular tetrahedron with the circumradius 1
+	private static final float[] TETRAHEDRON = { K, K, K, K, -K, -K, -K, K, -K, -K, -K, K };
+	private static final int[] TETRAHEDRON_FACES = { 0, 2, 1, 0, 1, 3, 0, 3, 2, 1, 2, 3 };
+	private static final int VERTEX_FLOATS = TETRAHEDRON.length;
+	private static final int FACE_INTS = TETRAHEDRON_FACES.length * 2;
+
+	private final TriangleMesh mesh = new TriangleMesh();
+	private final MeshView view = new MeshView(mesh);
+	private final DoubleProperty pointSize = new SimpleDoubleProperty(this, "pointSize", DEFAULT_POINT_SIZE);
+	private final DoubleProperty pointScale = new SimpleDoubleProperty(this, "pointScale", 1);
+	private int pointBudget;
+	private IntPredicate visible = i -> true;
+
+	// xyz of all points
+	private float[] positions = new float[0];
+	private boolean ownsPositions;
+	private int count;
+	// the points shown, indices into the positions
+	private int[] displayed = new int[0];
+	private int displayedCount;
+	private int visibleCount;
+	private int stride = 1;
+	private float[] vertices = new float[0];
+	private int[] faces = new int[0];
+
+	public PointCloud(Material material) {
+		this(material, DEFAULT_POINT_BUDGET);
+	}
+
+	/**
+	 * @param pointBudget
+	 *            the maximum number of points to show
+	 */
+	public PointCloud(Material material, int pointBudget) {
+		setPointBudget(pointBudget);
+		mesh.getTexCoords().addAll(0, 0);
+		view.setMaterial(material);
+		view.setCullFace(CullFace.NONE);
+		pointSize.addListener((observable, oldValue, newValue) -> updateVertices());
+		view.scaleXProperty().bind(pointScale);
+		view.scaleYProperty().bind(pointScale);
+		view.scaleZProperty().bind(pointScale);
+		view.visibleProperty().bind(pointScale.greaterThan(0));
+	}
+
+	public Node getNode() {
+		return view;
+	}
+
+	/**
+	 * @param positions
+	 *            x, y, z of the points in scene coordinates, not copied
+	 * @param count
+	 *            the number of points
+	 */
+	public void setPositions(float[] positions, int count) {
+		this.positions = positions;
+		this.ownsPositions = false;
+		this.count = count;
+		update();
+	}
+
+	/**
+	 * Adds points after the current ones. Unless the point budget requires
+	 * showing fewer of the points, only the vertices and faces of the new
+	 * points are written.
+	 *
+	 * @param newPositions
+	 *            x, y, z of the new points in scene coordinates, copied
+	 * @param newCount
+	 *            the number of new points
+	 */
+	public void addPositions(float[] newPositions, int newCount) {
+		if (!ownsPositions || positions.length < (count + newCount) * 3) {
+			// grown geometrically, the positions passed to setPositions are not written to
+			positions = Arrays.copyOf(positions, Math.max((count + newCount) * 3, positions.length * 2));
+			ownsPositions = true;
+		}
+		System.arraycopy(newPositions, 0, positions, count * 3, newCount * 3);
+		final int from = count;
+		count += newCount;
+		int newVisible = 0;
+		for (int i = from; i < count; i++) {
+			if (visible.test(i)) {
+				newVisible++;
+			}
+		}
+		if (strideFor(visibleCount + newVisible) != stride) {
+			update();
+			return;
+		}
+		final int displayedFrom = displayedCount;
+		displayed = ensureCapacity(displayed, displayedCount + (newVisible + stride - 1) / stride);
+		for (int i = from, v = visibleCount; i < count; i++) {
+			if (visible.test(i) && v++ % stride == 0) {
+				displayed[displayedCount++] = i;
+			}
+		}
+		visibleCount += newVisible;
+		if (displayedCount > displayedFrom) {
+			writeFaces(displayedFrom);
+			writeVertices(displayedFrom);
+		}
+	}
+
+	public void setPositions(float[] positions) {
+		setPositions(positions, positions.length / 3);
+	}
+
+	/**
+	 * @param visible
+	 *            true for the index of a point to show
+	 */
+	public void setVisible(IntPredicate visible) {
+		this.visible = visible;
+		update();
+	}
+
+	public int getPointBudget() {
+		return pointBudget;
+	}
+
+	public void setPointBudget(int pointBudget) {
+		if (pointBudget < 1) {
+			throw new IllegalArgumentException("The point budget must be positive");
+		}
+		this.pointBudget = pointBudget;
+		update();
+	}
+
+	/**
+	 * @return the number of points shown
+	 */
+	public int getDisplayedCount() {
+		return displayedCount;
+	}
+
+	/**
+	 * @return the diameter of the points, every change rewrites the vertices
+	 */
+	public DoubleProperty pointSizeProperty() {
+		return pointSize;
+	}
+
+	public double getPointSize() {
+		return pointSize.get();
+	}
+
+	public void setPointSize(double size) {
+		pointSize.set(size);
+	}
+
+	/**
+	 * @return the factor the node is scaled by around the origin, 0 hides
+	 *         the cloud, e.g. for fading in and out
+	 */
+	public DoubleProperty pointScaleProperty() {
+		return pointScale;
+	}
+
+	public double getPointScale() {
+		return pointScale.get();
+	}
+
+	public void setPointScale(double scale) {
+		pointScale.set(scale);
+	}
+
+	// Private Methods
+
+	private void update() {
+		visibleCount = 0;
+		for (int i = 0; i < count; i++) {
+			if (visible.test(i)) {
+				visibleCount++;
+			}
+		}
+		stride = strideFor(visibleCount);
+		if (displayed.length < Math.min(visibleCount, pointBudget)) {
+			displayed = new int[Math.min(visibleCount, pointBudget)];
+		}
+		int shown = 0;
+		for (int i = 0, v = 0; i < count; i++) {
+			if (visible.test(i) && v++ % stride == 0) {
+				displayed[shown++] = i;
+			}
+		}
+		if (shown != displayedCount || faces.length == 0) {
+			displayedCount = shown;
+			writeFaces(0);
+		}
+		updateVertices();
+	}
+
+	private int strideFor(int visiblePoints) {
+		return Math.max(1, (visiblePoints + pointBudget - 1) / pointBudget);
+	}
+
+	private void updateVertices() {
+		writeVertices(0);
+	}
+
+	/**
+	 * writes the vertices of the points shown, from the given one on
+	 */
+	private void writeVertices(int from) {
+		final int length = displayedCount * VERTEX_FLOATS;
+		if (vertices.length < length) {
+			vertices = Arrays.copyOf(vertices, from == 0 ? length : Math.max(length, vertices.length * 2));
+		}
+		final float radius = (float) (pointSize.get() / 2);
+		for (int j = from; j < displayedCount; j++) {
+			final int source = displayed[j] * 3;
+			final int target = j * VERTEX_FLOATS;
+			for (int k = 0; k < VERTEX_FLOATS; k++) {
+				vertices[target + k] = positions[source + k % 3] + radius * TETRAHEDRON[k];
+			}
+		}
+		if (from == 0) {
+			mesh.getPoints().setAll(vertices, 0, length);
+		} else {
+			mesh.getPoints().addAll(vertices, from * VERTEX_FLOATS, length - from * VERTEX_FLOATS);
+		}
+	}
+
+	/**
+	 * writes the faces of the points shown, from the given one on
+	 */
+	private void writeFaces(int from) {
+		final int length = displayedCount * FACE_INTS;
+		if (faces.length < length) {
+			faces = new int[from == 0 ? length : Math.max(length, faces.length * 2)];
+			// the faces only depend on the number of points
+			for (int j = 0; j < faces.length / FACE_INTS; j++) {
+				for (int k = 0; k < TETRAHEDRON_FACES.length; k++) {
+					faces[j * FACE_INTS + k * 2] = j * 4 + TETRAHEDRON_FACES[k];
+					faces[j * FACE_INTS + k * 2 + 1] = 0;
+				}
+			}
+		}
+		if (from == 0) {
+			mesh.getFaces().setAll(faces, 0, length);
+		} else {
+			mesh.getFaces().addAll(faces, from * FACE_INTS, length - from * FACE_INTS);
+		}
+	}
+
+	private static int[] ensureCapacity(int[] array, int length) {
+		return array.length < length ? Arrays.copyOf(array, Math.max(length, array.length * 2)) : array;
+	}
+}
@@ -18,13 +18,15 @@ package com.robo4j.tools.magviz;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Stream;
+
+import com.robo4j.tools.magviz.data.PointSamples;
+import com.robo4j.tools.magviz.data.SampleFiles;
 
 import javafx.animation.Animation;
-import javafx.animation.ScaleTransition;
+import javafx.animation.KeyFrame;
+import javafx.animation.KeyValue;
+import javafx.animation.Timeline;
 import javafx.geometry.Point3D;
 import javafx.scene.Group;
 import javafx.scene.Node;
@@ -131,14 +133,22 @@ public final class VisualizationToolkit {
 		n.setScaleZ(scale);
 	}
 
-	public static List<Point3D> loadPointsFromFile(File csvFile) {
-		final List<Point3D> points = new ArrayList<>();
-		try (Stream<String> stream = Files.lines(csvFile.toPath())) {
-			stream.forEach((s) -> parsePoint(points, s));
+	/**
+	 * Loads the samples without creating a {@link Point3D} per sample.
+	 *
+	 * @see SampleFiles
+	 *
+	 * @param csvFile
+	 *            the csv or binary sample file to load.
+	 * @return the samples, empty if the file could not be read.
+	 */
+	public static PointSamples loadSamplesFromFile(File csvFile) {
+		try {
+			return SampleFiles.load(csvFile.toPath());
 		} catch (IOException e) {
 			e.printStackTrace();
+			return new PointSamples();
 		}
-		return points;
 	}
 
 	public static double getValue(TextField field) {
@@ -146,48 +156,65 @@ public final class VisualizationToolkit {
 	}
 
 	/**
-	 * This will create a list of spheres to represents the provided points. The
-	 * positions of the points will be normalized so that the farthest point
-	 * from ORIGO will have the radius 100.
+	 * Positions of the provided points for a {@link PointCloud}. The positions
+	 * of the points will be normalized so that the farthest point from ORIGO
+	 * will have the radius 100.
 	 * 
 	 * This is to make the camera easier to handle.
 	 * 
-	 * @param points
-	 *            the points to get spheres for.
-	 * @param diameter
-	 *            the diameter of the individual spheres.
-	 * @param material
-	 *            the material to use on the spheres.
-	 * @return a list of nodes.
+	 * @param samples
+	 *            the samples to get positions for.
+	 * @return x, y, z of the normalized points.
+	 */
+	public static float[] createNormalizedPositions(PointSamples samples) {
+		return createNormalizedPositions(samples, 0, getNormalizingFactor(samples));
+	}
+
+	/**
+	 * @return the factor scaling the farthest sample from ORIGO to the radius
+	 *         100
 	 */
-	public static List<Node> createNormalizedSpheres(List<Point3D> points, float diameter, Material material) {
-		double maxRadius = 0;
-		for (Point3D p : points) {
-			maxRadius = Math.max(maxRadius, ORIGO.distance(p));
+	public static double getNormalizingFactor(PointSamples samples) {
+		final double[] x = samples.getXs();
+		final double[] y = samples.getYs();
+		final double[] z = samples.getZs();
+		double maxSquared = 0;
+		for (int i = 0; i < samples.size(); i++) {
+			maxSquared = Math.max(maxSquared, x[i] * x[i] + y[i] * y[i] + z[i] * z[i]);
 		}
+		return maxSquared > 0 ? 100.0 / Math.sqrt(maxSquared) : 1;
+	}
 
-		final List<Node> spheres = new ArrayList<>();
-		double normalizingFactor = 100.0f / maxRadius;
-		for (Point3D p : points) {
-			spheres.add(createSphere(1.5f, p.multiply(normalizingFactor), material));
+	/**
+	 * Positions of the samples from the given index on, e.g. of the samples
+	 * appended to a {@link PointCloud}.
+	 *
+	 * @param samples
+	 *            the samples to get positions for.
+	 * @param from
+	 *            the index of the first sample
+	 * @param normalizingFactor
+	 *            the factor the samples are scaled by
+	 * @return x, y, z of the scaled points.
+	 */
+	public static float[] createNormalizedPositions(PointSamples samples, int from, double normalizingFactor) {
+		final double[] x = samples.getXs();
+		final double[] y = samples.getYs();
+		final double[] z = samples.getZs();
+		final float[] positions = new float[(samples.size() - from) * 3];
+		for (int i = from, j = 0; i < samples.size(); i++, j += 3) {
+			positions[j] = (float) (x[i] * normalizingFactor);
+			positions[j + 1] = (float) (y[i] * normalizingFactor);
+			positions[j + 2] = (float) (z[i] * normalizingFactor);
 		}
-		return spheres;
+		return positions;
 	}
 
 	// Opacity fade does not seem to work well on phong shaded stuff, so
 	// shrinking them instead. ;)
-	public static Animation[] createFadeAnimation(int millis, List<Node> nodes, boolean fadeIn) {
-		Animation[] animations = new Animation[nodes.size()];
-		for (int i = 0; i < animations.length; i++) {
-			ScaleTransition fadeTransition = new ScaleTransition(Duration.millis(2000), nodes.get(i));
-			fadeTransition.setFromX(fadeIn ? 1 / 100 : 1);
-			fadeTransition.setFromY(fadeIn ? 1 / 100 : 1);
-			fadeTransition.setFromZ(fadeIn ? 1 / 100 : 1);
-			fadeTransition.setToX(fadeIn ? 1 : 1 / 100);
-			fadeTransition.setToY(fadeIn ? 1 : 1 / 100);
-			fadeTransition.setToZ(fadeIn ? 1 : 1 / 100);
-			animations[i] = fadeTransition;
-		}
-		return animations;
+	public static Animation createFadeAnimation(int millis, PointCloud cloud, boolean fadeIn) {
+		// scales the node, not the vertices, and starts from the current scale
+		// so a cloud already shown does not blink
+		return new Timeline(new KeyFrame(Duration.millis(millis), new KeyValue(cloud.pointScaleProperty(), fadeIn ? 1 : 0)));
 	}
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.data;
+
+/**
+ * Compact binary format for magnetometer samples. All numbers are little
+ * endian.
+ *
+ * <pre>
+ * offset  size  content
+ *  0      4     magic "R4JM"
+ *  4      1     version
+ *  5      1     encoding, see {@link Encoding}
+ *  6      2     length of the units in bytes
+ *  8      8     number of samples, -1 if the writer was not closed
+ * 16      8     quantum of the delta encoding, 0 otherwise
+ * 24      n     units, UTF-8 (e.g. "gauss", "uT", "counts")
+ * 24+n          samples, x y z per sample
+ * </pre>
+ *
+ * The delta encoding stores every axis as the zig-zag varint encoded
+ * difference to the previous sample, in multiples of the quantum. Slowly
+ * changing magnetometer readings mostly need one or two bytes per value.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public final class BinarySampleFormat {
+	static final byte[] MAGIC = { 'R', '4', 'J', 'M' };
+	static final byte VERSION = 1;
+	static final int HEADER_SIZE = 24;
+	static final int COUNT_OFFSET = 8;
+	static final long UNKNOWN_COUNT = -1;
+
+	public enum Encoding {
+		//@formatter:off
+		FLOAT32	(1, 12),
+		FLOAT64	(2, 24),
+		DELTA	(3, -1);
+		//@formatter:on
+
+		private final byte id;
+		private final int sampleSize;
+
+		Encoding(int id, int sampleSize) {
+			this.id = (byte) id;
+			this.sampleSize = sampleSize;
+		}
+
+		byte getId() {
+			return id;
+		}
+
+		/**
+		 * @return bytes per sample, -1 if variable
+		 */
+		public int getSampleSize() {
+			return sampleSize;
+		}
+
+		static Encoding byId(byte id) {
+			for (Encoding encoding : values()) {
+				if (encoding.id == id) {
+					return encoding;
+				}
+			}
+			return null;
+		}
+	}
+
+	private BinarySampleFormat() {
+		throw new UnsupportedOperationException("Toolkit!");
+	}
+
+	/**
+	 * @return true if the bytes start with the magic of the format
+	 */
+	static boolean isMagic(byte[] bytes, int length) {
+		if (length < MAGIC.length) {
+			return false;
+		}
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (bytes[i] != MAGIC[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
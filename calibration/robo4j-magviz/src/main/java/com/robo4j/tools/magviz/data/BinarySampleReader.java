@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.robo4j.tools.magviz.data.BinarySampleFormat.Encoding;
+
+/**
+ * Reads files in the {@link BinarySampleFormat} through a direct buffer,
+ * either into {@link PointSamples} or streaming sample by sample in
+ * constant memory.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public final class BinarySampleReader {
+	private static final int BUFFER_SIZE = 1024 * 1024;
+	private static final int MAX_SAMPLE_SIZE = 30;
+
+	private BinarySampleReader() {
+		throw new UnsupportedOperationException("Toolkit!");
+	}
+
+	/**
+	 * Header of a sample file.
+	 */
+	public static final class Header {
+		private final Encoding encoding;
+		private final long count;
+		private final double quantum;
+		private final String units;
+		private final int size;
+
+		private Header(Encoding encoding, long count, double quantum, String units, int size) {
+			this.encoding = encoding;
+			this.count = count;
+			this.quantum = quantum;
+			this.units = units;
+			this.size = size;
+		}
+
+		public Encoding getEncoding() {
+			return encoding;
+		}
+
+		/**
+		 * @return number of samples, -1 if unknown
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		public double getQuantum() {
+			return quantum;
+		}
+
+		public String getUnits() {
+			return units;
+		}
+
+		@Override
+		public String toString() {
+			return "{encoding=" + encoding + ", count=" + count + ", quantum=" + quantum + ", units=" + units + "}";
+		}
+	}
+
+	public static Header readHeader(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return readHeader(channel, newBuffer());
+		}
+	}
+
+	public static PointSamples load(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer buffer = newBuffer();
+			Header header = readHeader(channel, buffer);
+			long count = header.count;
+			if (count < 0 && header.encoding.getSampleSize() > 0) {
+				count = (channel.size() - header.size) / header.encoding.getSampleSize();
+			}
+			if (count > Integer.MAX_VALUE - 8) {
+				throw new IOException("too many samples to load: " + count + ", stream them instead");
+			}
+			PointSamples samples = new PointSamples(count < 0 ? 1024 : (int) count);
+			readSamples(channel, buffer, header, samples::add);
+			return samples;
+		}
+	}
+
+	/**
+	 * Streams the samples in constant memory.
+	 *
+	 * @return the header of the file
+	 */
+	public static Header read(Path file, SampleConsumer consumer) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer buffer = newBuffer();
+			Header header = readHeader(channel, buffer);
+			readSamples(channel, buffer, header, consumer);
+			return header;
+		}
+	}
+
+	// Private Methods
+
+	private static ByteBuffer newBuffer() {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.limit(0);
+		return buffer;
+	}
+
+	private static Header readHeader(FileChannel channel, ByteBuffer buffer) throws IOException {
+		fill(channel, buffer, BinarySampleFormat.HEADER_SIZE);
+		if (buffer.remaining() < BinarySampleFormat.HEADER_SIZE) {
+			throw new IOException("not a sample file");
+		}
+		for (byte b : BinarySampleFormat.MAGIC) {
+			if (buffer.get() != b) {
+				throw new IOException("not a sample file");
+			}
+		}
+		byte version = buffer.get();
+		if (version != BinarySampleFormat.VERSION) {
+			throw new IOException("unsupported version: " + version);
+		}
+		byte encodingId = buffer.get();
+		Encoding encoding = Encoding.byId(encodingId);
+		if (encoding == null) {
+			throw new IOException("unsupported encoding: " + encodingId);
+		}
+		int unitsLength = buffer.getShort() & 0xffff;
+		long count = buffer.getLong();
+		double quantum = buffer.getDouble();
+		fill(channel, buffer, unitsLength);
+		if (buffer.remaining() < unitsLength) {
+			throw new IOException("truncated header");
+		}
+		byte[] units = new byte[unitsLength];
+		buffer.get(units);
+		return new Header(encoding, count, quantum, new String(units, StandardCharsets.UTF_8), BinarySampleFormat.HEADER_SIZE + unitsLength);
+	}
+
+	private static void readSamples(FileChannel channel, ByteBuffer buffer, Header header, SampleConsumer consumer) throws IOException {
+		final Encoding encoding = header.encoding;
+		final long count = header.count;
+		final int required = encoding.getSampleSize() > 0 ? encoding.getSampleSize() : MAX_SAMPLE_SIZE;
+		long qx = 0;
+		long qy = 0;
+		long qz = 0;
+		for (long i = 0; count < 0 || i < count; i++) {
+			if (buffer.remaining() < required && !fill(channel, buffer, required)) {
+				// end of the file, delta encoded samples may be shorter than the maximal size
+				boolean partial = encoding.getSampleSize() > 0 ? buffer.remaining() < required : !hasDeltaSample(buffer);
+				if (partial && count < 0) {
+					// the writer was not closed, the last sample may be incomplete
+					return;
+				}
+				if (partial) {
+					throw new IOException("truncated file, read " + i + " of " + count + " samples");
+				}
+			}
+			switch (encoding) {
+			case FLOAT32:
+				consumer.accept(buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
+				break;
+			case FLOAT64:
+				consumer.accept(buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+				break;
+			default:
+				qx += getVarLong(buffer);
+				qy += getVarLong(buffer);
+				qz += getVarLong(buffer);
+				consumer.accept(qx * header.quantum, qy * header.quantum, qz * header.quantum);
+			}
+		}
+	}
+
+	/**
+	 * Reads more data until at least the required bytes are available.
+	 *
+	 * @return false if the end of the file was reached before
+	 */
+	private static boolean fill(FileChannel channel, ByteBuffer buffer, int required) throws IOException {
+		if (buffer.remaining() >= required) {
+			return true;
+		}
+		buffer.compact();
+		try {
+			while (buffer.position() < required) {
+				if (channel.read(buffer) < 0) {
+					return false;
+				}
+			}
+			return true;
+		} finally {
+			buffer.flip();
+		}
+	}
+
+	/**
+	 * @return true if the buffer holds the three varints of a complete delta
+	 *         encoded sample
+	 */
+	private static boolean hasDeltaSample(ByteBuffer buffer) {
+		int values = 0;
+		for (int i = buffer.position(); i < buffer.limit() && values < 3; i++) {
+			if ((buffer.get(i) & 0x80) == 0) {
+				values++;
+			}
+		}
+		return values == 3;
+	}
+
+	private static long getVarLong(ByteBuffer buffer) throws IOException {
+		long zigZag = 0;
+		int shift = 0;
+		byte b;
+		do {
+			if (!buffer.hasRemaining() || shift > 63) {
+				throw new IOException("corrupt delta encoding");
+			}
+			b = buffer.get();
+			zigZag |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return (zigZag >>> 1) ^ -(zigZag & 1);
+	}
+}
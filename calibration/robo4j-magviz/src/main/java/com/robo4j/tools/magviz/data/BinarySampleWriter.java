@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.robo4j.tools.magviz.data.BinarySampleFormat.Encoding;
+
+/**
+ * Writes samples in the {@link BinarySampleFormat}. The samples are
+ * collected in a direct buffer and written to the channel when it is full,
+ * the sample count in the header is filled in on close.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class BinarySampleWriter implements Closeable, SampleConsumer {
+	private static final int BUFFER_SIZE = 256 * 1024;
+	// three varints of at most 10 bytes
+	private static final int MAX_SAMPLE_SIZE = 30;
+
+	private final FileChannel channel;
+	private final Encoding encoding;
+	private final double quantum;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	private long count;
+	private long previousX;
+	private long previousY;
+	private long previousZ;
+
+	/**
+	 * @param file
+	 *            the file to write, replaced if it exists
+	 * @param encoding
+	 *            the encoding of the samples
+	 * @param units
+	 *            the units of the samples, e.g. "gauss"
+	 * @param quantum
+	 *            resolution of the {@link Encoding#DELTA} encoding, the
+	 *            values are rounded to multiples of it, ignored otherwise
+	 * @throws IOException
+	 *             the file could not be created
+	 */
+	public BinarySampleWriter(Path file, Encoding encoding, String units, double quantum) throws IOException {
+		if (encoding == Encoding.DELTA && !(quantum > 0)) {
+			throw new IllegalArgumentException("the delta encoding needs a positive quantum");
+		}
+		byte[] unitBytes = units == null ? new byte[0] : units.getBytes(StandardCharsets.UTF_8);
+		if (unitBytes.length > 0xffff) {
+			throw new IllegalArgumentException("units too long");
+		}
+		this.encoding = encoding;
+		this.quantum = encoding == Encoding.DELTA ? quantum : 0;
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		buffer.put(BinarySampleFormat.MAGIC);
+		buffer.put(BinarySampleFormat.VERSION);
+		buffer.put(encoding.getId());
+		buffer.putShort((short) unitBytes.length);
+		buffer.putLong(BinarySampleFormat.UNKNOWN_COUNT);
+		buffer.putDouble(this.quantum);
+		if (unitBytes.length > buffer.remaining()) {
+			flush();
+		}
+		buffer.put(unitBytes);
+	}
+
+	@Override
+	public void accept(double x, double y, double z) {
+		try {
+			write(x, y, z);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public void write(double x, double y, double z) throws IOException {
+		if (buffer.remaining() < MAX_SAMPLE_SIZE) {
+			flush();
+		}
+		switch (encoding) {
+		case FLOAT32:
+			buffer.putFloat((float) x);
+			buffer.putFloat((float) y);
+			buffer.putFloat((float) z);
+			break;
+		case FLOAT64:
+			buffer.putDouble(x);
+			buffer.putDouble(y);
+			buffer.putDouble(z);
+			break;
+		default:
+			long qx = Math.round(x / quantum);
+			long qy = Math.round(y / quantum);
+			long qz = Math.round(z / quantum);
+			putVarLong(qx - previousX);
+			putVarLong(qy - previousY);
+			putVarLong(qz - previousZ);
+			previousX = qx;
+			previousY = qy;
+			previousZ = qz;
+		}
+		count++;
+	}
+
+	public void writeAll(PointSamples samples) throws IOException {
+		for (int i = 0; i < samples.size(); i++) {
+			write(samples.getX(i), samples.getY(i), samples.getZ(i));
+		}
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+			ByteBuffer header = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			header.putLong(count).flip();
+			long position = BinarySampleFormat.COUNT_OFFSET;
+			while (header.hasRemaining()) {
+				position += channel.write(header, position);
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	private void putVarLong(long value) {
+		// zig-zag, small negative differences become small numbers
+		long zigZag = (value << 1) ^ (value >> 63);
+		while ((zigZag & ~0x7FL) != 0) {
+			buffer.put((byte) ((zigZag & 0x7F) | 0x80));
+			zigZag >>>= 7;
+		}
+		buffer.put((byte) zigZag);
+	}
+}
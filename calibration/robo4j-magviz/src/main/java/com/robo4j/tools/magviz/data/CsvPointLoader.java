@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Loads magnetometer samples from csv files (x;y;z per line). The file is
+ * memory mapped and split into chunks at line boundaries, the chunks are
+ * parsed in parallel with a parser working directly on the mapped bytes.
+ *
+ * Like the line based reading, lines starting with # are comments, blank
+ * lines are skipped and values after the third one are ignored.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public final class CsvPointLoader {
+	public static final char DEFAULT_SEPARATOR = ';';
+	private static final long CHUNK_SIZE = 8 * 1024 * 1024;
+	private static final int MAX_LINE_LENGTH = 4096;
+	private static final int MAX_MANTISSA_DIGITS = 18;
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13,
+			1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private CsvPointLoader() {
+		throw new UnsupportedOperationException("Toolkit!");
+	}
+
+	public static PointSamples load(Path csvFile) throws IOException {
+		return load(csvFile, DEFAULT_SEPARATOR);
+	}
+
+	/**
+	 * @param csvFile
+	 *            the file to load
+	 * @param separator
+	 *            the value separator
+	 * @return the samples of the file
+	 * @throws IOException
+	 *             the file could not be read or contains an invalid sample
+	 */
+	public static PointSamples load(Path csvFile, char separator) throws IOException {
+		return load(csvFile, separator, CHUNK_SIZE);
+	}
+
+	/**
+	 * @param chunkSize
+	 *            the bytes per chunk, small chunks test the splitting
+	 */
+	static PointSamples load(Path csvFile, char separator, long chunkSize) throws IOException {
+		try (FileChannel channel = FileChannel.open(csvFile, StandardOpenOption.READ)) {
+			final long fileSize = channel.size();
+			final int chunks = (int) ((fileSize + chunkSize - 1) / chunkSize);
+			List<PointSamples> parsed;
+			try {
+				parsed = IntStream.range(0, chunks).parallel().mapToObj(i -> {
+					long start = i * chunkSize;
+					try {
+						return new ChunkParser(channel, start, Math.min(fileSize, start + chunkSize), fileSize, (byte) separator).parse();
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}).collect(Collectors.toList());
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+			int total = 0;
+			for (PointSamples chunk : parsed) {
+				total += chunk.size();
+			}
+			PointSamples samples = new PointSamples(total);
+			for (PointSamples chunk : parsed) {
+				samples.addAll(chunk);
+			}
+			return samples;
+		}
+	}
+
+	/**
+	 * Parses the lines starting in [start, end) of the file.
+	 */
+	private static final class ChunkParser {
+		private final MappedByteBuffer buffer;
+		private final long mapStart;
+		private final int ownedEnd;
+		private final boolean truncated;
+		private final boolean continuation;
+		private final byte separator;
+		private final PointSamples samples;
+		private int position;
+
+		private ChunkParser(FileChannel channel, long start, long end, long fileSize, byte separator) throws IOException {
+			// one byte before the chunk tells whether it starts with a new line
+			this.mapStart = start == 0 ? 0 : start - 1;
+			long mapEnd = Math.min(fileSize, end + MAX_LINE_LENGTH);
+			this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+			this.ownedEnd = (int) (end - mapStart);
+			this.truncated = mapEnd < fileSize;
+			this.continuation = start > 0;
+			this.separator = separator;
+			this.position = (int) (start - mapStart);
+			this.samples = new PointSamples((int) ((end - start) / 24) + 16);
+		}
+
+		private PointSamples parse() throws IOException {
+			final int limit = buffer.limit();
+			if (continuation && buffer.get(0) != '\n') {
+				// the first line belongs to the previous chunk
+				while (position < limit && buffer.get(position) != '\n') {
+					position++;
+				}
+				position++;
+			}
+			while (position < ownedEnd) {
+				int lineEnd = position;
+				while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+					lineEnd++;
+				}
+				if (lineEnd == limit && truncated) {
+					throw new IOException("line longer than " + MAX_LINE_LENGTH + " bytes at offset " + offset(position));
+				}
+				parseLine(lineEnd);
+				position = lineEnd + 1;
+			}
+			samples.trim();
+			return samples;
+		}
+
+		private void parseLine(int lineEnd) throws IOException {
+			final int lineStart = position;
+			if (buffer.get(position) == '#') {
+				return;
+			}
+			skipWhitespace(lineEnd);
+			if (position == lineEnd) {
+				return;
+			}
+			double x = parseValue(lineEnd, lineStart);
+			expectSeparator(lineEnd, lineStart);
+			double y = parseValue(lineEnd, lineStart);
+			expectSeparator(lineEnd, lineStart);
+			double z = parseValue(lineEnd, lineStart);
+			samples.add(x, y, z);
+		}
+
+		private void expectSeparator(int lineEnd, int lineStart) throws IOException {
+			skipWhitespace(lineEnd);
+			if (position == lineEnd || buffer.get(position) != separator) {
+				throw invalidLine(lineStart, lineEnd);
+			}
+			position++;
+		}
+
+		private void skipWhitespace(int lineEnd) {
+			while (position < lineEnd && isWhitespace(buffer.get(position))) {
+				position++;
+			}
+		}
+
+		/**
+		 * Parses decimal numbers with up to 18 significant digits without
+		 * allocation, anything else (NaN, very long mantissas) by
+		 * {@link Double#parseDouble(String)}.
+		 */
+		private double parseValue(int lineEnd, int lineStart) throws IOException {
+			skipWhitespace(lineEnd);
+			final int start = position;
+			boolean negative = false;
+			if (position < lineEnd && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+				negative = buffer.get(position) == '-';
+				position++;
+			}
+			long mantissa = 0;
+			int digits = 0;
+			int exponent = 0;
+			boolean anyDigit = false;
+			boolean exact = true;
+			byte b;
+			while (position < lineEnd && isDigit(b = buffer.get(position))) {
+				if (digits < MAX_MANTISSA_DIGITS) {
+					mantissa = mantissa * 10 + (b - '0');
+					if (mantissa != 0) {
+						digits++;
+					}
+				} else {
+					exponent++;
+					exact &= b == '0';
+				}
+				anyDigit = true;
+				position++;
+			}
+			if (position < lineEnd && buffer.get(position) == '.') {
+				position++;
+				while (position < lineEnd && isDigit(b = buffer.get(position))) {
+					if (digits < MAX_MANTISSA_DIGITS) {
+						mantissa = mantissa * 10 + (b - '0');
+						exponent--;
+						if (mantissa != 0) {
+							digits++;
+						}
+					} else {
+						exact &= b == '0';
+					}
+					anyDigit = true;
+					position++;
+				}
+			}
+			if (anyDigit && position < lineEnd && (buffer.get(position) == 'e' || buffer.get(position) == 'E')) {
+				position++;
+				boolean negativeExponent = false;
+				if (position < lineEnd && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+					negativeExponent = buffer.get(position) == '-';
+					position++;
+				}
+				int value = 0;
+				boolean anyExponentDigit = false;
+				while (position < lineEnd && isDigit(b = buffer.get(position))) {
+					value = Math.min(100000, value * 10 + (b - '0'));
+					anyExponentDigit = true;
+					position++;
+				}
+				anyDigit = anyExponentDigit;
+				exponent += negativeExponent ? -value : value;
+			}
+			if (!anyDigit || (position < lineEnd && !isWhitespace(buffer.get(position)) && buffer.get(position) != separator)) {
+				return parseFallback(start, lineEnd, lineStart);
+			}
+			if (mantissa == 0) {
+				return negative ? -0.0 : 0.0;
+			}
+			if (!exact || mantissa >= MAX_EXACT_MANTISSA || exponent < -22 || exponent > 22) {
+				return parseFallback(start, lineEnd, lineStart);
+			}
+			// both operands are exact, so the result is correctly rounded
+			double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+			return negative ? -value : value;
+		}
+
+		private double parseFallback(int start, int lineEnd, int lineStart) throws IOException {
+			position = start;
+			while (position < lineEnd && buffer.get(position) != separator) {
+				position++;
+			}
+			byte[] token = new byte[position - start];
+			for (int i = 0; i < token.length; i++) {
+				token[i] = buffer.get(start + i);
+			}
+			try {
+				return Double.parseDouble(new String(token, StandardCharsets.US_ASCII).trim());
+			} catch (NumberFormatException e) {
+				throw invalidLine(lineStart, lineEnd);
+			}
+		}
+
+		private IOException invalidLine(int lineStart, int lineEnd) {
+			byte[] line = new byte[Math.min(lineEnd - lineStart, 80)];
+			for (int i = 0; i < line.length; i++) {
+				line[i] = buffer.get(lineStart + i);
+			}
+			return new IOException("invalid sample at offset " + offset(lineStart) + ": " + new String(line, StandardCharsets.US_ASCII).trim());
+		}
+
+		private long offset(int bufferPosition) {
+			return mapStart + bufferPosition;
+		}
+
+		private static boolean isDigit(byte b) {
+			return b >= '0' && b <= '9';
+		}
+
+		private static boolean isWhitespace(byte b) {
+			return b == ' ' || b == '\t' || b == '\r';
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.data;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javafx.geometry.Point3D;
+
+/**
+ * Magnetometer samples stored as a structure of arrays, three doubles per
+ * sample instead of a {@link Point3D} object each.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class PointSamples {
+	private double[] x;
+	private double[] y;
+	private double[] z;
+	private int size;
+
+	public PointSamples() {
+		this(1024);
+	}
+
+	public PointSamples(int capacity) {
+		x = new double[Math.max(1, capacity)];
+		y = new double[x.length];
+		z = new double[x.length];
+	}
+
+	/**
+	 * Wraps the arrays without copying them.
+	 *
+	 * @param size
+	 *            number of valid samples in the arrays
+	 */
+	public PointSamples(double[] x, double[] y, double[] z, int size) {
+		if (y.length != x.length || z.length != x.length || size > x.length) {
+			throw new IllegalArgumentException("array length mismatch");
+		}
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.size = size;
+	}
+
+	public void add(double px, double py, double pz) {
+		if (size == x.length) {
+			int capacity = x.length * 2;
+			x = Arrays.copyOf(x, capacity);
+			y = Arrays.copyOf(y, capacity);
+			z = Arrays.copyOf(z, capacity);
+		}
+		x[size] = px;
+		y[size] = py;
+		z[size] = pz;
+		size++;
+	}
+
+	/**
+	 * Appends all samples of another instance.
+	 */
+	public void addAll(PointSamples other) {
+		int capacity = size + other.size;
+		if (capacity > x.length) {
+			x = Arrays.copyOf(x, capacity);
+			y = Arrays.copyOf(y, capacity);
+			z = Arrays.copyOf(z, capacity);
+		}
+		System.arraycopy(other.x, 0, x, size, other.size);
+		System.arraycopy(other.y, 0, y, size, other.size);
+		System.arraycopy(other.z, 0, z, size, other.size);
+		size = capacity;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public double getX(int index) {
+		return x[index];
+	}
+
+	public double getY(int index) {
+		return y[index];
+	}
+
+	public double getZ(int index) {
+		return z[index];
+	}
+
+	/**
+	 * @return the x values, only the first {@link #size()} are valid
+	 */
+	public double[] getXs() {
+		return x;
+	}
+
+	/**
+	 * @return the y values, only the first {@link #size()} are valid
+	 */
+	public double[] getYs() {
+		return y;
+	}
+
+	/**
+	 * @return the z values, only the first {@link #size()} are valid
+	 */
+	public double[] getZs() {
+		return z;
+	}
+
+	/**
+	 * Removes all samples, the capacity is kept.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Releases the unused capacity.
+	 */
+	public void trim() {
+		if (x.length > size) {
+			x = Arrays.copyOf(x, size);
+			y = Arrays.copyOf(y, size);
+			z = Arrays.copyOf(z, size);
+		}
+	}
+
+	public static PointSamples fromPoints(List<Point3D> points) {
+		PointSamples samples = new PointSamples(points.size());
+		for (Point3D p : points) {
+			samples.add(p.getX(), p.getY(), p.getZ());
+		}
+		return samples;
+	}
+
+	@Override
+	public String toString() {
+		return "PointSamples{" + "size=" + size + '}';
+	}
+}
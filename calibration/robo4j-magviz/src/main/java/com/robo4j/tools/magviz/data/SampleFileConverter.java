@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.data;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import com.robo4j.tools.magviz.data.BinarySampleFormat.Encoding;
+
+/**
+ * Converts csv sample files to the {@link BinarySampleFormat}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class SampleFileConverter {
+	private static final double DEFAULT_QUANTUM = 1e-6;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: SampleFileConverter <input csv> <output file> [float32|float64|delta [quantum]] [units]");
+			System.out.println("Default is float64, the delta quantum defaults to " + DEFAULT_QUANTUM);
+			System.exit(2);
+		}
+		Path input = Paths.get(args[0]);
+		Path output = Paths.get(args[1]);
+		Encoding encoding = args.length > 2 ? Encoding.valueOf(args[2].toUpperCase()) : Encoding.FLOAT64;
+		int next = 3;
+		double quantum = DEFAULT_QUANTUM;
+		if (encoding == Encoding.DELTA && args.length > next && isNumber(args[next])) {
+			quantum = Double.parseDouble(args[next++]);
+		}
+		String units = args.length > next ? args[next] : "";
+
+		long start = System.currentTimeMillis();
+		long count = convert(input, output, encoding, units, quantum);
+		System.out.println(String.format("Converted %d samples to %s (%s) in %d ms", count, output, encoding, System.currentTimeMillis() - start));
+	}
+
+	/**
+	 * @return number of converted samples
+	 */
+	public static long convert(Path csvFile, Path output, Encoding encoding, String units, double quantum) throws IOException {
+		PointSamples samples = CsvPointLoader.load(csvFile);
+		try (BinarySampleWriter writer = new BinarySampleWriter(output, encoding, units, quantum)) {
+			writer.writeAll(samples);
+			return writer.getCount();
+		}
+	}
+
+	private static boolean isNumber(String value) {
+		try {
+			Double.parseDouble(value);
+			return true;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+}
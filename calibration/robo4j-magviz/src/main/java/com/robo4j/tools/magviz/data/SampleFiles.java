@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Loads sample files in either format, the {@link BinarySampleFormat} is
+ * recognized by its magic, everything else is read as csv.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public final class SampleFiles {
+
+	private SampleFiles() {
+		throw new UnsupportedOperationException("Toolkit!");
+	}
+
+	public static boolean isBinary(Path file) throws IOException {
+		byte[] magic = new byte[BinarySampleFormat.MAGIC.length];
+		try (InputStream in = Files.newInputStream(file)) {
+			int length = 0;
+			int read;
+			while (length < magic.length && (read = in.read(magic, length, magic.length - length)) > 0) {
+				length += read;
+			}
+			return BinarySampleFormat.isMagic(magic, length);
+		}
+	}
+
+	public static PointSamples load(Path file) throws IOException {
+		return isBinary(file) ? BinarySampleReader.load(file) : CsvPointLoader.load(file);
+	}
+
+	/**
+	 * Passes all samples of the file to the consumer. Binary files are
+	 * streamed in constant memory.
+	 */
+	public static void read(Path file, SampleConsumer consumer) throws IOException {
+		if (isBinary(file)) {
+			BinarySampleReader.read(file, consumer);
+		} else {
+			PointSamples samples = CsvPointLoader.load(file);
+			for (int i = 0; i < samples.size(); i++) {
+				consumer.accept(samples.getX(i), samples.getY(i), samples.getZ(i));
+			}
+		}
+	}
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.ellipsoid;
+
+/**
+ * Allocation free solver for the small systems of the ellipsoid fit, working
+ * on primitive row major arrays: Cholesky decomposition of the 9x9 normal
+ * matrix, a direct 3x3 solve for the center and a Jacobi eigen decomposition
+ * of the symmetric 3x3 shape matrix. Cheap enough to recalibrate
+ * continuously.
+ *
+ * Instances keep their scratch buffers and are not thread safe.
+ *
+ * @see EllipsoidToSphereSolver
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class EllipsoidSolverCore {
+	private static final int N = NormalEquationAccumulator.SIZE;
+	private static final int MAX_SWEEPS = 50;
+
+	private final double[] lower = new double[N * N];
+	private final double[] work = new double[N];
+	private final double[] polynomial = new double[N];
+	private final double[] shape = new double[9];
+	private final double[] negatedShape = new double[9];
+	private final double[] linear = new double[3];
+	private final double[] eigenValues = new double[3];
+	private final double[] eigenVectors = new double[9];
+
+	/**
+	 * Solves the accumulated normal equations.
+	 *
+	 * @see #solve(double[], double[], double[], double[])
+	 */
+	public boolean solve(NormalEquationAccumulator equations, double[] center, double[] matrix) {
+		if (equations.getCount() <= 0) {
+			throw new SolverException("no data-points");
+		}
+		return solve(equations.upperNormalMatrix(), equations.rightHandSide(), center, matrix);
+	}
+
+	/**
+	 * Fits the ellipsoid and determines its center and the correction matrix
+	 * mapping it to a sphere.
+	 *
+	 * @param upperNormalMatrix
+	 *            D'D, row major, only the upper triangle is read
+	 * @param rightHandSide
+	 *            D'1
+	 * @param center
+	 *            receives the center of the ellipsoid
+	 * @param matrix
+	 *            receives the correction matrix, row major
+	 * @return false if the system is degenerate (not positive definite,
+	 *         singular shape), the results are then undefined
+	 */
+	public boolean solve(double[] upperNormalMatrix, double[] rightHandSide, double[] center, double[] matrix) {
+		if (!choleskySolve(upperNormalMatrix, rightHandSide, polynomial)) {
+			return false;
+		}
+		final double[] v = polynomial;
+		setSymmetric(shape, v[0], v[1], v[2], v[3], v[4], v[5]);
+		linear[0] = v[6];
+		linear[1] = v[7];
+		linear[2] = v[8];
+
+		// center = (-A)^-1 * ghi
+		for (int i = 0; i < 9; i++) {
+			negatedShape[i] = -shape[i];
+		}
+		if (!solve3(negatedShape, linear, center)) {
+			return false;
+		}
+
+		// translating the algebraic form to the center keeps A, the constant
+		// becomes c'Ac + 2 c.ghi - 1
+		double constant = -1;
+		for (int i = 0; i < 3; i++) {
+			double row = 0;
+			for (int j = 0; j < 3; j++) {
+				row += shape[i * 3 + j] * center[j];
+			}
+			constant += center[i] * (row + 2 * linear[i]);
+		}
+		for (int i = 0; i < 9; i++) {
+			shape[i] /= -constant;
+		}
+
+		// correction = R' * diag(1 / radii) * R, with radius = sqrt(1 / eigenvalue)
+		jacobiEigen3(shape, eigenValues, eigenVectors);
+		for (int i = 0; i < 3; i++) {
+			for (int j = 0; j < 3; j++) {
+				double sum = 0;
+				for (int k = 0; k < 3; k++) {
+					sum += eigenVectors[i * 3 + k] * Math.sqrt(eigenValues[k]) * eigenVectors[j * 3 + k];
+				}
+				matrix[i * 3 + j] = sum;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Solves the symmetric positive definite 9x9 system by Cholesky
+	 * decomposition.
+	 *
+	 * @param upper
+	 *            the matrix, row major, only the upper triangle is read
+	 * @param b
+	 *            right hand side
+	 * @param x
+	 *            receives the solution
+	 * @return false if the matrix is not positive definite
+	 */
+	public boolean choleskySolve(double[] upper, double[] b, double[] x) {
+		final double[] l = lower;
+		for (int j = 0; j < N; j++) {
+			double diagonal = upper[j * N + j];
+			for (int k = 0; k < j; k++) {
+				diagonal -= l[j * N + k] * l[j * N + k];
+			}
+			if (!(diagonal > 0)) {
+				return false;
+			}
+			final double pivot = Math.sqrt(diagonal);
+			l[j * N + j] = pivot;
+			for (int i = j + 1; i < N; i++) {
+				double sum = upper[j * N + i];
+				for (int k = 0; k < j; k++) {
+					sum -= l[i * N + k] * l[j * N + k];
+				}
+				l[i * N + j] = sum / pivot;
+			}
+		}
+		// L y = b
+		for (int i = 0; i < N; i++) {
+			double sum = b[i];
+			for (int k = 0; k < i; k++) {
+				sum -= l[i * N + k] * work[k];
+			}
+			work[i] = sum / l[i * N + i];
+		}
+		// L' x = y
+		for (int i = N - 1; i >= 0; i--) {
+			double sum = work[i];
+			for (int k = i + 1; k < N; k++) {
+				sum -= l[k * N + i] * x[k];
+			}
+			x[i] = sum / l[i * N + i];
+		}
+		return true;
+	}
+
+	/**
+	 * Solves the 3x3 system with the adjugate matrix.
+	 *
+	 * @param a
+	 *            the matrix, row major
+	 * @return false if the matrix is singular
+	 */
+	public static boolean solve3(double[] a, double[] b, double[] x) {
+		final double c00 = a[4] * a[8] - a[5] * a[7];
+		final double c01 = a[5] * a[6] - a[3] * a[8];
+		final double c02 = a[3] * a[7] - a[4] * a[6];
+		final double det = a[0] * c00 + a[1] * c01 + a[2] * c02;
+		if (det == 0 || !Double.isFinite(det)) {
+			return false;
+		}
+		final double c10 = a[2] * a[7] - a[1] * a[8];
+		final double c11 = a[0] * a[8] - a[2] * a[6];
+		final double c12 = a[1] * a[6] - a[0] * a[7];
+		final double c20 = a[1] * a[5] - a[2] * a[4];
+		final double c21 = a[2] * a[3] - a[0] * a[5];
+		final double c22 = a[0] * a[4] - a[1] * a[3];
+		final double b0 = b[0];
+		final double b1 = b[1];
+		final double b2 = b[2];
+		x[0] = (c00 * b0 + c10 * b1 + c20 * b2) / det;
+		x[1] = (c01 * b0 + c11 * b1 + c21 * b2) / det;
+		x[2] = (c02 * b0 + c12 * b1 + c22 * b2) / det;
+		return true;
+	}
+
+	/**
+	 * Eigen decomposition of a symmetric 3x3 matrix by cyclic Jacobi
+	 * rotations.
+	 *
+	 * @param a
+	 *            the matrix, row major, overwritten with the diagonalized
+	 *            matrix
+	 * @param values
+	 *            receives the eigenvalues in descending order
+	 * @param vectors
+	 *            receives the eigenvectors as columns, row major
+	 */
+	public static void jacobiEigen3(double[] a, double[] values, double[] vectors) {
+		setSymmetric(vectors, 1, 1, 1, 0, 0, 0);
+		for (int sweep = 0; sweep < MAX_SWEEPS; sweep++) {
+			final double off = a[1] * a[1] + a[2] * a[2] + a[5] * a[5];
+			final double diagonal = a[0] * a[0] + a[4] * a[4] + a[8] * a[8];
+			if (off <= 1e-32 * diagonal || off == 0) {
+				break;
+			}
+			rotate(a, vectors, 0, 1);
+			rotate(a, vectors, 0, 2);
+			rotate(a, vectors, 1, 2);
+		}
+		values[0] = a[0];
+		values[1] = a[4];
+		values[2] = a[8];
+		// selection sort, descending, swapping the eigenvector columns along
+		for (int i = 0; i < 2; i++) {
+			int max = i;
+			for (int j = i + 1; j < 3; j++) {
+				if (values[j] > values[max]) {
+					max = j;
+				}
+			}
+			if (max != i) {
+				double value = values[i];
+				values[i] = values[max];
+				values[max] = value;
+				for (int k = 0; k < 3; k++) {
+					double element = vectors[k * 3 + i];
+					vectors[k * 3 + i] = vectors[k * 3 + max];
+					vectors[k * 3 + max] = element;
+				}
+			}
+		}
+	}
+
+	// Private Methods
+
+	/**
+	 * Zeroes the element (p, q) by the rotation A' = J'AJ, V' = VJ.
+	 */
+	private static void rotate(double[] a, double[] v, int p, int q) {
+		final double apq = a[p * 3 + q];
+		if (apq == 0) {
+			return;
+		}
+		final double theta = (a[q * 3 + q] - a[p * 3 + p]) / (2 * apq);
+		final double t;
+		if (Math.abs(theta) > 1e150) {
+			t = 0.5 / theta;
+		} else {
+			t = Math.signum(theta == 0 ? 1 : theta) / (Math.abs(theta) + Math.sqrt(theta * theta + 1));
+		}
+		final double c = 1 / Math.sqrt(t * t + 1);
+		final double s = t * c;
+		for (int k = 0; k < 3; k++) {
+			final double akp = a[k * 3 + p];
+			final double akq = a[k * 3 + q];
+			a[k * 3 + p] = c * akp - s * akq;
+			a[k * 3 + q] = s * akp + c * akq;
+		}
+		for (int k = 0; k < 3; k++) {
+			final double apk = a[p * 3 + k];
+			final double aqk = a[q * 3 + k];
+			a[p * 3 + k] = c * apk - s * aqk;
+			a[q * 3 + k] = s * apk + c * aqk;
+		}
+		for (int k = 0; k < 3; k++) {
+			final double vkp = v[k * 3 + p];
+			final double vkq = v[k * 3 + q];
+			v[k * 3 + p] = c * vkp - s * vkq;
+			v[k * 3 + q] = s * vkp + c * vkq;
+		}
+	}
+
+	private static void setSymmetric(double[] m, double xx, double yy, double zz, double xy, double xz, double yz) {
+		m[0] = xx;
+		m[1] = xy;
+		m[2] = xz;
+		m[3] = xy;
+		m[4] = yy;
+		m[5] = yz;
+		m[6] = xz;
+		m[7] = yz;
+		m[8] = zz;
+	}
+}
@@ -17,17 +17,21 @@
 
 package com.robo4j.tools.magviz.ellipsoid;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
-import java.util.stream.IntStream;
+import java.util.PrimitiveIterator;
+import java.util.stream.DoubleStream;
 
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
-import org.apache.commons.math3.linear.ArrayRealVector;
 import org.apache.commons.math3.linear.EigenDecomposition;
 import org.apache.commons.math3.linear.MatrixUtils;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
 import org.apache.commons.math3.linear.SingularValueDecomposition;
 
+import com.robo4j.tools.magviz.data.SampleFiles;
+
 import javafx.geometry.Point3D;
 
 /**
@@ -44,17 +48,126 @@ import javafx.geometry.Point3D;
 public class EllipsoidToSphereSolver {
 
 	private List<Point3D> dataPoints;
+	private NormalEquationAccumulator equations;
 
 	public EllipsoidToSphereSolver(List<Point3D> dataPoints) {
 		this.dataPoints = dataPoints;
 	}
 
+	/**
+	 * @param equations
+	 *            the accumulated normal equations of the points to fit
+	 */
+	public EllipsoidToSphereSolver(NormalEquationAccumulator equations) {
+		this.equations = equations;
+	}
+
+	/**
+	 * Accumulates the points in constant memory, so recordings of any size
+	 * can be fit.
+	 *
+	 * @param xyz
+	 *            interleaved values x0, y0, z0, x1, y1, z1, ...
+	 * @return the solver for the points
+	 */
+	public static EllipsoidToSphereSolver fromXyz(PrimitiveIterator.OfDouble xyz) {
+		NormalEquationAccumulator equations = new NormalEquationAccumulator();
+		equations.addAll(xyz);
+		return new EllipsoidToSphereSolver(equations);
+	}
+
+	/**
+	 * @see #fromXyz(PrimitiveIterator.OfDouble)
+	 */
+	public static EllipsoidToSphereSolver fromXyz(DoubleStream xyz) {
+		return fromXyz(xyz.iterator());
+	}
+
+	/**
+	 * Accumulates the points in parallel.
+	 *
+	 * @see NormalEquationTask
+	 *
+	 * @param count
+	 *            number of points in the coordinate arrays
+	 * @return the solver for the points
+	 */
+	public static EllipsoidToSphereSolver fromArrays(double[] x, double[] y, double[] z, int count) {
+		return new EllipsoidToSphereSolver(NormalEquationTask.accumulate(x, y, z, count));
+	}
+
+	/**
+	 * Streams the samples of a csv or binary sample file into the normal
+	 * equations.
+	 *
+	 * @see SampleFiles
+	 *
+	 * @param file
+	 *            the sample file
+	 * @return the solver for the samples
+	 * @throws IOException
+	 *             the file could not be read
+	 */
+	public static EllipsoidToSphereSolver fromFile(Path file) throws IOException {
+		NormalEquationAccumulator equations = new NormalEquationAccumulator();
+		SampleFiles.read(file, equations::add);
+		return new EllipsoidToSphereSolver(equations);
+	}
+
 	public SolvedEllipsoidResult solve() {
-		if (dataPoints == null || dataPoints.isEmpty()) {
-			throw new SolverException("no data-points");
+		NormalEquationAccumulator normalEquations = equations;
+		if (normalEquations == null) {
+			if (dataPoints == null || dataPoints.isEmpty()) {
+				throw new SolverException("no data-points");
+			}
+			normalEquations = NormalEquationTask.accumulate(dataPoints);
+		}
+		return solve(normalEquations, new EllipsoidSolverCore(), new double[3], new double[9]);
+	}
+
+	/**
+	 * Solves with the core, falls back to the decompositions for degenerate
+	 * data.
+	 *
+	 * @param center
+	 *            receives the center
+	 * @param matrix
+	 *            receives the correction matrix, row major
+	 */
+	static SolvedEllipsoidResult solve(NormalEquationAccumulator equations, EllipsoidSolverCore core, double[] center, double[] matrix) {
+		if (core.solve(equations, center, matrix)) {
+			return toResult(center, matrix);
 		}
+		// degenerate data, the decompositions cope with it
+		SolvedEllipsoidResult result = solve(equations.solve());
+		center[0] = result.getOffset().getX();
+		center[1] = result.getOffset().getY();
+		center[2] = result.getOffset().getZ();
+		for (int i = 0; i < 9; i++) {
+			matrix[i] = result.getTransformMatrix().getEntry(i / 3, i % 3);
+		}
+		return result;
+	}
 
-		RealVector fittingVector = pointsToEquation(dataPoints);
+	/**
+	 * @param matrix
+	 *            the correction matrix, row major
+	 */
+	static SolvedEllipsoidResult toResult(double[] center, double[] matrix) {
+		return new SolvedEllipsoidResult(new Point3D(center[0], center[1], center[2]),
+				new Array2DRowRealMatrix(new double[][] { { matrix[0], matrix[1], matrix[2] },
+						{ matrix[3], matrix[4], matrix[5] }, { matrix[6], matrix[7], matrix[8] } }));
+	}
+
+	/**
+	 * Determines the center and the correction matrix from the solved
+	 * polynomial expression.
+	 *
+	 * @param fittingVector
+	 *            the solution vector of the polynomial expression
+	 * @return the center and the correction matrix
+	 */
+	static SolvedEllipsoidResult solve(RealVector fittingVector) {
 		RealMatrix algMatrix = formAlgebraicMatrix(fittingVector);
 		RealVector solvedCenterOffset = solveCenter(algMatrix);
 		Point3D center = new Point3D(solvedCenterOffset.getEntry(0), solvedCenterOffset.getEntry(1), solvedCenterOffset.getEntry(2));
@@ -95,7 +208,7 @@ public class EllipsoidToSphereSolver {
 	}
 
 	// Private Methods
-	private RealMatrix divideMatrixByValue(final RealMatrix matrix, double divisor) {
+	private static RealMatrix divideMatrixByValue(final RealMatrix matrix, double divisor) {
 		final RealMatrix result = new Array2DRowRealMatrix(matrix.getRowDimension(), matrix.getRowDimension());
 		for (int i = 0; i < matrix.getRowDimension(); i++) {
 			for (int j = 0; j < matrix.getRowDimension(); j++) {
@@ -129,7 +242,7 @@ public class EllipsoidToSphereSolver {
 	 *            the algebraic form of the polynomial.
 	 * @return the center translated form of the algebraic ellipsoid.
 	 */
-	private RealMatrix translateToCenter(RealVector center, RealMatrix algM) {
+	private static RealMatrix translateToCenter(RealVector center, RealMatrix algM) {
 		// Form the corresponding translation rotationMatrix.
 		RealMatrix tmtx = MatrixUtils.createRealIdentityMatrix(4);
 		tmtx.setEntry(0, 3, center.getEntry(0));
@@ -147,7 +260,7 @@ public class EllipsoidToSphereSolver {
 	 *            alg matrix
 	 * @return center (offset)
 	 */
-	private RealVector solveCenter(RealMatrix algMatrix) {
+	private static RealVector solveCenter(RealMatrix algMatrix) {
 		RealMatrix subA = algMatrix.getSubMatrix(0, 2, 0, 2).scalarMultiply(-1);
 		RealVector vectorGhi = algMatrix.getRowVector(3).getSubVector(0, 3);
 
@@ -162,7 +275,7 @@ public class EllipsoidToSphereSolver {
 	 *            the vector polynomial.
 	 * @return the rotationMatrix of the algebraic form of the polynomial.
 	 */
-	private RealMatrix formAlgebraicMatrix(RealVector v) {
+	private static RealMatrix formAlgebraicMatrix(RealVector v) {
 		// a =
 		// [ Ax^2 2Dxy 2Exz 2Gx ]
 		// [ 2Dxy By^2 2Fyz 2Hy ]
@@ -181,49 +294,4 @@ public class EllipsoidToSphereSolver {
 		return new Array2DRowRealMatrix(data);
 	}
 
-	/**
-	 * Solve the polynomial expression Ax^2 + By^2 + Cz^2 + 2Dxy + 2Exz + 2Fyz +
-	 * 2Gx + 2Hy + 2Iz from the provided points.
-	 *
-	 * @param dataPoints
-	 *            the points that will be fit to the polynomial expression.
-	 *            dataPoint represent 3D Point dataPoint are fit to all 3 axes
-	 *            => result vector is then size of 9
-	 * @return the solution vector to the polynomial expression.
-	 */
-	private RealVector pointsToEquation(List<Point3D> dataPoints) {
-
-		RealMatrix designMatrix = new Array2DRowRealMatrix(dataPoints.size(), 9);
-		IntStream.range(0, dataPoints.size()).forEach(i -> {
-			double xx = Math.pow(dataPoints.get(i).getX(), 2);
-			double yy = Math.pow(dataPoints.get(i).getY(), 2);
-			double zz = Math.pow(dataPoints.get(i).getZ(), 2);
-			double xy = 2 * (dataPoints.get(i).getX() * dataPoints.get(i).getY());
-			double xz = 2 * (dataPoints.get(i).getX() * dataPoints.get(i).getZ());
-			double yz = 2 * (dataPoints.get(i).getY() * dataPoints.get(i).getZ());
-			double x = 2 * dataPoints.get(i).getX();
-			double y = 2 * dataPoints.get(i).getY();
-			double z = 2 * dataPoints.get(i).getZ();
-
-			designMatrix.setEntry(i, 0, xx);
-			designMatrix.setEntry(i, 1, yy);
-			designMatrix.setEntry(i, 2, zz);
-			designMatrix.setEntry(i, 3, xy);
-			designMatrix.setEntry(i, 4, xz);
-			designMatrix.setEntry(i, 5, yz);
-			designMatrix.setEntry(i, 6, x);
-			designMatrix.setEntry(i, 7, y);
-			designMatrix.setEntry(i, 8, z);
-		});
-
-		// v = (( d' * d )^-1) * ( d' * ones(Identity of size 9);
-		RealMatrix dtd = designMatrix.transpose().multiply(designMatrix);
-		RealVector ones9 = new ArrayRealVector(dataPoints.size(), 1);
-		RealVector dtOnes = designMatrix.transpose().operate(ones9);
-
-		// Find Inv(( d' * d )^-1)
-		RealMatrix dtdMatrix9 = new SingularValueDecomposition(dtd).getSolver().getInverse();
-		return dtdMatrix9.operate(dtOnes);
-	}
-
 }
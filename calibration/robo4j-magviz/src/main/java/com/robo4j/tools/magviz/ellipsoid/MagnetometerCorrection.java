@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.ellipsoid;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Applies a magnetometer calibration, corrected = matrix * (raw - center),
+ * with primitive math and without allocating, so that it can run at the full
+ * rate of the sensor on the robot. Instances are immutable and thread safe.
+ *
+ * The correction is exported from MagViz as a properties file, see
+ * {@link #store(Path)} and {@link #load(Path)}. Does not depend on JavaFX.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public final class MagnetometerCorrection {
+	public static final String KEY_CENTER = "center";
+	public static final String KEY_MATRIX = "matrix";
+	private static final String SEPARATOR = ";";
+
+	private final double cx;
+	private final double cy;
+	private final double cz;
+	private final double m00;
+	private final double m01;
+	private final double m02;
+	private final double m10;
+	private final double m11;
+	private final double m12;
+	private final double m20;
+	private final double m21;
+	private final double m22;
+
+	/**
+	 * @param center
+	 *            the bias to subtract
+	 * @param matrix
+	 *            the correction matrix, row major
+	 */
+	public MagnetometerCorrection(double[] center, double[] matrix) {
+		if (center.length != 3 || matrix.length != 9) {
+			throw new IllegalArgumentException("Expected a center of 3 and a matrix of 9 values");
+		}
+		cx = center[0];
+		cy = center[1];
+		cz = center[2];
+		m00 = matrix[0];
+		m01 = matrix[1];
+		m02 = matrix[2];
+		m10 = matrix[3];
+		m11 = matrix[4];
+		m12 = matrix[5];
+		m20 = matrix[6];
+		m21 = matrix[7];
+		m22 = matrix[8];
+	}
+
+	/**
+	 * @return the correction leaving the readings unchanged
+	 */
+	public static MagnetometerCorrection identity() {
+		return new MagnetometerCorrection(new double[3], new double[] { 1, 0, 0, 0, 1, 0, 0, 0, 1 });
+	}
+
+	/**
+	 * Corrects a single reading.
+	 *
+	 * @param out
+	 *            receives the corrected x, y, z at the offset
+	 */
+	public void correct(double x, double y, double z, double[] out, int offset) {
+		final double dx = x - cx;
+		final double dy = y - cy;
+		final double dz = z - cz;
+		out[offset] = m00 * dx + m01 * dy + m02 * dz;
+		out[offset + 1] = m10 * dx + m11 * dy + m12 * dz;
+		out[offset + 2] = m20 * dx + m21 * dy + m22 * dz;
+	}
+
+	public void correct(double x, double y, double z, double[] out) {
+		correct(x, y, z, out, 0);
+	}
+
+	/**
+	 * Corrects interleaved readings in place.
+	 *
+	 * @param xyz
+	 *            x0, y0, z0, x1, y1, z1, ...
+	 * @param count
+	 *            the number of readings
+	 */
+	public void correct(double[] xyz, int count) {
+		for (int i = 0; i < count * 3; i += 3) {
+			correct(xyz[i], xyz[i + 1], xyz[i + 2], xyz, i);
+		}
+	}
+
+	/**
+	 * Corrects the readings from index from (inclusive) to to (exclusive) of
+	 * the coordinate arrays in place, e.g. of a PointSamples.
+	 */
+	public void correct(double[] x, double[] y, double[] z, int from, int to) {
+		for (int i = from; i < to; i++) {
+			final double dx = x[i] - cx;
+			final double dy = y[i] - cy;
+			final double dz = z[i] - cz;
+			x[i] = m00 * dx + m01 * dy + m02 * dz;
+			y[i] = m10 * dx + m11 * dy + m12 * dz;
+			z[i] = m20 * dx + m21 * dy + m22 * dz;
+		}
+	}
+
+	public double[] getCenter() {
+		return new double[] { cx, cy, cz };
+	}
+
+	/**
+	 * @return the correction matrix, row major
+	 */
+	public double[] getMatrix() {
+		return new double[] { m00, m01, m02, m10, m11, m12, m20, m21, m22 };
+	}
+
+	/**
+	 * Stores the correction as a properties file.
+	 */
+	public void store(Path file) throws IOException {
+		Properties properties = new Properties();
+		properties.setProperty(KEY_CENTER, join(getCenter()));
+		properties.setProperty(KEY_MATRIX, join(getMatrix()));
+		try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.ISO_8859_1)) {
+			properties.store(writer, "Magnetometer correction: corrected = matrix * (raw - center), matrix row major");
+		}
+	}
+
+	/**
+	 * Loads a correction stored by {@link #store(Path)}.
+	 *
+	 * @throws IOException
+	 *             if the file could not be read or is not a correction
+	 */
+	public static MagnetometerCorrection load(Path file) throws IOException {
+		Properties properties = new Properties();
+		try (Reader reader = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1)) {
+			properties.load(reader);
+		}
+		return new MagnetometerCorrection(split(properties, KEY_CENTER, 3), split(properties, KEY_MATRIX, 9));
+	}
+
+	private static String join(double[] values) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				builder.append(SEPARATOR);
+			}
+			builder.append(values[i]);
+		}
+		return builder.toString();
+	}
+
+	private static double[] split(Properties properties, String key, int length) throws IOException {
+		String value = properties.getProperty(key);
+		if (value == null) {
+			throw new IOException("Missing " + key);
+		}
+		String[] parts = value.split(SEPARATOR);
+		if (parts.length != length) {
+			throw new IOException("Expected " + length + " values for " + key + ", got " + parts.length);
+		}
+		double[] values = new double[length];
+		try {
+			for (int i = 0; i < length; i++) {
+				values[i] = Double.parseDouble(parts[i].trim());
+			}
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid value for " + key + ": " + value, e);
+		}
+		return values;
+	}
+
+	@Override
+	public String toString() {
+		return "MagnetometerCorrection{" + "center=" + join(getCenter()) + ", matrix=" + join(getMatrix()) + '}';
+	}
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.ellipsoid;
+
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+import java.util.stream.DoubleStream;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.SingularValueDecomposition;
+
+import javafx.geometry.Point3D;
+
+/**
+ * Accumulates the normal equations (D'D) v = D'1 of the ellipsoid fit point
+ * by point. Every point only adds its row of the design matrix D to the 9x9
+ * matrix D'D and the 9-vector D'1, so any number of points is fit in
+ * constant memory and the equations can be solved at any time.
+ *
+ * @see EllipsoidToSphereSolver
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class NormalEquationAccumulator {
+	public static final int SIZE = 9;
+
+	// upper triangle of D'D, row major
+	private final double[] dtd = new double[SIZE * SIZE];
+	private final double[] dtOnes = new double[SIZE];
+	private final double[] row = new double[SIZE];
+	private long count;
+
+	/**
+	 * Adds a point.
+	 */
+	public void add(double x, double y, double z) {
+		accumulate(x, y, z, 1);
+		count++;
+	}
+
+	public void add(Point3D point) {
+		add(point.getX(), point.getY(), point.getZ());
+	}
+
+	/**
+	 * Removes a point added before, e.g. an outlier.
+	 */
+	public void subtract(double x, double y, double z) {
+		accumulate(x, y, z, -1);
+		count--;
+	}
+
+	/**
+	 * Adds the points from interleaved x, y, z values.
+	 *
+	 * @param xyz
+	 *            the values x0, y0, z0, x1, y1, z1, ...
+	 * @throws SolverException
+	 *             the number of values is not a multiple of three
+	 */
+	public void addAll(PrimitiveIterator.OfDouble xyz) {
+		while (xyz.hasNext()) {
+			double x = xyz.nextDouble();
+			if (!xyz.hasNext()) {
+				throw new SolverException("incomplete point");
+			}
+			double y = xyz.nextDouble();
+			if (!xyz.hasNext()) {
+				throw new SolverException("incomplete point");
+			}
+			add(x, y, xyz.nextDouble());
+		}
+	}
+
+	/**
+	 * Adds the points of the coordinate arrays in the range.
+	 *
+	 * @param from
+	 *            first index, inclusive
+	 * @param to
+	 *            last index, exclusive
+	 */
+	public void addAll(double[] x, double[] y, double[] z, int from, int to) {
+		for (int i = from; i < to; i++) {
+			accumulate(x[i], y[i], z[i], 1);
+		}
+		count += to - from;
+	}
+
+	/**
+	 * @see #addAll(PrimitiveIterator.OfDouble)
+	 */
+	public void addAll(DoubleStream xyz) {
+		addAll(xyz.iterator());
+	}
+
+	/**
+	 * Adds the equations of another accumulator.
+	 */
+	public void merge(NormalEquationAccumulator other) {
+		for (int i = 0; i < dtd.length; i++) {
+			dtd[i] += other.dtd[i];
+		}
+		for (int i = 0; i < SIZE; i++) {
+			dtOnes[i] += other.dtOnes[i];
+		}
+		count += other.count;
+	}
+
+	public void clear() {
+		Arrays.fill(dtd, 0);
+		Arrays.fill(dtOnes, 0);
+		count = 0;
+	}
+
+	/**
+	 * @return number of accumulated points
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the symmetric matrix D'D
+	 */
+	public RealMatrix getNormalMatrix() {
+		RealMatrix matrix = new Array2DRowRealMatrix(SIZE, SIZE);
+		for (int i = 0; i < SIZE; i++) {
+			for (int j = i; j < SIZE; j++) {
+				matrix.setEntry(i, j, dtd[i * SIZE + j]);
+				matrix.setEntry(j, i, dtd[i * SIZE + j]);
+			}
+		}
+		return matrix;
+	}
+
+	/**
+	 * @return the vector D'1
+	 */
+	public RealVector getRightHandSide() {
+		return new ArrayRealVector(dtOnes);
+	}
+
+	/**
+	 * @return D'D, row major, only the upper triangle is filled
+	 */
+	double[] upperNormalMatrix() {
+		return dtd;
+	}
+
+	/**
+	 * @return D'1
+	 */
+	double[] rightHandSide() {
+		return dtOnes;
+	}
+
+	/**
+	 * Solves the polynomial expression Ax^2 + By^2 + Cz^2 + 2Dxy + 2Exz +
+	 * 2Fyz + 2Gx + 2Hy + 2Iz = 1 for the accumulated points.
+	 *
+	 * @return the solution vector (A, B, ..., I) of the polynomial expression.
+	 * @throws SolverException
+	 *             no points accumulated
+	 */
+	public RealVector solve() {
+		if (count <= 0) {
+			throw new SolverException("no data-points");
+		}
+		// v = (( d' * d )^-1) * ( d' * ones )
+		return new SingularValueDecomposition(getNormalMatrix()).getSolver().getInverse().operate(getRightHandSide());
+	}
+
+	/**
+	 * Fills the row of the design matrix for a point.
+	 */
+	static void designRow(double x, double y, double z, double[] row) {
+		row[0] = x * x;
+		row[1] = y * y;
+		row[2] = z * z;
+		row[3] = 2 * x * y;
+		row[4] = 2 * x * z;
+		row[5] = 2 * y * z;
+		row[6] = 2 * x;
+		row[7] = 2 * y;
+		row[8] = 2 * z;
+	}
+
+	private void accumulate(double x, double y, double z, double sign) {
+		final double[] d = row;
+		designRow(x, y, z, d);
+		for (int i = 0; i < SIZE; i++) {
+			final double di = sign * d[i];
+			final int offset = i * SIZE;
+			for (int j = i; j < SIZE; j++) {
+				dtd[offset + j] += di * d[j];
+			}
+			dtOnes[i] += di;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.ellipsoid;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import javafx.geometry.Point3D;
+
+/**
+ * Accumulates the normal equations of large point sets in parallel. The
+ * points are split in halves until a chunk is small enough, every chunk is
+ * accumulated into its own {@link NormalEquationAccumulator} and the partial
+ * equations are merged pairwise on the way back up (tree reduction).
+ *
+ * The summation order differs from the serial accumulation, so the results
+ * only agree within the floating point rounding.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class NormalEquationTask extends RecursiveTask<NormalEquationAccumulator> {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Chunks of up to this number of points are accumulated serially.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 32 * 1024;
+
+	private final double[] x;
+	private final double[] y;
+	private final double[] z;
+	private final List<Point3D> points;
+	private final int from;
+	private final int to;
+	private final int chunkSize;
+
+	private NormalEquationTask(double[] x, double[] y, double[] z, List<Point3D> points, int from, int to, int chunkSize) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.points = points;
+		this.from = from;
+		this.to = to;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Accumulates the first count points of the coordinate arrays in the
+	 * common pool.
+	 */
+	public static NormalEquationAccumulator accumulate(double[] x, double[] y, double[] z, int count) {
+		return ForkJoinPool.commonPool().invoke(new NormalEquationTask(x, y, z, null, 0, count, DEFAULT_CHUNK_SIZE));
+	}
+
+	/**
+	 * Accumulates the points in the common pool.
+	 */
+	public static NormalEquationAccumulator accumulate(List<Point3D> points) {
+		return ForkJoinPool.commonPool().invoke(new NormalEquationTask(null, null, null, points, 0, points.size(), DEFAULT_CHUNK_SIZE));
+	}
+
+	@Override
+	protected NormalEquationAccumulator compute() {
+		if (to - from <= chunkSize) {
+			NormalEquationAccumulator accumulator = new NormalEquationAccumulator();
+			if (points == null) {
+				accumulator.addAll(x, y, z, from, to);
+			} else {
+				for (int i = from; i < to; i++) {
+					accumulator.add(points.get(i));
+				}
+			}
+			return accumulator;
+		}
+		int middle = (from + to) >>> 1;
+		NormalEquationTask left = new NormalEquationTask(x, y, z, points, from, middle, chunkSize);
+		NormalEquationTask right = new NormalEquationTask(x, y, z, points, middle, to, chunkSize);
+		left.fork();
+		NormalEquationAccumulator result = right.compute();
+		result.merge(left.join());
+		return result;
+	}
+}
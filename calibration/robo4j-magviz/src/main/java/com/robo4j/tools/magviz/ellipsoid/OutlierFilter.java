@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.ellipsoid;
+
+import java.util.function.IntPredicate;
+
+import com.robo4j.tools.magviz.data.PointSamples;
+
+/**
+ * Filters outliers of a fit in memory. The residual of every sample (its
+ * radius after the correction) is computed once, against the fit of all
+ * samples, and the samples within the allowed deviation from the mean
+ * residual are kept in a bit mask. The residuals and their statistics are a
+ * fixed reference: applying a threshold again keeps the same samples, and
+ * changing it only adds or subtracts the samples changing sides to or from
+ * the normal equations, so the refit does not need to touch the other
+ * samples.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class OutlierFilter {
+	private final PointSamples samples;
+	private final long[] mask;
+	private final double[] residuals;
+	private final NormalEquationAccumulator equations;
+	private final NormalEquationAccumulator referenceEquations = new NormalEquationAccumulator();
+	private final EllipsoidSolverCore core = new EllipsoidSolverCore();
+	private final double[] center = new double[3];
+	private final double[] matrix = new double[9];
+	private int activeCount;
+	private boolean hasReference;
+	private double mean;
+	private double stddev;
+
+	/**
+	 * @param samples
+	 *            the samples, all of them are active initially
+	 */
+	public OutlierFilter(PointSamples samples) {
+		this.samples = samples;
+		this.mask = new long[(samples.size() + 63) >>> 6];
+		this.residuals = new double[samples.size()];
+		for (int i = 0; i < samples.size(); i++) {
+			mask[i >>> 6] |= 1L << i;
+		}
+		this.activeCount = samples.size();
+		this.equations = NormalEquationTask.accumulate(samples.getXs(), samples.getYs(), samples.getZs(), samples.size());
+		referenceEquations.merge(equations);
+	}
+
+	/**
+	 * Fits the active samples.
+	 *
+	 * @return the fit of the active samples
+	 */
+	public SolvedEllipsoidResult solve() {
+		ensureReference();
+		return EllipsoidToSphereSolver.solve(equations, core, center, matrix);
+	}
+
+	/**
+	 * Keeps the samples whose residual deviates at most the given number of
+	 * standard deviations from the mean residual of the fit of all samples.
+	 * The same threshold always keeps the same samples.
+	 *
+	 * @param stddevs
+	 *            the allowed deviation in standard deviations
+	 * @return the number of samples which changed from active to filtered
+	 *         or back
+	 */
+	public int setThreshold(double stddevs) {
+		ensureReference();
+		final double allowed = stddevs * stddev;
+		return select(i -> Math.abs(residuals[i] - mean) <= allowed);
+	}
+
+	/**
+	 * Keeps the selected samples, e.g. the inliers of a
+	 * {@link RobustEllipsoidFitter}.
+	 *
+	 * @param keep
+	 *            true for the index of a sample to keep
+	 * @return the number of samples which changed from active to filtered
+	 *         or back
+	 */
+	public int select(IntPredicate keep) {
+		int changed = 0;
+		for (int i = 0; i < residuals.length; i++) {
+			if (keep.test(i) != isActive(i)) {
+				changed++;
+			}
+		}
+		if (changed > residuals.length / 2) {
+			// fewer operations, and no cancellation, when starting over
+			equations.clear();
+			for (int i = 0; i < residuals.length; i++) {
+				setActive(i, keep.test(i));
+				if (isActive(i)) {
+					equations.add(samples.getX(i), samples.getY(i), samples.getZ(i));
+				}
+			}
+			return changed;
+		}
+		for (int i = 0; i < residuals.length; i++) {
+			boolean active = keep.test(i);
+			if (active != isActive(i)) {
+				setActive(i, active);
+				if (active) {
+					equations.add(samples.getX(i), samples.getY(i), samples.getZ(i));
+				} else {
+					equations.subtract(samples.getX(i), samples.getY(i), samples.getZ(i));
+				}
+			}
+		}
+		return changed;
+	}
+
+	public boolean isActive(int index) {
+		return (mask[index >>> 6] & (1L << index)) != 0;
+	}
+
+	public int getActiveCount() {
+		return activeCount;
+	}
+
+	public int size() {
+		return residuals.length;
+	}
+
+	/**
+	 * @return the radius of the sample after the correction of the fit of
+	 *         all samples
+	 */
+	public double getResidual(int index) {
+		ensureReference();
+		return residuals[index];
+	}
+
+	/**
+	 * @return the mean residual of all samples
+	 */
+	public double getMeanResidual() {
+		ensureReference();
+		return mean;
+	}
+
+	/**
+	 * @return the standard deviation of the residuals of all samples
+	 */
+	public double getResidualStddev() {
+		ensureReference();
+		return stddev;
+	}
+
+	/**
+	 * @return the center of the last solve
+	 */
+	public double[] getCenter() {
+		return center;
+	}
+
+	/**
+	 * @return the correction matrix of the last solve, row major
+	 */
+	public double[] getMatrix() {
+		return matrix;
+	}
+
+	public PointSamples getSamples() {
+		return samples;
+	}
+
+	/**
+	 * @return the normal equations of the active samples
+	 */
+	NormalEquationAccumulator getEquations() {
+		return equations;
+	}
+
+	private void setActive(int index, boolean active) {
+		if (active == isActive(index)) {
+			return;
+		}
+		mask[index >>> 6] ^= 1L << index;
+		activeCount += active ? 1 : -1;
+	}
+
+	/**
+	 * Fits all samples once, and computes the residuals and their statistics
+	 * the thresholds refer to.
+	 */
+	private void ensureReference() {
+		if (hasReference) {
+			return;
+		}
+		EllipsoidToSphereSolver.solve(referenceEquations, core, center, matrix);
+		double sum = 0;
+		double sumOfSquares = 0;
+		for (int i = 0; i < residuals.length; i++) {
+			double r = correctedRadius(i);
+			residuals[i] = r;
+			sum += r;
+			sumOfSquares += r * r;
+		}
+		int count = residuals.length;
+		mean = count == 0 ? 0 : sum / count;
+		stddev = count < 2 ? 0 : Math.sqrt(Math.max(0, (sumOfSquares - sum * mean) / (count - 1)));
+		hasReference = true;
+	}
+
+	private double correctedRadius(int index) {
+		double dx = samples.getX(index) - center[0];
+		double dy = samples.getY(index) - center[1];
+		double dz = samples.getZ(index) - center[2];
+		double cx = matrix[0] * dx + matrix[1] * dy + matrix[2] * dz;
+		double cy = matrix[3] * dx + matrix[4] * dy + matrix[5] * dz;
+		double cz = matrix[6] * dx + matrix[7] * dy + matrix[8] * dz;
+		return Math.sqrt(cx * cx + cy * cy + cz * cz);
+	}
+}
@@ -0,0 +1,425 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.ellipsoid;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import com.robo4j.tools.magviz.data.PointSamples;
+
+/**
+ * Robust ellipsoid fit (MSAC), for data with bursts of garbage readings.
+ * Ellipsoids are fitted to random minimal samples of nine points, each
+ * hypothesis is scored against all points by the truncated squared deviation
+ * of the corrected radius from one. The hypotheses of a batch are scored in
+ * parallel, a score is abandoned as soon as it exceeds the best one found so
+ * far, and the number of batches adapts to the inlier ratio. The best
+ * hypothesis is finally refitted by least squares to its inliers.
+ *
+ * The points are centered and scaled before fitting to keep the minimal
+ * systems well conditioned, the results are mapped back.
+ *
+ * Instances are not thread safe.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class RobustEllipsoidFitter {
+	private static final int SAMPLE_SIZE = NormalEquationAccumulator.SIZE;
+	private static final int EARLY_EXIT_INTERVAL = 1024;
+	private static final int MAX_REFITS = 3;
+	// radii in units of the mean distance of the points from their mean
+	private static final double MIN_RADIUS = 0.1;
+	private static final double MAX_RADIUS = 10;
+
+	private double inlierThreshold = 0.05;
+	private double confidence = 0.99;
+	private double maxAxisRatio = 5;
+	private int maxIterations = 5000;
+	private int batchSize = 4 * Runtime.getRuntime().availableProcessors();
+	private long seed = 4711;
+
+	private double[] x;
+	private double[] y;
+	private double[] z;
+	private boolean[] inliers;
+	private int inlierCount;
+	private int iterations;
+	private volatile double bestCost;
+	private Hypothesis best;
+
+	public double getInlierThreshold() {
+		return inlierThreshold;
+	}
+
+	/**
+	 * @param inlierThreshold
+	 *            the largest deviation of the corrected radius of an inlier
+	 *            from one, i.e. relative to the radius
+	 */
+	public void setInlierThreshold(double inlierThreshold) {
+		if (!(inlierThreshold > 0)) {
+			throw new IllegalArgumentException("The inlier threshold must be positive");
+		}
+		this.inlierThreshold = inlierThreshold;
+	}
+
+	public double getConfidence() {
+		return confidence;
+	}
+
+	/**
+	 * @param confidence
+	 *            the probability of having drawn at least one sample free of
+	 *            outliers, before stopping
+	 */
+	public void setConfidence(double confidence) {
+		if (!(confidence > 0 && confidence < 1)) {
+			throw new IllegalArgumentException("The confidence must be between 0 and 1");
+		}
+		this.confidence = confidence;
+	}
+
+	public double getMaxAxisRatio() {
+		return maxAxisRatio;
+	}
+
+	/**
+	 * @param maxAxisRatio
+	 *            hypotheses with a larger ratio of the longest to the shortest
+	 *            axis are rejected, minimal samples easily produce thin
+	 *            ellipsoids passing through many points
+	 */
+	public void setMaxAxisRatio(double maxAxisRatio) {
+		if (!(maxAxisRatio >= 1)) {
+			throw new IllegalArgumentException("The axis ratio must be at least 1");
+		}
+		this.maxAxisRatio = maxAxisRatio;
+	}
+
+	public int getMaxIterations() {
+		return maxIterations;
+	}
+
+	public void setMaxIterations(int maxIterations) {
+		if (maxIterations < 1) {
+			throw new IllegalArgumentException("At least one iteration is needed");
+		}
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * @param batchSize
+	 *            the number of hypotheses scored in parallel
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("The batch size must be positive");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @param seed
+	 *            seed of the sampling, the fit of the same data is repeatable
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Fits the samples.
+	 *
+	 * @return the refitted ellipsoid
+	 * @throws SolverException
+	 *             if there are too few samples or no hypothesis was an
+	 *             ellipsoid
+	 */
+	public SolvedEllipsoidResult fit(PointSamples samples) {
+		final int n = samples.size();
+		if (n < SAMPLE_SIZE) {
+			throw new SolverException("At least " + SAMPLE_SIZE + " data-points are needed");
+		}
+		final double[] normalization = normalize(samples);
+		final Hypothesis[] batch = new Hypothesis[batchSize];
+		for (int i = 0; i < batch.length; i++) {
+			batch[i] = new Hypothesis();
+		}
+		final Random random = new Random(seed);
+		final double outlierCost = inlierThreshold * inlierThreshold;
+
+		best = new Hypothesis();
+		bestCost = Double.POSITIVE_INFINITY;
+		iterations = 0;
+		int requiredIterations = maxIterations;
+		while (iterations < requiredIterations) {
+			final int count = Math.min(batch.length, requiredIterations - iterations);
+			for (int i = 0; i < count; i++) {
+				batch[i].draw(random, n);
+			}
+			IntStream.range(0, count).parallel().forEach(i -> {
+				Hypothesis h = batch[i];
+				if (h.fitSample(x, y, z, maxAxisRatio) && h.score(x, y, z, outlierCost, this)) {
+					offer(h);
+				}
+			});
+			iterations += count;
+			if (best.inliers > 0) {
+				requiredIterations = Math.min(maxIterations,
+						requiredIterations(best.inliers / (double) n, confidence));
+			}
+		}
+		if (best.inliers < SAMPLE_SIZE) {
+			throw new SolverException("Could not find an ellipsoid in the data");
+		}
+
+		// least squares on the inliers, then on the inliers of that fit
+		final EllipsoidSolverCore core = new EllipsoidSolverCore();
+		final NormalEquationAccumulator equations = new NormalEquationAccumulator();
+		final double[] center = best.center.clone();
+		final double[] matrix = best.matrix.clone();
+		inliers = new boolean[n];
+		inlierCount = classify(center, matrix, outlierCost);
+		for (int round = 0; round < MAX_REFITS; round++) {
+			equations.clear();
+			for (int i = 0; i < n; i++) {
+				if (inliers[i]) {
+					equations.add(x[i], y[i], z[i]);
+				}
+			}
+			EllipsoidToSphereSolver.solve(equations, core, center, matrix);
+			int previous = inlierCount;
+			inlierCount = classify(center, matrix, outlierCost);
+			if (inlierCount == previous || inlierCount < SAMPLE_SIZE) {
+				break;
+			}
+		}
+		denormalize(center, matrix, normalization);
+		x = y = z = null;
+		return EllipsoidToSphereSolver.toResult(center, matrix);
+	}
+
+	/**
+	 * @return true if the sample is an inlier of the last fit
+	 */
+	public boolean isInlier(int index) {
+		return inliers[index];
+	}
+
+	public int getInlierCount() {
+		return inlierCount;
+	}
+
+	/**
+	 * @return the number of hypotheses tried in the last fit
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * @return the number of minimal samples needed to draw one free of
+	 *         outliers with the given confidence
+	 */
+	static int requiredIterations(double inlierRatio, double confidence) {
+		final double allInliers = Math.pow(inlierRatio, SAMPLE_SIZE);
+		if (allInliers >= 1) {
+			return 1;
+		}
+		if (allInliers <= 0) {
+			return Integer.MAX_VALUE;
+		}
+		final double required = Math.ceil(Math.log(1 - confidence) / Math.log(1 - allInliers));
+		return required > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) required;
+	}
+
+	// Private Methods
+
+	private synchronized void offer(Hypothesis h) {
+		if (h.cost < bestCost) {
+			bestCost = h.cost;
+			best.copy(h);
+		}
+	}
+
+	private int classify(double[] center, double[] matrix, double outlierCost) {
+		int count = 0;
+		for (int i = 0; i < inliers.length; i++) {
+			double e = correctedRadius(x[i], y[i], z[i], center, matrix) - 1;
+			inliers[i] = e * e < outlierCost;
+			if (inliers[i]) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Centers the samples on their mean and scales them to unit mean
+	 * distance.
+	 *
+	 * @return mean x, y, z and the scale
+	 */
+	private double[] normalize(PointSamples samples) {
+		final int n = samples.size();
+		double mx = 0;
+		double my = 0;
+		double mz = 0;
+		for (int i = 0; i < n; i++) {
+			mx += samples.getX(i);
+			my += samples.getY(i);
+			mz += samples.getZ(i);
+		}
+		mx /= n;
+		my /= n;
+		mz /= n;
+		double distance = 0;
+		for (int i = 0; i < n; i++) {
+			double dx = samples.getX(i) - mx;
+			double dy = samples.getY(i) - my;
+			double dz = samples.getZ(i) - mz;
+			distance += Math.sqrt(dx * dx + dy * dy + dz * dz);
+		}
+		final double scale = distance > 0 ? distance / n : 1;
+		x = new double[n];
+		y = new double[n];
+		z = new double[n];
+		for (int i = 0; i < n; i++) {
+			x[i] = (samples.getX(i) - mx) / scale;
+			y[i] = (samples.getY(i) - my) / scale;
+			z[i] = (samples.getZ(i) - mz) / scale;
+		}
+		return new double[] { mx, my, mz, scale };
+	}
+
+	/**
+	 * p' = (p - mean) / scale, so M (p' - c') = M / scale (p - (mean + scale
+	 * c')).
+	 */
+	private static void denormalize(double[] center, double[] matrix, double[] normalization) {
+		final double scale = normalization[3];
+		for (int i = 0; i < 3; i++) {
+			center[i] = normalization[i] + scale * center[i];
+		}
+		for (int i = 0; i < 9; i++) {
+			matrix[i] /= scale;
+		}
+	}
+
+	private static double correctedRadius(double px, double py, double pz, double[] center, double[] matrix) {
+		final double dx = px - center[0];
+		final double dy = py - center[1];
+		final double dz = pz - center[2];
+		final double cx = matrix[0] * dx + matrix[1] * dy + matrix[2] * dz;
+		final double cy = matrix[3] * dx + matrix[4] * dy + matrix[5] * dz;
+		final double cz = matrix[6] * dx + matrix[7] * dy + matrix[8] * dz;
+		return Math.sqrt(cx * cx + cy * cy + cz * cz);
+	}
+
+	/**
+	 * A minimal sample and its ellipsoid, reused from batch to batch.
+	 */
+	private static class Hypothesis {
+		private final int[] sample = new int[SAMPLE_SIZE];
+		private final NormalEquationAccumulator equations = new NormalEquationAccumulator();
+		private final EllipsoidSolverCore core = new EllipsoidSolverCore();
+		private final double[] center = new double[3];
+		private final double[] matrix = new double[9];
+		private final double[] shape = new double[9];
+		private final double[] eigenValues = new double[3];
+		private final double[] eigenVectors = new double[9];
+		private double cost;
+		private int inliers;
+
+		/**
+		 * Draws distinct indices.
+		 */
+		void draw(Random random, int n) {
+			for (int i = 0; i < SAMPLE_SIZE; i++) {
+				int index;
+				boolean duplicate;
+				do {
+					index = random.nextInt(n);
+					duplicate = false;
+					for (int j = 0; j < i; j++) {
+						duplicate |= sample[j] == index;
+					}
+				} while (duplicate);
+				sample[i] = index;
+			}
+		}
+
+		boolean fitSample(double[] x, double[] y, double[] z, double maxAxisRatio) {
+			equations.clear();
+			for (int index : sample) {
+				equations.add(x[index], y[index], z[index]);
+			}
+			if (!core.solve(equations, center, matrix)) {
+				return false;
+			}
+			for (double m : matrix) {
+				if (!Double.isFinite(m)) {
+					// not an ellipsoid, e.g. a hyperboloid
+					return false;
+				}
+			}
+			// the eigenvalues of the correction are the inverse radii
+			System.arraycopy(matrix, 0, shape, 0, 9);
+			EllipsoidSolverCore.jacobiEigen3(shape, eigenValues, eigenVectors);
+			return eigenValues[2] >= 1 / MAX_RADIUS && eigenValues[0] <= 1 / MIN_RADIUS
+					&& eigenValues[0] <= maxAxisRatio * eigenValues[2];
+		}
+
+		/**
+		 * @return false if the score was abandoned, having become worse than
+		 *         the best one
+		 */
+		boolean score(double[] x, double[] y, double[] z, double outlierCost, RobustEllipsoidFitter fitter) {
+			double sum = 0;
+			int count = 0;
+			final int n = x.length;
+			for (int from = 0; from < n; from += EARLY_EXIT_INTERVAL) {
+				final int to = Math.min(n, from + EARLY_EXIT_INTERVAL);
+				for (int i = from; i < to; i++) {
+					double e = correctedRadius(x[i], y[i], z[i], center, matrix) - 1;
+					double squared = e * e;
+					if (squared < outlierCost) {
+						sum += squared;
+						count++;
+					} else {
+						sum += outlierCost;
+					}
+				}
+				if (sum >= fitter.bestCost) {
+					return false;
+				}
+			}
+			cost = sum;
+			inliers = count;
+			return true;
+		}
+
+		void copy(Hypothesis other) {
+			System.arraycopy(other.sample, 0, sample, 0, SAMPLE_SIZE);
+			System.arraycopy(other.center, 0, center, 0, 3);
+			System.arraycopy(other.matrix, 0, matrix, 0, 9);
+			cost = other.cost;
+			inliers = other.inliers;
+		}
+	}
+}
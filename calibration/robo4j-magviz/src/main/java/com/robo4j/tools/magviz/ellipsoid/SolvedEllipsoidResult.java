@@ -43,6 +43,18 @@ public class SolvedEllipsoidResult {
 		return transformMatrix;
 	}
 
+	/**
+	 * @return the allocation free correction, e.g. for exporting it to the
+	 *         robot
+	 */
+	public MagnetometerCorrection toCorrection() {
+		double[] matrix = new double[9];
+		for (int i = 0; i < 9; i++) {
+			matrix[i] = transformMatrix.getEntry(i / 3, i % 3);
+		}
+		return new MagnetometerCorrection(new double[] { offset.getX(), offset.getY(), offset.getZ() }, matrix);
+	}
+
 	@Override
 	public String toString() {
 		return "{" + "offset=" + offset + ", transformMatrix=" + transformMatrix + '}';
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.stream;
+
+/**
+ * Counts the samples per direction, to show which orientations still lack
+ * data while calibrating. The sphere is divided into bands of equal height
+ * in z, and the bands into sectors of equal angle, so all cells have the
+ * same area.
+ *
+ * The directions are those of the corrected samples, relative to the center
+ * of the fit.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class CoverageMap {
+	public static final int DEFAULT_BANDS = 12;
+	public static final int DEFAULT_SECTORS = 24;
+	public static final int DEFAULT_MIN_SAMPLES = 3;
+
+	private final int bands;
+	private final int sectors;
+	private final int[] counts;
+	private int minSamples = DEFAULT_MIN_SAMPLES;
+
+	public CoverageMap() {
+		this(DEFAULT_BANDS, DEFAULT_SECTORS);
+	}
+
+	public CoverageMap(int bands, int sectors) {
+		if (bands < 1 || sectors < 1) {
+			throw new IllegalArgumentException("At least one band and sector is needed");
+		}
+		this.bands = bands;
+		this.sectors = sectors;
+		this.counts = new int[bands * sectors];
+	}
+
+	/**
+	 * Counts the direction, the length does not matter.
+	 */
+	public void add(double x, double y, double z) {
+		final double length = Math.sqrt(x * x + y * y + z * z);
+		if (length == 0 || Double.isNaN(length)) {
+			return;
+		}
+		counts[band(z / length) * sectors + sector(x, y)]++;
+	}
+
+	public void clear() {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = 0;
+		}
+	}
+
+	public int getBands() {
+		return bands;
+	}
+
+	public int getSectors() {
+		return sectors;
+	}
+
+	/**
+	 * @param band
+	 *            0 is the band around +z
+	 * @param sector
+	 *            0 starts at +x, counter clockwise around z
+	 */
+	public int getCount(int band, int sector) {
+		return counts[band * sectors + sector];
+	}
+
+	public int getMinSamples() {
+		return minSamples;
+	}
+
+	/**
+	 * @param minSamples
+	 *            the samples needed for a cell to count as covered
+	 */
+	public void setMinSamples(int minSamples) {
+		this.minSamples = minSamples;
+	}
+
+	public boolean isCovered(int band, int sector) {
+		return getCount(band, sector) >= minSamples;
+	}
+
+	/**
+	 * @return the fraction of the cells covered, 0 to 1
+	 */
+	public double getCoverage() {
+		int covered = 0;
+		for (int count : counts) {
+			if (count >= minSamples) {
+				covered++;
+			}
+		}
+		return covered / (double) counts.length;
+	}
+
+	private int band(double z) {
+		int band = (int) ((1 - z) / 2 * bands);
+		return Math.min(bands - 1, Math.max(0, band));
+	}
+
+	private int sector(double x, double y) {
+		double angle = Math.atan2(y, x);
+		if (angle < 0) {
+			angle += 2 * Math.PI;
+		}
+		return Math.min(sectors - 1, (int) (angle / (2 * Math.PI) * sectors));
+	}
+}
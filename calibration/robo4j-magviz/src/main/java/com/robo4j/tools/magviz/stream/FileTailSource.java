@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.stream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.robo4j.tools.magviz.data.SampleConsumer;
+
+/**
+ * Follows a csv file while it is being written, e.g. a recording copied or
+ * mounted from the robot. The samples already in the file are delivered
+ * first. A truncated file is read again from the start.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class FileTailSource extends LineSampleSource {
+	public static final long DEFAULT_POLL_MILLIS = 100;
+
+	private final Path file;
+	private final long pollMillis;
+	private FileChannel channel;
+
+	public FileTailSource(Path file) {
+		this(file, DEFAULT_SEPARATOR, DEFAULT_POLL_MILLIS);
+	}
+
+	/**
+	 * @param pollMillis
+	 *            the time to wait for more data at the end of the file
+	 */
+	public FileTailSource(Path file, String separator, long pollMillis) {
+		super(separator);
+		this.file = file;
+		this.pollMillis = pollMillis;
+	}
+
+	@Override
+	protected void open() throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+	}
+
+	@Override
+	protected void read(SampleConsumer consumer) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+		final StringBuilder line = new StringBuilder();
+		long position = 0;
+		while (isRunning()) {
+			if (channel.size() < position) {
+				// truncated, e.g. a new recording
+				position = 0;
+				line.setLength(0);
+			}
+			buffer.clear();
+			int read = channel.read(buffer, position);
+			if (read <= 0) {
+				sleep();
+				continue;
+			}
+			position += read;
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				char c = (char) (buffer.get() & 0xff);
+				if (c == '\n') {
+					accept(line.toString(), consumer);
+					line.setLength(0);
+				} else {
+					// the line being written stays in the builder until complete
+					line.append(c);
+				}
+			}
+		}
+	}
+
+	@Override
+	protected void closeResources() throws IOException {
+		if (channel != null) {
+			channel.close();
+		}
+	}
+
+	private void sleep() {
+		try {
+			Thread.sleep(pollMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "FileTailSource{" + "file=" + file + ", samples=" + getSampleCount() + '}';
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.stream;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.robo4j.tools.magviz.data.SampleConsumer;
+
+/**
+ * Base of the sources delivering samples as lines of separated values, the
+ * format of the csv files. Comment lines (#) and empty lines are skipped,
+ * invalid lines are counted and skipped.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public abstract class LineSampleSource implements SampleSource {
+	public static final String DEFAULT_SEPARATOR = ";";
+
+	private final String separator;
+	private final AtomicLong samples = new AtomicLong();
+	private final AtomicLong invalidLines = new AtomicLong();
+	private volatile boolean running;
+	private Thread thread;
+
+	protected LineSampleSource(String separator) {
+		this.separator = separator;
+	}
+
+	@Override
+	public synchronized void start(SampleConsumer consumer) throws IOException {
+		if (running) {
+			throw new IllegalStateException("Already started");
+		}
+		open();
+		running = true;
+		thread = new Thread(() -> {
+			try {
+				read(consumer);
+			} catch (IOException e) {
+				if (running) {
+					e.printStackTrace();
+				}
+			}
+		}, getClass().getSimpleName());
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public void close() throws IOException {
+		Thread current;
+		synchronized (this) {
+			running = false;
+			current = thread;
+			thread = null;
+		}
+		closeResources();
+		if (current != null) {
+			try {
+				current.join(1000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	public long getSampleCount() {
+		return samples.get();
+	}
+
+	public long getInvalidLineCount() {
+		return invalidLines.get();
+	}
+
+	/**
+	 * Called before the reading thread is started, failing early if the
+	 * source is not there.
+	 */
+	protected abstract void open() throws IOException;
+
+	/**
+	 * Reads lines and hands them to {@link #accept(String, SampleConsumer)}
+	 * while {@link #isRunning()}, on the reading thread.
+	 */
+	protected abstract void read(SampleConsumer consumer) throws IOException;
+
+	/**
+	 * Releases the resources, also used to unblock the reading thread.
+	 */
+	protected abstract void closeResources() throws IOException;
+
+	protected boolean isRunning() {
+		return running;
+	}
+
+	protected void accept(String line, SampleConsumer consumer) {
+		String trimmed = line.trim();
+		if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+			return;
+		}
+		String[] values = trimmed.split(separator);
+		if (values.length < 3) {
+			invalidLines.incrementAndGet();
+			return;
+		}
+		try {
+			double x = Double.parseDouble(values[0].trim());
+			double y = Double.parseDouble(values[1].trim());
+			double z = Double.parseDouble(values[2].trim());
+			samples.incrementAndGet();
+			consumer.accept(x, y, z);
+		} catch (NumberFormatException e) {
+			invalidLines.incrementAndGet();
+		}
+	}
+}
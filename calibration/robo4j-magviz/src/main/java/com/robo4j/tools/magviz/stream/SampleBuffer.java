@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.stream;
+
+import com.robo4j.tools.magviz.data.PointSamples;
+import com.robo4j.tools.magviz.data.SampleConsumer;
+
+/**
+ * Hands the samples of a {@link SampleSource} over to the thread refreshing
+ * the calibration. The samples are collected in one of two buffers, the
+ * refresh swaps them, so the source is only blocked for the swap.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class SampleBuffer implements SampleConsumer {
+	private PointSamples filling = new PointSamples();
+	private PointSamples draining = new PointSamples();
+
+	@Override
+	public synchronized void accept(double x, double y, double z) {
+		filling.add(x, y, z);
+	}
+
+	/**
+	 * Delivers the samples received since the last call.
+	 *
+	 * @return the number of samples delivered
+	 */
+	public int drainTo(SampleConsumer consumer) {
+		final PointSamples samples;
+		synchronized (this) {
+			samples = filling;
+			filling = draining;
+		}
+		for (int i = 0; i < samples.size(); i++) {
+			consumer.accept(samples.getX(i), samples.getY(i), samples.getZ(i));
+		}
+		final int count = samples.size();
+		samples.clear();
+		synchronized (this) {
+			draining = samples;
+		}
+		return count;
+	}
+}
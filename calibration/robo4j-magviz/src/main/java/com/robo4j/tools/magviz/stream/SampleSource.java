@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.stream;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import com.robo4j.tools.magviz.data.SampleConsumer;
+
+/**
+ * A live source of magnetometer samples. The samples are delivered on a
+ * thread of the source until it is closed.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public interface SampleSource extends Closeable {
+	/**
+	 * Starts delivering samples.
+	 *
+	 * @param consumer
+	 *            receives the samples, on a thread of the source
+	 * @throws IOException
+	 *             if the source could not be opened
+	 */
+	void start(SampleConsumer consumer) throws IOException;
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.stream;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import com.robo4j.logging.SimpleLoggingUtil;
+import com.robo4j.tools.magviz.data.SampleConsumer;
+import com.robo4j.tools.magviz.unit.MagnetometerStreamUnit;
+
+/**
+ * Receives the samples streamed by a {@link MagnetometerStreamUnit} on the
+ * robot, one line of separated values per sample. Reconnects when the
+ * connection is lost, e.g. when the robot is restarted.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class SocketSampleSource extends LineSampleSource {
+	private static final int CONNECT_TIMEOUT = 2000;
+	private static final long RECONNECT_MILLIS = 1000;
+
+	private final String host;
+	private final int port;
+	private volatile Socket socket;
+
+	public SocketSampleSource(String host, int port) {
+		super(DEFAULT_SEPARATOR);
+		this.host = host;
+		this.port = port;
+	}
+
+	/**
+	 * @param hostAndPort
+	 *            e.g. robot:4711
+	 */
+	public static SocketSampleSource parse(String hostAndPort) {
+		int colon = hostAndPort.lastIndexOf(':');
+		if (colon <= 0) {
+			throw new IllegalArgumentException("Expected host:port, got " + hostAndPort);
+		}
+		return new SocketSampleSource(hostAndPort.substring(0, colon), Integer.parseInt(hostAndPort.substring(colon + 1)));
+	}
+
+	@Override
+	protected void open() throws IOException {
+		socket = connect();
+	}
+
+	@Override
+	protected void read(SampleConsumer consumer) throws IOException {
+		while (isRunning()) {
+			try {
+				Socket current = socket;
+				if (current == null) {
+					current = connect();
+					socket = current;
+					if (!isRunning()) {
+						// closed while connecting, after the socket was released
+						closeResources();
+						return;
+					}
+				}
+				BufferedReader reader = new BufferedReader(new InputStreamReader(current.getInputStream(), StandardCharsets.US_ASCII));
+				String line;
+				while ((line = reader.readLine()) != null) {
+					accept(line, consumer);
+				}
+			} catch (IOException e) {
+				if (!isRunning()) {
+					return;
+				}
+				SimpleLoggingUtil.info(getClass(), "Lost the connection to " + host + ":" + port + " (" + e.getMessage() + ")");
+			}
+			closeResources();
+			sleep();
+		}
+	}
+
+	@Override
+	protected void closeResources() throws IOException {
+		Socket current = socket;
+		socket = null;
+		if (current != null) {
+			current.close();
+		}
+	}
+
+	private Socket connect() throws IOException {
+		Socket s = new Socket();
+		s.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+		return s;
+	}
+
+	private void sleep() {
+		try {
+			Thread.sleep(RECONNECT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "SocketSampleSource{" + host + ":" + port + ", samples=" + getSampleCount() + '}';
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.unit;
+
+/**
+ * A calibrated magnetometer reading together with the tilt compensated
+ * heading derived from it.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class CalibratedMagnetometerEvent extends VectorEvent {
+	private final double heading;
+
+	/**
+	 * @param timestamp
+	 *            the time of the raw reading in milliseconds
+	 * @param heading
+	 *            the heading in degrees, [0, 360), clockwise from north
+	 */
+	public CalibratedMagnetometerEvent(long timestamp, double x, double y, double z, double heading) {
+		super(Sensor.MAGNETOMETER, timestamp, x, y, z);
+		this.heading = heading;
+	}
+
+	public double getHeading() {
+		return heading;
+	}
+
+	@Override
+	public String toString() {
+		return "CalibratedMagnetometerEvent{" + "timestamp=" + getTimestamp() + ", x=" + getX() + ", y=" + getY() + ", z="
+				+ getZ() + ", heading=" + heading + '}';
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.unit;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import com.robo4j.ConfigurationException;
+import com.robo4j.CriticalSectionTrait;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboReference;
+import com.robo4j.RoboUnit;
+import com.robo4j.configuration.Configuration;
+import com.robo4j.tools.magviz.ellipsoid.MagnetometerCorrection;
+
+/**
+ * Runs on the robot and applies the correction exported from MagViz to the
+ * raw magnetometer readings sent to it. Sends a
+ * {@link CalibratedMagnetometerEvent} with the corrected vector and the tilt
+ * compensated heading to the target for every magnetometer reading.
+ *
+ * Accelerometer readings sent to the unit are used as the gravity vector for
+ * the tilt compensation; until the first one arrives the sensor is assumed
+ * to be level. The sensor frame is x forward, y left and z up, with the
+ * accelerometer reading +g on z when level.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+@CriticalSectionTrait
+public class CalibratedMagnetometerUnit extends RoboUnit<VectorEvent> {
+	public static final String NAME = "calibratedMagnetometer";
+	public static final String PROP_TARGET = "target";
+	public static final String PROP_CORRECTION_FILE = "correctionFile";
+	public static final String PROP_DECLINATION = "declination";
+
+	// Only touched from onMessage, which the trait keeps single threaded
+	private final double[] corrected = new double[3];
+	private final double[] gravity = { 0, 0, 1 };
+	private volatile MagnetometerCorrection correction = MagnetometerCorrection.identity();
+	private String target;
+	private double declination;
+
+	public CalibratedMagnetometerUnit(RoboContext context, String id) {
+		super(VectorEvent.class, context, id);
+	}
+
+	@Override
+	protected void onInitialization(Configuration configuration) throws ConfigurationException {
+		target = configuration.getString(PROP_TARGET, null);
+		if (target == null) {
+			throw ConfigurationException.createMissingConfigNameException(PROP_TARGET);
+		}
+		String file = configuration.getString(PROP_CORRECTION_FILE, null);
+		if (file == null) {
+			throw ConfigurationException.createMissingConfigNameException(PROP_CORRECTION_FILE);
+		}
+		try {
+			correction = MagnetometerCorrection.load(Paths.get(file));
+		} catch (IOException e) {
+			throw new ConfigurationException("Could not load the magnetometer correction from " + file + ": " + e.getMessage());
+		}
+		declination = configuration.getDouble(PROP_DECLINATION, 0d);
+	}
+
+	@Override
+	public void onMessage(VectorEvent message) {
+		switch (message.getSensor()) {
+		case ACCELEROMETER:
+			gravity[0] = message.getX();
+			gravity[1] = message.getY();
+			gravity[2] = message.getZ();
+			break;
+		case MAGNETOMETER:
+			correction.correct(message.getX(), message.getY(), message.getZ(), corrected);
+			double heading = tiltCompensatedHeading(corrected[0], corrected[1], corrected[2], gravity[0], gravity[1],
+					gravity[2]);
+			if (Double.isNaN(heading)) {
+				return;
+			}
+			RoboReference<VectorEvent> reference = getContext().getReference(target);
+			if (reference != null) {
+				reference.sendMessage(new CalibratedMagnetometerEvent(message.getTimestamp(), corrected[0], corrected[1],
+						corrected[2], normalizeDegrees(heading + declination)));
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Replaces the correction, e.g. after a new calibration.
+	 */
+	public void setCorrection(MagnetometerCorrection correction) {
+		this.correction = correction;
+	}
+
+	public MagnetometerCorrection getCorrection() {
+		return correction;
+	}
+
+	/**
+	 * Calculates the magnetic heading of the x axis from a calibrated
+	 * magnetometer reading and the gravity vector as read by the
+	 * accelerometer (pointing up), in the frame described in the class
+	 * documentation.
+	 *
+	 * @return the heading in degrees, [0, 360), clockwise from magnetic north,
+	 *         or NaN if the field is parallel to gravity or either is zero
+	 */
+	public static double tiltCompensatedHeading(double mx, double my, double mz, double ax, double ay, double az) {
+		// East = M x A
+		double ex = my * az - mz * ay;
+		double ey = mz * ax - mx * az;
+		double ez = mx * ay - my * ax;
+		double eNorm = Math.sqrt(ex * ex + ey * ey + ez * ez);
+		double aNorm = Math.sqrt(ax * ax + ay * ay + az * az);
+		if (eNorm == 0 || aNorm == 0) {
+			return Double.NaN;
+		}
+		// Only the x components of east and of north = A x East are needed
+		double eastX = ex / eNorm;
+		double northX = (ay * ez - az * ey) / (aNorm * eNorm);
+		return normalizeDegrees(Math.toDegrees(Math.atan2(eastX, northX)));
+	}
+
+	// Private Methods
+
+	private static double normalizeDegrees(double degrees) {
+		double result = degrees % 360;
+		return result < 0 ? result + 360 : result;
+	}
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.unit;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.robo4j.ConfigurationException;
+import com.robo4j.LifecycleState;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+import com.robo4j.configuration.Configuration;
+import com.robo4j.logging.SimpleLoggingUtil;
+import com.robo4j.tools.magviz.stream.SocketSampleSource;
+
+/**
+ * Runs on the robot and streams the raw magnetometer readings sent to it to
+ * the connected MagViz instances ({@link SocketSampleSource}), one line of
+ * semicolon separated values per reading, the format of the csv files.
+ *
+ * Every client has a bounded queue drained by its own thread, a slow client
+ * loses its oldest readings instead of slowing down the sensor.
+ *
+ * <p>
+ * Protocol: the unit listens on a plain TCP port ({@link #PROP_SERVER_PORT},
+ * {@link #DEFAULT_PORT} by default). A client connects and never sends
+ * anything, there is no handshake and no header. The unit writes one
+ * US-ASCII line per magnetometer reading received while the client is
+ * connected, <code>x;y;z\n</code>, the values formatted by
+ * {@link Double#toString(double)}. Readings from before the connection, and
+ * readings dropped from a full client queue ({@link #PROP_CLIENT_QUEUE_SIZE}),
+ * are not sent. Either side may close the connection at any time, the
+ * client reconnects.
+ * </p>
+ *
+ * <p>
+ * The socket units of Robo4J are not used on purpose: MagViz is a desktop
+ * tool depending on robo4j-core only, without a {@link RoboContext} of its
+ * own, and the stream is one way, many small readings per second, which a
+ * message per request would multiply. The lines are also exactly what the
+ * file sources parse, so a stream and a recorded file share the
+ * {@link com.robo4j.tools.magviz.stream.LineSampleSource} parser.
+ * </p>
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class MagnetometerStreamUnit extends RoboUnit<VectorEvent> {
+	public static final String NAME = "magnetometerStream";
+	public static final String PROP_SERVER_PORT = "serverPort";
+	public static final String PROP_CLIENT_QUEUE_SIZE = "clientQueueSize";
+	public static final int DEFAULT_PORT = 4747;
+	private static final long POLL_MILLIS = 200;
+
+	private final Set<Client> clients = new CopyOnWriteArraySet<>();
+	private final AtomicLong readings = new AtomicLong();
+	private int port;
+	private int clientQueueSize;
+	private volatile ServerSocket server;
+
+	public MagnetometerStreamUnit(RoboContext context, String id) {
+		super(VectorEvent.class, context, id);
+	}
+
+	@Override
+	protected void onInitialization(Configuration configuration) throws ConfigurationException {
+		port = configuration.getInteger(PROP_SERVER_PORT, DEFAULT_PORT);
+		clientQueueSize = configuration.getInteger(PROP_CLIENT_QUEUE_SIZE, 1024);
+	}
+
+	@Override
+	public void start() {
+		setState(LifecycleState.STARTING);
+		try {
+			server = new ServerSocket(port);
+		} catch (IOException e) {
+			SimpleLoggingUtil.error(getClass(), "could not listen on port " + port, e);
+			setState(LifecycleState.FAILED);
+			return;
+		}
+		Thread acceptor = new Thread(this::acceptClients, getId() + "-accept");
+		acceptor.setDaemon(true);
+		acceptor.start();
+		setState(LifecycleState.STARTED);
+	}
+
+	@Override
+	public void stop() {
+		setState(LifecycleState.STOPPING);
+		ServerSocket current = server;
+		server = null;
+		if (current != null) {
+			try {
+				current.close();
+			} catch (IOException e) {
+				SimpleLoggingUtil.error(getClass(), e.getMessage());
+			}
+		}
+		clients.forEach(Client::close);
+		setState(LifecycleState.STOPPED);
+	}
+
+	@Override
+	public void onMessage(VectorEvent message) {
+		if (message.getSensor() != VectorEvent.Sensor.MAGNETOMETER) {
+			return;
+		}
+		readings.incrementAndGet();
+		if (clients.isEmpty()) {
+			return;
+		}
+		String line = message.getX() + ";" + message.getY() + ";" + message.getZ() + "\n";
+		for (Client client : clients) {
+			client.offer(line);
+		}
+	}
+
+	public int getClientCount() {
+		return clients.size();
+	}
+
+	public long getReadingCount() {
+		return readings.get();
+	}
+
+	// Private Methods
+
+	private void acceptClients() {
+		ServerSocket current;
+		while ((current = server) != null) {
+			try {
+				Socket socket = current.accept();
+				Client client = new Client(socket, clientQueueSize);
+				clients.add(client);
+				Thread writer = new Thread(client, getId() + "-client-" + socket.getRemoteSocketAddress());
+				writer.setDaemon(true);
+				writer.start();
+			} catch (SocketException e) {
+				// server socket closed by stop
+			} catch (IOException e) {
+				SimpleLoggingUtil.error(getClass(), e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * A MagViz connection with its bounded queue of lines.
+	 */
+	private final class Client implements Runnable {
+		private final Socket socket;
+		private final BlockingQueue<String> lines;
+		private final AtomicLong dropped = new AtomicLong();
+		private volatile boolean open = true;
+
+		private Client(Socket socket, int queueSize) {
+			this.socket = socket;
+			this.lines = new ArrayBlockingQueue<>(queueSize);
+		}
+
+		private void offer(String line) {
+			while (!lines.offer(line)) {
+				if (lines.poll() != null) {
+					dropped.incrementAndGet();
+				}
+			}
+		}
+
+		@Override
+		public void run() {
+			List<String> batch = new ArrayList<>();
+			StringBuilder text = new StringBuilder();
+			try {
+				OutputStream os = socket.getOutputStream();
+				while (open) {
+					String first = lines.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+					if (first == null) {
+						continue;
+					}
+					// one write and flush for all the readings queued meanwhile
+					batch.add(first);
+					lines.drainTo(batch);
+					for (String line : batch) {
+						text.append(line);
+					}
+					os.write(text.toString().getBytes(StandardCharsets.US_ASCII));
+					os.flush();
+					batch.clear();
+					text.setLength(0);
+				}
+			} catch (IOException e) {
+				// client disconnected
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				close();
+				SimpleLoggingUtil.info(MagnetometerStreamUnit.class,
+						"client disconnected: " + socket.getRemoteSocketAddress() + ", dropped readings: " + dropped.get());
+			}
+		}
+
+		private void close() {
+			open = false;
+			clients.remove(this);
+			try {
+				socket.close();
+			} catch (IOException e) {
+				SimpleLoggingUtil.error(MagnetometerStreamUnit.class, e.getMessage());
+			}
+		}
+	}
+}
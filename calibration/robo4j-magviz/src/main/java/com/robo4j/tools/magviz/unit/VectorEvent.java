@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.unit;
+
+/**
+ * A timestamped three dimensional sensor reading, e.g. from a magnetometer
+ * or an accelerometer.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class VectorEvent {
+	public enum Sensor {
+		MAGNETOMETER, ACCELEROMETER
+	}
+
+	private final Sensor sensor;
+	private final long timestamp;
+	private final double x;
+	private final double y;
+	private final double z;
+
+	/**
+	 * @param timestamp
+	 *            the time of the reading in milliseconds
+	 */
+	public VectorEvent(long timestamp, double x, double y, double z) {
+		this(Sensor.MAGNETOMETER, timestamp, x, y, z);
+	}
+
+	/**
+	 * @param sensor
+	 *            the sensor the reading comes from
+	 * @param timestamp
+	 *            the time of the reading in milliseconds
+	 */
+	public VectorEvent(Sensor sensor, long timestamp, double x, double y, double z) {
+		this.sensor = sensor;
+		this.timestamp = timestamp;
+		this.x = x;
+		this.y = y;
+		this.z = z;
+	}
+
+	public Sensor getSensor() {
+		return sensor;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public double getX() {
+		return x;
+	}
+
+	public double getY() {
+		return y;
+	}
+
+	public double getZ() {
+		return z;
+	}
+
+	@Override
+	public String toString() {
+		return "VectorEvent{" + "sensor=" + sensor + ", timestamp=" + timestamp + ", x=" + x + ", y=" + y + ", z=" + z + '}';
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.robo4j.tools.magviz.data.BinarySampleFormat.Encoding;
+
+/**
+ * Round trips through the {@link BinarySampleWriter} and the
+ * {@link BinarySampleReader}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class BinarySampleFormatTest {
+	private static final int COUNT = 150000;
+	private static final double QUANTUM = 0.001;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void float64RoundTrip() throws IOException {
+		PointSamples samples = randomWalk(new Random(1), COUNT);
+		Path file = write(samples, Encoding.FLOAT64);
+		assertSamples(samples, BinarySampleReader.load(file), samples.size(), 0);
+		BinarySampleReader.Header header = BinarySampleReader.readHeader(file);
+		assertEquals(COUNT, header.getCount());
+		assertEquals("gauss", header.getUnits());
+	}
+
+	@Test
+	public void float32RoundTrip() throws IOException {
+		PointSamples samples = randomWalk(new Random(2), COUNT);
+		PointSamples loaded = BinarySampleReader.load(write(samples, Encoding.FLOAT32));
+		assertEquals(samples.size(), loaded.size());
+		for (int i = 0; i < samples.size(); i++) {
+			assertEquals((float) samples.getX(i), loaded.getX(i), 0);
+			assertEquals((float) samples.getZ(i), loaded.getZ(i), 0);
+		}
+	}
+
+	@Test
+	public void deltaRoundTrip() throws IOException {
+		PointSamples samples = randomWalk(new Random(3), COUNT);
+		// a jump needs long varints
+		samples.add(1e6, -1e6, 0);
+		samples.add(0, 0, 0);
+		Path file = write(samples, Encoding.DELTA);
+		assertSamples(samples, BinarySampleReader.load(file), samples.size(), QUANTUM / 2);
+
+		PointSamples streamed = new PointSamples();
+		BinarySampleReader.Header header = BinarySampleReader.read(file, streamed::add);
+		assertEquals(Encoding.DELTA, header.getEncoding());
+		assertEquals(QUANTUM, header.getQuantum(), 0);
+		assertSamples(samples, streamed, samples.size(), QUANTUM / 2);
+	}
+
+	@Test
+	public void openFileWithPartialSample() throws IOException {
+		PointSamples samples = randomWalk(new Random(4), 1000);
+		samples.add(500, -500, 500);
+		for (Encoding encoding : Encoding.values()) {
+			// the last sample is at least 3 bytes long in every encoding
+			for (int cut = 1; cut <= 2; cut++) {
+				Path file = write(samples, encoding);
+				markOpen(file);
+				truncate(file, cut);
+				PointSamples loaded = BinarySampleReader.load(file);
+				assertSamples(samples, loaded, samples.size() - 1, encoding == Encoding.FLOAT32 ? 1e-3 : QUANTUM / 2);
+			}
+			// a complete tail is read completely
+			Path file = write(samples, encoding);
+			markOpen(file);
+			assertEquals(samples.size(), BinarySampleReader.load(file).size());
+		}
+	}
+
+	@Test
+	public void closedFileWithPartialSample() throws IOException {
+		PointSamples samples = randomWalk(new Random(5), 100);
+		for (Encoding encoding : Encoding.values()) {
+			Path file = write(samples, encoding);
+			truncate(file, 1);
+			try {
+				BinarySampleReader.load(file);
+				fail("truncated " + encoding + " file accepted");
+			} catch (IOException e) {
+				assertEquals("truncated file, read 99 of 100 samples", e.getMessage());
+			}
+		}
+	}
+
+	private Path write(PointSamples samples, Encoding encoding) throws IOException {
+		Path file = folder.newFile().toPath();
+		try (BinarySampleWriter writer = new BinarySampleWriter(file, encoding, "gauss", QUANTUM)) {
+			writer.writeAll(samples);
+		}
+		return file;
+	}
+
+	/**
+	 * Sets the count to unknown, like a file still being written.
+	 */
+	private static void markOpen(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			ByteBuffer count = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			count.putLong(BinarySampleFormat.UNKNOWN_COUNT).flip();
+			channel.write(count, BinarySampleFormat.COUNT_OFFSET);
+		}
+	}
+
+	private static void truncate(Path file, int bytes) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - bytes);
+		}
+	}
+
+	private static PointSamples randomWalk(Random random, int count) {
+		PointSamples samples = new PointSamples(count);
+		double x = 0.3;
+		double y = -0.2;
+		double z = 0.5;
+		for (int i = 0; i < count; i++) {
+			x += random.nextGaussian() * 0.01;
+			y += random.nextGaussian() * 0.01;
+			z += random.nextGaussian() * 0.01;
+			samples.add(x, y, z);
+		}
+		return samples;
+	}
+
+	private static void assertSamples(PointSamples expected, PointSamples actual, int count, double delta) {
+		assertEquals(count, actual.size());
+		for (int i = 0; i < count; i++) {
+			assertEquals(expected.getX(i), actual.getX(i), delta);
+			assertEquals(expected.getY(i), actual.getY(i), delta);
+			assertEquals(expected.getZ(i), actual.getZ(i), delta);
+		}
+	}
+}
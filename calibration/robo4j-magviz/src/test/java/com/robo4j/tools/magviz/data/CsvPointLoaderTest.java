@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the {@link CsvPointLoader}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class CsvPointLoaderTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void chunkBoundariesDoNotChangeTheSamples() throws IOException {
+		Random random = new Random(5);
+		StringBuilder csv = new StringBuilder("# x;y;z\n");
+		PointSamples expected = new PointSamples();
+		for (int i = 0; i < 200; i++) {
+			double x = random.nextGaussian() * 300;
+			double y = random.nextGaussian() * 300;
+			double z = random.nextGaussian() * 300;
+			expected.add(x, y, z);
+			csv.append(x).append(';').append(y).append(';').append(z).append(i % 3 == 0 ? "\r\n" : "\n");
+			if (i % 17 == 0) {
+				csv.append("\n# comment\n");
+			}
+		}
+		Path file = write(csv.toString());
+		long size = Files.size(file);
+		for (long chunkSize : new long[] { 1, 2, 3, 7, 31, 64, 100, 257, size - 1, size, size + 1 }) {
+			assertSamples(expected, CsvPointLoader.load(file, ';', chunkSize));
+		}
+	}
+
+	@Test
+	public void lastLineWithoutNewline() throws IOException {
+		Path file = write("1;2;3\n4;5;6");
+		for (long chunkSize = 1; chunkSize <= 12; chunkSize++) {
+			PointSamples samples = CsvPointLoader.load(file, ';', chunkSize);
+			assertEquals(2, samples.size());
+			assertEquals(6, samples.getZ(1), 0);
+		}
+	}
+
+	@Test
+	public void crlfAndBlankLines() throws IOException {
+		PointSamples samples = CsvPointLoader.load(write("1;2;3\r\n\r\n   \r\n\t\n 4 ; 5 ;6 \r\n#7;8;9\r\n10;11;12;13\r\n"));
+		PointSamples expected = new PointSamples();
+		expected.add(1, 2, 3);
+		expected.add(4, 5, 6);
+		expected.add(10, 11, 12);
+		assertSamples(expected, samples);
+	}
+
+	@Test
+	public void parsesLikeDouble() throws IOException {
+		String[] values = { "0", "-0", "+4", "-2.5E-2", "1e3", "1E+3", ".5", "5.", "-.25", "0.1", "123456.789", "1e22", "1e23",
+				"1e-22", "1e-300", "4.9e-324", "1.7976931348623157e308", "0.12345678901234567891", "123456789012345678901",
+				"9007199254740993", "000123.4500", "NaN", "-Infinity" };
+		StringBuilder csv = new StringBuilder();
+		for (String value : values) {
+			csv.append(value).append(';').append(value).append(';').append(value).append('\n');
+		}
+		PointSamples samples = CsvPointLoader.load(write(csv.toString()));
+		assertEquals(values.length, samples.size());
+		for (int i = 0; i < values.length; i++) {
+			double expected = Double.parseDouble(values[i]);
+			assertEquals(values[i], Double.doubleToLongBits(expected), Double.doubleToLongBits(samples.getX(i)));
+			assertEquals(values[i], Double.doubleToLongBits(expected), Double.doubleToLongBits(samples.getZ(i)));
+		}
+	}
+
+	@Test
+	public void otherSeparator() throws IOException {
+		PointSamples samples = CsvPointLoader.load(write("1,2,3\n-1e1,2.5,+3\n"), ',');
+		assertEquals(2, samples.size());
+		assertEquals(-10, samples.getX(1), 0);
+	}
+
+	@Test
+	public void rejectsMalformedLines() throws IOException {
+		String[] lines = { "1;2", "1;2;", "1;;3", "a;2;3", "1;2;3x", "1e;2;3", "1.2.3;4;5", "--1;2;3", "1 2;3;4" };
+		for (String line : lines) {
+			Path file = write("1;2;3\n" + line + "\n4;5;6\n");
+			try {
+				CsvPointLoader.load(file);
+				fail("accepted: " + line);
+			} catch (IOException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains("offset 6"));
+			}
+		}
+	}
+
+	private Path write(String content) throws IOException {
+		Path file = folder.newFile().toPath();
+		Files.write(file, content.getBytes(StandardCharsets.US_ASCII));
+		return file;
+	}
+
+	private static void assertSamples(PointSamples expected, PointSamples actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.getX(i), actual.getX(i), 0);
+			assertEquals(expected.getY(i), actual.getY(i), 0);
+			assertEquals(expected.getZ(i), actual.getZ(i), 0);
+		}
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.ellipsoid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.CholeskyDecomposition;
+import org.apache.commons.math3.linear.EigenDecomposition;
+import org.apache.commons.math3.linear.LUDecomposition;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.junit.Test;
+
+/**
+ * Compares the {@link EllipsoidSolverCore} with the commons-math
+ * decompositions.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class EllipsoidSolverCoreTest {
+	private static final double TOLERANCE = 1e-9;
+	private static final double FIT_TOLERANCE = 1e-6;
+
+	@Test
+	public void fitMatchesCommonsMath() {
+		Random random = new Random(42);
+		// magnetometer units and raw sensor counts
+		double[] radii = { 0.5, 200, 3000 };
+		for (double radius : radii) {
+			for (int run = 0; run < 10; run++) {
+				NormalEquationAccumulator equations = generateEllipsoid(random, radius, 2000);
+				SolvedEllipsoidResult expected = EllipsoidToSphereSolver.solve(equations.solve());
+
+				double[] center = new double[3];
+				double[] matrix = new double[9];
+				assertTrue(new EllipsoidSolverCore().solve(equations, center, matrix));
+
+				double[] expectedCenter = { expected.getOffset().getX(), expected.getOffset().getY(), expected.getOffset().getZ() };
+				for (int i = 0; i < 3; i++) {
+					assertEquals(expectedCenter[i], center[i], FIT_TOLERANCE * radius);
+				}
+				RealMatrix expectedMatrix = expected.getTransformMatrix();
+				double scale = expectedMatrix.getNorm();
+				for (int i = 0; i < 3; i++) {
+					for (int j = 0; j < 3; j++) {
+						assertEquals(expectedMatrix.getEntry(i, j), matrix[i * 3 + j], FIT_TOLERANCE * scale);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void solverUsesCore() {
+		NormalEquationAccumulator equations = generateEllipsoid(new Random(7), 100, 1000);
+		SolvedEllipsoidResult expected = EllipsoidToSphereSolver.solve(equations.solve());
+		SolvedEllipsoidResult result = new EllipsoidToSphereSolver(equations).solve();
+		assertEquals(0, expected.getOffset().distance(result.getOffset()), FIT_TOLERANCE * 100);
+		assertEquals(0, expected.getTransformMatrix().subtract(result.getTransformMatrix()).getNorm(),
+				FIT_TOLERANCE * expected.getTransformMatrix().getNorm());
+	}
+
+	@Test
+	public void choleskyMatchesCommonsMath() {
+		Random random = new Random(1);
+		EllipsoidSolverCore core = new EllipsoidSolverCore();
+		for (int run = 0; run < 100; run++) {
+			RealMatrix m = randomMatrix(random, 9);
+			RealMatrix spd = m.transpose().multiply(m);
+			for (int i = 0; i < 9; i++) {
+				spd.addToEntry(i, i, 1);
+			}
+			RealVector b = new ArrayRealVector(randomArray(random, 9));
+			RealVector expected = new CholeskyDecomposition(spd).getSolver().solve(b);
+
+			double[] x = new double[9];
+			assertTrue(core.choleskySolve(rowMajor(spd), b.toArray(), x));
+			assertArrayEquals(expected.toArray(), x, TOLERANCE * expected.getNorm());
+		}
+	}
+
+	@Test
+	public void choleskyRejectsIndefiniteMatrix() {
+		double[] a = new double[81];
+		for (int i = 0; i < 9; i++) {
+			a[i * 9 + i] = i == 4 ? -1 : 1;
+		}
+		assertTrue(!new EllipsoidSolverCore().choleskySolve(a, new double[9], new double[9]));
+	}
+
+	@Test
+	public void solve3MatchesCommonsMath() {
+		Random random = new Random(2);
+		for (int run = 0; run < 100; run++) {
+			RealMatrix a = randomMatrix(random, 3);
+			RealVector b = new ArrayRealVector(randomArray(random, 3));
+			RealVector expected = new LUDecomposition(a).getSolver().solve(b);
+
+			double[] x = new double[3];
+			assertTrue(EllipsoidSolverCore.solve3(rowMajor(a), b.toArray(), x));
+			assertArrayEquals(expected.toArray(), x, TOLERANCE * expected.getNorm());
+		}
+		assertTrue(!EllipsoidSolverCore.solve3(new double[9], new double[3], new double[3]));
+	}
+
+	@Test
+	public void jacobiMatchesCommonsMath() {
+		Random random = new Random(3);
+		for (int run = 0; run < 100; run++) {
+			RealMatrix m = randomMatrix(random, 3);
+			RealMatrix symmetric = m.add(m.transpose());
+			EigenDecomposition expected = new EigenDecomposition(symmetric);
+
+			double[] a = rowMajor(symmetric);
+			double[] values = new double[3];
+			double[] vectors = new double[9];
+			EllipsoidSolverCore.jacobiEigen3(a, values, vectors);
+
+			double scale = symmetric.getNorm();
+			assertArrayEquals(expected.getRealEigenvalues(), values, TOLERANCE * scale);
+			for (int k = 0; k < 3; k++) {
+				// A v = lambda v, the sign of the vector is arbitrary
+				RealVector v = new ArrayRealVector(new double[] { vectors[k], vectors[3 + k], vectors[6 + k] });
+				assertEquals(1, v.getNorm(), TOLERANCE);
+				assertEquals(0, symmetric.operate(v).subtract(v.mapMultiply(values[k])).getNorm(), TOLERANCE * scale);
+			}
+		}
+	}
+
+	private static NormalEquationAccumulator generateEllipsoid(Random random, double radius, int count) {
+		double[] center = { radius * (random.nextDouble() - 0.5), radius * (random.nextDouble() - 0.5), radius * (random.nextDouble() - 0.5) };
+		double[] scale = { 1 + random.nextDouble(), 1 + random.nextDouble(), 1 + random.nextDouble() };
+		RealMatrix rotation = new EigenDecomposition(randomMatrix(random, 3).add(randomMatrix(random, 3).transpose())).getV();
+		NormalEquationAccumulator equations = new NormalEquationAccumulator();
+		for (int i = 0; i < count; i++) {
+			double s = random.nextDouble() * 2 * Math.PI;
+			double t = Math.acos(2 * random.nextDouble() - 1);
+			double r = radius * (1 + 0.01 * random.nextGaussian());
+			RealVector p = new ArrayRealVector(new double[] { r * scale[0] * Math.cos(s) * Math.sin(t),
+					r * scale[1] * Math.sin(s) * Math.sin(t), r * scale[2] * Math.cos(t) });
+			RealVector q = rotation.operate(p);
+			equations.add(q.getEntry(0) + center[0], q.getEntry(1) + center[1], q.getEntry(2) + center[2]);
+		}
+		return equations;
+	}
+
+	private static RealMatrix randomMatrix(Random random, int size) {
+		RealMatrix matrix = new Array2DRowRealMatrix(size, size);
+		for (int i = 0; i < size; i++) {
+			matrix.setRow(i, randomArray(random, size));
+		}
+		return matrix;
+	}
+
+	private static double[] randomArray(Random random, int size) {
+		double[] values = new double[size];
+		for (int i = 0; i < size; i++) {
+			values[i] = random.nextDouble() * 2 - 1;
+		}
+		return values;
+	}
+
+	private static double[] rowMajor(RealMatrix matrix) {
+		int size = matrix.getRowDimension();
+		double[] values = new double[size * size];
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				values[i * size + j] = matrix.getEntry(i, j);
+			}
+		}
+		return values;
+	}
+
+	private static void assertArrayEquals(double[] expected, double[] actual, double delta) {
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], actual[i], delta);
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.ellipsoid;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.math3.linear.EigenDecomposition;
+import org.apache.commons.math3.linear.RealMatrix;
+
+import com.robo4j.tools.magviz.data.PointSamples;
+
+/**
+ * Test points on a rotated ellipsoid and the comparison of two fits, shared
+ * by the solver tests.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+final class EllipsoidTestData {
+	private static final double[] RADII = { 310, 280, 245 };
+	private static final double[] CENTER = { 42, -17, 96 };
+	private static final double ANGLE = 0.4;
+	private static final double OUTLIER_SCALE = 1.6;
+
+	private EllipsoidTestData() {
+	}
+
+	/**
+	 * @return x, y and z of points with 1% radial noise on the ellipsoid
+	 */
+	static double[][] generateEllipsoid(Random random, int count) {
+		return generateEllipsoid(random, count, 0);
+	}
+
+	/**
+	 * @param outlierStride
+	 *            every outlierStride-th point lies far outside the
+	 *            ellipsoid, 0 for none
+	 * @return x, y and z of points with 1% radial noise on the ellipsoid
+	 */
+	static double[][] generateEllipsoid(Random random, int count, int outlierStride) {
+		double[][] xyz = new double[3][count];
+		for (int i = 0; i < count; i++) {
+			double s = random.nextDouble() * 2 * Math.PI;
+			double t = Math.acos(2 * random.nextDouble() - 1);
+			double noise = outlierStride > 0 && i % outlierStride == 0 ? OUTLIER_SCALE : 1 + 0.01 * random.nextGaussian();
+			double x = noise * RADII[0] * Math.cos(s) * Math.sin(t);
+			double y = noise * RADII[1] * Math.sin(s) * Math.sin(t);
+			double z = noise * RADII[2] * Math.cos(t);
+			// rotated around the z axis
+			xyz[0][i] = CENTER[0] + x * Math.cos(ANGLE) - y * Math.sin(ANGLE);
+			xyz[1][i] = CENTER[1] + x * Math.sin(ANGLE) + y * Math.cos(ANGLE);
+			xyz[2][i] = CENTER[2] + z;
+		}
+		return xyz;
+	}
+
+	/**
+	 * @see #generateEllipsoid(Random, int, int)
+	 */
+	static PointSamples generateSamples(Random random, int count, int outlierStride) {
+		double[][] xyz = generateEllipsoid(random, count, outlierStride);
+		return new PointSamples(xyz[0], xyz[1], xyz[2], count);
+	}
+
+	/**
+	 * Asserts the same offset, correction matrix and radii, relative to the
+	 * size of the expected ones.
+	 */
+	static void assertSameFit(SolvedEllipsoidResult expected, SolvedEllipsoidResult actual, double tolerance) {
+		double scale = expected.getOffset().magnitude();
+		assertEquals(expected.getOffset().getX(), actual.getOffset().getX(), tolerance * scale);
+		assertEquals(expected.getOffset().getY(), actual.getOffset().getY(), tolerance * scale);
+		assertEquals(expected.getOffset().getZ(), actual.getOffset().getZ(), tolerance * scale);
+
+		RealMatrix expectedMatrix = expected.getTransformMatrix();
+		RealMatrix actualMatrix = actual.getTransformMatrix();
+		double norm = expectedMatrix.getNorm();
+		for (int i = 0; i < 3; i++) {
+			for (int j = 0; j < 3; j++) {
+				assertEquals(expectedMatrix.getEntry(i, j), actualMatrix.getEntry(i, j), tolerance * norm);
+			}
+		}
+
+		// the correction scales every axis of the ellipsoid by the inverse radius
+		double[] expectedRadii = radii(expectedMatrix);
+		double[] actualRadii = radii(actualMatrix);
+		for (int i = 0; i < 3; i++) {
+			assertEquals(expectedRadii[i], actualRadii[i], tolerance * expectedRadii[i]);
+		}
+	}
+
+	// Private Methods
+
+	private static double[] radii(RealMatrix correction) {
+		double[] values = new EigenDecomposition(correction).getRealEigenvalues();
+		double[] radii = new double[values.length];
+		for (int i = 0; i < values.length; i++) {
+			radii[i] = 1 / values[i];
+		}
+		Arrays.sort(radii);
+		return radii;
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.ellipsoid;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link MagnetometerCorrection} kernel and its file format.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class MagnetometerCorrectionTest {
+	private static final double[] CENTER = { 100, -50, 30 };
+	private static final double[] MATRIX = { 0.004, 0.001, 0, 0.001, 0.005, -0.0005, 0, -0.0005, 0.0045 };
+
+	@Test
+	public void correctsSingleReading() {
+		double[] out = new double[3];
+		new MagnetometerCorrection(CENTER, MATRIX).correct(110, -40, 40, out);
+		assertArrayEquals(new double[] { 0.05, 0.055, 0.04 }, out, 1e-12);
+	}
+
+	@Test
+	public void batchesMatchSingleReadings() {
+		MagnetometerCorrection correction = new MagnetometerCorrection(CENTER, MATRIX);
+		double[] x = { 1, 200, -300 };
+		double[] y = { 2, -100, 50 };
+		double[] z = { 3, 400, 0 };
+		double[] xyz = { 1, 2, 3, 200, -100, 400, -300, 50, 0 };
+		double[] expected = new double[9];
+		for (int i = 0; i < 3; i++) {
+			correction.correct(x[i], y[i], z[i], expected, i * 3);
+		}
+		correction.correct(xyz, 3);
+		correction.correct(x, y, z, 0, 3);
+		assertArrayEquals(expected, xyz, 0);
+		for (int i = 0; i < 3; i++) {
+			assertArrayEquals(new double[] { expected[i * 3], expected[i * 3 + 1], expected[i * 3 + 2] },
+					new double[] { x[i], y[i], z[i] }, 0);
+		}
+	}
+
+	@Test
+	public void storesAndLoads() throws IOException {
+		Path file = Files.createTempFile("magviz", ".correction");
+		try {
+			new MagnetometerCorrection(CENTER, MATRIX).store(file);
+			MagnetometerCorrection loaded = MagnetometerCorrection.load(file);
+			assertArrayEquals(CENTER, loaded.getCenter(), 0);
+			assertArrayEquals(MATRIX, loaded.getMatrix(), 0);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsIncompleteFile() throws IOException {
+		Path file = Files.createTempFile("magviz", ".correction");
+		try {
+			Files.write(file, "center=1;2\n".getBytes());
+			MagnetometerCorrection.load(file);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void identityKeepsReadings() {
+		double[] out = new double[3];
+		MagnetometerCorrection.identity().correct(1, 2, 3, out);
+		assertEquals(2, out[1], 0);
+	}
+}
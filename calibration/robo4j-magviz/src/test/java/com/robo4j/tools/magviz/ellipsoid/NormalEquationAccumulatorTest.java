@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.ellipsoid;
+
+import static com.robo4j.tools.magviz.ellipsoid.EllipsoidTestData.generateEllipsoid;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+import java.util.stream.DoubleStream;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.SingularValueDecomposition;
+import org.junit.Test;
+
+/**
+ * Tests the {@link NormalEquationAccumulator} against the normal equations
+ * built from the whole N x 9 design matrix.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class NormalEquationAccumulatorTest {
+	private static final int COUNT = 3000;
+	private static final double TOLERANCE = 1e-9;
+
+	@Test
+	public void matchesDesignMatrix() {
+		double[][] xyz = generateEllipsoid(new Random(31), COUNT);
+		NormalEquationAccumulator equations = new NormalEquationAccumulator();
+		for (int i = 0; i < COUNT; i++) {
+			equations.add(xyz[0][i], xyz[1][i], xyz[2][i]);
+		}
+		assertEquals(COUNT, equations.getCount());
+
+		RealMatrix design = designMatrix(xyz, COUNT);
+		RealVector ones = new ArrayRealVector(COUNT, 1);
+		RealMatrix dtd = design.transpose().multiply(design);
+		RealVector dtOnes = design.transpose().operate(ones);
+		assertSameEquations(dtd, dtOnes, equations);
+
+		RealVector expected = new SingularValueDecomposition(dtd).getSolver().getInverse().operate(dtOnes);
+		RealVector actual = equations.solve();
+		for (int i = 0; i < NormalEquationAccumulator.SIZE; i++) {
+			assertEquals(expected.getEntry(i), actual.getEntry(i), TOLERANCE * expected.getNorm());
+		}
+	}
+
+	@Test
+	public void subtractRemovesAddedPoints() {
+		double[][] xyz = generateEllipsoid(new Random(32), COUNT);
+		NormalEquationAccumulator equations = new NormalEquationAccumulator();
+		for (int i = 0; i < COUNT; i++) {
+			equations.add(xyz[0][i], xyz[1][i], xyz[2][i]);
+		}
+		RealMatrix full = equations.getNormalMatrix();
+
+		// the second half again on its own
+		for (int i = COUNT / 2; i < COUNT; i++) {
+			equations.subtract(xyz[0][i], xyz[1][i], xyz[2][i]);
+		}
+		assertEquals(COUNT / 2, equations.getCount());
+		RealMatrix design = designMatrix(xyz, COUNT / 2);
+		assertSameEquations(design.transpose().multiply(design), design.transpose().operate(new ArrayRealVector(COUNT / 2, 1)), equations);
+
+		// and back to nothing
+		for (int i = 0; i < COUNT / 2; i++) {
+			equations.subtract(xyz[0][i], xyz[1][i], xyz[2][i]);
+		}
+		assertEquals(0, equations.getCount());
+		RealMatrix empty = equations.getNormalMatrix();
+		RealVector emptyOnes = equations.getRightHandSide();
+		for (int i = 0; i < NormalEquationAccumulator.SIZE; i++) {
+			for (int j = 0; j < NormalEquationAccumulator.SIZE; j++) {
+				assertEquals(0, empty.getEntry(i, j), TOLERANCE * Math.sqrt(full.getEntry(i, i) * full.getEntry(j, j)));
+			}
+			assertEquals(0, emptyOnes.getEntry(i), TOLERANCE * Math.sqrt(full.getEntry(i, i) * COUNT));
+		}
+	}
+
+	@Test
+	public void mergeMatchesSequentialAccumulation() {
+		double[][] xyz = generateEllipsoid(new Random(33), COUNT);
+		NormalEquationAccumulator sequential = new NormalEquationAccumulator();
+		sequential.addAll(xyz[0], xyz[1], xyz[2], 0, COUNT);
+
+		NormalEquationAccumulator merged = new NormalEquationAccumulator();
+		int[] bounds = { 0, 700, 1900, COUNT };
+		for (int part = 0; part + 1 < bounds.length; part++) {
+			NormalEquationAccumulator partial = new NormalEquationAccumulator();
+			partial.addAll(xyz[0], xyz[1], xyz[2], bounds[part], bounds[part + 1]);
+			merged.merge(partial);
+		}
+		assertSameEquations(sequential.getNormalMatrix(), sequential.getRightHandSide(), merged);
+	}
+
+	@Test
+	public void addsInterleavedValues() {
+		double[][] xyz = generateEllipsoid(new Random(34), COUNT);
+		double[] interleaved = new double[3 * COUNT];
+		for (int i = 0; i < COUNT; i++) {
+			interleaved[3 * i] = xyz[0][i];
+			interleaved[3 * i + 1] = xyz[1][i];
+			interleaved[3 * i + 2] = xyz[2][i];
+		}
+		NormalEquationAccumulator equations = new NormalEquationAccumulator();
+		equations.addAll(DoubleStream.of(interleaved));
+		RealMatrix design = designMatrix(xyz, COUNT);
+		assertSameEquations(design.transpose().multiply(design), design.transpose().operate(new ArrayRealVector(COUNT, 1)), equations);
+	}
+
+	@Test
+	public void rejectsIncompletePoint() {
+		assertIncomplete(1, 2, 3, 4);
+		assertIncomplete(1, 2, 3, 4, 5);
+	}
+
+	@Test(expected = SolverException.class)
+	public void rejectsSolveWithoutPoints() {
+		new NormalEquationAccumulator().solve();
+	}
+
+	// Private Methods
+
+	/**
+	 * the rows (x^2, y^2, z^2, 2xy, 2xz, 2yz, 2x, 2y, 2z) of the first count
+	 * points
+	 */
+	private static RealMatrix designMatrix(double[][] xyz, int count) {
+		RealMatrix design = new Array2DRowRealMatrix(count, NormalEquationAccumulator.SIZE);
+		for (int i = 0; i < count; i++) {
+			double x = xyz[0][i];
+			double y = xyz[1][i];
+			double z = xyz[2][i];
+			design.setRow(i, new double[] { x * x, y * y, z * z, 2 * x * y, 2 * x * z, 2 * y * z, 2 * x, 2 * y, 2 * z });
+		}
+		return design;
+	}
+
+	private static void assertSameEquations(RealMatrix dtd, RealVector dtOnes, NormalEquationAccumulator actual) {
+		RealMatrix matrix = actual.getNormalMatrix();
+		RealVector vector = actual.getRightHandSide();
+		for (int i = 0; i < NormalEquationAccumulator.SIZE; i++) {
+			for (int j = 0; j < NormalEquationAccumulator.SIZE; j++) {
+				double scale = Math.sqrt(dtd.getEntry(i, i) * dtd.getEntry(j, j));
+				assertEquals(dtd.getEntry(i, j), matrix.getEntry(i, j), TOLERANCE * scale);
+			}
+			assertEquals(dtOnes.getEntry(i), vector.getEntry(i), TOLERANCE * dtOnes.getNorm());
+		}
+	}
+
+	private static void assertIncomplete(double... values) {
+		NormalEquationAccumulator equations = new NormalEquationAccumulator();
+		try {
+			equations.addAll(DoubleStream.of(values));
+			fail("incomplete point accepted");
+		} catch (SolverException e) {
+			// the complete points before are kept
+			assertEquals(1, equations.getCount());
+		}
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.ellipsoid;
+
+import static com.robo4j.tools.magviz.ellipsoid.EllipsoidTestData.assertSameFit;
+import static com.robo4j.tools.magviz.ellipsoid.EllipsoidTestData.generateEllipsoid;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import javafx.geometry.Point3D;
+
+/**
+ * Compares the parallel fit of {@link NormalEquationTask} with the serial
+ * accumulation of the same points.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class NormalEquationTaskTest {
+	private static final int COUNT = 5 * NormalEquationTask.DEFAULT_CHUNK_SIZE + 123;
+	private static final double TOLERANCE = 1e-9;
+
+	@Test
+	public void parallelFitMatchesSerialFit() {
+		double[][] xyz = generateEllipsoid(new Random(11), COUNT);
+		NormalEquationAccumulator serial = new NormalEquationAccumulator();
+		serial.addAll(xyz[0], xyz[1], xyz[2], 0, COUNT);
+		SolvedEllipsoidResult expected = new EllipsoidToSphereSolver(serial).solve();
+
+		NormalEquationAccumulator parallel = NormalEquationTask.accumulate(xyz[0], xyz[1], xyz[2], COUNT);
+		assertEquals(serial.getCount(), parallel.getCount());
+		assertSameFit(expected, EllipsoidToSphereSolver.fromArrays(xyz[0], xyz[1], xyz[2], COUNT).solve(), TOLERANCE);
+
+		List<Point3D> points = new ArrayList<>(COUNT);
+		for (int i = 0; i < COUNT; i++) {
+			points.add(new Point3D(xyz[0][i], xyz[1][i], xyz[2][i]));
+		}
+		assertSameFit(expected, new EllipsoidToSphereSolver(points).solve(), TOLERANCE);
+	}
+
+	@Test
+	public void parallelFitOfPartialArrays() {
+		double[][] xyz = generateEllipsoid(new Random(12), COUNT);
+		int count = COUNT - 1000;
+		NormalEquationAccumulator serial = new NormalEquationAccumulator();
+		serial.addAll(xyz[0], xyz[1], xyz[2], 0, count);
+		assertSameFit(new EllipsoidToSphereSolver(serial).solve(), EllipsoidToSphereSolver.fromArrays(xyz[0], xyz[1], xyz[2], count).solve(), TOLERANCE);
+	}
+}
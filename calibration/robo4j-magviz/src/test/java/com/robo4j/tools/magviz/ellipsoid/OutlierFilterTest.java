@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.ellipsoid;
+
+import static com.robo4j.tools.magviz.ellipsoid.EllipsoidTestData.assertSameFit;
+import static com.robo4j.tools.magviz.ellipsoid.EllipsoidTestData.generateSamples;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.junit.Test;
+
+import com.robo4j.tools.magviz.data.PointSamples;
+
+/**
+ * Tests the incremental refit of the {@link OutlierFilter} against the
+ * normal equations rebuilt from the active samples.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class OutlierFilterTest {
+	private static final int COUNT = 20000;
+	private static final double TOLERANCE = 1e-9;
+	private static final int OUTLIER_STRIDE = 50;
+
+	@Test
+	public void incrementalSelectMatchesRebuild() {
+		OutlierFilter filter = new OutlierFilter(generateSamples(new Random(21), COUNT, OUTLIER_STRIDE));
+		SolvedEllipsoidResult all = filter.solve();
+
+		int removed = filter.setThreshold(2);
+		assertTrue(removed > 0 && removed < COUNT / 2);
+		assertEquals(COUNT - removed, filter.getActiveCount());
+		assertSameEquations(rebuild(filter), filter.getEquations());
+		assertSameFit(new EllipsoidToSphereSolver(rebuild(filter)).solve(), filter.solve(), TOLERANCE);
+
+		// tighter and back again, samples are subtracted and added
+		filter.setThreshold(1);
+		assertSameEquations(rebuild(filter), filter.getEquations());
+		filter.setThreshold(3);
+		assertSameEquations(rebuild(filter), filter.getEquations());
+		assertSameFit(new EllipsoidToSphereSolver(rebuild(filter)).solve(), filter.solve(), TOLERANCE);
+
+		filter.select(i -> true);
+		assertEquals(COUNT, filter.getActiveCount());
+		assertSameFit(all, filter.solve(), TOLERANCE);
+	}
+
+	@Test
+	public void repeatedThresholdKeepsSamples() {
+		OutlierFilter filter = new OutlierFilter(generateSamples(new Random(22), COUNT, OUTLIER_STRIDE));
+		filter.solve();
+		double mean = filter.getMeanResidual();
+		double stddev = filter.getResidualStddev();
+
+		int removed = filter.setThreshold(2);
+		assertTrue(removed > 0);
+		filter.solve();
+		assertEquals(0, filter.setThreshold(2));
+		filter.solve();
+		assertEquals(0, filter.setThreshold(2));
+		assertEquals(COUNT - removed, filter.getActiveCount());
+		assertEquals(mean, filter.getMeanResidual(), 0);
+		assertEquals(stddev, filter.getResidualStddev(), 0);
+	}
+
+	@Test
+	public void thresholdRemovesOutliers() {
+		PointSamples samples = generateSamples(new Random(23), COUNT, OUTLIER_STRIDE);
+		OutlierFilter filter = new OutlierFilter(samples);
+		filter.setThreshold(3);
+		for (int i = 0; i < COUNT; i += OUTLIER_STRIDE) {
+			assertFalse(filter.isActive(i));
+		}
+	}
+
+	// Private Methods
+
+	private static NormalEquationAccumulator rebuild(OutlierFilter filter) {
+		NormalEquationAccumulator equations = new NormalEquationAccumulator();
+		PointSamples samples = filter.getSamples();
+		for (int i = 0; i < samples.size(); i++) {
+			if (filter.isActive(i)) {
+				equations.add(samples.getX(i), samples.getY(i), samples.getZ(i));
+			}
+		}
+		return equations;
+	}
+
+	private static void assertSameEquations(NormalEquationAccumulator expected, NormalEquationAccumulator actual) {
+		assertEquals(expected.getCount(), actual.getCount());
+		RealMatrix expectedMatrix = expected.getNormalMatrix();
+		RealMatrix actualMatrix = actual.getNormalMatrix();
+		for (int i = 0; i < NormalEquationAccumulator.SIZE; i++) {
+			for (int j = 0; j < NormalEquationAccumulator.SIZE; j++) {
+				double scale = Math.sqrt(expectedMatrix.getEntry(i, i) * expectedMatrix.getEntry(j, j));
+				assertEquals(expectedMatrix.getEntry(i, j), actualMatrix.getEntry(i, j), TOLERANCE * scale);
+			}
+		}
+		RealVector expectedVector = expected.getRightHandSide();
+		RealVector actualVector = actual.getRightHandSide();
+		for (int i = 0; i < NormalEquationAccumulator.SIZE; i++) {
+			assertEquals(expectedVector.getEntry(i), actualVector.getEntry(i), TOLERANCE * expectedVector.getNorm());
+		}
+	}
+}
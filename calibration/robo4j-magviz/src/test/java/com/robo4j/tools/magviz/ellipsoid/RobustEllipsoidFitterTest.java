@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.ellipsoid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.robo4j.tools.magviz.data.PointSamples;
+
+/**
+ * Tests the {@link RobustEllipsoidFitter} on data with a burst of garbage
+ * readings.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class RobustEllipsoidFitterTest {
+	private static final int POINTS = 20000;
+	private static final double[] CENTER = { 100, -50, 30 };
+	private static final double[] RADII = { 300, 200, 250 };
+
+	@Test
+	public void ignoresBurst() {
+		Random random = new Random(3);
+		PointSamples samples = new PointSamples();
+		boolean[] garbage = new boolean[POINTS];
+		for (int i = 0; i < POINTS; i++) {
+			garbage[i] = random.nextDouble() < 0.3;
+			if (garbage[i]) {
+				// readings near a motor, clustered away from the ellipsoid
+				samples.add(300 + 50 * random.nextGaussian(), 200 + 50 * random.nextGaussian(), -100 + 80 * random.nextGaussian());
+			} else {
+				addOnEllipsoid(random, samples);
+			}
+		}
+		SolvedEllipsoidResult leastSquares = EllipsoidToSphereSolver.fromArrays(samples.getXs(), samples.getYs(), samples.getZs(),
+				samples.size()).solve();
+		assertTrue(distanceFromCenter(leastSquares) > 10);
+
+		RobustEllipsoidFitter fitter = new RobustEllipsoidFitter();
+		SolvedEllipsoidResult result = fitter.fit(samples);
+		assertEquals(0, distanceFromCenter(result), 1);
+		for (int i = 0; i < 3; i++) {
+			assertEquals(1 / RADII[i], result.getTransformMatrix().getEntry(i, i), 0.01 / RADII[i]);
+		}
+		int misclassified = 0;
+		for (int i = 0; i < POINTS; i++) {
+			if (fitter.isInlier(i) == garbage[i]) {
+				misclassified++;
+			}
+		}
+		assertTrue(misclassified < POINTS / 100);
+	}
+
+	@Test
+	public void repeatableWithSeed() {
+		Random random = new Random(5);
+		PointSamples samples = new PointSamples();
+		for (int i = 0; i < 1000; i++) {
+			addOnEllipsoid(random, samples);
+		}
+		RobustEllipsoidFitter fitter = new RobustEllipsoidFitter();
+		SolvedEllipsoidResult first = fitter.fit(samples);
+		SolvedEllipsoidResult second = fitter.fit(samples);
+		assertEquals(first.getOffset(), second.getOffset());
+		assertFalse(fitter.getIterations() > fitter.getMaxIterations());
+	}
+
+	@Test
+	public void requiredIterations() {
+		assertEquals(1, RobustEllipsoidFitter.requiredIterations(1, 0.99));
+		assertEquals(Integer.MAX_VALUE, RobustEllipsoidFitter.requiredIterations(0, 0.99));
+		// 0.5^9 = 1/512
+		assertEquals(2356, RobustEllipsoidFitter.requiredIterations(0.5, 0.99));
+	}
+
+	private static void addOnEllipsoid(Random random, PointSamples samples) {
+		double theta = random.nextDouble() * Math.PI * 2;
+		double phi = Math.acos(2 * random.nextDouble() - 1);
+		double noise = 1 + 0.005 * random.nextGaussian();
+		samples.add(CENTER[0] + RADII[0] * noise * Math.sin(phi) * Math.cos(theta),
+				CENTER[1] + RADII[1] * noise * Math.sin(phi) * Math.sin(theta), CENTER[2] + RADII[2] * noise * Math.cos(phi));
+	}
+
+	private static double distanceFromCenter(SolvedEllipsoidResult result) {
+		return Math.sqrt(Math.pow(result.getOffset().getX() - CENTER[0], 2) + Math.pow(result.getOffset().getY() - CENTER[1], 2)
+				+ Math.pow(result.getOffset().getZ() - CENTER[2], 2));
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Tests the band and sector of the directions counted by the
+ * {@link CoverageMap}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class CoverageMapTest {
+
+	@Test
+	public void polesAreInOuterBands() {
+		CoverageMap map = new CoverageMap(4, 8);
+		map.add(0, 0, 5);
+		map.add(0, 0, -0.1);
+		assertEquals(1, map.getCount(0, 0));
+		assertEquals(1, map.getCount(3, 0));
+		assertEquals(2, total(map));
+	}
+
+	@Test
+	public void bandsHaveEqualHeight() {
+		CoverageMap map = new CoverageMap(4, 8);
+		// z of the unit direction 0.75, 0.25, -0.25 and -0.75
+		add(map, 0.75, 0);
+		add(map, 0.25, 0);
+		add(map, -0.25, 0);
+		add(map, -0.75, 0);
+		for (int band = 0; band < 4; band++) {
+			assertEquals(1, map.getCount(band, 0));
+		}
+		// the equator belongs to the lower band
+		add(map, 0, 0);
+		assertEquals(2, map.getCount(2, 0));
+	}
+
+	@Test
+	public void sectorsGoCounterClockwiseFromX() {
+		CoverageMap map = new CoverageMap(1, 8);
+		for (int sector = 0; sector < 8; sector++) {
+			double angle = (sector + 0.5) * Math.PI / 4;
+			map.add(Math.cos(angle), Math.sin(angle), 0);
+		}
+		for (int sector = 0; sector < 8; sector++) {
+			assertEquals(1, map.getCount(0, sector));
+		}
+		// -y is three quarters round
+		map.add(0.001, -1, 0);
+		assertEquals(2, map.getCount(0, 6));
+	}
+
+	@Test
+	public void wrapsAroundFullCircle() {
+		CoverageMap map = new CoverageMap(1, 8);
+		map.add(1, 0, 0);
+		map.add(1, 1e-12, 0);
+		// just below 360 degrees, atan2 gives a small negative angle
+		map.add(1, -1e-12, 0);
+		map.add(-1, -0.0, 0);
+		assertEquals(2, map.getCount(0, 0));
+		assertEquals(1, map.getCount(0, 7));
+		assertEquals(4, total(map));
+	}
+
+	@Test
+	public void ignoresLengthAndEmptyDirections() {
+		CoverageMap map = new CoverageMap(4, 8);
+		map.add(0, 0, 0);
+		map.add(Double.NaN, 1, 0);
+		assertEquals(0, total(map));
+		map.add(1e-9, 0, 0);
+		map.add(1e9, 0, 0);
+		assertEquals(2, map.getCount(2, 0));
+	}
+
+	@Test
+	public void coverageCountsCellsWithMinSamples() {
+		CoverageMap map = new CoverageMap(2, 2);
+		map.setMinSamples(2);
+		map.add(1, 0.1, 1);
+		map.add(1, 0.1, 1);
+		map.add(-1, -0.1, -1);
+		assertEquals(0.25, map.getCoverage(), 0);
+		map.add(-1, -0.1, -1);
+		assertEquals(0.5, map.getCoverage(), 0);
+		map.clear();
+		assertEquals(0, map.getCoverage(), 0);
+	}
+
+	@Test
+	public void rejectsEmptyGrid() {
+		try {
+			new CoverageMap(0, 8);
+			fail("no bands accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	// Private Methods
+
+	/**
+	 * adds the unit direction with the z and the angle around z
+	 */
+	private static void add(CoverageMap map, double z, double angle) {
+		double r = Math.sqrt(1 - z * z);
+		map.add(r * Math.cos(angle), r * Math.sin(angle), z);
+	}
+
+	private static int total(CoverageMap map) {
+		int total = 0;
+		for (int band = 0; band < map.getBands(); band++) {
+			for (int sector = 0; sector < map.getSectors(); sector++) {
+				total += map.getCount(band, sector);
+			}
+		}
+		return total;
+	}
+}
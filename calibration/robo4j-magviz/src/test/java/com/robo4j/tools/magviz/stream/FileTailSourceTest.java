@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.robo4j.tools.magviz.data.PointSamples;
+
+/**
+ * Follows a file being written with the {@link FileTailSource}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class FileTailSourceTest {
+	private static final long POLL_MILLIS = 10;
+	private static final long TIMEOUT_MILLIS = 5000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void keepsPartialLineUntilComplete() throws Exception {
+		Path file = folder.newFile("tail.csv").toPath();
+		write(file, "# x;y;z\n1;2;3\n4;5", StandardOpenOption.TRUNCATE_EXISTING);
+		SampleBuffer buffer = new SampleBuffer();
+		PointSamples samples = new PointSamples();
+		try (FileTailSource source = new FileTailSource(file, ";", POLL_MILLIS)) {
+			source.start(buffer);
+			awaitSamples(buffer, samples, 1);
+			// a few polls at the end of the file, the half line stays pending
+			Thread.sleep(10 * POLL_MILLIS);
+			buffer.drainTo(samples::add);
+			assertEquals(1, samples.size());
+
+			write(file, ";6\n", StandardOpenOption.APPEND);
+			awaitSamples(buffer, samples, 2);
+			assertEquals(4, samples.getX(1), 0);
+			assertEquals(5, samples.getY(1), 0);
+			assertEquals(6, samples.getZ(1), 0);
+			assertEquals(0, source.getInvalidLineCount());
+		}
+	}
+
+	@Test
+	public void restartsAfterTruncation() throws Exception {
+		Path file = folder.newFile("tail.csv").toPath();
+		write(file, "1;2;3\n4;5;6\n7;8;9\n10;1", StandardOpenOption.TRUNCATE_EXISTING);
+		SampleBuffer buffer = new SampleBuffer();
+		PointSamples samples = new PointSamples();
+		try (FileTailSource source = new FileTailSource(file, ";", POLL_MILLIS)) {
+			source.start(buffer);
+			awaitSamples(buffer, samples, 3);
+
+			// a new recording, shorter than the read part, the pending half line is dropped
+			write(file, "-1;-2;-3\n", StandardOpenOption.TRUNCATE_EXISTING);
+			awaitSamples(buffer, samples, 4);
+			assertEquals(-1, samples.getX(3), 0);
+			assertEquals(-3, samples.getZ(3), 0);
+
+			write(file, "-4;-5;-6\n", StandardOpenOption.APPEND);
+			awaitSamples(buffer, samples, 5);
+			assertEquals(-4, samples.getX(4), 0);
+			assertEquals(0, source.getInvalidLineCount());
+		}
+	}
+
+	// Private Methods
+
+	private static void write(Path file, String text, StandardOpenOption option) throws IOException {
+		Files.write(file, text.getBytes(StandardCharsets.US_ASCII), StandardOpenOption.WRITE, option);
+	}
+
+	private static void awaitSamples(SampleBuffer buffer, PointSamples samples, int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (samples.size() < count) {
+			if (System.currentTimeMillis() > deadline) {
+				fail("Expected " + count + " samples, got " + samples.size());
+			}
+			Thread.sleep(POLL_MILLIS);
+			buffer.drainTo(samples::add);
+		}
+		assertEquals(count, samples.size());
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.stream;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.robo4j.tools.magviz.data.PointSamples;
+
+/**
+ * Tests the hand over of samples by the {@link SampleBuffer}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class SampleBufferTest {
+
+	@Test
+	public void drainsSamplesOnce() {
+		SampleBuffer buffer = new SampleBuffer();
+		buffer.accept(1, 2, 3);
+		buffer.accept(4, 5, 6);
+		PointSamples drained = new PointSamples();
+		assertEquals(2, buffer.drainTo(drained::add));
+		assertEquals(0, buffer.drainTo(drained::add));
+		assertEquals(2, drained.size());
+		assertEquals(4, drained.getX(1), 0);
+		assertEquals(6, drained.getZ(1), 0);
+
+		// the swapped buffers alternate, both come back empty
+		for (int round = 0; round < 3; round++) {
+			buffer.accept(round, 0, 0);
+			assertEquals(1, buffer.drainTo(drained::add));
+		}
+		assertEquals(5, drained.size());
+		assertEquals(2, drained.getX(4), 0);
+	}
+
+	@Test
+	public void keepsSamplesAddedWhileDraining() {
+		SampleBuffer buffer = new SampleBuffer();
+		buffer.accept(1, 0, 0);
+		buffer.accept(2, 0, 0);
+		PointSamples drained = new PointSamples();
+		// the source goes on filling the other buffer during the drain
+		int count = buffer.drainTo((x, y, z) -> {
+			drained.add(x, y, z);
+			buffer.accept(10 + x, 0, 0);
+		});
+		assertEquals(2, count);
+		assertEquals(2, buffer.drainTo(drained::add));
+		assertEquals(4, drained.size());
+		assertEquals(11, drained.getX(2), 0);
+		assertEquals(12, drained.getX(3), 0);
+	}
+
+	@Test
+	public void deliversAllSamplesOfConcurrentSource() throws InterruptedException {
+		final int count = 200000;
+		SampleBuffer buffer = new SampleBuffer();
+		Thread source = new Thread(() -> {
+			for (int i = 0; i < count; i++) {
+				buffer.accept(i, 0, 0);
+			}
+		});
+		source.start();
+		PointSamples drained = new PointSamples();
+		while (source.isAlive()) {
+			buffer.drainTo(drained::add);
+		}
+		source.join();
+		buffer.drainTo(drained::add);
+		assertEquals(count, drained.size());
+		for (int i = 0; i < count; i++) {
+			assertEquals(i, drained.getX(i), 0);
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2014, 2017, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.magviz.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests the tilt compensated heading of the
+ * {@link CalibratedMagnetometerUnit}, with a field pointing north and 60
+ * degrees down.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+public class CalibratedMagnetometerUnitTest {
+	private static final double DIP = Math.toRadians(60);
+
+	@Test
+	public void headingWhenLevel() {
+		for (int heading = 0; heading < 360; heading += 30) {
+			double[] m = field(Math.toRadians(heading), 0);
+			assertEquals(heading, CalibratedMagnetometerUnit.tiltCompensatedHeading(m[0], m[1], m[2], 0, 0, 9.81), 1e-9);
+		}
+	}
+
+	@Test
+	public void headingWhenPitched() {
+		double pitch = Math.toRadians(25);
+		for (int heading = 0; heading < 360; heading += 30) {
+			double[] m = field(Math.toRadians(heading), pitch);
+			// gravity (up) in a frame pitched nose up around y
+			double ax = Math.sin(pitch);
+			double az = Math.cos(pitch);
+			assertEquals(heading, CalibratedMagnetometerUnit.tiltCompensatedHeading(m[0], m[1], m[2], ax, 0, az), 1e-9);
+		}
+	}
+
+	@Test
+	public void undefinedWithoutGravity() {
+		assertTrue(Double.isNaN(CalibratedMagnetometerUnit.tiltCompensatedHeading(1, 0, 0, 0, 0, 0)));
+	}
+
+	// Private Methods
+
+	/**
+	 * @return the field in a frame heading clockwise from north, pitched nose
+	 *         up, x forward, y left, z up
+	 */
+	private static double[] field(double heading, double pitch) {
+		// north, west, up
+		double n = Math.cos(DIP);
+		double u = -Math.sin(DIP);
+		// level frame
+		double lx = n * Math.cos(heading);
+		double ly = n * Math.sin(heading);
+		// pitch around y
+		double x = lx * Math.cos(pitch) + u * Math.sin(pitch);
+		double z = -lx * Math.sin(pitch) + u * Math.cos(pitch);
+		return new double[] { x, ly, z };
+	}
+}
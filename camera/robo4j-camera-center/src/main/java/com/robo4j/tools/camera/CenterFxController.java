@@ -17,6 +17,7 @@
 
 package com.robo4j.tools.camera;
 
+import com.robo4j.ConfigurationException;
 import com.robo4j.RoboBuilder;
 import com.robo4j.RoboBuilderException;
 import com.robo4j.RoboContext;
@@ -25,30 +26,36 @@ import com.robo4j.configuration.ConfigurationBuilder;
 import com.robo4j.logging.SimpleLoggingUtil;
 import com.robo4j.socket.http.units.HttpClientUnit;
 import com.robo4j.socket.http.util.RoboHttpUtils;
+import com.robo4j.tools.camera.analysis.DuplicateFrameFilter;
 import com.robo4j.tools.camera.enums.SupportedConfigElements;
 import com.robo4j.tools.camera.model.CameraCenterProperties;
 import com.robo4j.tools.camera.model.CameraDevice;
+import com.robo4j.tools.camera.model.RewindBuffer;
+import com.robo4j.tools.camera.model.RewindMemory;
 import com.robo4j.tools.camera.model.SimpleRawElement;
+import com.robo4j.tools.camera.processor.BlobTrackingProcessor;
 import com.robo4j.tools.camera.processor.ConfigurationProcessor;
 import com.robo4j.tools.camera.processor.ImageProcessor;
+import com.robo4j.tools.camera.processor.OpticalFlowProcessor;
 import com.robo4j.tools.camera.utils.CameraCenterUtils;
+import com.robo4j.tools.camera.utils.FramePyramidService;
+import com.robo4j.tools.camera.utils.SnapshotWriter;
 import com.robo4j.util.SystemUtil;
 import javafx.embed.swing.SwingFXUtils;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TextField;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.IOException;
-import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -93,6 +100,9 @@ public class CenterFxController implements CenterController {
     @FXML
     private TextField ipTF;
 
+    @FXML
+    private Slider rewindS;
+
     @FXML
     private Label stateL;
 
@@ -105,17 +115,34 @@ public class CenterFxController implements CenterController {
     private CameraCenterProperties properties;
     private CameraDevice cameraDevice;
     private RoboBuilder roboBuilder;
+    private ImageProcessor imageProcessor;
+    private SnapshotWriter snapshotWriter;
+    private RewindBuffer rewindBuffer;
+    private FramePyramidService pyramidService;
 
     @Override
     public void init(CameraCenterProperties properties, RoboBuilder roboBuilder) {
         this.properties = properties;
-        ImageProcessor imageProcessor = new ImageProcessor(roboBuilder.getContext(), ImageProcessor.NAME);
+        snapshotWriter = new SnapshotWriter(Paths.get(properties.getSnapshotDirectory()));
+        snapshotWriter.setTimeLapse(properties.getTimeLapse());
+        imageProcessor = new ImageProcessor(roboBuilder.getContext(), ImageProcessor.NAME);
         imageProcessor.setImageView(cameraImageView);
+        if (properties.isDuplicateFilter()) {
+            DuplicateFrameFilter duplicateFilter = new DuplicateFrameFilter();
+            duplicateFilter.setThreshold(properties.getDuplicateThreshold());
+            imageProcessor.setDuplicateFilter(duplicateFilter);
+        }
+        RewindMemory rewindMemory = new RewindMemory(properties.getRewindMemory());
+        rewindBuffer = rewindMemory.createBuffer(properties.getRewindBudget(), properties.getRewindMillis());
+        imageProcessor.setRewindBuffer(rewindBuffer);
+        imageProcessor.setSnapshotWriter(snapshotWriter);
+        CameraCenterUtils.initRewindSlider(rewindS, rewindBuffer, imageProcessor, cameraImageView);
         ConfigurationProcessor configurationProcessor = new ConfigurationProcessor(roboBuilder.getContext(), ConfigurationProcessor.NAME);
         configurationProcessor.setTableView(systemTV);
         try {
             roboBuilder.addAll(imageProcessor, configurationProcessor);
-        } catch (RoboBuilderException e) {
+            addAnalysisProcessors(roboBuilder);
+        } catch (RoboBuilderException | ConfigurationException e) {
             SimpleLoggingUtil.error(getClass(), "error" + e);
         }
         this.roboBuilder = roboBuilder;
@@ -154,12 +181,9 @@ public class CenterFxController implements CenterController {
     @FXML
     private void saveButtonAction(ActionEvent event) {
         String fileName = imageNameTextField.getText().isEmpty() ? DEFAULT_NONAME : imageNameTextField.getText();
-        Path path = Paths.get(fileName.concat(".").concat(IMAGE_FORMAT));
-        BufferedImage bImage = SwingFXUtils.fromFXImage(cameraImageView.getImage(), null);
-        try {
-            ImageIO.write(bImage, IMAGE_FORMAT, path.toFile());
-        } catch (IOException e) {
-            SimpleLoggingUtil.error(getClass(), "image error", e);
+        // the live frame is saved as received, a rewound or static view has to be encoded
+        if (!imageProcessor.saveSnapshot(fileName)) {
+            snapshotWriter.snapshot(fileName, IMAGE_FORMAT, SwingFXUtils.fromFXImage(cameraImageView.getImage(), null));
         }
     }
 
@@ -169,6 +193,17 @@ public class CenterFxController implements CenterController {
             roboSystem.shutdown();
             System.out.println(SystemUtil.printStateReport(roboSystem));
         }
+        if (rewindBuffer != null) {
+            imageProcessor.setRewindBuffer(null);
+            rewindBuffer.close();
+        }
+        if (snapshotWriter != null) {
+            snapshotWriter.close();
+        }
+        if (pyramidService != null) {
+            SimpleLoggingUtil.info(getClass(), pyramidService.toString());
+            pyramidService.clear();
+        }
         System.out.println("Bye!");
     }
 
@@ -178,6 +213,32 @@ public class CenterFxController implements CenterController {
         System.out.println(SystemUtil.printStateReport(roboSystem));
     }
 
+    /**
+     * the analysis processors of the camera share one pyramid service, each frame is decoded once for all of them
+     */
+    private void addAnalysisProcessors(RoboBuilder roboBuilder) throws RoboBuilderException, ConfigurationException {
+        if (!properties.isOpticalFlow() && !properties.isBlobTracking()) {
+            return;
+        }
+        pyramidService = new FramePyramidService();
+        List<String> targets = new ArrayList<>();
+        if (properties.isOpticalFlow()) {
+            OpticalFlowProcessor opticalFlowProcessor = new OpticalFlowProcessor(roboBuilder.getContext(), OpticalFlowProcessor.NAME);
+            opticalFlowProcessor.initialize(new ConfigurationBuilder().build());
+            opticalFlowProcessor.setPyramidService(pyramidService);
+            roboBuilder.add(opticalFlowProcessor);
+            targets.add(OpticalFlowProcessor.NAME);
+        }
+        if (properties.isBlobTracking()) {
+            BlobTrackingProcessor blobTrackingProcessor = new BlobTrackingProcessor(roboBuilder.getContext(), BlobTrackingProcessor.NAME);
+            blobTrackingProcessor.initialize(new ConfigurationBuilder().build());
+            blobTrackingProcessor.setPyramidService(pyramidService);
+            roboBuilder.add(blobTrackingProcessor);
+            targets.add(BlobTrackingProcessor.NAME);
+        }
+        imageProcessor.setAnalysisTargets(targets.toArray(new String[0]));
+    }
+
     private CameraCenterProperties adjustProperties(RoboBuilder roboBuilder, CameraCenterProperties properties) {
         if (!ipTF.getText().isEmpty()) {
             Map<SupportedConfigElements, String> map = new HashMap<>();
@@ -17,22 +17,31 @@
 
 package com.robo4j.tools.camera;
 
+import com.robo4j.ConfigurationException;
 import com.robo4j.RoboBuilder;
 import com.robo4j.RoboBuilderException;
 import com.robo4j.RoboContext;
+import com.robo4j.configuration.ConfigurationBuilder;
 import com.robo4j.logging.SimpleLoggingUtil;
 import com.robo4j.net.LookupServiceProvider;
 import com.robo4j.socket.http.codec.CameraConfigMessage;
+import com.robo4j.tools.camera.analysis.DuplicateFrameFilter;
+import com.robo4j.tools.camera.model.QualityLevel;
+import com.robo4j.tools.camera.model.RewindBuffer;
 import com.robo4j.tools.camera.model.SimpleRawElement;
+import com.robo4j.tools.camera.processor.AdaptiveQualityProcessor;
 import com.robo4j.tools.camera.processor.CannyEdgeDetectorProcessor;
 import com.robo4j.tools.camera.processor.ConfigurationProcessor;
 import com.robo4j.tools.camera.processor.ImageProcessor;
 import com.robo4j.tools.camera.utils.CameraCenterUtils;
 import com.robo4j.units.rpi.camera.RpiCameraProperty;
 import com.robo4j.util.SystemUtil;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
 import javafx.scene.control.TableView;
 import javafx.scene.image.ImageView;
 
@@ -57,20 +66,75 @@ public class CenterFxLookupCameraController implements LookupCenterController {
     @FXML
     private Label contextNameL;
 
+    @FXML
+    private CheckBox adaptiveCB;
+
+    @FXML
+    private Slider rewindS;
+
     private RoboContext system;
 
+    private RewindBuffer rewindBuffer;
+
+    private ImageProcessor imageProcessor;
+
+    private DuplicateFrameFilter duplicateFilter;
+
     private String contextName;
 
     @Override
-    public void init(RoboBuilder builder) throws RoboBuilderException {
-        ImageProcessor imageProcessor = new ImageProcessor(builder.getContext(), ImageProcessor.NAME);
+    public void init(RoboBuilder builder) throws RoboBuilderException, ConfigurationException {
+        imageProcessor = new ImageProcessor(builder.getContext(), ImageProcessor.NAME);
 //        CannyEdgeDetectorProcessor imageProcessor = new CannyEdgeDetectorProcessor(builder.getContext(), ImageProcessor.NAME);
         imageProcessor.setImageView(cameraImageView);
+        imageProcessor.setDuplicateFilter(duplicateFilter);
+        if (rewindBuffer != null) {
+            imageProcessor.setRewindBuffer(rewindBuffer);
+            CameraCenterUtils.initRewindSlider(rewindS, rewindBuffer, imageProcessor, cameraImageView);
+        } else {
+            rewindS.setDisable(true);
+        }
         builder.add(imageProcessor);
 
+        AdaptiveQualityProcessor adaptiveQualityProcessor = new AdaptiveQualityProcessor(builder.getContext(), AdaptiveQualityProcessor.NAME);
+        adaptiveQualityProcessor.initialize(new ConfigurationBuilder().build());
+        adaptiveQualityProcessor.setStatistics(imageProcessor.getStatistics());
+        adaptiveQualityProcessor.setListener(level -> Platform.runLater(() -> applyQualityLevel(level)));
+        builder.add(adaptiveQualityProcessor);
+
         system = builder.build();
     }
 
+    /**
+     * @param rewindBuffer keeps the last frames of the camera, set before {@link #init(RoboBuilder)}
+     */
+    public void setRewindBuffer(RewindBuffer rewindBuffer) {
+        this.rewindBuffer = rewindBuffer;
+    }
+
+    /**
+     * @param duplicateFilter suppresses unchanged frames, null (default) shows all frames, set before {@link #init(RoboBuilder)}
+     */
+    public void setDuplicateFilter(DuplicateFrameFilter duplicateFilter) {
+        this.duplicateFilter = duplicateFilter;
+    }
+
+    /**
+     * shuts the view context down and returns the rewind memory of the view
+     */
+    public void shutdown() {
+        if (system != null) {
+            system.shutdown();
+        }
+        if (rewindBuffer != null) {
+            if (imageProcessor != null) {
+                imageProcessor.setRewindBuffer(null);
+            }
+            rewindBuffer.close();
+            rewindBuffer = null;
+        }
+    }
+
     public ImageView getCameraImageView() {
         return cameraImageView;
     }
@@ -98,6 +162,39 @@ public class CenterFxLookupCameraController implements LookupCenterController {
 
     @FXML
     private void onClickCamConfig(ActionEvent event) {
+        sendCameraConfig();
+    }
+
+    @FXML
+    private void onClickAdaptive(ActionEvent event) {
+        system.getReference(AdaptiveQualityProcessor.NAME).sendMessage(adaptiveCB.isSelected() ?
+                AdaptiveQualityProcessor.MESSAGE_ENABLE : AdaptiveQualityProcessor.MESSAGE_DISABLE);
+    }
+
+    /**
+     * shows the level in the configuration table and sends the whole configuration to the camera
+     */
+    private void applyQualityLevel(QualityLevel level) {
+        for (SimpleRawElement element : cameraConfTV.getItems()) {
+            switch (RpiCameraProperty.getByName(element.getName())) {
+                case WIDTH:
+                    element.setValue(String.valueOf(level.getWidth()));
+                    break;
+                case HEIGHT:
+                    element.setValue(String.valueOf(level.getHeight()));
+                    break;
+                case TIMELAPSE:
+                    element.setValue(String.valueOf(level.getFrameInterval()));
+                    break;
+                default:
+                    break;
+            }
+        }
+        cameraConfTV.refresh();
+        sendCameraConfig();
+    }
+
+    private void sendCameraConfig() {
         final Map<RpiCameraProperty, String> camConf = cameraConfTV.getItems()
                 .stream()
                 .collect(Collectors.toMap(k ->
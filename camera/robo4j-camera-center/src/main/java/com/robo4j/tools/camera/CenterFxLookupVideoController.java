@@ -28,13 +28,17 @@ import com.robo4j.logging.SimpleLoggingUtil;
 import com.robo4j.net.LookupServiceProvider;
 import com.robo4j.socket.http.codec.VideoConfigMessage;
 import com.robo4j.socket.http.enums.VideoMessageType;
+import com.robo4j.tools.camera.model.QualityLevel;
 import com.robo4j.tools.camera.model.SimpleRawElement;
+import com.robo4j.tools.camera.processor.AdaptiveQualityProcessor;
 import com.robo4j.tools.camera.unit.VideoSocketServerUnit;
 import com.robo4j.tools.camera.utils.VideoCenterUtils;
 import com.robo4j.units.rpi.camera.RpiCameraProperty;
 import com.robo4j.util.SystemUtil;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.TableView;
 import javafx.scene.image.ImageView;
@@ -50,6 +54,8 @@ import java.util.stream.Collectors;
  */
 public class CenterFxLookupVideoController implements LookupCenterController {
 
+    private static final String VIDEO_QUALITY_LEVELS = "320x240@40,480x360@40,640x480@40";
+
     @FXML
     private ImageView mediaIV;
 
@@ -59,6 +65,9 @@ public class CenterFxLookupVideoController implements LookupCenterController {
     @FXML
     private Label contextNameL;
 
+    @FXML
+    private CheckBox adaptiveCB;
+
     private RoboContext system;
 
     private String contextName;
@@ -78,6 +87,14 @@ public class CenterFxLookupVideoController implements LookupCenterController {
         server.initialize(conf);
         server.setImageView(mediaIV);
         builder.add(server);
+
+        AdaptiveQualityProcessor adaptiveQualityProcessor = new AdaptiveQualityProcessor(builder.getContext(), AdaptiveQualityProcessor.NAME);
+        adaptiveQualityProcessor.initialize(new ConfigurationBuilder()
+                .addString(AdaptiveQualityProcessor.PROP_LEVELS, VIDEO_QUALITY_LEVELS)
+                .build());
+        adaptiveQualityProcessor.setStatistics(server.getStatistics());
+        adaptiveQualityProcessor.setListener(level -> Platform.runLater(() -> applyQualityLevel(level)));
+        builder.add(adaptiveQualityProcessor);
         system = builder.build();
     }
 
@@ -104,6 +121,32 @@ public class CenterFxLookupVideoController implements LookupCenterController {
 
     @FXML
     private void onClickVideoConfig(ActionEvent event) {
+        sendVideoConfig();
+    }
+
+    @FXML
+    private void onClickAdaptive(ActionEvent event) {
+        system.getReference(AdaptiveQualityProcessor.NAME).sendMessage(adaptiveCB.isSelected() ?
+                AdaptiveQualityProcessor.MESSAGE_ENABLE : AdaptiveQualityProcessor.MESSAGE_DISABLE);
+    }
+
+    /**
+     * shows the level in the configuration table and restarts the stream with it
+     */
+    private void applyQualityLevel(QualityLevel level) {
+        for (SimpleRawElement element : videoConfTV.getItems()) {
+            RpiCameraProperty property = RpiCameraProperty.getByName(element.getName());
+            if (property == RpiCameraProperty.WIDTH) {
+                element.setValue(String.valueOf(level.getWidth()));
+            } else if (property == RpiCameraProperty.HEIGHT) {
+                element.setValue(String.valueOf(level.getHeight()));
+            }
+        }
+        videoConfTV.refresh();
+        sendVideoConfig();
+    }
+
+    private void sendVideoConfig() {
         RoboReference<VideoConfigMessage> configUnit = LookupServiceProvider.getDefaultLookupService().getContext(contextName).getReference("videoConfigUnit");
         server.sendMessage(VideoSocketServerUnit.MESSAGE_STOP);
         VideoCenterUtils.sendStopMessage(configUnit);
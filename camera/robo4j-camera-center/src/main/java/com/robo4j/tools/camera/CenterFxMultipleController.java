@@ -17,16 +17,22 @@
 
 package com.robo4j.tools.camera;
 
+import com.robo4j.ConfigurationException;
 import com.robo4j.RoboBuilder;
 import com.robo4j.RoboBuilderException;
 import com.robo4j.RoboContext;
+import com.robo4j.configuration.Configuration;
+import com.robo4j.configuration.ConfigurationBuilder;
 import com.robo4j.logging.SimpleLoggingUtil;
+import com.robo4j.tools.camera.enums.StereoSide;
 import com.robo4j.tools.camera.model.CameraCenterProperties;
 import com.robo4j.tools.camera.model.CameraDevice;
 import com.robo4j.tools.camera.model.SimpleRawElement;
 import com.robo4j.tools.camera.processor.ConfigurationProcessor;
 import com.robo4j.tools.camera.processor.ImageProcessor;
+import com.robo4j.tools.camera.processor.StereoProcessor;
 import com.robo4j.tools.camera.utils.CameraCenterUtils;
+import com.robo4j.tools.camera.utils.SnapshotWriter;
 import com.robo4j.util.SystemUtil;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -34,6 +40,7 @@ import javafx.scene.control.Button;
 import javafx.scene.control.TableView;
 import javafx.scene.image.ImageView;
 
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.stream.Stream;
@@ -56,6 +63,8 @@ public class CenterFxMultipleController implements CenterController {
     private static final String IMAGE_PROCESSOR2 = "imageProcessor2";
     private static final String CONFIGURATION_PROCESSOR1 = "configurationProcessor1";
     private static final String CONFIGURATION_PROCESSOR2 = "configurationProcessor2";
+    private static final String STEREO_PROCESSOR = StereoProcessor.NAME;
+    private static final String BUTTON_STEREO = "Activate";
     private static final String DEFAULT_NONAME = "noname";
     private static final String CAMERA_NAME_1 = "camera1";
     private static final String CAMERA_NAME_2 = "camera2";
@@ -66,6 +75,10 @@ public class CenterFxMultipleController implements CenterController {
     private Map<String, CameraDevice> cameraDevices;
     private CameraCenterProperties properties;
     private boolean contextStarted = false;
+    private boolean stereoActive = false;
+    private ImageProcessor imageProcessor1;
+    private ImageProcessor imageProcessor2;
+    private SnapshotWriter snapshotWriter;
 
     @FXML
     private Button activateB1;
@@ -73,12 +86,18 @@ public class CenterFxMultipleController implements CenterController {
     @FXML
     private Button activateB2;
 
+    @FXML
+    private Button stereoB;
+
     @FXML
     private ImageView cameraIV1;
 
     @FXML
     private ImageView cameraIV2;
 
+    @FXML
+    private ImageView depthIV;
+
     @FXML
     private TableView<SimpleRawElement> systemTV1;
 
@@ -115,14 +134,44 @@ public class CenterFxMultipleController implements CenterController {
         CameraCenterUtils.sendRequestForClientConfiguration(roboSystem, configurationProcessorName, UNIT_NAME_HTTP_CLIENT, cameraDevice);
     }
 
+    /**
+     * camera1 is the left and camera2 the right camera of the stereo pair
+     */
+    private void stereoButtonPress() {
+        stereoActive = !stereoActive;
+        if (stereoActive) {
+            imageProcessor1.setStereoTarget(STEREO_PROCESSOR, StereoSide.LEFT);
+            imageProcessor2.setStereoTarget(STEREO_PROCESSOR, StereoSide.RIGHT);
+            stereoB.setText(BUTTON_ACTIVATED);
+        } else {
+            imageProcessor1.setStereoTarget(null, StereoSide.LEFT);
+            imageProcessor2.setStereoTarget(null, StereoSide.RIGHT);
+            stereoB.setText(BUTTON_STEREO);
+        }
+    }
+
 
     @Override
     public void init(CameraCenterProperties properties, RoboBuilder roboBuilder) {
-        ImageProcessor imageProcessor1 = new ImageProcessor(roboBuilder.getContext(), IMAGE_PROCESSOR1);
+        // one writer for both cameras, the time-lapse counts the frames of all cameras
+        snapshotWriter = new SnapshotWriter(Paths.get(properties.getSnapshotDirectory()));
+        snapshotWriter.setTimeLapse(properties.getTimeLapse());
+
+        imageProcessor1 = new ImageProcessor(roboBuilder.getContext(), IMAGE_PROCESSOR1);
         imageProcessor1.setImageView(cameraIV1);
+        imageProcessor1.setSnapshotWriter(snapshotWriter);
 
-        ImageProcessor imageProcessor2 = new ImageProcessor(roboBuilder.getContext(), IMAGE_PROCESSOR2);
+        imageProcessor2 = new ImageProcessor(roboBuilder.getContext(), IMAGE_PROCESSOR2);
         imageProcessor2.setImageView(cameraIV2);
+        imageProcessor2.setSnapshotWriter(snapshotWriter);
+
+        StereoProcessor stereoProcessor = new StereoProcessor(roboBuilder.getContext(), STEREO_PROCESSOR);
+        stereoProcessor.setImageView(depthIV);
+        try {
+            stereoProcessor.initialize(createStereoConfiguration(properties));
+        } catch (ConfigurationException e) {
+            SimpleLoggingUtil.error(getClass(), "stereo calibration ignored: " + e.getMessage());
+        }
 
         ConfigurationProcessor configurationProcessor1 = new ConfigurationProcessor(roboBuilder.getContext(), CONFIGURATION_PROCESSOR1);
         configurationProcessor1.setTableView(systemTV1);
@@ -130,7 +179,7 @@ public class CenterFxMultipleController implements CenterController {
         ConfigurationProcessor configurationProcessor2 = new ConfigurationProcessor(roboBuilder.getContext(), CONFIGURATION_PROCESSOR2);
         configurationProcessor2.setTableView(systemTV2);
 
-        Stream.of(imageProcessor1, imageProcessor2, configurationProcessor1, configurationProcessor2)
+        Stream.of(imageProcessor1, imageProcessor2, stereoProcessor, configurationProcessor1, configurationProcessor2)
                 .forEach(u -> {
                     try {
                         roboBuilder.add(u);
@@ -151,10 +200,26 @@ public class CenterFxMultipleController implements CenterController {
         });
 
         activateB2.setOnAction((e) -> activateButtonPress(CAMERA_NAME_2, CONFIGURATION_PROCESSOR2));
+        stereoB.setOnAction((e) -> stereoButtonPress());
         CameraCenterUtils.initCameraConfigTV(configImageTV1);
         CameraCenterUtils.initCameraConfigTV(configImageTV2);
     }
 
+    private static Configuration createStereoConfiguration(CameraCenterProperties properties) {
+        ConfigurationBuilder builder = new ConfigurationBuilder();
+        addIfPresent(builder, StereoProcessor.PROP_LEFT_INTRINSICS, properties.getStereoLeftIntrinsics());
+        addIfPresent(builder, StereoProcessor.PROP_RIGHT_INTRINSICS, properties.getStereoRightIntrinsics());
+        addIfPresent(builder, StereoProcessor.PROP_LEFT_ROTATION, properties.getStereoLeftRotation());
+        addIfPresent(builder, StereoProcessor.PROP_RIGHT_ROTATION, properties.getStereoRightRotation());
+        return builder.build();
+    }
+
+    private static void addIfPresent(ConfigurationBuilder builder, String name, String value) {
+        if (value != null) {
+            builder.addString(name, value);
+        }
+    }
+
     private void startSystem() {
         if (!contextStarted) {
             contextStarted = true;
@@ -174,6 +239,7 @@ public class CenterFxMultipleController implements CenterController {
         System.out.println("State after stop:");
         roboSystem.shutdown();
         System.out.println(SystemUtil.printStateReport(roboSystem));
+        snapshotWriter.close();
     }
 
 }
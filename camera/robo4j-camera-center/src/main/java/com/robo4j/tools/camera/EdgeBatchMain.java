@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera;
+
+import com.robo4j.tools.camera.analysis.CannyEdgeDetector;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Headless batch edge detection for tuning the {@link CannyEdgeDetector}
+ * thresholds. Images are decoded, processed and written by separate threads,
+ * every detector thread keeps its own detector. With several threshold pairs
+ * the gradients of an image are computed once and only the hysteresis is
+ * repeated. The edge density per threshold pair and the throughput are
+ * reported at the end.
+ *
+ * usage: EdgeBatchMain [--threads n] [--decoders n] [--thresholds low:high,...] [--output directory] image|directory...
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class EdgeBatchMain {
+
+    private static final String OPTION_THREADS = "--threads";
+    private static final String OPTION_DECODERS = "--decoders";
+    private static final String OPTION_THRESHOLDS = "--thresholds";
+    private static final String OPTION_OUTPUT = "--output";
+    private static final String OUTPUT_FORMAT = "png";
+    private static final int EDGE = -1;
+    private static final int REPORT_INTERVAL = 100;
+    private static final DecodedImage END = new DecodedImage(null, null);
+
+    private static final class DecodedImage {
+        private final Path path;
+        private final BufferedImage image;
+
+        DecodedImage(Path path, BufferedImage image) {
+            this.path = path;
+            this.image = image;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        final int cores = Runtime.getRuntime().availableProcessors();
+        int threads = cores;
+        int decoders = Math.max(1, cores / 2);
+        float[][] thresholds = {{2.5f, 7.5f}};
+        Path outputDirectory = null;
+        final List<Path> images = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (OPTION_THREADS.equals(args[i]) && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (OPTION_DECODERS.equals(args[i]) && i + 1 < args.length) {
+                decoders = Integer.parseInt(args[++i]);
+            } else if (OPTION_THRESHOLDS.equals(args[i]) && i + 1 < args.length) {
+                thresholds = parseThresholds(args[++i]);
+            } else if (OPTION_OUTPUT.equals(args[i]) && i + 1 < args.length) {
+                outputDirectory = Paths.get(args[++i]);
+            } else {
+                images.addAll(LensCalibrationMain.listImages(Paths.get(args[i])));
+            }
+        }
+        if (images.isEmpty()) {
+            System.out.println("usage: EdgeBatchMain [" + OPTION_THREADS + " n] [" + OPTION_DECODERS + " n] ["
+                    + OPTION_THRESHOLDS + " low:high,...] [" + OPTION_OUTPUT + " directory] image|directory...");
+            return;
+        }
+        if (outputDirectory != null) {
+            Files.createDirectories(outputDirectory);
+        }
+
+        final long start = System.nanoTime();
+        final BlockingQueue<DecodedImage> decoded = new ArrayBlockingQueue<>(2 * threads);
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger skipped = new AtomicInteger();
+        final AtomicInteger processed = new AtomicInteger();
+        final AtomicLongArray edgePixels = new AtomicLongArray(thresholds.length);
+        final AtomicLongArray pixels = new AtomicLongArray(1);
+        final ExecutorService writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(2 * threads), new ThreadPoolExecutor.CallerRunsPolicy());
+
+        final List<Thread> decoderThreads = new ArrayList<>();
+        for (int i = 0; i < decoders; i++) {
+            Thread thread = new Thread(() -> {
+                for (int index = next.getAndIncrement(); index < images.size(); index = next.getAndIncrement()) {
+                    Path path = images.get(index);
+                    BufferedImage image = decode(path);
+                    if (image == null) {
+                        skipped.incrementAndGet();
+                        System.out.println("skipped, not supported image: " + path);
+                        continue;
+                    }
+                    put(decoded, new DecodedImage(path, image));
+                }
+            }, "edge-decoder-" + i);
+            thread.start();
+            decoderThreads.add(thread);
+        }
+
+        final float[][] sweep = thresholds;
+        final Path output = outputDirectory;
+        final ExecutorService detectors = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            detectors.execute(() -> {
+                final CannyEdgeDetector detector = new CannyEdgeDetector();
+                for (DecodedImage item = take(decoded); item != END; item = take(decoded)) {
+                    detector.setSourceImage(item.image);
+                    for (int t = 0; t < sweep.length; t++) {
+                        detector.setLowThreshold(sweep[t][0]);
+                        detector.setHighThreshold(sweep[t][1]);
+                        if (t == 0) {
+                            detector.process();
+                        } else {
+                            detector.applyThresholds();
+                        }
+                        int[] edges = detector.getEdgeData();
+                        edgePixels.addAndGet(t, countEdges(edges));
+                        if (output != null) {
+                            write(writer, output.resolve(outputName(item.path, sweep[t])), edges.clone(),
+                                    detector.getWidth(), detector.getHeight());
+                        }
+                    }
+                    pixels.addAndGet(0, (long) detector.getWidth() * detector.getHeight());
+                    int count = processed.incrementAndGet();
+                    if (count % REPORT_INTERVAL == 0) {
+                        System.out.println(String.format(Locale.US, "%d images, %.1f images/s", count,
+                                count / seconds(start)));
+                    }
+                }
+                put(decoded, END);
+            });
+        }
+
+        for (Thread thread : decoderThreads) {
+            thread.join();
+        }
+        put(decoded, END);
+        detectors.shutdown();
+        detectors.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+        writer.shutdown();
+        writer.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+
+        final double seconds = seconds(start);
+        final int count = processed.get();
+        System.out.println(String.format(Locale.US, "%d images (%d skipped) in %.2f s: %.1f images/s, %d detector and %d decoder threads",
+                count, skipped.get(), seconds, count / seconds, threads, decoders));
+        for (int t = 0; t < thresholds.length; t++) {
+            System.out.println(String.format(Locale.US, "low %.2f high %.2f: %.3f%% edge pixels", thresholds[t][0],
+                    thresholds[t][1], pixels.get(0) == 0 ? 0 : 100d * edgePixels.get(t) / pixels.get(0)));
+        }
+    }
+
+    private static float[][] parseThresholds(String value) {
+        String[] pairs = value.split(",");
+        float[][] result = new float[pairs.length][];
+        for (int i = 0; i < pairs.length; i++) {
+            String[] pair = pairs[i].split(":");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("expected low:high, was: " + pairs[i]);
+            }
+            result[i] = new float[]{Float.parseFloat(pair[0]), Float.parseFloat(pair[1])};
+        }
+        return result;
+    }
+
+    /**
+     * @return image in a type supported by the detector, null if it could not be read
+     */
+    private static BufferedImage decode(Path path) {
+        try {
+            BufferedImage image = ImageIO.read(path.toFile());
+            if (image == null) {
+                return null;
+            }
+            switch (image.getType()) {
+                case BufferedImage.TYPE_INT_RGB:
+                case BufferedImage.TYPE_INT_ARGB:
+                case BufferedImage.TYPE_BYTE_GRAY:
+                case BufferedImage.TYPE_USHORT_GRAY:
+                case BufferedImage.TYPE_3BYTE_BGR:
+                    return image;
+                default:
+                    BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+                    converted.getGraphics().drawImage(image, 0, 0, null);
+                    return converted;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static int countEdges(int[] edges) {
+        int count = 0;
+        for (int edge : edges) {
+            if (edge == EDGE) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static String outputName(Path path, float[] threshold) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return String.format(Locale.US, "%s_l%.2f_h%.2f.%s", dot > 0 ? name.substring(0, dot) : name,
+                threshold[0], threshold[1], OUTPUT_FORMAT);
+    }
+
+    private static void write(ExecutorService writer, Path path, int[] edges, int width, int height) {
+        writer.execute(() -> {
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+            image.setRGB(0, 0, width, height, edges, 0, width);
+            try {
+                ImageIO.write(image, OUTPUT_FORMAT, path.toFile());
+            } catch (IOException e) {
+                System.out.println("could not write " + path + ": " + e.getMessage());
+            }
+        });
+    }
+
+    private static void put(BlockingQueue<DecodedImage> queue, DecodedImage item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static DecodedImage take(BlockingQueue<DecodedImage> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return END;
+        }
+    }
+
+    private static double seconds(long start) {
+        return (System.nanoTime() - start) / 1e9;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.tools.camera;
+
+import com.robo4j.tools.camera.analysis.CannyEdgeDetector;
+import com.robo4j.tools.camera.analysis.ContourTracer;
+import com.robo4j.tools.camera.analysis.LensDistortionCorrector;
+import com.robo4j.tools.camera.analysis.PlumbLineCalibrator;
+import com.robo4j.tools.camera.model.CameraIntrinsics;
+import com.robo4j.tools.camera.model.Contour;
+import com.robo4j.tools.camera.processor.UndistortProcessor;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Headless lens calibration: estimates the radial distortion from images of a
+ * checkerboard (or any straight edges) and prints the configuration of the
+ * {@link UndistortProcessor}
+ *
+ * usage: LensCalibrationMain [--preview outputDirectory] image|directory...
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class LensCalibrationMain {
+
+    private static final String PREVIEW_OPTION = "--preview";
+    private static final String PREVIEW_FORMAT = "png";
+    private static final float CONTOUR_EPSILON = 6f;
+    private static final int MIN_CONTOUR_LENGTH = 40;
+
+    public static void main(String[] args) throws IOException {
+        Path previewDirectory = null;
+        final List<Path> images = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (PREVIEW_OPTION.equals(args[i]) && i + 1 < args.length) {
+                previewDirectory = Paths.get(args[++i]);
+            } else {
+                images.addAll(listImages(Paths.get(args[i])));
+            }
+        }
+        if (images.isEmpty()) {
+            System.out.println("usage: LensCalibrationMain [" + PREVIEW_OPTION + " outputDirectory] image|directory...");
+            return;
+        }
+
+        final CannyEdgeDetector detector = new CannyEdgeDetector();
+        detector.setLowThreshold(0.5f);
+        detector.setHighThreshold(1f);
+        final ContourTracer tracer = new ContourTracer();
+        tracer.setKeepPixels(true);
+        tracer.setEpsilon(CONTOUR_EPSILON);
+        tracer.setMinPixelLength(MIN_CONTOUR_LENGTH);
+        final PlumbLineCalibrator calibrator = new PlumbLineCalibrator();
+        final List<Path> used = new ArrayList<>();
+        for (Path path : images) {
+            BufferedImage image = ImageIO.read(path.toFile());
+            if (image == null) {
+                System.out.println("skipped, not supported image: " + path);
+                continue;
+            }
+            detector.setSourceImage(image);
+            detector.process();
+            List<Contour> contours = tracer.process(detector.getEdgeData(), detector.getOrientation(),
+                    detector.getWidth(), detector.getHeight());
+            int runs = calibrator.getRunCount();
+            try {
+                calibrator.addContours(contours, detector.getWidth(), detector.getHeight());
+            } catch (IllegalArgumentException e) {
+                System.out.println("skipped, " + e.getMessage() + ": " + path);
+                continue;
+            }
+            used.add(path);
+            System.out.println(path + ": " + (calibrator.getRunCount() - runs) + " straight edges");
+        }
+        if (calibrator.getRunCount() == 0) {
+            System.out.println("no straight edges found");
+            return;
+        }
+
+        final CameraIntrinsics intrinsics = calibrator.calibrate();
+        System.out.println(intrinsics);
+        System.out.println(toUnitConfiguration(intrinsics));
+
+        if (previewDirectory != null) {
+            Files.createDirectories(previewDirectory);
+            LensDistortionCorrector corrector = new LensDistortionCorrector(intrinsics);
+            for (Path path : used) {
+                BufferedImage image = ImageIO.read(path.toFile());
+                int width = image.getWidth();
+                int height = image.getHeight();
+                BufferedImage corrected = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+                corrector.correct(image.getRGB(0, 0, width, height, null, 0, width),
+                        ((DataBufferInt) corrected.getRaster().getDataBuffer()).getData(), width, height);
+                String name = path.getFileName().toString();
+                int dot = name.lastIndexOf('.');
+                Path output = previewDirectory.resolve((dot > 0 ? name.substring(0, dot) : name) + "_undistorted." + PREVIEW_FORMAT);
+                ImageIO.write(corrected, PREVIEW_FORMAT, output.toFile());
+                System.out.println("preview: " + output);
+            }
+        }
+    }
+
+    static List<Path> listImages(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return Collections.singletonList(path);
+        }
+        try (Stream<Path> files = Files.list(path)) {
+            return files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static String toUnitConfiguration(CameraIntrinsics c) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<roboUnit id=\"").append(UndistortProcessor.NAME).append("\">\n")
+                .append("    <class>").append(UndistortProcessor.class.getName()).append("</class>\n")
+                .append("    <config name=\"com.robo4j.root\">\n");
+        appendValue(sb, UndistortProcessor.PROP_CALIBRATION_WIDTH, "int", String.valueOf(c.getWidth()));
+        appendValue(sb, UndistortProcessor.PROP_CALIBRATION_HEIGHT, "int", String.valueOf(c.getHeight()));
+        appendValue(sb, UndistortProcessor.PROP_FX, "double", format(c.getFx()));
+        appendValue(sb, UndistortProcessor.PROP_FY, "double", format(c.getFy()));
+        appendValue(sb, UndistortProcessor.PROP_CX, "double", format(c.getCx()));
+        appendValue(sb, UndistortProcessor.PROP_CY, "double", format(c.getCy()));
+        appendValue(sb, UndistortProcessor.PROP_K1, "double", format(c.getK1()));
+        appendValue(sb, UndistortProcessor.PROP_K2, "double", format(c.getK2()));
+        return sb.append("    </config>\n").append("</roboUnit>").toString();
+    }
+
+    private static void appendValue(StringBuilder sb, String name, String type, String value) {
+        sb.append("        <value name=\"").append(name).append("\" type=\"").append(type).append("\">")
+                .append(value).append("</value>\n");
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.US, "%.6f", value);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.tools.camera.analysis;
+
+/**
+ * Running average background model of the luminance. A pixel is foreground
+ * when it differs from the background by more than the threshold. The
+ * background learns foreground pixels four times slower, so that objects
+ * stopping in the view fade into the background only gradually.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class BackgroundSubtractor {
+    public static final byte FOREGROUND = 1;
+
+    private static final int FRACTION_BITS = 8;
+    private static final int FOREGROUND_SLOWDOWN = 2;
+
+    /* background luminance, 8 fraction bits */
+    private int[] background = new int[0];
+    private byte[] mask = new byte[0];
+    private int learningShift = 5;
+    private int threshold = 25;
+
+    public int getLearningShift() {
+        return learningShift;
+    }
+
+    /**
+     * @param learningShift the background moves 1 / 2^learningShift of the
+     *                      difference towards every new frame
+     */
+    public void setLearningShift(int learningShift) {
+        if (learningShift < 0 || learningShift > FRACTION_BITS) throw new IllegalArgumentException();
+        this.learningShift = learningShift;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * @param threshold luminance difference of foreground pixels
+     */
+    public void setThreshold(int threshold) {
+        if (threshold < 1) throw new IllegalArgumentException();
+        this.threshold = threshold;
+    }
+
+    /**
+     * Discards the model, the next frame becomes the background
+     */
+    public void reset() {
+        background = new int[0];
+    }
+
+    /**
+     * Classifies the pixels and updates the background
+     *
+     * @param luminance frame luminance
+     * @return foreground mask, {@link #FOREGROUND} or 0 per pixel, reused by the next call
+     */
+    public byte[] process(byte[] luminance) {
+        final int pixels = luminance.length;
+        if (background.length != pixels) {
+            background = new int[pixels];
+            mask = new byte[pixels];
+            for (int i = 0; i < pixels; i++) {
+                background[i] = (luminance[i] & 0xff) << FRACTION_BITS;
+            }
+        }
+        final int scaledThreshold = threshold << FRACTION_BITS;
+        final int foregroundShift = learningShift + FOREGROUND_SLOWDOWN;
+        for (int i = 0; i < pixels; i++) {
+            int difference = ((luminance[i] & 0xff) << FRACTION_BITS) - background[i];
+            if (difference > scaledThreshold || difference < -scaledThreshold) {
+                mask[i] = FOREGROUND;
+                background[i] += difference >> foregroundShift;
+            } else {
+                mask[i] = 0;
+                background[i] += difference >> learningShift;
+            }
+        }
+        return mask;
+    }
+}
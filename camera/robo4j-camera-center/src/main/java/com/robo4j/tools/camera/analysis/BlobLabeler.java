@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.tools.camera.analysis;
+
+import java.util.Arrays;
+
+/**
+ * Single pass 8-connected component labelling of a binary mask. Only the
+ * labels of two rows are kept, the area, centroid and bounding box of every
+ * provisional label are accumulated during the scan and merged along the
+ * label equivalences afterwards, so the mask is read exactly once.
+ *
+ * The results are available through the index based accessors until the
+ * next call of {@link #process(byte[], int, int)}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class BlobLabeler {
+
+    private static final int INITIAL_LABELS = 1024;
+
+    private int minArea = 20;
+    private int[] previousRow = new int[0];
+    private int[] currentRow = new int[0];
+
+    /* per provisional label, index 0 is the background */
+    private int[] parent = new int[INITIAL_LABELS];
+    private int[] area = new int[INITIAL_LABELS];
+    private long[] sumX = new long[INITIAL_LABELS];
+    private long[] sumY = new long[INITIAL_LABELS];
+    private int[] minX = new int[INITIAL_LABELS];
+    private int[] minY = new int[INITIAL_LABELS];
+    private int[] maxX = new int[INITIAL_LABELS];
+    private int[] maxY = new int[INITIAL_LABELS];
+    private int labels;
+
+    /* final components, indices of the root labels */
+    private int[] components = new int[INITIAL_LABELS];
+    private int count;
+
+    public int getMinArea() {
+        return minArea;
+    }
+
+    /**
+     * @param minArea components with less pixels are ignored
+     */
+    public void setMinArea(int minArea) {
+        if (minArea < 1) throw new IllegalArgumentException();
+        this.minArea = minArea;
+    }
+
+    /**
+     * @param mask   non zero for foreground pixels
+     * @param width  mask width
+     * @param height mask height
+     * @return number of components
+     */
+    public int process(byte[] mask, int width, int height) {
+        if (currentRow.length != width + 2) {
+            previousRow = new int[width + 2];
+            currentRow = new int[width + 2];
+        } else {
+            Arrays.fill(previousRow, 0);
+        }
+        labels = 1;
+        for (int y = 0; y < height; y++) {
+            final int rowOffset = y * width;
+            // rows are padded by one label on both sides
+            for (int x = 0; x < width; x++) {
+                if (mask[rowOffset + x] == 0) {
+                    currentRow[x + 1] = 0;
+                    continue;
+                }
+                int label = 0;
+                label = join(label, currentRow[x]);
+                label = join(label, previousRow[x]);
+                label = join(label, previousRow[x + 1]);
+                label = join(label, previousRow[x + 2]);
+                if (label == 0) {
+                    label = newLabel(x, y);
+                }
+                currentRow[x + 1] = label;
+                area[label]++;
+                sumX[label] += x;
+                sumY[label] += y;
+                if (x < minX[label]) minX[label] = x;
+                if (x > maxX[label]) maxX[label] = x;
+                maxY[label] = y;
+            }
+            int[] swap = previousRow;
+            previousRow = currentRow;
+            currentRow = swap;
+        }
+        return collectComponents();
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getArea(int component) {
+        return area[components[component]];
+    }
+
+    public float getCentroidX(int component) {
+        int label = components[component];
+        return (float) sumX[label] / area[label];
+    }
+
+    public float getCentroidY(int component) {
+        int label = components[component];
+        return (float) sumY[label] / area[label];
+    }
+
+    public int getMinX(int component) {
+        return minX[components[component]];
+    }
+
+    public int getMinY(int component) {
+        return minY[components[component]];
+    }
+
+    public int getMaxX(int component) {
+        return maxX[components[component]];
+    }
+
+    public int getMaxY(int component) {
+        return maxY[components[component]];
+    }
+
+    // private utility methods
+
+    /**
+     * @return the smaller root of both labels after recording their equivalence
+     */
+    private int join(int label, int neighbour) {
+        if (neighbour == 0) {
+            return label;
+        }
+        int root = find(neighbour);
+        if (label == 0 || label == root) {
+            return root;
+        }
+        if (root < label) {
+            parent[label] = root;
+            return root;
+        }
+        parent[root] = label;
+        return label;
+    }
+
+    private int find(int label) {
+        while (parent[label] != label) {
+            parent[label] = parent[parent[label]];
+            label = parent[label];
+        }
+        return label;
+    }
+
+    private int newLabel(int x, int y) {
+        if (labels == parent.length) {
+            int capacity = 2 * labels;
+            parent = Arrays.copyOf(parent, capacity);
+            area = Arrays.copyOf(area, capacity);
+            sumX = Arrays.copyOf(sumX, capacity);
+            sumY = Arrays.copyOf(sumY, capacity);
+            minX = Arrays.copyOf(minX, capacity);
+            minY = Arrays.copyOf(minY, capacity);
+            maxX = Arrays.copyOf(maxX, capacity);
+            maxY = Arrays.copyOf(maxY, capacity);
+        }
+        int label = labels++;
+        parent[label] = label;
+        area[label] = 0;
+        sumX[label] = 0;
+        sumY[label] = 0;
+        minX[label] = x;
+        minY[label] = y;
+        maxX[label] = x;
+        maxY[label] = y;
+        return label;
+    }
+
+    /**
+     * merges the statistics of the provisional labels into their roots
+     */
+    private int collectComponents() {
+        count = 0;
+        for (int label = 1; label < labels; label++) {
+            int root = find(label);
+            if (root != label) {
+                area[root] += area[label];
+                sumX[root] += sumX[label];
+                sumY[root] += sumY[label];
+                minX[root] = Math.min(minX[root], minX[label]);
+                minY[root] = Math.min(minY[root], minY[label]);
+                maxX[root] = Math.max(maxX[root], maxX[label]);
+                maxY[root] = Math.max(maxY[root], maxY[label]);
+            }
+        }
+        for (int label = 1; label < labels; label++) {
+            if (parent[label] == label && area[label] >= minArea) {
+                if (count == components.length) {
+                    components = Arrays.copyOf(components, 2 * count);
+                }
+                components[count++] = label;
+            }
+        }
+        return count;
+    }
+}
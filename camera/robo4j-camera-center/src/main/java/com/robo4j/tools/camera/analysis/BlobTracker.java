@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.tools.camera.analysis;
+
+import com.robo4j.tools.camera.model.Blob;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Follows the labelled components from frame to frame. Every track predicts
+ * its position from the smoothed velocity, the closest pairs of track and
+ * component within the maximal distance are matched first. Components
+ * without a track start a new one with a new id, tracks are dropped after
+ * missing for more than the allowed number of frames.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class BlobTracker {
+
+    private static final int MAX_COMPONENTS = 1 << 16;
+
+    private final List<Track> tracks = new ArrayList<>();
+    private float maxDistance = 40;
+    private int maxMissedFrames = 5;
+    private float velocitySmoothing = 0.5f;
+    private int nextId = 1;
+    private long[] candidates = new long[64];
+    private boolean[] componentMatched = new boolean[64];
+
+    public float getMaxDistance() {
+        return maxDistance;
+    }
+
+    /**
+     * @param maxDistance largest distance in pixels between the predicted and the found position
+     */
+    public void setMaxDistance(float maxDistance) {
+        if (maxDistance <= 0) throw new IllegalArgumentException();
+        this.maxDistance = maxDistance;
+    }
+
+    public int getMaxMissedFrames() {
+        return maxMissedFrames;
+    }
+
+    /**
+     * @param maxMissedFrames frames a track survives without a matching component
+     */
+    public void setMaxMissedFrames(int maxMissedFrames) {
+        if (maxMissedFrames < 0) throw new IllegalArgumentException();
+        this.maxMissedFrames = maxMissedFrames;
+    }
+
+    public float getVelocitySmoothing() {
+        return velocitySmoothing;
+    }
+
+    /**
+     * @param velocitySmoothing weight of the newest velocity measurement, (0, 1]
+     */
+    public void setVelocitySmoothing(float velocitySmoothing) {
+        if (velocitySmoothing <= 0 || velocitySmoothing > 1) throw new IllegalArgumentException();
+        this.velocitySmoothing = velocitySmoothing;
+    }
+
+    /**
+     * @param labeler   components of the current frame
+     * @param timestamp frame time in milliseconds
+     * @return blobs seen in the current frame
+     */
+    public List<Blob> update(BlobLabeler labeler, long timestamp) {
+        final int count = Math.min(labeler.getCount(), MAX_COMPONENTS);
+        final int trackCount = Math.min(tracks.size(), MAX_COMPONENTS);
+        if (componentMatched.length < count) {
+            componentMatched = new boolean[count];
+        }
+        Arrays.fill(componentMatched, 0, count, false);
+
+        // candidate pairs sorted by distance: distance bits | track | component
+        int pairs = 0;
+        final float maxDistanceSquared = maxDistance * maxDistance;
+        for (int t = 0; t < trackCount; t++) {
+            Track track = tracks.get(t);
+            float dt = (timestamp - track.timestamp) / 1000f;
+            float predictedX = track.x + track.velocityX * dt;
+            float predictedY = track.y + track.velocityY * dt;
+            for (int c = 0; c < count; c++) {
+                float dx = labeler.getCentroidX(c) - predictedX;
+                float dy = labeler.getCentroidY(c) - predictedY;
+                float distanceSquared = dx * dx + dy * dy;
+                if (distanceSquared <= maxDistanceSquared) {
+                    if (pairs == candidates.length) {
+                        candidates = Arrays.copyOf(candidates, 2 * pairs);
+                    }
+                    // positive floats order like their bits
+                    candidates[pairs++] = (long) Float.floatToIntBits(distanceSquared) << 32 | (long) t << 16 | c;
+                }
+            }
+        }
+        Arrays.sort(candidates, 0, pairs);
+
+        final List<Blob> blobs = new ArrayList<>(count);
+        for (Track track : tracks) {
+            track.matched = false;
+        }
+        for (int p = 0; p < pairs; p++) {
+            Track track = tracks.get((int) (candidates[p] >>> 16) & 0xffff);
+            int c = (int) candidates[p] & 0xffff;
+            if (track.matched || componentMatched[c]) {
+                continue;
+            }
+            track.matched = true;
+            componentMatched[c] = true;
+            float dt = (timestamp - track.timestamp) / 1000f;
+            float x = labeler.getCentroidX(c);
+            float y = labeler.getCentroidY(c);
+            if (dt > 0) {
+                track.velocityX += velocitySmoothing * ((x - track.x) / dt - track.velocityX);
+                track.velocityY += velocitySmoothing * ((y - track.y) / dt - track.velocityY);
+            }
+            track.x = x;
+            track.y = y;
+            track.timestamp = timestamp;
+            track.missed = 0;
+            blobs.add(toBlob(track, labeler, c));
+        }
+        for (Iterator<Track> it = tracks.iterator(); it.hasNext(); ) {
+            Track track = it.next();
+            if (!track.matched && ++track.missed > maxMissedFrames) {
+                it.remove();
+            }
+        }
+        for (int c = 0; c < count; c++) {
+            if (!componentMatched[c]) {
+                Track track = new Track(nextId++, labeler.getCentroidX(c), labeler.getCentroidY(c), timestamp);
+                tracks.add(track);
+                blobs.add(toBlob(track, labeler, c));
+            }
+        }
+        return blobs;
+    }
+
+    /**
+     * Forgets all tracks
+     */
+    public void reset() {
+        tracks.clear();
+    }
+
+    // private utility methods
+
+    private static Blob toBlob(Track track, BlobLabeler labeler, int component) {
+        return new Blob(track.id, track.x, track.y, labeler.getMinX(component), labeler.getMinY(component),
+                labeler.getMaxX(component), labeler.getMaxY(component), labeler.getArea(component),
+                track.velocityX, track.velocityY);
+    }
+
+    private static final class Track {
+        private final int id;
+        private float x;
+        private float y;
+        private float velocityX;
+        private float velocityY;
+        private long timestamp;
+        private int missed;
+        private boolean matched;
+
+        private Track(int id, float x, float y, long timestamp) {
+            this.id = id;
+            this.x = x;
+            this.y = y;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -35,6 +35,7 @@ public class CannyEdgeDetector {
     private float[] yConv;
     private float[] xGradient;
     private float[] yGradient;
+    private float[] orientation;
 
     // constructors
 
@@ -219,6 +220,73 @@ public class CannyEdgeDetector {
         this.contrastNormalized = contrastNormalized;
     }
 
+    /**
+     * The width of the image processed by the last call to the process method.
+     *
+     * @return the width in pixels
+     */
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * The height of the image processed by the last call to the process method.
+     *
+     * @return the height in pixels
+     */
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Obtains the primitive edge buffer produced by the last call to the
+     * process method. The buffer is row-major with one element per pixel,
+     * edge pixels are -1 (opaque white) and all other pixels are 0xff000000
+     * (opaque black). The array is owned by the detector and is overwritten
+     * by the next call to the process method.
+     *
+     * @return the edge buffer, or null if the process method has not yet been
+     * called.
+     */
+
+    public int[] getEdgeData() {
+        return data;
+    }
+
+    /**
+     * Obtains the gradient orientation, in radians as returned by
+     * {@link Math#atan2(double, double)}, computed by the last call to the
+     * process method. Values are only meaningful for the pixels marked as
+     * edges in the edge buffer. The array is owned by the detector and is
+     * overwritten by the next call to the process method.
+     *
+     * @return the orientation buffer, or null if the process method has not
+     * yet been called.
+     */
+
+    public float[] getOrientation() {
+        return orientation;
+    }
+
+    /**
+     * Pixels around a region which influence the gradients inside of it: the
+     * truncated gaussian kernel, its derivative and the non-maximal
+     * suppression. Processing a region extended by the halo gives the same
+     * gradients in the region as processing the whole image, only the
+     * hysteresis can no longer follow an edge through pixels outside of it.
+     *
+     * @return halo width in pixels
+     */
+    public int getHalo() {
+        int kwidth;
+        for (kwidth = 0; kwidth < gaussianKernelWidth; kwidth++) {
+            if (gaussian(kwidth, gaussianKernelRadius) <= GAUSSIAN_CUT_OFF && kwidth >= 2) break;
+        }
+        return 2 * kwidth + 1;
+    }
+
     // methods
 
     public void process() {
@@ -229,6 +297,18 @@ public class CannyEdgeDetector {
         readLuminance();
         if (contrastNormalized) normalizeContrast();
         computeGradients(gaussianKernelRadius, gaussianKernelWidth);
+        applyThresholds();
+    }
+
+    /**
+     * Recomputes the edges of the last processed image with the current
+     * thresholds. The gradients are reused, which makes threshold sweeps
+     * much cheaper than calling {@link #process()} again.
+     */
+    public void applyThresholds() {
+        if (magnitude == null) {
+            throw new IllegalStateException("no image processed");
+        }
         int low = Math.round(lowThreshold * MAGNITUDE_SCALE);
         int high = Math.round(highThreshold * MAGNITUDE_SCALE);
         performHysteresis(low, high);
@@ -247,6 +327,7 @@ public class CannyEdgeDetector {
             yConv = new float[picsize];
             xGradient = new float[picsize];
             yGradient = new float[picsize];
+            orientation = new float[picsize];
         }
     }
 
@@ -400,9 +481,10 @@ public class CannyEdgeDetector {
                         && tmp > Math.abs(xGrad * nwMag + (yGrad - xGrad) * nMag) /*(4)*/
                 ) {
                     magnitude[index] = gradMag >= MAGNITUDE_LIMIT ? MAGNITUDE_MAX : (int) (MAGNITUDE_SCALE * gradMag);
-                    //NOTE: The orientation of the edge is not employed by this
-                    //implementation. It is a simple matter to compute it at
-                    //this point as: Math.atan2(yGrad, xGrad);
+                    //NOTE: The orientation is only computed for edge
+                    //candidates, it is used by the feature extraction stages
+                    //(see HoughLineTransform and ContourTracer)
+                    orientation[index] = (float) Math.atan2(yGrad, xGrad);
                 } else {
                     magnitude[index] = 0;
                 }
@@ -527,10 +609,9 @@ public class CannyEdgeDetector {
     }
 
     private void writeEdges(int pixels[]) {
-        //NOTE: There is currently no mechanism for obtaining the edge data
-        //in any other format other than an INT_ARGB type BufferedImage.
-        //This may be easily remedied by providing alternative accessors.
-        if (edgesImage == null) {
+        //NOTE: The edge data is also available in its primitive form
+        //through getEdgeData(), which avoids going through the image.
+        if (edgesImage == null || edgesImage.getWidth() != width || edgesImage.getHeight() != height) {
             edgesImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
         }
         edgesImage.getWritableTile(0, 0).setDataElements(0, 0, width, height, pixels);
@@ -0,0 +1,368 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.analysis;
+
+import com.robo4j.tools.camera.model.Contour;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Traces chains of 8-connected pixels in the primitive edge buffer of the
+ * {@link CannyEdgeDetector} and simplifies them into polygons
+ * (Ramer-Douglas-Peucker).
+ *
+ * The gradient orientation gives the tangent of the edge at the first pixel of
+ * a chain, the tracing then prefers the neighbour which keeps the current
+ * direction. Closed contours simplified to few vertices are typical marker
+ * candidates.
+ *
+ * Instances reuse their buffers between frames and are not thread safe.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class ContourTracer {
+
+    private static final int EDGE = -1;
+    /* neighbours in circular order, y axis points down */
+    private static final int[] DIR_X = {1, 1, 0, -1, -1, -1, 0, 1};
+    private static final int[] DIR_Y = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int NO_DIRECTION = -1;
+
+    private int minPixelLength = 20;
+    private float epsilon = 2f;
+    private int maxContours = 256;
+    private boolean keepPixels;
+
+    private byte[] visited;
+    private int[] chainX = new int[256];
+    private int[] chainY = new int[256];
+    private int[] backX = new int[256];
+    private int[] backY = new int[256];
+    private int[] stack = new int[64];
+    private boolean[] keep = new boolean[256];
+
+    public int getMinPixelLength() {
+        return minPixelLength;
+    }
+
+    /**
+     * @param minPixelLength chains with less pixels are ignored
+     */
+    public void setMinPixelLength(int minPixelLength) {
+        if (minPixelLength < 2) throw new IllegalArgumentException();
+        this.minPixelLength = minPixelLength;
+    }
+
+    public float getEpsilon() {
+        return epsilon;
+    }
+
+    /**
+     * @param epsilon maximal distance in pixels between a chain and its simplified polygon
+     */
+    public void setEpsilon(float epsilon) {
+        if (epsilon < 0) throw new IllegalArgumentException();
+        this.epsilon = epsilon;
+    }
+
+    public int getMaxContours() {
+        return maxContours;
+    }
+
+    /**
+     * @param maxContours the tracing stops after this number of contours has been found
+     */
+    public void setMaxContours(int maxContours) {
+        if (maxContours < 1) throw new IllegalArgumentException();
+        this.maxContours = maxContours;
+    }
+
+    public boolean isKeepPixels() {
+        return keepPixels;
+    }
+
+    /**
+     * @param keepPixels true if the contours should also carry the traced pixels,
+     *                   needed when the exact shape matters (e.g. lens calibration)
+     */
+    public void setKeepPixels(boolean keepPixels) {
+        this.keepPixels = keepPixels;
+    }
+
+    /**
+     * Trace contours in the whole edge buffer
+     *
+     * @see #process(int[], float[], int, int, Rectangle)
+     */
+    public List<Contour> process(int[] edges, float[] orientation, int width, int height) {
+        return process(edges, orientation, width, height, new Rectangle(0, 0, width, height));
+    }
+
+    /**
+     * Trace contours inside of the region of interest
+     *
+     * @param edges       edge buffer, edge pixels are -1 (see {@link CannyEdgeDetector#getEdgeData()})
+     * @param orientation gradient orientation per pixel or null (see {@link CannyEdgeDetector#getOrientation()})
+     * @param width       width of the buffers
+     * @param height      height of the buffers
+     * @param roi         region of interest
+     * @return simplified contours in the coordinates of the buffers
+     */
+    public List<Contour> process(int[] edges, float[] orientation, int width, int height, Rectangle roi) {
+        final Rectangle area = roi.intersection(new Rectangle(0, 0, width, height));
+        final List<Contour> result = new ArrayList<>();
+        if (area.isEmpty()) {
+            return result;
+        }
+        final int size = area.width * area.height;
+        if (visited == null || visited.length < size) {
+            visited = new byte[size];
+        } else {
+            Arrays.fill(visited, 0, size, (byte) 0);
+        }
+
+        for (int y = area.y; y < area.y + area.height; y++) {
+            for (int x = area.x; x < area.x + area.width; x++) {
+                int index = y * width + x;
+                int local = (y - area.y) * area.width + x - area.x;
+                if (edges[index] != EDGE || visited[local] != 0) {
+                    continue;
+                }
+                visited[local] = 1;
+
+                int forwardDirection = NO_DIRECTION;
+                if (orientation != null) {
+                    // the tangent is perpendicular to the gradient
+                    double tangent = orientation[index] + Math.PI / 2;
+                    forwardDirection = Math.floorMod((int) Math.round(tangent / (Math.PI / 4)), DIR_X.length);
+                }
+                int forwardLength = trace(edges, width, area, x, y, forwardDirection, true);
+                int backwardDirection = forwardDirection == NO_DIRECTION ? NO_DIRECTION : (forwardDirection + 4) % DIR_X.length;
+                int backwardLength = trace(edges, width, area, x, y, backwardDirection, false);
+
+                int length = assembleChain(x, y, forwardLength, backwardLength);
+                if (length < minPixelLength) {
+                    continue;
+                }
+                boolean closed = length > 3
+                        && Math.abs(chainX[0] - chainX[length - 1]) <= 1
+                        && Math.abs(chainY[0] - chainY[length - 1]) <= 1;
+                result.add(simplify(length, closed));
+                if (result.size() == maxContours) {
+                    return result;
+                }
+            }
+        }
+        return result;
+    }
+
+    // private utility methods
+
+    /**
+     * Follows unvisited edge pixels from the start, the found pixels are
+     * stored in the forward or backward chain.
+     *
+     * @return number of found pixels
+     */
+    private int trace(int[] edges, int width, Rectangle area, int startX, int startY, int direction, boolean forward) {
+        int count = 0;
+        int cx = startX;
+        int cy = startY;
+        int currentDirection = direction;
+        while (true) {
+            int bestDirection = NO_DIRECTION;
+            int bestDistance = Integer.MAX_VALUE;
+            for (int d = 0; d < DIR_X.length; d++) {
+                int nx = cx + DIR_X[d];
+                int ny = cy + DIR_Y[d];
+                if (nx < area.x || ny < area.y || nx >= area.x + area.width || ny >= area.y + area.height) {
+                    continue;
+                }
+                if (edges[ny * width + nx] != EDGE || visited[(ny - area.y) * area.width + nx - area.x] != 0) {
+                    continue;
+                }
+                int distance = currentDirection == NO_DIRECTION ? 0 : circularDistance(d, currentDirection);
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    bestDirection = d;
+                }
+            }
+            if (bestDirection == NO_DIRECTION) {
+                return count;
+            }
+            cx += DIR_X[bestDirection];
+            cy += DIR_Y[bestDirection];
+            visited[(cy - area.y) * area.width + cx - area.x] = 1;
+            if (forward) {
+                ensureChainCapacity(count + 1);
+                chainX[count] = cx;
+                chainY[count] = cy;
+            } else {
+                ensureBackCapacity(count + 1);
+                backX[count] = cx;
+                backY[count] = cy;
+            }
+            count++;
+            currentDirection = bestDirection;
+        }
+    }
+
+    /**
+     * Joins the reversed backward chain, the start pixel and the forward
+     * chain into the chain buffer.
+     */
+    private int assembleChain(int startX, int startY, int forwardLength, int backwardLength) {
+        int length = backwardLength + 1 + forwardLength;
+        ensureChainCapacity(length);
+        System.arraycopy(chainX, 0, chainX, backwardLength + 1, forwardLength);
+        System.arraycopy(chainY, 0, chainY, backwardLength + 1, forwardLength);
+        for (int i = 0; i < backwardLength; i++) {
+            chainX[i] = backX[backwardLength - 1 - i];
+            chainY[i] = backY[backwardLength - 1 - i];
+        }
+        chainX[backwardLength] = startX;
+        chainY[backwardLength] = startY;
+        return length;
+    }
+
+    private Contour simplify(int length, boolean closed) {
+        if (keep.length < length) {
+            keep = new boolean[Math.max(length, keep.length * 2)];
+        }
+        Arrays.fill(keep, 0, length, false);
+        keep[0] = true;
+        keep[length - 1] = true;
+        if (closed) {
+            // split the loop at the pixel farthest from the start
+            int farthest = 0;
+            long maxDistance = -1;
+            for (int i = 1; i < length; i++) {
+                long dx = chainX[i] - chainX[0];
+                long dy = chainY[i] - chainY[0];
+                long distance = dx * dx + dy * dy;
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    farthest = i;
+                }
+            }
+            keep[farthest] = true;
+            douglasPeucker(0, farthest);
+            douglasPeucker(farthest, length - 1);
+        } else {
+            douglasPeucker(0, length - 1);
+        }
+
+        int vertices = 0;
+        for (int i = 0; i < length; i++) {
+            if (keep[i]) vertices++;
+        }
+        if (closed && vertices > 2) {
+            // the last pixel is adjacent to the first one
+            vertices--;
+            keep[length - 1] = false;
+        }
+        int[] x = new int[vertices];
+        int[] y = new int[vertices];
+        int[] vertexPixel = keepPixels ? new int[vertices] : null;
+        for (int i = 0, v = 0; i < length; i++) {
+            if (keep[i]) {
+                x[v] = chainX[i];
+                y[v] = chainY[i];
+                if (keepPixels) {
+                    vertexPixel[v] = i;
+                }
+                v++;
+            }
+        }
+        if (keepPixels) {
+            return new Contour(x, y, closed, length, Arrays.copyOf(chainX, length), Arrays.copyOf(chainY, length), vertexPixel);
+        }
+        return new Contour(x, y, closed, length);
+    }
+
+    private void douglasPeucker(int first, int last) {
+        int top = 0;
+        stack[top++] = first;
+        stack[top++] = last;
+        final float epsilonSquared = epsilon * epsilon;
+        while (top > 0) {
+            int end = stack[--top];
+            int start = stack[--top];
+            if (end - start < 2) {
+                continue;
+            }
+            float ax = chainX[start];
+            float ay = chainY[start];
+            float dx = chainX[end] - ax;
+            float dy = chainY[end] - ay;
+            float lengthSquared = dx * dx + dy * dy;
+            int split = -1;
+            float maxDistance = epsilonSquared;
+            for (int i = start + 1; i < end; i++) {
+                float px = chainX[i] - ax;
+                float py = chainY[i] - ay;
+                float distance;
+                if (lengthSquared == 0) {
+                    distance = px * px + py * py;
+                } else {
+                    float cross = px * dy - py * dx;
+                    distance = cross * cross / lengthSquared;
+                }
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    split = i;
+                }
+            }
+            if (split >= 0) {
+                keep[split] = true;
+                if (top + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = start;
+                stack[top++] = split;
+                stack[top++] = split;
+                stack[top++] = end;
+            }
+        }
+    }
+
+    private static int circularDistance(int d1, int d2) {
+        int distance = Math.abs(d1 - d2);
+        return distance > 4 ? 8 - distance : distance;
+    }
+
+    private void ensureChainCapacity(int capacity) {
+        if (chainX.length < capacity) {
+            int newLength = Math.max(capacity, chainX.length * 2);
+            chainX = Arrays.copyOf(chainX, newLength);
+            chainY = Arrays.copyOf(chainY, newLength);
+        }
+    }
+
+    private void ensureBackCapacity(int capacity) {
+        if (backX.length < capacity) {
+            int newLength = Math.max(capacity, backX.length * 2);
+            backX = Arrays.copyOf(backX, newLength);
+            backY = Arrays.copyOf(backY, newLength);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.analysis;
+
+import java.util.Arrays;
+
+/**
+ * Sparse optical flow: FAST corners are followed from frame to frame by the
+ * pyramidal Lucas-Kanade tracker. Lost corners are dropped and new corners
+ * are detected only when fewer than half of the wanted points are left,
+ * away from the points still tracked.
+ *
+ * The flow of the last frame is available through the index based
+ * accessors until the next call of {@link #process(byte[], int, int)} or
+ * {@link #process(FramePyramid, int)}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class CornerTracker {
+
+    private final FastCornerDetector detector = new FastCornerDetector();
+    private final LucasKanadeTracker tracker;
+    private final int maxPoints;
+    private int minDistance = 10;
+
+    private final float[] pointX;
+    private final float[] pointY;
+    private final float[] nextX;
+    private final float[] nextY;
+    private final boolean[] status;
+    private int pointCount;
+
+    private final float[] flowX0;
+    private final float[] flowY0;
+    private final float[] flowX1;
+    private final float[] flowY1;
+    private int flowCount;
+
+    private boolean[] occupied = new boolean[0];
+
+    public CornerTracker() {
+        this(300, 3, 7);
+    }
+
+    /**
+     * @param maxPoints    maximal number of tracked points
+     * @param levels       pyramid levels including the full resolution
+     * @param windowRadius half size of the tracking window
+     */
+    public CornerTracker(int maxPoints, int levels, int windowRadius) {
+        this.maxPoints = maxPoints;
+        this.tracker = new LucasKanadeTracker(levels, windowRadius);
+        this.pointX = new float[maxPoints];
+        this.pointY = new float[maxPoints];
+        this.nextX = new float[maxPoints];
+        this.nextY = new float[maxPoints];
+        this.status = new boolean[maxPoints];
+        this.flowX0 = new float[maxPoints];
+        this.flowY0 = new float[maxPoints];
+        this.flowX1 = new float[maxPoints];
+        this.flowY1 = new float[maxPoints];
+    }
+
+    public FastCornerDetector getDetector() {
+        return detector;
+    }
+
+    public LucasKanadeTracker getTracker() {
+        return tracker;
+    }
+
+    public int getMinDistance() {
+        return minDistance;
+    }
+
+    /**
+     * @param minDistance new corners keep this distance from the tracked points
+     */
+    public void setMinDistance(int minDistance) {
+        if (minDistance < 1) throw new IllegalArgumentException();
+        this.minDistance = minDistance;
+    }
+
+    /**
+     * @param luminance 8 bit luminance of the frame
+     * @return number of flow vectors from the previous frame
+     */
+    public int process(byte[] luminance, int width, int height) {
+        return process(luminance, width, height, tracker.nextFrame(luminance, width, height));
+    }
+
+    /**
+     * tracks on the luminance levels of the frame without copying them
+     *
+     * @param frame frame pyramid
+     * @param level frame level to process
+     * @return number of flow vectors from the previous frame
+     */
+    public int process(FramePyramid frame, int level) {
+        final boolean tracking = tracker.nextFrame(frame, level);
+        return process(frame.luminance(level), frame.getWidth(level), frame.getHeight(level), tracking);
+    }
+
+    /**
+     * forgets the tracked points and the previous frame
+     */
+    public void reset() {
+        tracker.reset();
+        pointCount = 0;
+        flowCount = 0;
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    public int getFlowCount() {
+        return flowCount;
+    }
+
+    public float getFromX(int vector) {
+        return flowX0[vector];
+    }
+
+    public float getFromY(int vector) {
+        return flowY0[vector];
+    }
+
+    public float getToX(int vector) {
+        return flowX1[vector];
+    }
+
+    public float getToY(int vector) {
+        return flowY1[vector];
+    }
+
+    private int process(byte[] luminance, int width, int height, boolean tracking) {
+        flowCount = 0;
+        if (tracking) {
+            tracker.track(pointX, pointY, pointCount, nextX, nextY, status);
+            int kept = 0;
+            for (int i = 0; i < pointCount; i++) {
+                if (status[i]) {
+                    flowX0[flowCount] = pointX[i];
+                    flowY0[flowCount] = pointY[i];
+                    flowX1[flowCount] = nextX[i];
+                    flowY1[flowCount] = nextY[i];
+                    flowCount++;
+                    pointX[kept] = nextX[i];
+                    pointY[kept] = nextY[i];
+                    kept++;
+                }
+            }
+            pointCount = kept;
+        } else {
+            pointCount = 0;
+        }
+        if (pointCount < maxPoints / 2) {
+            addCorners(luminance, width, height);
+        }
+        return flowCount;
+    }
+
+    private void addCorners(byte[] luminance, int width, int height) {
+        final int cellsX = (width + minDistance - 1) / minDistance;
+        final int cellsY = (height + minDistance - 1) / minDistance;
+        if (occupied.length < cellsX * cellsY) {
+            occupied = new boolean[cellsX * cellsY];
+        } else {
+            Arrays.fill(occupied, 0, cellsX * cellsY, false);
+        }
+        for (int i = 0; i < pointCount; i++) {
+            occupy((int) pointX[i] / minDistance, (int) pointY[i] / minDistance, cellsX, cellsY);
+        }
+        detector.setMaxCorners(maxPoints);
+        final int corners = detector.process(luminance, width, height);
+        for (int c = 0; c < corners && pointCount < maxPoints; c++) {
+            int cx = detector.getX(c) / minDistance;
+            int cy = detector.getY(c) / minDistance;
+            if (!occupied[cy * cellsX + cx]) {
+                pointX[pointCount] = detector.getX(c);
+                pointY[pointCount] = detector.getY(c);
+                pointCount++;
+                occupy(cx, cy, cellsX, cellsY);
+            }
+        }
+    }
+
+    /* marks the cell and its neighbours */
+    private void occupy(int cx, int cy, int cellsX, int cellsY) {
+        for (int y = Math.max(0, cy - 1); y <= Math.min(cellsY - 1, cy + 1); y++) {
+            for (int x = Math.max(0, cx - 1); x <= Math.min(cellsX - 1, cx + 1); x++) {
+                occupied[y * cellsX + x] = true;
+            }
+        }
+    }
+}
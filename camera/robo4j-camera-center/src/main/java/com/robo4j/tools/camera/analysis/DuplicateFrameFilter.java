@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.analysis;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.function.IntBinaryOperator;
+import java.util.zip.CRC32;
+
+/**
+ * Recognizes frames which did not change. A checksum of the encoded bytes
+ * finds exact repeats. Near repeats are found by comparing a 64 bit
+ * difference hash of the decoded frame with the one of the last accepted
+ * frame, frames within the Hamming distance threshold are near repeats.
+ * Comparing with the last accepted frame keeps a slow drift from being
+ * suppressed forever.
+ *
+ * Near repeats are off by default: a small real motion can stay within a
+ * few hash bits. Users decoding the frames anyway pass the decoded frame to
+ * {@link #isNearRepeat(IntBinaryOperator, int, int, int)}, {@link #accept(String, byte[])}
+ * has to decode a preview of the frame itself.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class DuplicateFrameFilter {
+    public static final int DISABLED = -1;
+    private static final int HASH_WIDTH = 9;
+    private static final int HASH_HEIGHT = 8;
+    /* the perceptual hash is computed from a decode at about this width */
+    private static final int PREVIEW_WIDTH = 64;
+    /* samples per cell and axis of the difference hash */
+    private static final int CELL_SAMPLES = 4;
+
+    private final CRC32 crc = new CRC32();
+    private int threshold = DISABLED;
+    private long lastChecksum = -1;
+    private long lastHash;
+    private boolean hasHash;
+    private ImageReader reader;
+    private String readerFormat;
+
+    private long received;
+    private long exactDuplicates;
+    private long nearDuplicates;
+    private long skippedBytes;
+    private long fingerprintNanos;
+
+    /**
+     * @return maximal number of differing hash bits of a near repeat, {@link #DISABLED} for exact repeats only
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Exact and near repeat check in one, a preview of the frame is decoded
+     * for the near repeat check.
+     *
+     * @param format  format name of the encoded frame, e.g. jpg
+     * @param encoded encoded frame
+     * @return true if the frame differs from the last accepted frame
+     */
+    public synchronized boolean accept(String format, byte[] encoded) {
+        if (isRepeat(encoded)) {
+            return false;
+        }
+        if (threshold == DISABLED) {
+            return true;
+        }
+        final long start = System.nanoTime();
+        final BufferedImage preview = decodePreview(format, encoded);
+        fingerprintNanos += System.nanoTime() - start;
+        if (preview == null) {
+            hasHash = false;
+            return true;
+        }
+        return !isNearRepeat(preview::getRGB, preview.getWidth(), preview.getHeight(), encoded.length);
+    }
+
+    /**
+     * @param encoded encoded frame
+     * @return true if the encoded bytes are the ones of the last frame
+     */
+    public synchronized boolean isRepeat(byte[] encoded) {
+        final long start = System.nanoTime();
+        received++;
+        crc.reset();
+        crc.update(encoded, 0, encoded.length);
+        final long checksum = crc.getValue() ^ ((long) encoded.length << 32);
+        fingerprintNanos += System.nanoTime() - start;
+        if (checksum == lastChecksum) {
+            exactDuplicates++;
+            skippedBytes += encoded.length;
+            return true;
+        }
+        lastChecksum = checksum;
+        return false;
+    }
+
+    /**
+     * forgets the last accepted frame, the next frame is always accepted
+     */
+    public synchronized void reset() {
+        lastChecksum = -1;
+        hasHash = false;
+    }
+
+    public synchronized long getReceived() {
+        return received;
+    }
+
+    public synchronized long getExactDuplicates() {
+        return exactDuplicates;
+    }
+
+    public synchronized long getNearDuplicates() {
+        return nearDuplicates;
+    }
+
+    /**
+     * @return encoded bytes of the suppressed frames which were not forwarded
+     */
+    public synchronized long getSkippedBytes() {
+        return skippedBytes;
+    }
+
+    /**
+     * @return time spent computing the fingerprints
+     */
+    public synchronized long getFingerprintNanos() {
+        return fingerprintNanos;
+    }
+
+    /**
+     * @see #differenceHash(IntBinaryOperator, int, int)
+     */
+    public static long differenceHash(BufferedImage image) {
+        return differenceHash(image::getRGB, image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * 64 bit difference hash: the image is averaged to 9x8 luminance cells
+     * and every bit tells whether a cell is brighter than its right neighbour.
+     * Each cell is averaged from at most 4x4 samples, so the cost does not
+     * depend on the frame size.
+     *
+     * @param argb ARGB pixel at x, y
+     */
+    public static long differenceHash(IntBinaryOperator argb, int width, int height) {
+        final int[] cells = new int[HASH_WIDTH * HASH_HEIGHT];
+        for (int cy = 0; cy < HASH_HEIGHT; cy++) {
+            int y0 = cy * height / HASH_HEIGHT;
+            int y1 = Math.max(y0 + 1, (cy + 1) * height / HASH_HEIGHT);
+            for (int cx = 0; cx < HASH_WIDTH; cx++) {
+                int x0 = cx * width / HASH_WIDTH;
+                int x1 = Math.max(x0 + 1, (cx + 1) * width / HASH_WIDTH);
+                int samplesX = Math.min(CELL_SAMPLES, x1 - x0);
+                int samplesY = Math.min(CELL_SAMPLES, y1 - y0);
+                int sum = 0;
+                for (int sy = 0; sy < samplesY; sy++) {
+                    int y = y0 + (2 * sy + 1) * (y1 - y0) / (2 * samplesY);
+                    for (int sx = 0; sx < samplesX; sx++) {
+                        int x = x0 + (2 * sx + 1) * (x1 - x0) / (2 * samplesX);
+                        sum += LuminanceConverter.luminance(argb.applyAsInt(x, y));
+                    }
+                }
+                cells[cy * HASH_WIDTH + cx] = sum / (samplesX * samplesY);
+            }
+        }
+        long hash = 0;
+        for (int cy = 0; cy < HASH_HEIGHT; cy++) {
+            for (int cx = 0; cx < HASH_WIDTH - 1; cx++) {
+                hash <<= 1;
+                if (cells[cy * HASH_WIDTH + cx] > cells[cy * HASH_WIDTH + cx + 1]) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Near repeat check of a frame which is not an exact repeat, see {@link #isRepeat(byte[])}
+     *
+     * @param argb          ARGB pixel of the decoded frame at x, y
+     * @param width         frame width
+     * @param height        frame height
+     * @param encodedLength size of the encoded frame
+     * @return true if the frame is within the threshold of the last accepted frame, always false when disabled
+     */
+    public synchronized boolean isNearRepeat(IntBinaryOperator argb, int width, int height, int encodedLength) {
+        if (threshold == DISABLED) {
+            return false;
+        }
+        final long start = System.nanoTime();
+        final long hash = differenceHash(argb, width, height);
+        fingerprintNanos += System.nanoTime() - start;
+        if (hasHash && Long.bitCount(hash ^ lastHash) <= threshold) {
+            nearDuplicates++;
+            skippedBytes += encodedLength;
+            return true;
+        }
+        lastHash = hash;
+        hasHash = true;
+        return false;
+    }
+
+    // private utility methods
+
+    private BufferedImage decodePreview(String format, byte[] encoded) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(encoded))) {
+            ImageReader imageReader = getReader(format, input);
+            if (imageReader == null) {
+                return null;
+            }
+            imageReader.setInput(input, true, true);
+            int subsampling = Math.max(1, imageReader.getWidth(0) / PREVIEW_WIDTH);
+            ImageReadParam param = imageReader.getDefaultReadParam();
+            param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            return imageReader.read(0, param);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private ImageReader getReader(String format, ImageInputStream input) {
+        if (reader != null && format != null && format.equals(readerFormat)) {
+            return reader;
+        }
+        Iterator<ImageReader> readers = format == null ? ImageIO.getImageReaders(input) : ImageIO.getImageReadersByFormatName(format);
+        if (!readers.hasNext()) {
+            return null;
+        }
+        if (reader != null) {
+            reader.dispose();
+        }
+        reader = readers.next();
+        readerFormat = format;
+        return reader;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "DuplicateFrameFilter{" +
+                "received=" + received +
+                ", exactDuplicates=" + exactDuplicates +
+                ", nearDuplicates=" + nearDuplicates +
+                ", skippedBytes=" + skippedBytes +
+                ", fingerprintMillis=" + fingerprintNanos / 1_000_000 +
+                '}';
+    }
+}
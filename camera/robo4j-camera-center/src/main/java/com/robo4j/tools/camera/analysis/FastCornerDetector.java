@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.analysis;
+
+import java.util.Arrays;
+
+/**
+ * FAST-9 corner detector on an 8 bit luminance buffer. A pixel is a corner
+ * when 9 contiguous pixels of the 16 pixel circle of radius 3 are all
+ * brighter or all darker than the pixel by more than the threshold. The
+ * four compass pixels reject most candidates before the full circle is read.
+ * Corners are scored by the summed contrast of the circle, suppressed to
+ * 3x3 local maxima and thinned to the strongest corner per grid cell, which
+ * spreads them over the frame.
+ *
+ * All buffers are reused, the results are available through the index
+ * based accessors until the next call of {@link #process(byte[], int, int)}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class FastCornerDetector {
+
+    private static final int RADIUS = 3;
+    private static final int ARC = 9;
+    private static final int[] CIRCLE_X = {0, 1, 2, 3, 3, 3, 2, 1, 0, -1, -2, -3, -3, -3, -2, -1};
+    private static final int[] CIRCLE_Y = {-3, -3, -2, -1, 0, 1, 2, 3, 3, 3, 2, 1, 0, -1, -2, -3};
+
+    private int threshold = 20;
+    private int cellSize = 16;
+    private int maxCorners = 500;
+
+    private final int[] offsets = new int[CIRCLE_X.length];
+    private int offsetsWidth = -1;
+    private int[] scores = new int[0];
+    private int[] cellBest = new int[0];
+    private int[] cornerX = new int[0];
+    private int[] cornerY = new int[0];
+    private int[] cornerScore = new int[0];
+    private int count;
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * @param threshold minimal luminance difference of the circle pixels
+     */
+    public void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * @param cellSize at most one corner is kept per cell of this size, 1 keeps all local maxima
+     */
+    public void setCellSize(int cellSize) {
+        if (cellSize < 1) throw new IllegalArgumentException();
+        this.cellSize = cellSize;
+    }
+
+    public int getMaxCorners() {
+        return maxCorners;
+    }
+
+    public void setMaxCorners(int maxCorners) {
+        this.maxCorners = maxCorners;
+    }
+
+    /**
+     * @param luminance 8 bit luminance, row by row
+     * @param width     buffer width
+     * @param height    buffer height
+     * @return number of corners
+     */
+    public int process(byte[] luminance, int width, int height) {
+        final int size = width * height;
+        if (scores.length != size) {
+            scores = new int[size];
+        } else {
+            Arrays.fill(scores, 0);
+        }
+        if (offsetsWidth != width) {
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = CIRCLE_Y[i] * width + CIRCLE_X[i];
+            }
+            offsetsWidth = width;
+        }
+
+        for (int y = RADIUS; y < height - RADIUS; y++) {
+            int index = y * width + RADIUS;
+            for (int x = RADIUS; x < width - RADIUS; x++, index++) {
+                scores[index] = score(luminance, index);
+            }
+        }
+
+        final int cellsX = (width + cellSize - 1) / cellSize;
+        final int cellsY = (height + cellSize - 1) / cellSize;
+        if (cellBest.length < cellsX * cellsY) {
+            cellBest = new int[cellsX * cellsY];
+        }
+        Arrays.fill(cellBest, 0, cellsX * cellsY, -1);
+        for (int y = RADIUS + 1; y < height - RADIUS - 1; y++) {
+            int index = y * width + RADIUS + 1;
+            for (int x = RADIUS + 1; x < width - RADIUS - 1; x++, index++) {
+                int s = scores[index];
+                if (s == 0 || !isLocalMaximum(index, width, s)) {
+                    continue;
+                }
+                int cell = (y / cellSize) * cellsX + x / cellSize;
+                if (cellBest[cell] < 0 || scores[cellBest[cell]] < s) {
+                    cellBest[cell] = index;
+                }
+            }
+        }
+
+        count = 0;
+        if (cornerX.length < cellsX * cellsY) {
+            cornerX = new int[cellsX * cellsY];
+            cornerY = new int[cellsX * cellsY];
+            cornerScore = new int[cellsX * cellsY];
+        }
+        for (int cell = 0; cell < cellsX * cellsY; cell++) {
+            int index = cellBest[cell];
+            if (index >= 0) {
+                cornerX[count] = index % width;
+                cornerY[count] = index / width;
+                cornerScore[count] = scores[index];
+                count++;
+            }
+        }
+        if (count > maxCorners) {
+            keepStrongest();
+        }
+        return count;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getX(int corner) {
+        return cornerX[corner];
+    }
+
+    public int getY(int corner) {
+        return cornerY[corner];
+    }
+
+    public int getScore(int corner) {
+        return cornerScore[corner];
+    }
+
+    /**
+     * @return summed contrast of the circle pixels beyond the threshold, 0 if not a corner
+     */
+    private int score(byte[] luminance, int index) {
+        final int center = luminance[index] & 0xff;
+        final int high = center + threshold;
+        final int low = center - threshold;
+        int brighter = 0;
+        int darker = 0;
+        for (int i = 0; i < 16; i += 4) {
+            int p = luminance[index + offsets[i]] & 0xff;
+            if (p > high) {
+                brighter++;
+            } else if (p < low) {
+                darker++;
+            }
+        }
+        if (brighter < 2 && darker < 2) {
+            return 0;
+        }
+
+        int brighterMask = 0;
+        int darkerMask = 0;
+        int brighterSum = 0;
+        int darkerSum = 0;
+        for (int i = 0; i < 16; i++) {
+            int p = luminance[index + offsets[i]] & 0xff;
+            if (p > high) {
+                brighterMask |= 1 << i;
+                brighterSum += p - high;
+            } else if (p < low) {
+                darkerMask |= 1 << i;
+                darkerSum += low - p;
+            }
+        }
+        if (hasArc(brighterMask)) {
+            return brighterSum;
+        }
+        if (hasArc(darkerMask)) {
+            return darkerSum;
+        }
+        return 0;
+    }
+
+    /**
+     * @return true if the 16 bit circular mask contains {@link #ARC} contiguous bits
+     */
+    private static boolean hasArc(int mask) {
+        int m = mask | (mask << 16);
+        for (int i = 1; i < ARC && m != 0; i++) {
+            m &= m >>> 1;
+        }
+        return m != 0;
+    }
+
+    private boolean isLocalMaximum(int index, int width, int s) {
+        return s >= scores[index - 1] && s > scores[index + 1]
+                && s >= scores[index - width - 1] && s >= scores[index - width] && s >= scores[index - width + 1]
+                && s > scores[index + width - 1] && s > scores[index + width] && s > scores[index + width + 1];
+    }
+
+    /* partial selection of the strongest corners, no allocation */
+    private void keepStrongest() {
+        for (int i = 0; i < maxCorners; i++) {
+            int best = i;
+            for (int j = i + 1; j < count; j++) {
+                if (cornerScore[j] > cornerScore[best]) {
+                    best = j;
+                }
+            }
+            swap(i, best);
+        }
+        count = maxCorners;
+    }
+
+    private void swap(int i, int j) {
+        int t = cornerX[i];
+        cornerX[i] = cornerX[j];
+        cornerX[j] = t;
+        t = cornerY[i];
+        cornerY[i] = cornerY[j];
+        cornerY[j] = t;
+        t = cornerScore[i];
+        cornerScore[i] = cornerScore[j];
+        cornerScore[j] = t;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.analysis;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Colour and luminance levels of one frame: level 0 is the full resolution
+ * and every further level halves the previous one (1/2, 1/4, 1/8). Levels
+ * are computed on the first request and kept until the frame is released,
+ * so processors asking for the same level share one computation.
+ *
+ * The frame is reference counted, every user calls {@link #retain()} before
+ * and {@link #release()} after using it. The level buffers go back to the
+ * pool when the last user released the frame; they must not be used after
+ * that.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class FramePyramid {
+    public static final int MAX_LEVELS = 4;
+
+    private final PyramidBufferPool pool;
+    private final long timestamp;
+    private final int[][] colour;
+    private final byte[][] luminance;
+    private final int[] widths;
+    private final int[] heights;
+    private int references = 1;
+
+    /**
+     * the creator holds the first reference
+     *
+     * @param frame     decoded frame, copied into level 0
+     * @param timestamp frame time in milliseconds
+     * @param pool      buffer pool
+     */
+    public FramePyramid(BufferedImage frame, long timestamp, PyramidBufferPool pool) {
+        this.pool = pool;
+        this.timestamp = timestamp;
+        this.widths = new int[MAX_LEVELS];
+        this.heights = new int[MAX_LEVELS];
+        int levels = 0;
+        for (int w = frame.getWidth(), h = frame.getHeight(); levels < MAX_LEVELS && w > 0 && h > 0; w /= 2, h /= 2) {
+            widths[levels] = w;
+            heights[levels] = h;
+            levels++;
+        }
+        this.colour = new int[levels][];
+        this.luminance = new byte[levels][];
+        colour[0] = pool.takeColour(widths[0] * heights[0]);
+        frame.getRGB(0, 0, widths[0], heights[0], colour[0], 0, widths[0]);
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getLevels() {
+        return colour.length;
+    }
+
+    public int getWidth(int level) {
+        return widths[level];
+    }
+
+    public int getHeight(int level) {
+        return heights[level];
+    }
+
+    /**
+     * @param level 0 for the full resolution, n for 1/2^n
+     * @return packed RGB pixels of the level, shared and not to be modified
+     */
+    public synchronized int[] level(int level) {
+        checkAlive();
+        if (colour[level] == null) {
+            int[] source = level(level - 1);
+            int[] target = pool.takeColour(widths[level] * heights[level]);
+            downsample(source, widths[level - 1], target, widths[level], heights[level]);
+            colour[level] = target;
+        }
+        return colour[level];
+    }
+
+    /**
+     * @param level 0 for the full resolution, n for 1/2^n
+     * @return 8 bit luminance of the level, shared and not to be modified
+     */
+    public synchronized byte[] luminance(int level) {
+        checkAlive();
+        if (luminance[level] == null) {
+            byte[] target = pool.takeLuminance(widths[level] * heights[level]);
+            if (level == 0) {
+                int[] rgb = colour[0];
+                for (int i = 0; i < target.length; i++) {
+                    target[i] = (byte) LuminanceConverter.luminance(rgb[i]);
+                }
+            } else {
+                ImagePyramid.downsample(luminance(level - 1), widths[level - 1], target, widths[level], heights[level]);
+            }
+            luminance[level] = target;
+        }
+        return luminance[level];
+    }
+
+    /**
+     * @return smallest level which is still at least as wide as the width, 0
+     * if the frame is narrower
+     */
+    public int levelForWidth(int width) {
+        int level = 0;
+        while (level + 1 < getLevels() && widths[level + 1] >= width) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * @return new image with a copy of the colour level, e.g. for drawing or thumbnails
+     */
+    public BufferedImage toImage(int level) {
+        int[] pixels = level(level);
+        BufferedImage image = new BufferedImage(widths[level], heights[level], BufferedImage.TYPE_INT_RGB);
+        System.arraycopy(pixels, 0, ((DataBufferInt) image.getRaster().getDataBuffer()).getData(), 0, pixels.length);
+        return image;
+    }
+
+    public synchronized FramePyramid retain() {
+        checkAlive();
+        references++;
+        return this;
+    }
+
+    /**
+     * returns the buffers to the pool when the last reference is released
+     */
+    public synchronized void release() {
+        checkAlive();
+        if (--references == 0) {
+            for (int i = 0; i < colour.length; i++) {
+                if (colour[i] != null) {
+                    pool.give(colour[i]);
+                    colour[i] = null;
+                }
+                if (luminance[i] != null) {
+                    pool.give(luminance[i]);
+                    luminance[i] = null;
+                }
+            }
+        }
+    }
+
+    private void checkAlive() {
+        if (references <= 0) {
+            throw new IllegalStateException("frame already released");
+        }
+    }
+
+    /* averages 2x2 blocks per channel */
+    private static void downsample(int[] source, int sourceWidth, int[] target, int width, int height) {
+        for (int y = 0; y < height; y++) {
+            int row0 = 2 * y * sourceWidth;
+            int row1 = row0 + sourceWidth;
+            int out = y * width;
+            for (int x = 0; x < width; x++) {
+                int a = source[row0 + 2 * x];
+                int b = source[row0 + 2 * x + 1];
+                int c = source[row1 + 2 * x];
+                int d = source[row1 + 2 * x + 1];
+                int red = (((a >> 16) & 0xff) + ((b >> 16) & 0xff) + ((c >> 16) & 0xff) + ((d >> 16) & 0xff) + 2) >> 2;
+                int green = (((a >> 8) & 0xff) + ((b >> 8) & 0xff) + ((c >> 8) & 0xff) + ((d >> 8) & 0xff) + 2) >> 2;
+                int blue = ((a & 0xff) + (b & 0xff) + (c & 0xff) + (d & 0xff) + 2) >> 2;
+                target[out + x] = 0xff000000 | (red << 16) | (green << 8) | blue;
+            }
+        }
+    }
+}
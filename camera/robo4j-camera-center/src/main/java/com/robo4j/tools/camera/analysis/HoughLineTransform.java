@@ -0,0 +1,375 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.analysis;
+
+import com.robo4j.tools.camera.model.LineSegment;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Progressive probabilistic Hough line transform working on the primitive edge
+ * buffer of the {@link CannyEdgeDetector}.
+ *
+ * Edge pixels are visited in random order and vote into an accumulator sized
+ * to the region of interest. As soon as a bin reaches the threshold the
+ * corresponding segment is walked along the edge map, its pixels are removed
+ * and their votes withdrawn. When the gradient orientation is available each
+ * pixel only votes for the angles close to its gradient direction, which keeps
+ * the accumulator clean and reduces the work per pixel.
+ *
+ * Instances reuse their buffers between frames and are not thread safe.
+ *
+ * algorithm: J. Matas, C. Galambos, J. Kittler, Robust Detection of Lines
+ * Using the Progressive Probabilistic Hough Transform
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class HoughLineTransform {
+
+    public static final int DEFAULT_THETA_STEPS = 180;
+    public static final float DEFAULT_RHO_RESOLUTION = 1f;
+
+    private static final int EDGE = -1;
+    private static final int SHIFT = 16;
+    private static final byte MASK_EMPTY = 0;
+    private static final byte MASK_EDGE = 1;
+    private static final byte MASK_VOTED = 2;
+
+    private final int thetaSteps;
+    private final float thetaResolution;
+    private final float rhoResolution;
+    private final float[] sinTable;
+    private final float[] cosTable;
+    private final float[] rhoSinTable;
+    private final float[] rhoCosTable;
+    private final Random random = new Random();
+
+    private int threshold = 40;
+    private int minLineLength = 30;
+    private int maxLineGap = 5;
+    private int maxLines = 64;
+    private float orientationWindow = (float) Math.toRadians(12);
+
+    private int rhoSteps;
+    private int[] accumulator;
+    private byte[] mask;
+    private int[] points;
+    private final int[] endX = new int[2];
+    private final int[] endY = new int[2];
+
+    public HoughLineTransform() {
+        this(DEFAULT_THETA_STEPS, DEFAULT_RHO_RESOLUTION);
+    }
+
+    public HoughLineTransform(int thetaSteps, float rhoResolution) {
+        if (thetaSteps < 2 || rhoResolution <= 0) throw new IllegalArgumentException();
+        this.thetaSteps = thetaSteps;
+        this.thetaResolution = (float) (Math.PI / thetaSteps);
+        this.rhoResolution = rhoResolution;
+        this.sinTable = new float[thetaSteps];
+        this.cosTable = new float[thetaSteps];
+        this.rhoSinTable = new float[thetaSteps];
+        this.rhoCosTable = new float[thetaSteps];
+        for (int n = 0; n < thetaSteps; n++) {
+            double theta = n * Math.PI / thetaSteps;
+            sinTable[n] = (float) Math.sin(theta);
+            cosTable[n] = (float) Math.cos(theta);
+            rhoSinTable[n] = sinTable[n] / rhoResolution;
+            rhoCosTable[n] = cosTable[n] / rhoResolution;
+        }
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * @param threshold minimal number of votes a line needs to be considered
+     */
+    public void setThreshold(int threshold) {
+        if (threshold < 1) throw new IllegalArgumentException();
+        this.threshold = threshold;
+    }
+
+    public int getMinLineLength() {
+        return minLineLength;
+    }
+
+    /**
+     * @param minLineLength segments shorter than this (in pixels along x or y) are dropped
+     */
+    public void setMinLineLength(int minLineLength) {
+        if (minLineLength < 0) throw new IllegalArgumentException();
+        this.minLineLength = minLineLength;
+    }
+
+    public int getMaxLineGap() {
+        return maxLineGap;
+    }
+
+    /**
+     * @param maxLineGap maximal gap in pixels between two edge pixels of the same segment
+     */
+    public void setMaxLineGap(int maxLineGap) {
+        if (maxLineGap < 0) throw new IllegalArgumentException();
+        this.maxLineGap = maxLineGap;
+    }
+
+    public int getMaxLines() {
+        return maxLines;
+    }
+
+    /**
+     * @param maxLines the processing stops after this number of segments has been found
+     */
+    public void setMaxLines(int maxLines) {
+        if (maxLines < 1) throw new IllegalArgumentException();
+        this.maxLines = maxLines;
+    }
+
+    public float getOrientationWindow() {
+        return orientationWindow;
+    }
+
+    /**
+     * @param orientationWindow half width in radians of the angle range each pixel votes for
+     *                          around its gradient direction, 0 votes for all angles
+     */
+    public void setOrientationWindow(float orientationWindow) {
+        if (orientationWindow < 0) throw new IllegalArgumentException();
+        this.orientationWindow = orientationWindow;
+    }
+
+    /**
+     * Detect line segments in the whole edge buffer
+     *
+     * @see #process(int[], float[], int, int, Rectangle)
+     */
+    public List<LineSegment> process(int[] edges, float[] orientation, int width, int height) {
+        return process(edges, orientation, width, height, new Rectangle(0, 0, width, height));
+    }
+
+    /**
+     * Detect line segments inside of the region of interest
+     *
+     * @param edges       edge buffer, edge pixels are -1 (see {@link CannyEdgeDetector#getEdgeData()})
+     * @param orientation gradient orientation per pixel or null (see {@link CannyEdgeDetector#getOrientation()})
+     * @param width       width of the buffers
+     * @param height      height of the buffers
+     * @param roi         region of interest
+     * @return detected segments in the coordinates of the buffers
+     */
+    public List<LineSegment> process(int[] edges, float[] orientation, int width, int height, Rectangle roi) {
+        final Rectangle area = roi.intersection(new Rectangle(0, 0, width, height));
+        final List<LineSegment> result = new ArrayList<>();
+        if (area.isEmpty()) {
+            return result;
+        }
+        final int roiW = area.width;
+        final int roiH = area.height;
+        initArrays(roiW, roiH);
+
+        int count = 0;
+        for (int y = 0; y < roiH; y++) {
+            int row = (area.y + y) * width + area.x;
+            int local = y * roiW;
+            for (int x = 0; x < roiW; x++, local++) {
+                if (edges[row + x] == EDGE) {
+                    mask[local] = MASK_EDGE;
+                    points[count++] = local;
+                } else {
+                    mask[local] = MASK_EMPTY;
+                }
+            }
+        }
+
+        final int windowBins = (int) Math.ceil(orientationWindow / thetaResolution);
+        final boolean useOrientation = orientation != null && windowBins > 0 && 2 * windowBins + 1 < thetaSteps;
+        final float halfW = roiW / 2f;
+        final float halfH = roiH / 2f;
+        final int rhoOffset = (rhoSteps - 1) / 2;
+
+        for (; count > 0 && result.size() < maxLines; count--) {
+            int idx = random.nextInt(count);
+            int point = points[idx];
+            points[idx] = points[count - 1];
+            if (mask[point] == MASK_EMPTY) {
+                continue;
+            }
+
+            int px = point % roiW;
+            int py = point / roiW;
+            int binFrom = 0;
+            int binTo = thetaSteps - 1;
+            if (useOrientation) {
+                int center = normalBin(orientation[(area.y + py) * width + area.x + px]);
+                binFrom = center - windowBins;
+                binTo = center + windowBins;
+            }
+
+            // vote
+            float xr = px - halfW;
+            float yr = py - halfH;
+            int maxVotes = threshold - 1;
+            int maxBin = -1;
+            for (int b = binFrom; b <= binTo; b++) {
+                int n = wrapBin(b);
+                int r = Math.round(xr * rhoCosTable[n] + yr * rhoSinTable[n]) + rhoOffset;
+                int votes = ++accumulator[n * rhoSteps + r];
+                if (votes > maxVotes) {
+                    maxVotes = votes;
+                    maxBin = n;
+                }
+            }
+            mask[point] = MASK_VOTED;
+            if (maxBin < 0) {
+                continue;
+            }
+
+            // walk along the line direction from the current point
+            float a = -sinTable[maxBin];
+            float b = cosTable[maxBin];
+            int x0 = px;
+            int y0 = py;
+            int dx0;
+            int dy0;
+            boolean xFlag = Math.abs(a) > Math.abs(b);
+            if (xFlag) {
+                dx0 = a > 0 ? 1 : -1;
+                dy0 = Math.round(b * (1 << SHIFT) / Math.abs(a));
+                y0 = (y0 << SHIFT) + (1 << (SHIFT - 1));
+            } else {
+                dy0 = b > 0 ? 1 : -1;
+                dx0 = Math.round(a * (1 << SHIFT) / Math.abs(b));
+                x0 = (x0 << SHIFT) + (1 << (SHIFT - 1));
+            }
+
+            for (int k = 0; k < 2; k++) {
+                int gap = 0;
+                int dx = k == 0 ? dx0 : -dx0;
+                int dy = k == 0 ? dy0 : -dy0;
+                endX[k] = px;
+                endY[k] = py;
+                for (int x = x0, y = y0; ; x += dx, y += dy) {
+                    int j1 = xFlag ? x : x >> SHIFT;
+                    int i1 = xFlag ? y >> SHIFT : y;
+                    if (j1 < 0 || j1 >= roiW || i1 < 0 || i1 >= roiH) {
+                        break;
+                    }
+                    if (mask[i1 * roiW + j1] != MASK_EMPTY) {
+                        gap = 0;
+                        endX[k] = j1;
+                        endY[k] = i1;
+                    } else if (++gap > maxLineGap) {
+                        break;
+                    }
+                }
+            }
+
+            boolean goodLine = Math.abs(endX[1] - endX[0]) >= minLineLength || Math.abs(endY[1] - endY[0]) >= minLineLength;
+
+            // remove the pixels of the segment, withdraw their votes when the segment is accepted
+            for (int k = 0; k < 2; k++) {
+                int dx = k == 0 ? dx0 : -dx0;
+                int dy = k == 0 ? dy0 : -dy0;
+                for (int x = x0, y = y0; ; x += dx, y += dy) {
+                    int j1 = xFlag ? x : x >> SHIFT;
+                    int i1 = xFlag ? y >> SHIFT : y;
+                    if (j1 < 0 || j1 >= roiW || i1 < 0 || i1 >= roiH) {
+                        break;
+                    }
+                    int local = i1 * roiW + j1;
+                    if (mask[local] != MASK_EMPTY) {
+                        if (goodLine && mask[local] == MASK_VOTED) {
+                            unvote(orientation, useOrientation, windowBins, area, width, j1, i1, halfW, halfH, rhoOffset);
+                        }
+                        mask[local] = MASK_EMPTY;
+                    }
+                    if (j1 == endX[k] && i1 == endY[k]) {
+                        break;
+                    }
+                }
+            }
+
+            if (goodLine) {
+                result.add(new LineSegment(endX[0] + area.x, endY[0] + area.y, endX[1] + area.x, endY[1] + area.y,
+                        maxBin * thetaResolution, maxVotes));
+            }
+        }
+        return result;
+    }
+
+    // private utility methods
+
+    private void unvote(float[] orientation, boolean useOrientation, int windowBins, Rectangle area, int width,
+                        int px, int py, float halfW, float halfH, int rhoOffset) {
+        int binFrom = 0;
+        int binTo = thetaSteps - 1;
+        if (useOrientation) {
+            int center = normalBin(orientation[(area.y + py) * width + area.x + px]);
+            binFrom = center - windowBins;
+            binTo = center + windowBins;
+        }
+        float xr = px - halfW;
+        float yr = py - halfH;
+        for (int b = binFrom; b <= binTo; b++) {
+            int n = wrapBin(b);
+            int r = Math.round(xr * rhoCosTable[n] + yr * rhoSinTable[n]) + rhoOffset;
+            accumulator[n * rhoSteps + r]--;
+        }
+    }
+
+    /**
+     * The line normal is parallel to the gradient, only the angle modulo PI
+     * is relevant for the accumulator.
+     */
+    private int normalBin(float gradientOrientation) {
+        float normal = gradientOrientation < 0 ? gradientOrientation + (float) Math.PI : gradientOrientation;
+        int bin = Math.round(normal / thetaResolution);
+        return bin >= thetaSteps ? bin - thetaSteps : bin;
+    }
+
+    /**
+     * Angles outside of [0, PI) map to the opposite normal, the rho tables
+     * take care of the sign change.
+     */
+    private int wrapBin(int bin) {
+        return bin < 0 ? bin + thetaSteps : bin >= thetaSteps ? bin - thetaSteps : bin;
+    }
+
+    private void initArrays(int roiW, int roiH) {
+        int size = roiW * roiH;
+        if (mask == null || mask.length < size) {
+            mask = new byte[size];
+            points = new int[size];
+        }
+        float maxRho = (float) Math.hypot(roiW, roiH) / 2f;
+        int steps = 2 * ((int) Math.ceil(maxRho / rhoResolution) + 1) + 1;
+        if (accumulator == null || rhoSteps != steps) {
+            rhoSteps = steps;
+            accumulator = new int[thetaSteps * rhoSteps];
+        } else {
+            Arrays.fill(accumulator, 0);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.analysis;
+
+import java.util.Arrays;
+
+/**
+ * Luminance pyramid, every level halves the previous one by averaging 2x2
+ * pixels. The level buffers are kept and reused as long as the frame size
+ * does not change. The pyramid can also use the luminance levels of a
+ * {@link FramePyramid}, which are then neither copied nor recomputed.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class ImagePyramid {
+
+    private final byte[][] levels;
+    private final int[] widths;
+    private final int[] heights;
+    private int count;
+    /* levels belong to a frame pyramid and must not be written */
+    private boolean shared;
+
+    /**
+     * @param levels number of levels including the full resolution
+     */
+    public ImagePyramid(int levels) {
+        if (levels < 1) throw new IllegalArgumentException();
+        this.levels = new byte[levels][];
+        this.widths = new int[levels];
+        this.heights = new int[levels];
+    }
+
+    /**
+     * copies the luminance into level 0 and computes the other levels
+     */
+    public void build(byte[] luminance, int width, int height) {
+        if (shared) {
+            Arrays.fill(levels, null);
+            shared = false;
+        }
+        for (int level = 0; level < levels.length; level++) {
+            int w = level == 0 ? width : widths[level - 1] / 2;
+            int h = level == 0 ? height : heights[level - 1] / 2;
+            if (levels[level] == null || levels[level].length != w * h) {
+                levels[level] = new byte[w * h];
+            }
+            widths[level] = w;
+            heights[level] = h;
+            if (level == 0) {
+                System.arraycopy(luminance, 0, levels[0], 0, w * h);
+            } else {
+                downsample(levels[level - 1], widths[level - 1], levels[level], w, h);
+            }
+        }
+        count = levels.length;
+    }
+
+    /**
+     * uses the luminance levels of the frame from the base level on, the
+     * caller keeps the frame retained as long as the levels are used
+     *
+     * @param frame frame pyramid
+     * @param base  frame level used as level 0
+     */
+    public void wrap(FramePyramid frame, int base) {
+        shared = true;
+        count = Math.min(levels.length, frame.getLevels() - base);
+        for (int level = 0; level < levels.length; level++) {
+            if (level < count) {
+                levels[level] = frame.luminance(base + level);
+                widths[level] = frame.getWidth(base + level);
+                heights[level] = frame.getHeight(base + level);
+            } else {
+                levels[level] = null;
+            }
+        }
+    }
+
+    /**
+     * forgets the levels, the buffers of a built pyramid are kept for reuse
+     */
+    public void clear() {
+        if (shared) {
+            Arrays.fill(levels, null);
+            shared = false;
+        }
+        count = 0;
+    }
+
+    /**
+     * @return number of valid levels, 0 before the first frame
+     */
+    public int getLevels() {
+        return count;
+    }
+
+    public byte[] getLevel(int level) {
+        return levels[level];
+    }
+
+    public int getWidth(int level) {
+        return widths[level];
+    }
+
+    public int getHeight(int level) {
+        return heights[level];
+    }
+
+    /**
+     * averages 2x2 blocks of the source
+     *
+     * @param source      source buffer
+     * @param sourceWidth width of the source
+     * @param target      target buffer
+     * @param width       target width, at most half of the source width
+     * @param height      target height, at most half of the source height
+     */
+    public static void downsample(byte[] source, int sourceWidth, byte[] target, int width, int height) {
+        for (int y = 0; y < height; y++) {
+            int row0 = 2 * y * sourceWidth;
+            int row1 = row0 + sourceWidth;
+            int out = y * width;
+            for (int x = 0; x < width; x++) {
+                int sx = 2 * x;
+                target[out + x] = (byte) (((source[row0 + sx] & 0xff) + (source[row0 + sx + 1] & 0xff)
+                        + (source[row1 + sx] & 0xff) + (source[row1 + sx + 1] & 0xff) + 2) >> 2);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.analysis;
+
+import com.robo4j.tools.camera.model.CameraIntrinsics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Removes the lens distortion described by {@link CameraIntrinsics} from
+ * frames. The remap table is computed once per frame resolution and cached.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class LensDistortionCorrector {
+
+    private static final int UNDISTORT_ITERATIONS = 8;
+
+    private final CameraIntrinsics intrinsics;
+    private final Map<Long, RemapTable> tables = new ConcurrentHashMap<>();
+
+    public LensDistortionCorrector(CameraIntrinsics intrinsics) {
+        this.intrinsics = intrinsics;
+    }
+
+    public CameraIntrinsics getIntrinsics() {
+        return intrinsics;
+    }
+
+    /**
+     * @param width  frame width
+     * @param height frame height
+     * @return cached remap table producing the undistorted frame
+     */
+    public RemapTable getRemapTable(int width, int height) {
+        return tables.computeIfAbsent(((long) width << 32) | height, k -> createRemapTable(width, height));
+    }
+
+    /**
+     * Undistorts the packed RGB frame
+     *
+     * @param source      distorted pixels
+     * @param destination undistorted pixels
+     * @param width       frame width
+     * @param height      frame height
+     */
+    public void correct(int[] source, int[] destination, int width, int height) {
+        getRemapTable(width, height).apply(source, destination);
+    }
+
+    /**
+     * Applies the distortion model to normalized image coordinates
+     *
+     * @param x      undistorted normalized x
+     * @param y      undistorted normalized y
+     * @param result distorted normalized x and y
+     */
+    public static void distort(CameraIntrinsics c, double x, double y, double[] result) {
+        double r2 = x * x + y * y;
+        double radial = 1 + r2 * (c.getK1() + r2 * (c.getK2() + r2 * c.getK3()));
+        result[0] = x * radial + 2 * c.getP1() * x * y + c.getP2() * (r2 + 2 * x * x);
+        result[1] = y * radial + c.getP1() * (r2 + 2 * y * y) + 2 * c.getP2() * x * y;
+    }
+
+    /**
+     * Inverts the distortion model by fixed point iteration
+     *
+     * @param xd     distorted normalized x
+     * @param yd     distorted normalized y
+     * @param result undistorted normalized x and y
+     */
+    public static void undistort(CameraIntrinsics c, double xd, double yd, double[] result) {
+        double x = xd;
+        double y = yd;
+        for (int i = 0; i < UNDISTORT_ITERATIONS; i++) {
+            double r2 = x * x + y * y;
+            double radial = 1 + r2 * (c.getK1() + r2 * (c.getK2() + r2 * c.getK3()));
+            double dx = 2 * c.getP1() * x * y + c.getP2() * (r2 + 2 * x * x);
+            double dy = c.getP1() * (r2 + 2 * y * y) + 2 * c.getP2() * x * y;
+            x = (xd - dx) / radial;
+            y = (yd - dy) / radial;
+        }
+        result[0] = x;
+        result[1] = y;
+    }
+
+    private RemapTable createRemapTable(int width, int height) {
+        final CameraIntrinsics c = intrinsics.scaledTo(width, height);
+        final double[] distorted = new double[2];
+        return RemapTable.create(width, height, width, height, (x, y, result) -> {
+            distort(c, (x - c.getCx()) / c.getFx(), (y - c.getCy()) / c.getFy(), distorted);
+            result[0] = distorted[0] * c.getFx() + c.getCx();
+            result[1] = distorted[1] * c.getFy() + c.getCy();
+        });
+    }
+}
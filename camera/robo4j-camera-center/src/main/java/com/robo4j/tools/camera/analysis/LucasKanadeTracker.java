@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.analysis;
+
+/**
+ * Pyramidal Lucas-Kanade tracker of sparse points between two consecutive
+ * frames. The motion is estimated on the coarsest level first and refined
+ * level by level, which follows displacements much larger than the window.
+ * The pyramids of the previous and the current frame are swapped and reused,
+ * the window buffers are allocated once. Frames which already come with a
+ * {@link FramePyramid} are tracked on its luminance levels, the tracker
+ * retains the previous and the current frame instead of copying them.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class LucasKanadeTracker {
+
+    private final int windowRadius;
+    private int maxIterations = 10;
+    private float epsilon = 0.03f;
+    private float minEigenvalue = 1f;
+    private float maxError = 40f;
+
+    private ImagePyramid previous;
+    private ImagePyramid current;
+    private FramePyramid previousFrame;
+    private FramePyramid currentFrame;
+    private boolean hasPrevious;
+
+    /* window samples of the previous frame and their gradients */
+    private final int patch;
+    private final float[] patchValues;
+    private final float[] windowValues;
+    private final float[] gradientX;
+    private final float[] gradientY;
+
+    public LucasKanadeTracker() {
+        this(3, 7);
+    }
+
+    /**
+     * @param levels       pyramid levels including the full resolution
+     * @param windowRadius half size of the integration window
+     */
+    public LucasKanadeTracker(int levels, int windowRadius) {
+        this.windowRadius = windowRadius;
+        this.previous = new ImagePyramid(levels);
+        this.current = new ImagePyramid(levels);
+        int window = 2 * windowRadius + 1;
+        this.patch = window + 2;
+        this.patchValues = new float[patch * patch];
+        this.windowValues = new float[window * window];
+        this.gradientX = new float[window * window];
+        this.gradientY = new float[window * window];
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * @return minimal eigenvalue of the normalized gradient matrix, weaker windows are lost
+     */
+    public float getMinEigenvalue() {
+        return minEigenvalue;
+    }
+
+    public void setMinEigenvalue(float minEigenvalue) {
+        this.minEigenvalue = minEigenvalue;
+    }
+
+    /**
+     * @return maximal mean absolute luminance difference of a tracked window
+     */
+    public float getMaxError() {
+        return maxError;
+    }
+
+    public void setMaxError(float maxError) {
+        this.maxError = maxError;
+    }
+
+    /**
+     * makes the current frame the previous one and builds the pyramid of the new frame
+     *
+     * @return false if there is no previous frame of the same size to track from
+     */
+    public boolean nextFrame(byte[] luminance, int width, int height) {
+        swap(null);
+        current.build(luminance, width, height);
+        return hasPrevious(width, height);
+    }
+
+    /**
+     * makes the current frame the previous one and tracks on the luminance
+     * levels of the frame, starting at the base level. The frame is retained
+     * until it is no longer the current or the previous one.
+     *
+     * @param frame frame pyramid
+     * @param base  frame level used as the full resolution
+     * @return false if there is no previous frame of the same size to track from
+     */
+    public boolean nextFrame(FramePyramid frame, int base) {
+        swap(frame.retain());
+        current.wrap(frame, base);
+        return hasPrevious(frame.getWidth(base), frame.getHeight(base));
+    }
+
+    /**
+     * forgets the previous frame and releases the retained frames
+     */
+    public void reset() {
+        hasPrevious = false;
+        previous.clear();
+        current.clear();
+        releaseFrames();
+    }
+
+    /**
+     * @param fromX  x in the previous frame
+     * @param fromY  y in the previous frame
+     * @param count  number of points
+     * @param toX    receives x in the current frame
+     * @param toY    receives y in the current frame
+     * @param status receives true for the points which were tracked
+     * @return number of tracked points
+     */
+    public int track(float[] fromX, float[] fromY, int count, float[] toX, float[] toY, boolean[] status) {
+        if (!hasPrevious) {
+            for (int i = 0; i < count; i++) {
+                status[i] = false;
+            }
+            return 0;
+        }
+        int tracked = 0;
+        for (int i = 0; i < count; i++) {
+            status[i] = trackPoint(fromX[i], fromY[i], toX, toY, i);
+            if (status[i]) {
+                tracked++;
+            }
+        }
+        return tracked;
+    }
+
+    private boolean trackPoint(float x, float y, float[] toX, float[] toY, int i) {
+        final int window = 2 * windowRadius + 1;
+        final int reach = windowRadius + 1;
+        // points near the border start on the coarsest level their window fits into
+        int top = previous.getLevels() - 1;
+        while (top > 0 && !isInside(x / (1 << top), y / (1 << top), previous.getWidth(top), previous.getHeight(top), reach)) {
+            top--;
+        }
+        float gx = 0;
+        float gy = 0;
+        float error = 0;
+        for (int level = top; level >= 0; level--) {
+            final float scale = 1f / (1 << level);
+            final float px = x * scale;
+            final float py = y * scale;
+            final byte[] prev = previous.getLevel(level);
+            final byte[] next = current.getLevel(level);
+            final int width = previous.getWidth(level);
+            final int height = previous.getHeight(level);
+            if (!isInside(px, py, width, height, reach)) {
+                return false;
+            }
+
+            for (int j = 0; j < patch; j++) {
+                for (int k = 0; k < patch; k++) {
+                    patchValues[j * patch + k] = sample(prev, width, px + k - reach, py + j - reach);
+                }
+            }
+            float gxx = 0;
+            float gxy = 0;
+            float gyy = 0;
+            for (int j = 0; j < window; j++) {
+                for (int k = 0; k < window; k++) {
+                    int p = (j + 1) * patch + k + 1;
+                    int w = j * window + k;
+                    float ix = (patchValues[p + 1] - patchValues[p - 1]) * 0.5f;
+                    float iy = (patchValues[p + patch] - patchValues[p - patch]) * 0.5f;
+                    windowValues[w] = patchValues[p];
+                    gradientX[w] = ix;
+                    gradientY[w] = iy;
+                    gxx += ix * ix;
+                    gxy += ix * iy;
+                    gyy += iy * iy;
+                }
+            }
+            final float area = window * window;
+            final float trace = (gxx + gyy) / area;
+            final float det = gxx * gyy - gxy * gxy;
+            final float minEig = (gxx + gyy - (float) Math.sqrt((gxx - gyy) * (gxx - gyy) + 4 * gxy * gxy)) / (2 * area);
+            if (minEig < minEigenvalue || det == 0 || trace == 0) {
+                return false;
+            }
+
+            float vx = 0;
+            float vy = 0;
+            for (int iteration = 0; iteration < maxIterations; iteration++) {
+                final float cx = px + gx + vx;
+                final float cy = py + gy + vy;
+                if (cx < windowRadius || cy < windowRadius || cx >= width - windowRadius - 1 || cy >= height - windowRadius - 1) {
+                    return false;
+                }
+                float bx = 0;
+                float by = 0;
+                error = 0;
+                for (int j = 0; j < window; j++) {
+                    for (int k = 0; k < window; k++) {
+                        int w = j * window + k;
+                        float diff = windowValues[w] - sample(next, width, cx + k - windowRadius, cy + j - windowRadius);
+                        bx += diff * gradientX[w];
+                        by += diff * gradientY[w];
+                        error += Math.abs(diff);
+                    }
+                }
+                float ex = (gyy * bx - gxy * by) / det;
+                float ey = (gxx * by - gxy * bx) / det;
+                vx += ex;
+                vy += ey;
+                if (ex * ex + ey * ey < epsilon * epsilon) {
+                    break;
+                }
+            }
+            gx = gx + vx;
+            gy = gy + vy;
+            if (level > 0) {
+                gx *= 2;
+                gy *= 2;
+            }
+        }
+        if (error / (window * window) > maxError) {
+            return false;
+        }
+        toX[i] = x + gx;
+        toY[i] = y + gy;
+        return true;
+    }
+
+    private void swap(FramePyramid frame) {
+        ImagePyramid swap = previous;
+        previous = current;
+        current = swap;
+        if (previousFrame != null) {
+            previousFrame.release();
+        }
+        previousFrame = currentFrame;
+        currentFrame = frame;
+    }
+
+    private boolean hasPrevious(int width, int height) {
+        hasPrevious = previous.getLevels() > 0 && previous.getLevels() == current.getLevels()
+                && previous.getWidth(0) == width && previous.getHeight(0) == height;
+        return hasPrevious;
+    }
+
+    private void releaseFrames() {
+        if (previousFrame != null) {
+            previousFrame.release();
+            previousFrame = null;
+        }
+        if (currentFrame != null) {
+            currentFrame.release();
+            currentFrame = null;
+        }
+    }
+
+    private static boolean isInside(float x, float y, int width, int height, int margin) {
+        return x >= margin && y >= margin && x < width - margin - 1 && y < height - margin - 1;
+    }
+
+    /* bilinear sample, the position must be inside of the buffer */
+    private static float sample(byte[] image, int width, float x, float y) {
+        int x0 = (int) x;
+        int y0 = (int) y;
+        float ax = x - x0;
+        float ay = y - y0;
+        int i = y0 * width + x0;
+        float top = (image[i] & 0xff) + ax * ((image[i + 1] & 0xff) - (image[i] & 0xff));
+        float bottom = (image[i + width] & 0xff) + ax * ((image[i + width + 1] & 0xff) - (image[i + width] & 0xff));
+        return top + ay * (bottom - top);
+    }
+}
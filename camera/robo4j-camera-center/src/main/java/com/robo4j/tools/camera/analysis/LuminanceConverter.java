@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.tools.camera.analysis;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Converts frames to 8 bit luminance, optionally downscaled by averaging
+ * blocks of pixels. The row buffer is reused, an instance must therefore
+ * not be shared by threads.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class LuminanceConverter {
+
+    private int[] rgb = new int[0];
+
+    /**
+     * @param image     source frame
+     * @param scale     size of the averaged pixel blocks, 1 for the full resolution
+     * @param luminance result, (width / scale) * (height / scale) values
+     */
+    public void convert(BufferedImage image, int scale, byte[] luminance) {
+        final int sourceWidth = image.getWidth();
+        final int width = sourceWidth / scale;
+        final int height = image.getHeight() / scale;
+        final int rows = scale * sourceWidth;
+        if (rgb.length < rows) {
+            rgb = new int[rows];
+        }
+        final int divisor = scale * scale;
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y * scale, sourceWidth, scale, rgb, 0, sourceWidth);
+            for (int x = 0; x < width; x++) {
+                int sum = 0;
+                for (int j = 0; j < scale; j++) {
+                    int offset = j * sourceWidth + x * scale;
+                    for (int i = 0; i < scale; i++) {
+                        sum += luminance(rgb[offset + i]);
+                    }
+                }
+                luminance[y * width + x] = (byte) (sum / divisor);
+            }
+        }
+    }
+
+    /**
+     * @return Rec. 601 luminance of the packed RGB pixel, 0 - 255
+     */
+    public static int luminance(int rgb) {
+        return (77 * ((rgb >> 16) & 0xff) + 150 * ((rgb >> 8) & 0xff) + 29 * (rgb & 0xff)) >> 8;
+    }
+}
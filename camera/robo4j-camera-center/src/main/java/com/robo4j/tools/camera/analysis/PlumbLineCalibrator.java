@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.analysis;
+
+import com.robo4j.tools.camera.model.CameraIntrinsics;
+import com.robo4j.tools.camera.model.Contour;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Estimates the radial lens distortion from the plumb-line constraint: the
+ * straight edges of a checkerboard (or any other straight structure) must be
+ * straight after the correction. The edges come from the traced contours, the
+ * coefficients k1 and k2 are fitted by Levenberg-Marquardt.
+ *
+ * The principal point is assumed in the image center and the focal length is
+ * normalized to the half diagonal of the image, which is sufficient to
+ * straighten the image but does not recover the metric focal length.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class PlumbLineCalibrator {
+
+    private static final int MAX_ITERATIONS = 100;
+    private static final int MAX_POINTS_PER_RUN = 64;
+    private static final int RUN_TRIM = 3;
+    private static final double MERGE_GAP = 12;
+    private static final double MERGE_OFFSET = 2;
+    private static final double MERGE_ANGLE = Math.toRadians(8);
+    private static final double DERIVATIVE_STEP = 1e-6;
+    private static final double CONVERGENCE = 1e-10;
+
+    private final List<double[]> runs = new ArrayList<>();
+    private int minRunLength = 40;
+    private double maxTurnAngle = Math.toRadians(15);
+    private int width;
+    private int height;
+
+    public int getMinRunLength() {
+        return minRunLength;
+    }
+
+    /**
+     * @param minRunLength straight runs with less pixels are not used
+     */
+    public void setMinRunLength(int minRunLength) {
+        if (minRunLength < 2 * RUN_TRIM + 3) throw new IllegalArgumentException();
+        this.minRunLength = minRunLength;
+    }
+
+    public double getMaxTurnAngle() {
+        return maxTurnAngle;
+    }
+
+    /**
+     * @param maxTurnAngle contours turning more than this angle (radians) at a vertex are split
+     */
+    public void setMaxTurnAngle(double maxTurnAngle) {
+        if (maxTurnAngle <= 0 || maxTurnAngle >= Math.PI) throw new IllegalArgumentException();
+        this.maxTurnAngle = maxTurnAngle;
+    }
+
+    public int getRunCount() {
+        return runs.size();
+    }
+
+    /**
+     * Adds the straight parts of the contours as line candidates. The contour
+     * polygon is split at the vertices where it turns sharply, a slightly bent
+     * (distorted) line therefore stays in one piece. Pieces of the same line
+     * interrupted at the checkerboard corners are joined again, the longer the
+     * line the better it shows the distortion.
+     *
+     * @param contours traced contours, see {@link ContourTracer#setKeepPixels(boolean)}
+     * @param width    image width
+     * @param height   image height
+     */
+    public void addContours(List<Contour> contours, int width, int height) {
+        if (this.width == 0) {
+            this.width = width;
+            this.height = height;
+        } else if (this.width != width || this.height != height) {
+            throw new IllegalArgumentException("all images must have the same resolution");
+        }
+        final double cosMaxTurn = Math.cos(maxTurnAngle);
+        final List<double[]> pieces = new ArrayList<>();
+        for (Contour contour : contours) {
+            if (!contour.hasPixels()) {
+                throw new IllegalArgumentException("contour without pixels");
+            }
+            int vertices = contour.getVertexCount();
+            int runStart = 0;
+            for (int v = 1; v < vertices - 1; v++) {
+                double ax = contour.getX(v) - contour.getX(v - 1);
+                double ay = contour.getY(v) - contour.getY(v - 1);
+                double bx = contour.getX(v + 1) - contour.getX(v);
+                double by = contour.getY(v + 1) - contour.getY(v);
+                double cos = (ax * bx + ay * by) / (Math.hypot(ax, ay) * Math.hypot(bx, by));
+                if (cos < cosMaxTurn) {
+                    addPiece(pieces, contour, contour.getVertexPixel(runStart), contour.getVertexPixel(v));
+                    runStart = v;
+                }
+            }
+            addPiece(pieces, contour, contour.getVertexPixel(runStart), contour.getVertexPixel(vertices - 1));
+        }
+        mergeCollinear(pieces);
+        for (double[] piece : pieces) {
+            if (piece.length / 2 >= minRunLength - 2 * RUN_TRIM) {
+                runs.add(subsample(piece));
+            }
+        }
+    }
+
+    /**
+     * @return intrinsics with the fitted distortion for the image resolution
+     */
+    public CameraIntrinsics calibrate() {
+        if (runs.isEmpty()) {
+            throw new IllegalStateException("no straight edges found");
+        }
+        final double focal = Math.hypot(width, height) / 2;
+        final double cx = width / 2.0;
+        final double cy = height / 2.0;
+        final List<double[]> normalized = new ArrayList<>(runs.size());
+        int pointCount = 0;
+        for (double[] run : runs) {
+            double[] n = new double[run.length];
+            for (int i = 0; i < run.length; i += 2) {
+                n[i] = (run[i] - cx) / focal;
+                n[i + 1] = (run[i + 1] - cy) / focal;
+            }
+            normalized.add(n);
+            pointCount += run.length / 2;
+        }
+
+        double[] params = new double[2];
+        double[] residuals = new double[pointCount];
+        double[] trial = new double[pointCount];
+        double[][] jacobian = new double[2][pointCount];
+        double cost = residuals(normalized, params, residuals);
+        double lambda = 1e-3;
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            for (int p = 0; p < 2; p++) {
+                double[] shifted = params.clone();
+                shifted[p] += DERIVATIVE_STEP;
+                residuals(normalized, shifted, jacobian[p]);
+                for (int i = 0; i < pointCount; i++) {
+                    jacobian[p][i] = (jacobian[p][i] - residuals[i]) / DERIVATIVE_STEP;
+                }
+            }
+            double a00 = 0, a01 = 0, a11 = 0, g0 = 0, g1 = 0;
+            for (int i = 0; i < pointCount; i++) {
+                a00 += jacobian[0][i] * jacobian[0][i];
+                a01 += jacobian[0][i] * jacobian[1][i];
+                a11 += jacobian[1][i] * jacobian[1][i];
+                g0 += jacobian[0][i] * residuals[i];
+                g1 += jacobian[1][i] * residuals[i];
+            }
+
+            boolean improved = false;
+            while (!improved && lambda < 1e10) {
+                double d00 = a00 * (1 + lambda);
+                double d11 = a11 * (1 + lambda);
+                double det = d00 * d11 - a01 * a01;
+                if (det == 0) {
+                    lambda *= 10;
+                    continue;
+                }
+                double[] candidate = {params[0] - (d11 * g0 - a01 * g1) / det, params[1] - (d00 * g1 - a01 * g0) / det};
+                double candidateCost = residuals(normalized, candidate, trial);
+                if (candidateCost < cost) {
+                    double step = Math.abs(candidate[0] - params[0]) + Math.abs(candidate[1] - params[1]);
+                    params = candidate;
+                    System.arraycopy(trial, 0, residuals, 0, pointCount);
+                    cost = candidateCost;
+                    lambda /= 10;
+                    improved = true;
+                    if (step < CONVERGENCE) {
+                        iteration = MAX_ITERATIONS;
+                    }
+                } else {
+                    lambda *= 10;
+                }
+            }
+            if (!improved) {
+                break;
+            }
+        }
+        return new CameraIntrinsics(width, height, focal, focal, cx, cy, params[0], params[1], 0, 0, 0);
+    }
+
+    // private utility methods
+
+    private static void addPiece(List<double[]> pieces, Contour contour, int from, int to) {
+        int start = from + RUN_TRIM;
+        int end = to - RUN_TRIM;
+        if (end - start < 2 * RUN_TRIM) {
+            return;
+        }
+        double[] piece = new double[2 * (end - start + 1)];
+        for (int i = start; i <= end; i++) {
+            piece[2 * (i - start)] = contour.getPixelX(i);
+            piece[2 * (i - start) + 1] = contour.getPixelY(i);
+        }
+        pieces.add(piece);
+    }
+
+    /**
+     * Joins pieces whose ends are close and which continue in the same
+     * direction, until no more pieces can be joined
+     */
+    private static void mergeCollinear(List<double[]> pieces) {
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int i = 0; i < pieces.size() && !merged; i++) {
+                for (int j = i + 1; j < pieces.size() && !merged; j++) {
+                    double[] joined = join(pieces.get(i), pieces.get(j));
+                    if (joined == null) {
+                        joined = join(pieces.get(i), reverse(pieces.get(j)));
+                    }
+                    if (joined == null) {
+                        joined = join(pieces.get(j), pieces.get(i));
+                    }
+                    if (joined == null) {
+                        joined = join(reverse(pieces.get(j)), pieces.get(i));
+                    }
+                    if (joined != null) {
+                        pieces.set(i, joined);
+                        pieces.remove(j);
+                        merged = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the concatenation when b continues at the end of a, otherwise null
+     */
+    private static double[] join(double[] a, double[] b) {
+        int aLast = a.length - 2;
+        double gapX = b[0] - a[aLast];
+        double gapY = b[1] - a[aLast + 1];
+        double gap = Math.hypot(gapX, gapY);
+        if (gap > MERGE_GAP) {
+            return null;
+        }
+        double aAngle = Math.atan2(a[aLast + 1] - a[1], a[aLast] - a[0]);
+        double bAngle = Math.atan2(b[b.length - 1] - b[1], b[b.length - 2] - b[0]);
+        double difference = Math.abs(Math.IEEEremainder(aAngle - bAngle, 2 * Math.PI));
+        if (difference > MERGE_ANGLE) {
+            return null;
+        }
+        // start of b must lie on the extension of a
+        double offset = Math.abs(-Math.sin(aAngle) * gapX + Math.cos(aAngle) * gapY);
+        if (offset > MERGE_OFFSET) {
+            return null;
+        }
+        double[] result = new double[a.length + b.length];
+        System.arraycopy(a, 0, result, 0, a.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    private static double[] reverse(double[] piece) {
+        double[] result = new double[piece.length];
+        for (int i = 0; i < piece.length; i += 2) {
+            result[piece.length - 2 - i] = piece[i];
+            result[piece.length - 1 - i] = piece[i + 1];
+        }
+        return result;
+    }
+
+    private static double[] subsample(double[] piece) {
+        int points = piece.length / 2;
+        int step = Math.max(1, points / MAX_POINTS_PER_RUN);
+        int count = (points - 1) / step + 1;
+        double[] run = new double[2 * count];
+        for (int i = 0; i < count; i++) {
+            run[2 * i] = piece[2 * i * step];
+            run[2 * i + 1] = piece[2 * i * step + 1];
+        }
+        return run;
+    }
+
+    /**
+     * Distance of every undistorted point to the total least squares line of
+     * its run, relative to the run length so that shrinking the image does
+     * not reduce the cost
+     *
+     * @return sum of squared residuals
+     */
+    private double residuals(List<double[]> normalized, double[] params, double[] result) {
+        final CameraIntrinsics model = new CameraIntrinsics(width, height, 1, 1, 0, 0, params[0], params[1], 0, 0, 0);
+        final double[] point = new double[2];
+        double cost = 0;
+        int r = 0;
+        for (double[] run : normalized) {
+            int count = run.length / 2;
+            double[] ux = new double[count];
+            double[] uy = new double[count];
+            double mx = 0, my = 0;
+            for (int i = 0; i < count; i++) {
+                LensDistortionCorrector.undistort(model, run[2 * i], run[2 * i + 1], point);
+                ux[i] = point[0];
+                uy[i] = point[1];
+                mx += point[0];
+                my += point[1];
+            }
+            mx /= count;
+            my /= count;
+            double sxx = 0, sxy = 0, syy = 0;
+            for (int i = 0; i < count; i++) {
+                double dx = ux[i] - mx;
+                double dy = uy[i] - my;
+                sxx += dx * dx;
+                sxy += dx * dy;
+                syy += dy * dy;
+            }
+            // direction of the line is the major eigenvector of the scatter matrix
+            double angle = 0.5 * Math.atan2(2 * sxy, sxx - syy);
+            double nx = -Math.sin(angle);
+            double ny = Math.cos(angle);
+            double length = Math.hypot(ux[count - 1] - ux[0], uy[count - 1] - uy[0]);
+            for (int i = 0; i < count; i++) {
+                double distance = length == 0 ? 0 : ((ux[i] - mx) * nx + (uy[i] - my) * ny) / length;
+                result[r++] = distance;
+                cost += distance * distance;
+            }
+        }
+        return cost;
+    }
+}
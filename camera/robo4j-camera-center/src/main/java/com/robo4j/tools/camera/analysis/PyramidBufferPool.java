@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.analysis;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Recycles the level buffers of {@link FramePyramid}. Buffers are pooled by
+ * length, at most a few of every length are kept.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class PyramidBufferPool {
+    private static final int DEFAULT_MAX_PER_SIZE = 8;
+
+    private final int maxPerSize;
+    private final Map<Integer, ArrayDeque<int[]>> colourBuffers = new HashMap<>();
+    private final Map<Integer, ArrayDeque<byte[]>> luminanceBuffers = new HashMap<>();
+    private long allocations;
+
+    public PyramidBufferPool() {
+        this(DEFAULT_MAX_PER_SIZE);
+    }
+
+    /**
+     * @param maxPerSize maximal number of kept buffers of one length and type
+     */
+    public PyramidBufferPool(int maxPerSize) {
+        this.maxPerSize = maxPerSize;
+    }
+
+    public synchronized int[] takeColour(int length) {
+        ArrayDeque<int[]> buffers = colourBuffers.get(length);
+        if (buffers == null || buffers.isEmpty()) {
+            allocations++;
+            return new int[length];
+        }
+        return buffers.pop();
+    }
+
+    public synchronized byte[] takeLuminance(int length) {
+        ArrayDeque<byte[]> buffers = luminanceBuffers.get(length);
+        if (buffers == null || buffers.isEmpty()) {
+            allocations++;
+            return new byte[length];
+        }
+        return buffers.pop();
+    }
+
+    public synchronized void give(int[] buffer) {
+        ArrayDeque<int[]> buffers = colourBuffers.computeIfAbsent(buffer.length, k -> new ArrayDeque<>());
+        if (buffers.size() < maxPerSize) {
+            buffers.push(buffer);
+        }
+    }
+
+    public synchronized void give(byte[] buffer) {
+        ArrayDeque<byte[]> buffers = luminanceBuffers.computeIfAbsent(buffer.length, k -> new ArrayDeque<>());
+        if (buffers.size() < maxPerSize) {
+            buffers.push(buffer);
+        }
+    }
+
+    /**
+     * @return number of buffers which had to be allocated
+     */
+    public synchronized long getAllocations() {
+        return allocations;
+    }
+}
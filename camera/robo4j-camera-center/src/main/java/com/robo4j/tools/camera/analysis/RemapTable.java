@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.analysis;
+
+/**
+ * Precomputed fixed-point lookup table mapping every destination pixel to a
+ * bilinear sample of the source image. Building the table is expensive, using
+ * it is a single gather pass over the frame.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class RemapTable {
+
+    /**
+     * Maps the destination pixel coordinates to the source pixel coordinates
+     */
+    @FunctionalInterface
+    public interface Mapping {
+        /**
+         * @param x      destination x
+         * @param y      destination y
+         * @param result source x and y
+         */
+        void map(double x, double y, double[] result);
+    }
+
+    private static final int FRACTION_BITS = 7;
+    private static final int ONE = 1 << FRACTION_BITS;
+    private static final int WEIGHT_SHIFT = 2 * FRACTION_BITS;
+    private static final int ROUNDING = 1 << (WEIGHT_SHIFT - 1);
+    private static final int OUTSIDE = -1;
+    private static final int BLACK = 0xff000000;
+
+    private final int width;
+    private final int height;
+    private final int sourceWidth;
+    private final int sourceHeight;
+    /* index of the top left pixel of the 2x2 neighbourhood, or OUTSIDE */
+    private final int[] sourceIndex;
+    /* x fraction in the high byte, y fraction in the low byte */
+    private final char[] fractions;
+
+    private RemapTable(int width, int height, int sourceWidth, int sourceHeight) {
+        this.width = width;
+        this.height = height;
+        this.sourceWidth = sourceWidth;
+        this.sourceHeight = sourceHeight;
+        this.sourceIndex = new int[width * height];
+        this.fractions = new char[width * height];
+    }
+
+    /**
+     * Builds the table by evaluating the mapping once for every destination pixel
+     *
+     * @param width        destination width
+     * @param height       destination height
+     * @param sourceWidth  source width
+     * @param sourceHeight source height
+     * @param mapping      destination to source mapping
+     * @return new table
+     */
+    public static RemapTable create(int width, int height, int sourceWidth, int sourceHeight, Mapping mapping) {
+        if (sourceWidth < 2 || sourceHeight < 2) throw new IllegalArgumentException();
+        final RemapTable table = new RemapTable(width, height, sourceWidth, sourceHeight);
+        final double[] source = new double[2];
+        int index = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, index++) {
+                mapping.map(x, y, source);
+                double sx = source[0];
+                double sy = source[1];
+                if (sx < 0 || sy < 0 || sx > sourceWidth - 1 || sy > sourceHeight - 1 || Double.isNaN(sx) || Double.isNaN(sy)) {
+                    table.sourceIndex[index] = OUTSIDE;
+                    continue;
+                }
+                // the last row and column are sampled from the previous pixel with the full weight
+                int ix = Math.min((int) sx, sourceWidth - 2);
+                int iy = Math.min((int) sy, sourceHeight - 2);
+                int fx = (int) Math.round((sx - ix) * ONE);
+                int fy = (int) Math.round((sy - iy) * ONE);
+                table.sourceIndex[index] = iy * sourceWidth + ix;
+                table.fractions[index] = (char) (fx << 8 | fy);
+            }
+        }
+        return table;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getSourceWidth() {
+        return sourceWidth;
+    }
+
+    public int getSourceHeight() {
+        return sourceHeight;
+    }
+
+    /**
+     * Remaps packed RGB pixels, pixels mapped outside of the source are black
+     *
+     * @param source      source pixels, sourceWidth * sourceHeight
+     * @param destination destination pixels, width * height
+     */
+    public void apply(int[] source, int[] destination) {
+        final int stride = sourceWidth;
+        for (int i = 0; i < sourceIndex.length; i++) {
+            final int s = sourceIndex[i];
+            if (s == OUTSIDE) {
+                destination[i] = BLACK;
+                continue;
+            }
+            final int f = fractions[i];
+            final int fx = f >>> 8;
+            final int fy = f & 0xff;
+            final int w00 = (ONE - fx) * (ONE - fy);
+            final int w01 = fx * (ONE - fy);
+            final int w10 = (ONE - fx) * fy;
+            final int w11 = fx * fy;
+            final int p00 = source[s];
+            final int p01 = source[s + 1];
+            final int p10 = source[s + stride];
+            final int p11 = source[s + stride + 1];
+
+            final int r = ((p00 >> 16 & 0xff) * w00 + (p01 >> 16 & 0xff) * w01 + (p10 >> 16 & 0xff) * w10
+                    + (p11 >> 16 & 0xff) * w11 + ROUNDING) >> WEIGHT_SHIFT;
+            final int g = ((p00 >> 8 & 0xff) * w00 + (p01 >> 8 & 0xff) * w01 + (p10 >> 8 & 0xff) * w10
+                    + (p11 >> 8 & 0xff) * w11 + ROUNDING) >> WEIGHT_SHIFT;
+            final int b = ((p00 & 0xff) * w00 + (p01 & 0xff) * w01 + (p10 & 0xff) * w10
+                    + (p11 & 0xff) * w11 + ROUNDING) >> WEIGHT_SHIFT;
+            destination[i] = BLACK | r << 16 | g << 8 | b;
+        }
+    }
+
+    /**
+     * Remaps single channel pixels (e.g. luminance), pixels mapped outside of
+     * the source are 0
+     *
+     * @param source      source pixels, sourceWidth * sourceHeight
+     * @param destination destination pixels, width * height
+     */
+    public void apply(byte[] source, byte[] destination) {
+        final int stride = sourceWidth;
+        for (int i = 0; i < sourceIndex.length; i++) {
+            final int s = sourceIndex[i];
+            if (s == OUTSIDE) {
+                destination[i] = 0;
+                continue;
+            }
+            final int f = fractions[i];
+            final int fx = f >>> 8;
+            final int fy = f & 0xff;
+            final int v = ((source[s] & 0xff) * (ONE - fx) * (ONE - fy) + (source[s + 1] & 0xff) * fx * (ONE - fy)
+                    + (source[s + stride] & 0xff) * (ONE - fx) * fy + (source[s + stride + 1] & 0xff) * fx * fy
+                    + ROUNDING) >> WEIGHT_SHIFT;
+            destination[i] = (byte) v;
+        }
+    }
+}
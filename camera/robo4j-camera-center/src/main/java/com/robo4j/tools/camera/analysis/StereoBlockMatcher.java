@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.tools.camera.analysis;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Block matching disparity for a rectified image pair, the left image is the
+ * reference. The sum of absolute differences over the block is taken from an
+ * integral image of the per pixel differences, one disparity at a time, so the
+ * cost per pixel does not depend on the block size. The image is split into
+ * row bands matched in parallel.
+ *
+ * Disparities are stored as unsigned bytes, {@link #INVALID} marks pixels
+ * without a reliable match.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class StereoBlockMatcher {
+    public static final int INVALID = 0xff;
+
+    private static final int BAND_HEIGHT = 16;
+
+    private final ThreadLocal<BandWorkspace> workspaces = ThreadLocal.withInitial(BandWorkspace::new);
+    private int maxDisparity = 48;
+    private int blockRadius = 4;
+    private int uniquenessRatio = 10;
+
+    public int getMaxDisparity() {
+        return maxDisparity;
+    }
+
+    /**
+     * @param maxDisparity number of disparities searched, 0 to maxDisparity - 1
+     */
+    public void setMaxDisparity(int maxDisparity) {
+        if (maxDisparity < 1 || maxDisparity > INVALID) throw new IllegalArgumentException();
+        this.maxDisparity = maxDisparity;
+    }
+
+    public int getBlockRadius() {
+        return blockRadius;
+    }
+
+    /**
+     * @param blockRadius the matched block is 2 * blockRadius + 1 pixels wide and high
+     */
+    public void setBlockRadius(int blockRadius) {
+        if (blockRadius < 1) throw new IllegalArgumentException();
+        this.blockRadius = blockRadius;
+    }
+
+    public int getUniquenessRatio() {
+        return uniquenessRatio;
+    }
+
+    /**
+     * @param uniquenessRatio percentage by which the best cost must be lower
+     *                        than the best cost of a distant disparity
+     */
+    public void setUniquenessRatio(int uniquenessRatio) {
+        if (uniquenessRatio < 0) throw new IllegalArgumentException();
+        this.uniquenessRatio = uniquenessRatio;
+    }
+
+    /**
+     * @param left      rectified left luminance
+     * @param right     rectified right luminance
+     * @param width     image width
+     * @param height    image height
+     * @param disparity result, width * height unsigned disparities
+     */
+    public void process(byte[] left, byte[] right, int width, int height, byte[] disparity) {
+        final int bands = (height + BAND_HEIGHT - 1) / BAND_HEIGHT;
+        IntStream.range(0, bands).parallel().forEach(band -> matchBand(left, right, width, height,
+                band * BAND_HEIGHT, Math.min(height, (band + 1) * BAND_HEIGHT), disparity));
+    }
+
+    // private utility methods
+
+    private void matchBand(byte[] left, byte[] right, int width, int height, int y0, int y1, byte[] disparity) {
+        final int r = blockRadius;
+        final int top = Math.max(0, y0 - r);
+        final int bottom = Math.min(height, y1 + r);
+        final int stride = width + 1;
+        final BandWorkspace ws = workspaces.get();
+        ws.ensureCapacity((bottom - top + 1) * stride, (y1 - y0) * width);
+        final int[] integral = ws.integral;
+        final int[] best = ws.best;
+        final int[] second = ws.second;
+        final byte[] bestDisparity = ws.bestDisparity;
+        final int pixels = (y1 - y0) * width;
+        Arrays.fill(best, 0, pixels, Integer.MAX_VALUE);
+        Arrays.fill(second, 0, pixels, Integer.MAX_VALUE);
+        Arrays.fill(integral, 0, stride, 0);
+
+        for (int d = 0; d < maxDisparity && d + 2 * r < width; d++) {
+            // integral image of |left(x, y) - right(x - d, y)|, row 0 and column 0 are zero
+            for (int y = top; y < bottom; y++) {
+                int rowOffset = y * width;
+                int above = (y - top) * stride;
+                int current = above + stride;
+                int rowSum = 0;
+                integral[current] = 0;
+                for (int x = 0; x < d; x++) {
+                    integral[current + x + 1] = 0;
+                }
+                for (int x = d; x < width; x++) {
+                    int difference = (left[rowOffset + x] & 0xff) - (right[rowOffset + x - d] & 0xff);
+                    rowSum += difference < 0 ? -difference : difference;
+                    integral[current + x + 1] = integral[above + x + 1] + rowSum;
+                }
+            }
+            for (int y = y0; y < y1; y++) {
+                int blockTop = (Math.max(top, y - r) - top) * stride;
+                int blockBottom = (Math.min(bottom, y + r + 1) - top) * stride;
+                int index = (y - y0) * width;
+                for (int x = d + r; x < width - r; x++) {
+                    int cost = integral[blockBottom + x + r + 1] - integral[blockBottom + x - r]
+                            - integral[blockTop + x + r + 1] + integral[blockTop + x - r];
+                    int i = index + x;
+                    if (cost < best[i]) {
+                        if (d - (bestDisparity[i] & 0xff) > 1) {
+                            second[i] = best[i];
+                        }
+                        best[i] = cost;
+                        bestDisparity[i] = (byte) d;
+                    } else if (cost < second[i] && d - (bestDisparity[i] & 0xff) > 1) {
+                        second[i] = cost;
+                    }
+                }
+            }
+        }
+
+        final int ratio = 100 + uniquenessRatio;
+        for (int y = y0; y < y1; y++) {
+            int index = (y - y0) * width;
+            for (int x = 0; x < width; x++) {
+                int i = index + x;
+                boolean valid = best[i] != Integer.MAX_VALUE
+                        && (second[i] == Integer.MAX_VALUE || (long) best[i] * ratio < (long) second[i] * 100);
+                disparity[y * width + x] = valid ? bestDisparity[i] : (byte) INVALID;
+            }
+        }
+    }
+
+    /**
+     * Buffers of one worker thread, reused for all bands and frames
+     */
+    private static final class BandWorkspace {
+        private int[] integral = new int[0];
+        private int[] best = new int[0];
+        private int[] second = new int[0];
+        private byte[] bestDisparity = new byte[0];
+
+        private void ensureCapacity(int integralSize, int pixels) {
+            if (integral.length < integralSize) {
+                integral = new int[integralSize];
+            }
+            if (best.length < pixels) {
+                best = new int[pixels];
+                second = new int[pixels];
+                bestDisparity = new byte[pixels];
+            }
+        }
+    }
+}
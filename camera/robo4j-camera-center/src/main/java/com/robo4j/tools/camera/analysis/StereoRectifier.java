@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.tools.camera.analysis;
+
+import com.robo4j.tools.camera.model.CameraIntrinsics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rectifies a stereo pair so that corresponding points lie on the same image
+ * row. Both images are undistorted and rotated by their rectifying rotation
+ * into a common view with the intrinsics of the left camera. The remap
+ * tables are computed once per frame resolution and cached.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class StereoRectifier {
+    private static final double[] IDENTITY = {1, 0, 0, 0, 1, 0, 0, 0, 1};
+
+    private final CameraIntrinsics left;
+    private final CameraIntrinsics right;
+    private final double[] leftRotation;
+    private final double[] rightRotation;
+    private final Map<Long, RemapTable[]> tables = new ConcurrentHashMap<>();
+
+    /**
+     * Rectifier for cameras mounted parallel, only the lens distortion is removed
+     */
+    public StereoRectifier(CameraIntrinsics left, CameraIntrinsics right) {
+        this(left, right, IDENTITY, IDENTITY);
+    }
+
+    /**
+     * @param leftRotation  row major 3x3 rotation from the left camera to the rectified view
+     * @param rightRotation row major 3x3 rotation from the right camera to the rectified view
+     */
+    public StereoRectifier(CameraIntrinsics left, CameraIntrinsics right, double[] leftRotation, double[] rightRotation) {
+        if (leftRotation.length != 9 || rightRotation.length != 9) {
+            throw new IllegalArgumentException("rotation must be 3x3");
+        }
+        this.left = left;
+        this.right = right;
+        this.leftRotation = leftRotation.clone();
+        this.rightRotation = rightRotation.clone();
+    }
+
+    /**
+     * @param leftSource       left luminance
+     * @param rightSource      right luminance
+     * @param leftDestination  rectified left luminance
+     * @param rightDestination rectified right luminance
+     * @param width            frame width
+     * @param height           frame height
+     */
+    public void rectify(byte[] leftSource, byte[] rightSource, byte[] leftDestination, byte[] rightDestination,
+                        int width, int height) {
+        RemapTable[] pair = tables.computeIfAbsent(((long) width << 32) | height, k -> createTables(width, height));
+        pair[0].apply(leftSource, leftDestination);
+        pair[1].apply(rightSource, rightDestination);
+    }
+
+    // private utility methods
+
+    private RemapTable[] createTables(int width, int height) {
+        final CameraIntrinsics view = left.scaledTo(width, height);
+        return new RemapTable[]{createTable(view, left.scaledTo(width, height), leftRotation),
+                createTable(view, right.scaledTo(width, height), rightRotation)};
+    }
+
+    /**
+     * maps every pixel of the rectified view back into the distorted camera image
+     */
+    private static RemapTable createTable(CameraIntrinsics view, CameraIntrinsics camera, double[] r) {
+        final double[] distorted = new double[2];
+        return RemapTable.create(view.getWidth(), view.getHeight(), camera.getWidth(), camera.getHeight(), (u, v, result) -> {
+            double x = (u - view.getCx()) / view.getFx();
+            double y = (v - view.getCy()) / view.getFy();
+            // inverse rotation is the transpose
+            double px = r[0] * x + r[3] * y + r[6];
+            double py = r[1] * x + r[4] * y + r[7];
+            double pz = r[2] * x + r[5] * y + r[8];
+            if (pz <= 0) {
+                result[0] = Double.NaN;
+                result[1] = Double.NaN;
+                return;
+            }
+            LensDistortionCorrector.distort(camera, px / pz, py / pz, distorted);
+            result[0] = distorted[0] * camera.getFx() + camera.getCx();
+            result[1] = distorted[1] * camera.getFy() + camera.getCy();
+        });
+    }
+}
@@ -33,6 +33,19 @@ public enum SupportedConfigElements {
     DEVICE_IP       ("deviceIp"),
     DEVICE_PORT     ("devicePort"),
     TITLE           ("title"),
+    REWIND_MEMORY   ("rewindMemory"),
+    REWIND_BUDGET   ("rewindBudget"),
+    REWIND_SECONDS  ("rewindSeconds"),
+    SNAPSHOT_DIRECTORY ("snapshotDirectory"),
+    TIME_LAPSE      ("timeLapse"),
+    DUPLICATE_FILTER    ("duplicateFilter"),
+    DUPLICATE_THRESHOLD ("duplicateThreshold"),
+    STEREO_LEFT_INTRINSICS  ("stereoLeftIntrinsics"),
+    STEREO_RIGHT_INTRINSICS ("stereoRightIntrinsics"),
+    STEREO_LEFT_ROTATION    ("stereoLeftRotation"),
+    STEREO_RIGHT_ROTATION   ("stereoRightRotation"),
+    OPTICAL_FLOW    ("opticalFlow"),
+    BLOB_TRACKING   ("blobTracking"),
     ;
     //@formatter:on
 
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.tools.camera.model;
+
+/**
+ * Tracked foreground region, coordinates are in pixels of the processed frame
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class Blob {
+
+    private final int id;
+    private final float centroidX;
+    private final float centroidY;
+    private final int minX;
+    private final int minY;
+    private final int maxX;
+    private final int maxY;
+    private final int area;
+    private final float velocityX;
+    private final float velocityY;
+
+    public Blob(int id, float centroidX, float centroidY, int minX, int minY, int maxX, int maxY, int area,
+                float velocityX, float velocityY) {
+        this.id = id;
+        this.centroidX = centroidX;
+        this.centroidY = centroidY;
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.area = area;
+        this.velocityX = velocityX;
+        this.velocityY = velocityY;
+    }
+
+    /**
+     * @return track id, stable while the blob is followed from frame to frame
+     */
+    public int getId() {
+        return id;
+    }
+
+    public float getCentroidX() {
+        return centroidX;
+    }
+
+    public float getCentroidY() {
+        return centroidY;
+    }
+
+    public int getMinX() {
+        return minX;
+    }
+
+    public int getMinY() {
+        return minY;
+    }
+
+    /**
+     * @return right edge of the bounding box, inclusive
+     */
+    public int getMaxX() {
+        return maxX;
+    }
+
+    /**
+     * @return bottom edge of the bounding box, inclusive
+     */
+    public int getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * @return number of foreground pixels
+     */
+    public int getArea() {
+        return area;
+    }
+
+    /**
+     * @return horizontal velocity in pixels per second
+     */
+    public float getVelocityX() {
+        return velocityX;
+    }
+
+    /**
+     * @return vertical velocity in pixels per second
+     */
+    public float getVelocityY() {
+        return velocityY;
+    }
+
+    @Override
+    public String toString() {
+        return "Blob{" +
+                "id=" + id +
+                ", centroidX=" + centroidX +
+                ", centroidY=" + centroidY +
+                ", minX=" + minX +
+                ", minY=" + minY +
+                ", maxX=" + maxX +
+                ", maxY=" + maxY +
+                ", area=" + area +
+                ", velocityX=" + velocityX +
+                ", velocityY=" + velocityY +
+                '}';
+    }
+}
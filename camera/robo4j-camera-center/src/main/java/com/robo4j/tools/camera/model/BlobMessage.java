@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.tools.camera.model;
+
+import java.util.List;
+
+/**
+ * Moving objects found in a single frame, sent instead of the frame itself
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class BlobMessage {
+
+    private final long timestamp;
+    private final int width;
+    private final int height;
+    private final List<Blob> blobs;
+
+    public BlobMessage(long timestamp, int width, int height, List<Blob> blobs) {
+        this.timestamp = timestamp;
+        this.width = width;
+        this.height = height;
+        this.blobs = blobs;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public List<Blob> getBlobs() {
+        return blobs;
+    }
+
+    @Override
+    public String toString() {
+        return "BlobMessage{" +
+                "timestamp=" + timestamp +
+                ", width=" + width +
+                ", height=" + height +
+                ", blobs=" + blobs +
+                '}';
+    }
+}
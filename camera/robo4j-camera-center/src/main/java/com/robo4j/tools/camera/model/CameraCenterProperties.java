@@ -17,6 +17,7 @@
 
 package com.robo4j.tools.camera.model;
 
+import com.robo4j.tools.camera.analysis.DuplicateFrameFilter;
 import com.robo4j.tools.camera.enums.SupportedConfigElements;
 
 import java.util.Map;
@@ -26,6 +27,11 @@ import java.util.Map;
  * @author Miro Wengner (@miragemiko)
  */
 public final class CameraCenterProperties {
+    private static final long MEGABYTE = 1024 * 1024;
+    private static final long DEFAULT_REWIND_MEMORY = 256;
+    private static final long DEFAULT_REWIND_BUDGET = 32;
+    private static final long DEFAULT_REWIND_SECONDS = 30;
+    private static final String DEFAULT_SNAPSHOT_DIRECTORY = ".";
 
     private final Map<SupportedConfigElements, String> map;
 
@@ -45,6 +51,101 @@ public final class CameraCenterProperties {
         return map.get(SupportedConfigElements.TITLE);
     }
 
+    /**
+     * @return off-heap bytes shared by the rewind buffers of all cameras
+     */
+    public long getRewindMemory() {
+        return getLong(SupportedConfigElements.REWIND_MEMORY, DEFAULT_REWIND_MEMORY) * MEGABYTE;
+    }
+
+    /**
+     * @return off-heap bytes of the rewind buffer of one camera
+     */
+    public long getRewindBudget() {
+        return getLong(SupportedConfigElements.REWIND_BUDGET, DEFAULT_REWIND_BUDGET) * MEGABYTE;
+    }
+
+    public long getRewindMillis() {
+        return getLong(SupportedConfigElements.REWIND_SECONDS, DEFAULT_REWIND_SECONDS) * 1000;
+    }
+
+    public String getSnapshotDirectory() {
+        String value = map.get(SupportedConfigElements.SNAPSHOT_DIRECTORY);
+        return value == null ? DEFAULT_SNAPSHOT_DIRECTORY : value.trim();
+    }
+
+    /**
+     * @return every n-th received frame is saved, 0 if the time-lapse is off
+     */
+    public int getTimeLapse() {
+        return (int) getLong(SupportedConfigElements.TIME_LAPSE, 0);
+    }
+
+    /**
+     * @return true if unchanged frames should be suppressed, off by default
+     */
+    public boolean isDuplicateFilter() {
+        return getBoolean(SupportedConfigElements.DUPLICATE_FILTER);
+    }
+
+    /**
+     * @return maximal differing hash bits of a near repeat frame, -1 (default) for exact repeats only
+     */
+    public int getDuplicateThreshold() {
+        return (int) getLong(SupportedConfigElements.DUPLICATE_THRESHOLD, DuplicateFrameFilter.DISABLED);
+    }
+
+    /**
+     * @return width;height;fx;fy;cx;cy;k1;k2;k3;p1;p2 of the left stereo camera, null if not calibrated
+     */
+    public String getStereoLeftIntrinsics() {
+        return getTrimmed(SupportedConfigElements.STEREO_LEFT_INTRINSICS);
+    }
+
+    public String getStereoRightIntrinsics() {
+        return getTrimmed(SupportedConfigElements.STEREO_RIGHT_INTRINSICS);
+    }
+
+    /**
+     * @return row major rectifying rotation of the left stereo camera, null for cameras mounted parallel
+     */
+    public String getStereoLeftRotation() {
+        return getTrimmed(SupportedConfigElements.STEREO_LEFT_ROTATION);
+    }
+
+    public String getStereoRightRotation() {
+        return getTrimmed(SupportedConfigElements.STEREO_RIGHT_ROTATION);
+    }
+
+    /**
+     * @return true if the sparse optical flow of the camera should be tracked, off by default
+     */
+    public boolean isOpticalFlow() {
+        return getBoolean(SupportedConfigElements.OPTICAL_FLOW);
+    }
+
+    /**
+     * @return true if moving blobs of the camera should be tracked, off by default
+     */
+    public boolean isBlobTracking() {
+        return getBoolean(SupportedConfigElements.BLOB_TRACKING);
+    }
+
+    private boolean getBoolean(SupportedConfigElements element) {
+        String value = map.get(element);
+        return value != null && Boolean.parseBoolean(value.trim());
+    }
+
+    private String getTrimmed(SupportedConfigElements element) {
+        String value = map.get(element);
+        return value == null ? null : value.trim();
+    }
+
+    private long getLong(SupportedConfigElements element, long defaultValue) {
+        String value = map.get(element);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+
     @Override
     public String toString() {
         return "CameraCenterProperties{" +
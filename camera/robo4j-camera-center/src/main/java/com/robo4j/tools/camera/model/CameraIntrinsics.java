@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.model;
+
+/**
+ * Pinhole camera intrinsics with the Brown-Conrady distortion coefficients,
+ * valid for the resolution the camera was calibrated at
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class CameraIntrinsics {
+
+    private final int width;
+    private final int height;
+    private final double fx;
+    private final double fy;
+    private final double cx;
+    private final double cy;
+    private final double k1;
+    private final double k2;
+    private final double k3;
+    private final double p1;
+    private final double p2;
+
+    public CameraIntrinsics(int width, int height, double fx, double fy, double cx, double cy,
+                            double k1, double k2, double k3, double p1, double p2) {
+        this.width = width;
+        this.height = height;
+        this.fx = fx;
+        this.fy = fy;
+        this.cx = cx;
+        this.cy = cy;
+        this.k1 = k1;
+        this.k2 = k2;
+        this.k3 = k3;
+        this.p1 = p1;
+        this.p2 = p2;
+    }
+
+    /**
+     * Intrinsics of the same camera delivering frames of another resolution,
+     * the distortion coefficients do not depend on the resolution
+     *
+     * @param width  new width
+     * @param height new height
+     * @return scaled intrinsics
+     */
+    public CameraIntrinsics scaledTo(int width, int height) {
+        if (width == this.width && height == this.height) {
+            return this;
+        }
+        double sx = (double) width / this.width;
+        double sy = (double) height / this.height;
+        return new CameraIntrinsics(width, height, fx * sx, fy * sy, cx * sx, cy * sy, k1, k2, k3, p1, p2);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public double getFx() {
+        return fx;
+    }
+
+    public double getFy() {
+        return fy;
+    }
+
+    public double getCx() {
+        return cx;
+    }
+
+    public double getCy() {
+        return cy;
+    }
+
+    public double getK1() {
+        return k1;
+    }
+
+    public double getK2() {
+        return k2;
+    }
+
+    public double getK3() {
+        return k3;
+    }
+
+    public double getP1() {
+        return p1;
+    }
+
+    public double getP2() {
+        return p2;
+    }
+
+    @Override
+    public String toString() {
+        return "CameraIntrinsics{" +
+                "width=" + width +
+                ", height=" + height +
+                ", fx=" + fx +
+                ", fy=" + fy +
+                ", cx=" + cx +
+                ", cy=" + cy +
+                ", k1=" + k1 +
+                ", k2=" + k2 +
+                ", k3=" + k3 +
+                ", p1=" + p1 +
+                ", p2=" + p2 +
+                '}';
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.model;
+
+import java.util.Arrays;
+
+/**
+ * Simplified polygon traced along connected edge pixels
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class Contour {
+
+    private final int[] x;
+    private final int[] y;
+    private final boolean closed;
+    private final int pixelLength;
+    private final int[] pixelX;
+    private final int[] pixelY;
+    private final int[] vertexPixel;
+
+    public Contour(int[] x, int[] y, boolean closed, int pixelLength) {
+        this(x, y, closed, pixelLength, null, null, null);
+    }
+
+    /**
+     * @param pixelX      x of the traced pixels
+     * @param pixelY      y of the traced pixels
+     * @param vertexPixel index of the traced pixel each vertex was taken from
+     */
+    public Contour(int[] x, int[] y, boolean closed, int pixelLength, int[] pixelX, int[] pixelY, int[] vertexPixel) {
+        this.x = x;
+        this.y = y;
+        this.closed = closed;
+        this.pixelLength = pixelLength;
+        this.pixelX = pixelX;
+        this.pixelY = pixelY;
+        this.vertexPixel = vertexPixel;
+    }
+
+    public int getVertexCount() {
+        return x.length;
+    }
+
+    public int getX(int vertex) {
+        return x[vertex];
+    }
+
+    public int getY(int vertex) {
+        return y[vertex];
+    }
+
+    /**
+     * @return true if the traced edge pixels form a loop, the last vertex is
+     * then connected to the first one
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return number of edge pixels the polygon was simplified from
+     */
+    public int getPixelLength() {
+        return pixelLength;
+    }
+
+    /**
+     * @return true if the traced pixels are available, see {@link #getPixelX(int)}
+     */
+    public boolean hasPixels() {
+        return pixelX != null;
+    }
+
+    public int getPixelX(int pixel) {
+        return pixelX[pixel];
+    }
+
+    public int getPixelY(int pixel) {
+        return pixelY[pixel];
+    }
+
+    /**
+     * @param vertex vertex index
+     * @return index of the traced pixel the vertex was taken from
+     */
+    public int getVertexPixel(int vertex) {
+        return vertexPixel[vertex];
+    }
+
+    /**
+     * @return the contour moved by the offset
+     */
+    public Contour translate(int dx, int dy) {
+        return new Contour(add(x, dx), add(y, dy), closed, pixelLength, add(pixelX, dx), add(pixelY, dy), vertexPixel);
+    }
+
+    private static int[] add(int[] values, int offset) {
+        if (values == null) {
+            return null;
+        }
+        int[] result = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i] + offset;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Contour{" +
+                "x=" + Arrays.toString(x) +
+                ", y=" + Arrays.toString(y) +
+                ", closed=" + closed +
+                ", pixelLength=" + pixelLength +
+                '}';
+    }
+}
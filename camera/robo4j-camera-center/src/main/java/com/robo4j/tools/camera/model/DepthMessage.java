@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.tools.camera.model;
+
+import com.robo4j.tools.camera.analysis.StereoBlockMatcher;
+
+/**
+ * Disparity map of a stereo pair, one unsigned byte per pixel
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class DepthMessage {
+
+    private final long timestamp;
+    private final int width;
+    private final int height;
+    private final double focalBaseline;
+    private final byte[] disparity;
+
+    /**
+     * @param timestamp     capture time of the pair in milliseconds
+     * @param width         map width
+     * @param height        map height
+     * @param focalBaseline focal length in pixels of the map multiplied by the
+     *                      camera distance, 0 when not known
+     * @param disparity     disparities, {@link StereoBlockMatcher#INVALID} for unknown
+     */
+    public DepthMessage(long timestamp, int width, int height, double focalBaseline, byte[] disparity) {
+        this.timestamp = timestamp;
+        this.width = width;
+        this.height = height;
+        this.focalBaseline = focalBaseline;
+        this.disparity = disparity;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public double getFocalBaseline() {
+        return focalBaseline;
+    }
+
+    public byte[] getDisparity() {
+        return disparity;
+    }
+
+    /**
+     * @return disparity in pixels or -1 when unknown
+     */
+    public int getDisparity(int x, int y) {
+        int d = disparity[y * width + x] & 0xff;
+        return d == StereoBlockMatcher.INVALID ? -1 : d;
+    }
+
+    /**
+     * @return distance in the unit of the baseline, NaN when unknown
+     */
+    public double getDepth(int x, int y) {
+        int d = getDisparity(x, y);
+        return d <= 0 || focalBaseline == 0 ? Double.NaN : focalBaseline / d;
+    }
+
+    @Override
+    public String toString() {
+        return "DepthMessage{" +
+                "timestamp=" + timestamp +
+                ", width=" + width +
+                ", height=" + height +
+                ", focalBaseline=" + focalBaseline +
+                '}';
+    }
+}
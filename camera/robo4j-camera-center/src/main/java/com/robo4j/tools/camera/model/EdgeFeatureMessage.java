@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.model;
+
+import java.util.List;
+
+/**
+ * Compact description of the features extracted from a single frame, used
+ * instead of forwarding the whole image
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class EdgeFeatureMessage {
+
+    private final long timestamp;
+    private final int width;
+    private final int height;
+    private final List<LineSegment> lines;
+    private final List<Contour> contours;
+
+    public EdgeFeatureMessage(long timestamp, int width, int height, List<LineSegment> lines, List<Contour> contours) {
+        this.timestamp = timestamp;
+        this.width = width;
+        this.height = height;
+        this.lines = lines;
+        this.contours = contours;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public List<LineSegment> getLines() {
+        return lines;
+    }
+
+    public List<Contour> getContours() {
+        return contours;
+    }
+
+    @Override
+    public String toString() {
+        return "EdgeFeatureMessage{" +
+                "timestamp=" + timestamp +
+                ", width=" + width +
+                ", height=" + height +
+                ", lines=" + lines.size() +
+                ", contours=" + contours.size() +
+                '}';
+    }
+}
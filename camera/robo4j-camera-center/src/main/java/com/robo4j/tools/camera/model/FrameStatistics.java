@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.tools.camera.model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Receive statistics of a frame consumer, collected per sampling window.
+ * The queue depth counts the frames received but not yet displayed.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class FrameStatistics {
+
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder decodeNanos = new LongAdder();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final LongSupplier nanoClock;
+    private long windowStart;
+
+    public FrameStatistics() {
+        this(System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock source of the window times in nanoseconds
+     */
+    public FrameStatistics(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.windowStart = nanoClock.getAsLong();
+    }
+
+    public void frameReceived(int size) {
+        frames.increment();
+        bytes.add(size);
+        int depth = queueDepth.incrementAndGet();
+        maxQueueDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    public void frameDecoded(long nanos) {
+        decodeNanos.add(nanos);
+    }
+
+    public void frameDisplayed() {
+        queueDepth.decrementAndGet();
+    }
+
+    /**
+     * @return statistics since the previous sample, the window restarts
+     */
+    public synchronized Sample sample() {
+        long now = nanoClock.getAsLong();
+        double seconds = (now - windowStart) / 1e9;
+        windowStart = now;
+        long frameCount = frames.sumThenReset();
+        long byteCount = bytes.sumThenReset();
+        long decode = decodeNanos.sumThenReset();
+        int maxDepth = maxQueueDepth.getAndSet(queueDepth.get());
+        return new Sample(frameCount, frameCount / seconds, byteCount / seconds,
+                frameCount == 0 ? 0 : decode / 1e6 / frameCount, maxDepth);
+    }
+
+    /**
+     * Statistics of one window
+     */
+    public static final class Sample {
+        private final long frames;
+        private final double frameRate;
+        private final double byteRate;
+        private final double decodeMillis;
+        private final int maxQueueDepth;
+
+        private Sample(long frames, double frameRate, double byteRate, double decodeMillis, int maxQueueDepth) {
+            this.frames = frames;
+            this.frameRate = frameRate;
+            this.byteRate = byteRate;
+            this.decodeMillis = decodeMillis;
+            this.maxQueueDepth = maxQueueDepth;
+        }
+
+        public long getFrames() {
+            return frames;
+        }
+
+        public double getFrameRate() {
+            return frameRate;
+        }
+
+        public double getByteRate() {
+            return byteRate;
+        }
+
+        /**
+         * @return mean decode time of a frame
+         */
+        public double getDecodeMillis() {
+            return decodeMillis;
+        }
+
+        /**
+         * @return share of the time spent decoding, 1 means the decoder is saturated
+         */
+        public double getDecodeLoad() {
+            return frameRate * decodeMillis / 1000;
+        }
+
+        public int getMaxQueueDepth() {
+            return maxQueueDepth;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Sample{frames=%d, frameRate=%.1f, byteRate=%.0f, decodeMillis=%.1f, maxQueueDepth=%d}",
+                    frames, frameRate, byteRate, decodeMillis, maxQueueDepth);
+        }
+    }
+}
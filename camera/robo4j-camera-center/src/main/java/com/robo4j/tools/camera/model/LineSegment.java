@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.model;
+
+/**
+ * Straight line segment detected in the image, coordinates are in pixels of
+ * the processed frame
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class LineSegment {
+
+    private final int x1;
+    private final int y1;
+    private final int x2;
+    private final int y2;
+    private final float theta;
+    private final int votes;
+
+    public LineSegment(int x1, int y1, int x2, int y2, float theta, int votes) {
+        this.x1 = x1;
+        this.y1 = y1;
+        this.x2 = x2;
+        this.y2 = y2;
+        this.theta = theta;
+        this.votes = votes;
+    }
+
+    public int getX1() {
+        return x1;
+    }
+
+    public int getY1() {
+        return y1;
+    }
+
+    public int getX2() {
+        return x2;
+    }
+
+    public int getY2() {
+        return y2;
+    }
+
+    /**
+     * @return angle of the line normal in radians, range [0, PI)
+     */
+    public float getTheta() {
+        return theta;
+    }
+
+    /**
+     * @return accumulator votes which triggered the segment
+     */
+    public int getVotes() {
+        return votes;
+    }
+
+    /**
+     * @return the segment moved by the offset
+     */
+    public LineSegment translate(int dx, int dy) {
+        return new LineSegment(x1 + dx, y1 + dy, x2 + dx, y2 + dy, theta, votes);
+    }
+
+    public double getLength() {
+        return Math.hypot(x2 - x1, y2 - y1);
+    }
+
+    @Override
+    public String toString() {
+        return "LineSegment{" +
+                "x1=" + x1 +
+                ", y1=" + y1 +
+                ", x2=" + x2 +
+                ", y2=" + y2 +
+                ", theta=" + theta +
+                ", votes=" + votes +
+                '}';
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.model;
+
+/**
+ * Sparse optical flow between two consecutive frames, sent instead of the
+ * frame itself. The vectors are packed as x0, y0, x1, y1 in the coordinates
+ * of the processed frame.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class OpticalFlowMessage {
+
+    private final long timestamp;
+    private final int width;
+    private final int height;
+    private final float[] vectors;
+
+    public OpticalFlowMessage(long timestamp, int width, int height, float[] vectors) {
+        this.timestamp = timestamp;
+        this.width = width;
+        this.height = height;
+        this.vectors = vectors;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getCount() {
+        return vectors.length / 4;
+    }
+
+    public float getFromX(int vector) {
+        return vectors[4 * vector];
+    }
+
+    public float getFromY(int vector) {
+        return vectors[4 * vector + 1];
+    }
+
+    public float getToX(int vector) {
+        return vectors[4 * vector + 2];
+    }
+
+    public float getToY(int vector) {
+        return vectors[4 * vector + 3];
+    }
+
+    @Override
+    public String toString() {
+        return "OpticalFlowMessage{" +
+                "timestamp=" + timestamp +
+                ", width=" + width +
+                ", height=" + height +
+                ", vectors=" + getCount() +
+                '}';
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.model;
+
+import java.util.List;
+
+/**
+ * Hysteresis of the adaptive capture quality. Each sample of the receive
+ * statistics is classified as falling behind, having headroom or neither,
+ * and the quality steps down or up the ladder of levels after enough
+ * consecutive samples of one kind.
+ *
+ * Falling behind: frames queue up, the decoder is busy for most of the time,
+ * or far fewer frames arrive than requested. Headroom: none of it with a
+ * margin. A step down needs fewer consecutive samples than a step up, the
+ * sample after a change is ignored, and a step up which has to be reverted
+ * soon doubles the samples needed for the next step up, so the settings do
+ * not oscillate.
+ *
+ * Not thread safe, the samples are expected from one sampling task.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class QualityController {
+    private static final int MAX_UPGRADE_BACKOFF = 8;
+    private static final double HEADROOM_RATE_RATIO = 0.9;
+
+    private final List<QualityLevel> levels;
+    private final int downgradeSamples;
+    private final int upgradeSamples;
+    private final int maxQueueDepth;
+    private final double maxDecodeLoad;
+    private final double minRateRatio;
+
+    private int current;
+    private int behindCount;
+    private int headroomCount;
+    private int settleSamples;
+    private int upgradeBackoff = 1;
+    private int samplesSinceUpgrade = Integer.MAX_VALUE;
+
+    /**
+     * @param levels           quality levels, lowest quality first
+     * @param startLevel       index of the first level
+     * @param downgradeSamples consecutive samples falling behind for a step down
+     * @param upgradeSamples   consecutive samples with headroom for a step up
+     * @param maxQueueDepth    more frames waiting for display are falling behind
+     * @param maxDecodeLoad    share of the time spent decoding which is falling behind
+     * @param minRateRatio     share of the requested frame rate below which is falling behind
+     */
+    public QualityController(List<QualityLevel> levels, int startLevel, int downgradeSamples, int upgradeSamples,
+                             int maxQueueDepth, double maxDecodeLoad, double minRateRatio) {
+        if (startLevel < 0 || startLevel >= levels.size() || downgradeSamples < 1 || upgradeSamples < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.levels = levels;
+        this.current = startLevel;
+        this.downgradeSamples = downgradeSamples;
+        this.upgradeSamples = upgradeSamples;
+        this.maxQueueDepth = maxQueueDepth;
+        this.maxDecodeLoad = maxDecodeLoad;
+        this.minRateRatio = minRateRatio;
+    }
+
+    /**
+     * @param sample statistics of the last window with frames
+     * @return true if the level changed
+     */
+    public boolean update(FrameStatistics.Sample sample) {
+        if (settleSamples > 0) {
+            settleSamples--;
+            return false;
+        }
+        if (samplesSinceUpgrade < Integer.MAX_VALUE) {
+            samplesSinceUpgrade++;
+        }
+        if (upgradeBackoff > 1 && samplesSinceUpgrade == 2 * upgradeSamples * upgradeBackoff) {
+            // the last step up held, trust the next one sooner
+            upgradeBackoff /= 2;
+        }
+        final double requestedRate = levels.get(current).getFrameRate();
+        final boolean behind = sample.getMaxQueueDepth() > maxQueueDepth
+                || sample.getDecodeLoad() > maxDecodeLoad
+                || sample.getFrameRate() < requestedRate * minRateRatio;
+        final boolean headroom = sample.getMaxQueueDepth() <= 1
+                && sample.getDecodeLoad() < maxDecodeLoad / 2
+                && sample.getFrameRate() >= requestedRate * HEADROOM_RATE_RATIO;
+        behindCount = behind ? behindCount + 1 : 0;
+        headroomCount = headroom ? headroomCount + 1 : 0;
+
+        if (behindCount >= downgradeSamples && current > 0) {
+            if (samplesSinceUpgrade <= upgradeSamples * upgradeBackoff) {
+                upgradeBackoff = Math.min(MAX_UPGRADE_BACKOFF, upgradeBackoff * 2);
+            }
+            changeLevel(current - 1);
+            return true;
+        } else if (headroomCount >= upgradeSamples * upgradeBackoff && current < levels.size() - 1) {
+            samplesSinceUpgrade = 0;
+            changeLevel(current + 1);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * forgets the consecutive samples, e.g. while disabled or without frames
+     */
+    public void reset() {
+        behindCount = 0;
+        headroomCount = 0;
+    }
+
+    public QualityLevel getCurrentLevel() {
+        return levels.get(current);
+    }
+
+    /**
+     * @return index of the current level
+     */
+    public int getLevelIndex() {
+        return current;
+    }
+
+    /**
+     * @return factor of the samples with headroom needed for the next step up
+     */
+    public int getUpgradeBackoff() {
+        return upgradeBackoff;
+    }
+
+    private void changeLevel(int level) {
+        current = level;
+        behindCount = 0;
+        headroomCount = 0;
+        settleSamples = 1;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.tools.camera.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Capture settings of one step of the adaptive quality ladder
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class QualityLevel {
+
+    private final int width;
+    private final int height;
+    private final int frameInterval;
+
+    /**
+     * @param width         image width
+     * @param height        image height
+     * @param frameInterval milliseconds between the frames (timelapse)
+     */
+    public QualityLevel(int width, int height, int frameInterval) {
+        this.width = width;
+        this.height = height;
+        this.frameInterval = frameInterval;
+    }
+
+    /**
+     * @param levels comma separated levels, e.g. "320x240@400,640x480@100"
+     * @return levels in the given order, lowest quality first
+     */
+    public static List<QualityLevel> parse(String levels) {
+        final List<QualityLevel> result = new ArrayList<>();
+        for (String level : levels.split(",")) {
+            String[] sizeInterval = level.trim().split("@");
+            String[] size = sizeInterval[0].split("x");
+            if (sizeInterval.length != 2 || size.length != 2) {
+                throw new IllegalArgumentException("not valid quality level: " + level);
+            }
+            result.add(new QualityLevel(Integer.parseInt(size[0]), Integer.parseInt(size[1]),
+                    Integer.parseInt(sizeInterval[1])));
+        }
+        return result;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getFrameInterval() {
+        return frameInterval;
+    }
+
+    /**
+     * @return frames per second the camera is asked for
+     */
+    public double getFrameRate() {
+        return 1000.0 / frameInterval;
+    }
+
+    @Override
+    public String toString() {
+        return width + "x" + height + "@" + frameInterval;
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.model;
+
+/**
+ * Keeps the last encoded frames of one camera in {@link RewindMemory}. Frames
+ * are written as one continuous stream over the blocks held by the buffer and
+ * are addressed by an increasing sequence number. The oldest frames are
+ * evicted when the time window, the camera budget or the global budget is
+ * exceeded.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class RewindBuffer {
+    private static final int INITIAL_FRAMES = 64;
+
+    private final RewindMemory memory;
+    private final int blockSize;
+    private final int maxBlocks;
+    private final long windowMillis;
+
+    /* blocks in stream order, ring of maxBlocks */
+    private final int[] blocks;
+    private int blockHead;
+    private int blockCount;
+    /* stream position of the first held block and of the next write */
+    private long streamStart;
+    private long streamEnd;
+
+    /* frame index, ring growing on demand */
+    private long[] times = new long[INITIAL_FRAMES];
+    private long[] positions = new long[INITIAL_FRAMES];
+    private int[] lengths = new int[INITIAL_FRAMES];
+    private int frameHead;
+    private int frameCount;
+    private long firstSequence;
+    private boolean closed;
+
+    RewindBuffer(RewindMemory memory, int maxBlocks, long windowMillis) {
+        this.memory = memory;
+        this.blockSize = memory.getBlockSize();
+        this.maxBlocks = maxBlocks;
+        this.windowMillis = windowMillis;
+        this.blocks = new int[maxBlocks];
+    }
+
+    /**
+     * stores a copy of the encoded frame
+     *
+     * @param time  frame time in milliseconds, not decreasing
+     * @param frame encoded frame
+     * @return false if the frame does not fit in the budget, even with all
+     *         older frames of this buffer evicted, or the buffer is closed
+     */
+    public boolean append(long time, byte[] frame) {
+        if (frame.length > (long) maxBlocks * blockSize) {
+            return false;
+        }
+        synchronized (memory) {
+            if (closed) {
+                return false;
+            }
+            while (frameCount > 0 && times[frameHead] < time - windowMillis) {
+                evictOldest();
+            }
+            while (streamEnd + frame.length > streamStart + (long) blockCount * blockSize) {
+                if (blockCount == maxBlocks) {
+                    evictOldest();
+                } else {
+                    int block = memory.acquire();
+                    if (block >= 0) {
+                        blocks[(blockHead + blockCount) % maxBlocks] = block;
+                        blockCount++;
+                    } else if (frameCount > 0) {
+                        // make room from the own oldest frames instead of waiting for the window
+                        evictOldest();
+                    } else {
+                        // return the blocks acquired for this frame
+                        releaseBlocks(streamEnd);
+                        streamStart = 0;
+                        streamEnd = 0;
+                        return false;
+                    }
+                }
+            }
+            long position = streamEnd;
+            int written = 0;
+            while (written < frame.length) {
+                long offset = position + written - streamStart;
+                int block = blocks[(int) ((blockHead + offset / blockSize) % maxBlocks)];
+                int blockOffset = (int) (offset % blockSize);
+                int length = Math.min(frame.length - written, blockSize - blockOffset);
+                memory.write(block, blockOffset, frame, written, length);
+                written += length;
+            }
+            streamEnd = position + frame.length;
+            addFrame(time, position, frame.length);
+            return true;
+        }
+    }
+
+    /**
+     * @param sequence frame sequence number
+     * @return copy of the encoded frame or null if the frame is no longer held
+     */
+    public byte[] read(long sequence) {
+        synchronized (memory) {
+            if (sequence < firstSequence || sequence >= firstSequence + frameCount) {
+                return null;
+            }
+            int index = frameIndex(sequence);
+            byte[] result = new byte[lengths[index]];
+            int done = 0;
+            while (done < result.length) {
+                long offset = positions[index] + done - streamStart;
+                int block = blocks[(int) ((blockHead + offset / blockSize) % maxBlocks)];
+                int blockOffset = (int) (offset % blockSize);
+                int length = Math.min(result.length - done, blockSize - blockOffset);
+                memory.read(block, blockOffset, result, done, length);
+                done += length;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * @param time time in milliseconds
+     * @return sequence of the last frame not newer than the time, the oldest frame if all are newer, -1 if empty
+     */
+    public long sequenceAt(long time) {
+        synchronized (memory) {
+            if (frameCount == 0) {
+                return -1;
+            }
+            int low = 0;
+            int high = frameCount - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (times[(frameHead + mid) % times.length] <= time) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return firstSequence + low;
+        }
+    }
+
+    /**
+     * @return time of the frame or -1 if the frame is no longer held
+     */
+    public long getTime(long sequence) {
+        synchronized (memory) {
+            if (sequence < firstSequence || sequence >= firstSequence + frameCount) {
+                return -1;
+            }
+            return times[frameIndex(sequence)];
+        }
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public long getOldestTime() {
+        synchronized (memory) {
+            return frameCount == 0 ? -1 : times[frameHead];
+        }
+    }
+
+    public long getNewestTime() {
+        synchronized (memory) {
+            return frameCount == 0 ? -1 : times[frameIndex(firstSequence + frameCount - 1)];
+        }
+    }
+
+    public int getFrameCount() {
+        synchronized (memory) {
+            return frameCount;
+        }
+    }
+
+    /**
+     * @return bytes of the blocks held by this buffer
+     */
+    public long getUsedBytes() {
+        synchronized (memory) {
+            return (long) blockCount * blockSize;
+        }
+    }
+
+    /**
+     * drops all frames and returns the memory
+     */
+    public void clear() {
+        synchronized (memory) {
+            while (frameCount > 0) {
+                evictOldest();
+            }
+            releaseBlocks(streamEnd);
+        }
+    }
+
+    /**
+     * drops all frames and unregisters the buffer from the memory, frames
+     * appended later are ignored
+     */
+    public void close() {
+        synchronized (memory) {
+            closed = true;
+            clear();
+            memory.remove(this);
+        }
+    }
+
+    /**
+     * called with the memory lock held
+     */
+    void evictOldest() {
+        frameHead = (frameHead + 1) % times.length;
+        frameCount--;
+        firstSequence++;
+        if (frameCount == 0) {
+            releaseBlocks(streamEnd);
+            streamStart = 0;
+            streamEnd = 0;
+        } else {
+            releaseBlocks(positions[frameHead]);
+        }
+    }
+
+    /* releases the leading blocks which contain no data after the position */
+    private void releaseBlocks(long position) {
+        while (blockCount > 0 && (frameCount == 0 || streamStart + blockSize <= position)) {
+            memory.release(blocks[blockHead]);
+            blockHead = (blockHead + 1) % maxBlocks;
+            blockCount--;
+            streamStart += blockSize;
+        }
+    }
+
+    private void addFrame(long time, long position, int length) {
+        if (frameCount == times.length) {
+            int capacity = times.length * 2;
+            times = copy(times, capacity);
+            positions = copy(positions, capacity);
+            int[] newLengths = new int[capacity];
+            for (int i = 0; i < frameCount; i++) {
+                newLengths[i] = lengths[(frameHead + i) % lengths.length];
+            }
+            lengths = newLengths;
+            frameHead = 0;
+        }
+        int index = (frameHead + frameCount) % times.length;
+        times[index] = time;
+        positions[index] = position;
+        lengths[index] = length;
+        frameCount++;
+    }
+
+    private long[] copy(long[] source, int capacity) {
+        long[] result = new long[capacity];
+        for (int i = 0; i < frameCount; i++) {
+            result[i] = source[(frameHead + i) % source.length];
+        }
+        return result;
+    }
+
+    private int frameIndex(long sequence) {
+        return (int) ((frameHead + (sequence - firstSequence)) % times.length);
+    }
+}
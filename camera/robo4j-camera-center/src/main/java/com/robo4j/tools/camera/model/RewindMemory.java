@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.model;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Off-heap memory shared by the rewind buffers of all cameras. The memory is
+ * split into fixed size blocks and never grows over the global budget, the
+ * direct segments are allocated on demand. When no block is left, the oldest
+ * frame over all cameras is evicted until one becomes free.
+ *
+ * All buffer operations synchronize on this instance.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class RewindMemory {
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    private static final int BLOCKS_PER_SEGMENT = 256;
+
+    private final int blockSize;
+    private final int totalBlocks;
+    private final ByteBuffer[] segments;
+    private final int[] freeBlocks;
+    private final List<RewindBuffer> buffers = new ArrayList<>();
+    private int freeCount;
+    private int allocatedBlocks;
+
+    /**
+     * @param budget global budget in bytes, rounded down to whole blocks
+     */
+    public RewindMemory(long budget) {
+        this(budget, DEFAULT_BLOCK_SIZE);
+    }
+
+    public RewindMemory(long budget, int blockSize) {
+        if (blockSize <= 0 || budget < blockSize) {
+            throw new IllegalArgumentException("budget must hold at least one block: " + budget);
+        }
+        this.blockSize = blockSize;
+        this.totalBlocks = (int) Math.min(Integer.MAX_VALUE, budget / blockSize);
+        this.segments = new ByteBuffer[(totalBlocks + BLOCKS_PER_SEGMENT - 1) / BLOCKS_PER_SEGMENT];
+        this.freeBlocks = new int[totalBlocks];
+    }
+
+    /**
+     * @param budget       per camera budget in bytes, rounded down to whole blocks
+     * @param windowMillis frames older than the newest frame minus the window are dropped
+     * @return new registered buffer
+     */
+    public synchronized RewindBuffer createBuffer(long budget, long windowMillis) {
+        int blocks = (int) Math.min(totalBlocks, budget / blockSize);
+        if (blocks < 1) {
+            throw new IllegalArgumentException("budget must hold at least one block: " + budget);
+        }
+        RewindBuffer buffer = new RewindBuffer(this, blocks, windowMillis);
+        buffers.add(buffer);
+        return buffer;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public long getBudget() {
+        return (long) totalBlocks * blockSize;
+    }
+
+    /**
+     * @return bytes currently held by all buffers
+     */
+    public synchronized long getUsedBytes() {
+        return (long) (allocatedBlocks - freeCount) * blockSize;
+    }
+
+    synchronized void remove(RewindBuffer buffer) {
+        buffers.remove(buffer);
+    }
+
+    /**
+     * @return free block, evicting the oldest frames of any buffer if necessary, or -1 if nothing can be evicted
+     */
+    int acquire() {
+        if (freeCount == 0 && allocatedBlocks < totalBlocks) {
+            allocateSegment();
+        }
+        while (freeCount == 0) {
+            RewindBuffer victim = null;
+            for (RewindBuffer buffer : buffers) {
+                if (buffer.getFrameCount() > 0 && (victim == null || buffer.getOldestTime() < victim.getOldestTime())) {
+                    victim = buffer;
+                }
+            }
+            if (victim == null) {
+                return -1;
+            }
+            victim.evictOldest();
+        }
+        return freeBlocks[--freeCount];
+    }
+
+    void release(int block) {
+        freeBlocks[freeCount++] = block;
+    }
+
+    void write(int block, int offset, byte[] src, int srcOffset, int length) {
+        ByteBuffer segment = segments[block / BLOCKS_PER_SEGMENT];
+        segment.position((block % BLOCKS_PER_SEGMENT) * blockSize + offset);
+        segment.put(src, srcOffset, length);
+    }
+
+    void read(int block, int offset, byte[] dst, int dstOffset, int length) {
+        ByteBuffer segment = segments[block / BLOCKS_PER_SEGMENT];
+        segment.position((block % BLOCKS_PER_SEGMENT) * blockSize + offset);
+        segment.get(dst, dstOffset, length);
+    }
+
+    private void allocateSegment() {
+        int index = allocatedBlocks / BLOCKS_PER_SEGMENT;
+        int blocks = Math.min(BLOCKS_PER_SEGMENT, totalBlocks - allocatedBlocks);
+        segments[index] = ByteBuffer.allocateDirect(blocks * blockSize);
+        for (int i = blocks - 1; i >= 0; i--) {
+            freeBlocks[freeCount++] = allocatedBlocks + i;
+        }
+        allocatedBlocks += blocks;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.tools.camera.model;
+
+import com.robo4j.tools.camera.enums.StereoSide;
+
+/**
+ * Encoded frame of one camera of the stereo pair
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class StereoFrameMessage {
+
+    private final StereoSide side;
+    private final long timestamp;
+    private final byte[] image;
+
+    /**
+     * @param side      camera of the frame
+     * @param timestamp capture time in milliseconds
+     * @param image     encoded image
+     */
+    public StereoFrameMessage(StereoSide side, long timestamp, byte[] image) {
+        this.side = side;
+        this.timestamp = timestamp;
+        this.image = image;
+    }
+
+    public StereoSide getSide() {
+        return side;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public byte[] getImage() {
+        return image;
+    }
+
+    @Override
+    public String toString() {
+        return "StereoFrameMessage{" +
+                "side=" + side +
+                ", timestamp=" + timestamp +
+                ", image=" + image.length +
+                '}';
+    }
+}
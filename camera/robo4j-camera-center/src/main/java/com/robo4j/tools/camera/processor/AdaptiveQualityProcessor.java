@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.tools.camera.processor;
+
+import com.robo4j.ConfigurationException;
+import com.robo4j.LifecycleState;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+import com.robo4j.configuration.Configuration;
+import com.robo4j.logging.SimpleLoggingUtil;
+import com.robo4j.tools.camera.model.FrameStatistics;
+import com.robo4j.tools.camera.model.QualityController;
+import com.robo4j.tools.camera.model.QualityLevel;
+
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Closed loop control of the capture quality. The receive statistics are
+ * sampled periodically, the {@link QualityController} steps the quality down
+ * the ladder of levels when the center falls behind and up again when there
+ * is headroom.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class AdaptiveQualityProcessor extends RoboUnit<String> {
+    public static final String NAME = "adaptiveQualityProcessor";
+    public static final String MESSAGE_ENABLE = "enable";
+    public static final String MESSAGE_DISABLE = "disable";
+    public static final String PROP_LEVELS = "levels";
+    public static final String PROP_START_LEVEL = "startLevel";
+    public static final String PROP_SAMPLE_PERIOD = "samplePeriod";
+    public static final String PROP_DOWNGRADE_SAMPLES = "downgradeSamples";
+    public static final String PROP_UPGRADE_SAMPLES = "upgradeSamples";
+    public static final String PROP_MAX_QUEUE_DEPTH = "maxQueueDepth";
+    public static final String PROP_MAX_DECODE_LOAD = "maxDecodeLoad";
+    public static final String PROP_MIN_RATE_RATIO = "minRateRatio";
+    public static final String DEFAULT_LEVELS = "320x240@400,480x360@200,640x480@100";
+
+    private volatile FrameStatistics statistics;
+    private volatile Consumer<QualityLevel> listener;
+    private volatile boolean enabled;
+    private ScheduledFuture<?> sampling;
+
+    private long samplePeriod;
+    /* only touched by the sampling task */
+    private QualityController controller;
+
+    public AdaptiveQualityProcessor(RoboContext context, String id) {
+        super(String.class, context, id);
+    }
+
+    /**
+     * @param statistics statistics of the consumer of the camera frames
+     */
+    public void setStatistics(FrameStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * @param listener applies the new level to the camera
+     */
+    public void setListener(Consumer<QualityLevel> listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    protected void onInitialization(Configuration configuration) throws ConfigurationException {
+        List<QualityLevel> levels = QualityLevel.parse(configuration.getString(PROP_LEVELS, DEFAULT_LEVELS));
+        int startLevel = configuration.getInteger(PROP_START_LEVEL, levels.size() - 1);
+        if (startLevel < 0 || startLevel >= levels.size()) {
+            throw ConfigurationException.createMissingConfigNameException(PROP_START_LEVEL);
+        }
+        samplePeriod = configuration.getLong(PROP_SAMPLE_PERIOD, 2000L);
+        controller = new QualityController(levels, startLevel,
+                configuration.getInteger(PROP_DOWNGRADE_SAMPLES, 2),
+                configuration.getInteger(PROP_UPGRADE_SAMPLES, 5),
+                configuration.getInteger(PROP_MAX_QUEUE_DEPTH, 2),
+                configuration.getDouble(PROP_MAX_DECODE_LOAD, 0.7),
+                configuration.getDouble(PROP_MIN_RATE_RATIO, 0.6));
+    }
+
+    @Override
+    public void start() {
+        setState(LifecycleState.STARTING);
+        sampling = getContext().getScheduler().scheduleAtFixedRate(this::sample, samplePeriod, samplePeriod,
+                TimeUnit.MILLISECONDS);
+        setState(LifecycleState.STARTED);
+    }
+
+    @Override
+    public void stop() {
+        setState(LifecycleState.STOPPING);
+        if (sampling != null) {
+            sampling.cancel(false);
+            sampling = null;
+        }
+        setState(LifecycleState.STOPPED);
+    }
+
+    @Override
+    public void onMessage(String message) {
+        switch (message) {
+            case MESSAGE_ENABLE:
+                enabled = true;
+                break;
+            case MESSAGE_DISABLE:
+                enabled = false;
+                break;
+            default:
+                SimpleLoggingUtil.error(getClass(), "not implemented:" + message);
+        }
+    }
+
+    public QualityLevel getCurrentLevel() {
+        return controller.getCurrentLevel();
+    }
+
+    // private utility methods
+
+    private void sample() {
+        final FrameStatistics currentStatistics = statistics;
+        if (currentStatistics == null) {
+            return;
+        }
+        final FrameStatistics.Sample sample = currentStatistics.sample();
+        if (!enabled || sample.getFrames() == 0) {
+            controller.reset();
+            return;
+        }
+        if (controller.update(sample)) {
+            QualityLevel quality = controller.getCurrentLevel();
+            SimpleLoggingUtil.info(getClass(), "quality: " + quality + ", " + sample);
+            Consumer<QualityLevel> currentListener = listener;
+            if (currentListener != null) {
+                currentListener.accept(quality);
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.tools.camera.processor;
+
+import com.robo4j.ConfigurationException;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+import com.robo4j.configuration.Configuration;
+import com.robo4j.logging.SimpleLoggingUtil;
+import com.robo4j.socket.http.codec.CameraMessage;
+import com.robo4j.tools.camera.analysis.BackgroundSubtractor;
+import com.robo4j.tools.camera.analysis.BlobLabeler;
+import com.robo4j.tools.camera.analysis.BlobTracker;
+import com.robo4j.tools.camera.analysis.FramePyramid;
+import com.robo4j.tools.camera.model.Blob;
+import com.robo4j.tools.camera.model.BlobMessage;
+import com.robo4j.tools.camera.utils.FramePyramidService;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.ImageView;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Finds moving objects by background subtraction and follows them from
+ * frame to frame. Only the compact {@link BlobMessage} is sent to the
+ * target unit.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class BlobTrackingProcessor extends RoboUnit<CameraMessage> {
+    public static final String NAME = "blobTrackingProcessor";
+    public static final String PROP_TARGET = "target";
+    public static final String PROP_PROCESSING_WIDTH = "processingWidth";
+    public static final String PROP_THRESHOLD = "threshold";
+    public static final String PROP_LEARNING_SHIFT = "learningShift";
+    public static final String PROP_MIN_AREA = "minArea";
+    public static final String PROP_MAX_DISTANCE = "maxDistance";
+    public static final String PROP_MAX_MISSED_FRAMES = "maxMissedFrames";
+
+    private final BackgroundSubtractor subtractor = new BackgroundSubtractor();
+    private final BlobLabeler labeler = new BlobLabeler();
+    private final BlobTracker tracker = new BlobTracker();
+    private volatile ImageView imageView;
+    private volatile FramePyramidService pyramidService;
+    private String target;
+    private int processingWidth = 320;
+    private int lastWidth;
+    private int lastHeight;
+
+    public BlobTrackingProcessor(RoboContext context, String id) {
+        super(CameraMessage.class, context, id);
+    }
+
+    public void setImageView(ImageView imageView) {
+        this.imageView = imageView;
+    }
+
+    /**
+     * The service is created once per camera and shared by all processors
+     * receiving its frames, each frame is then decoded only once.
+     *
+     * @param pyramidService service of the camera, required
+     */
+    public void setPyramidService(FramePyramidService pyramidService) {
+        this.pyramidService = pyramidService;
+    }
+
+    @Override
+    protected void onInitialization(Configuration configuration) throws ConfigurationException {
+        target = configuration.getString(PROP_TARGET, null);
+        processingWidth = configuration.getInteger(PROP_PROCESSING_WIDTH, processingWidth);
+        subtractor.setThreshold(configuration.getInteger(PROP_THRESHOLD, subtractor.getThreshold()));
+        subtractor.setLearningShift(configuration.getInteger(PROP_LEARNING_SHIFT, subtractor.getLearningShift()));
+        labeler.setMinArea(configuration.getInteger(PROP_MIN_AREA, labeler.getMinArea()));
+        tracker.setMaxDistance(configuration.getFloat(PROP_MAX_DISTANCE, tracker.getMaxDistance()));
+        tracker.setMaxMissedFrames(configuration.getInteger(PROP_MAX_MISSED_FRAMES, tracker.getMaxMissedFrames()));
+    }
+
+    @Override
+    public void onMessage(CameraMessage message) {
+        if (message.getImage() != null) {
+            final FramePyramidService service = pyramidService;
+            if (service == null) {
+                SimpleLoggingUtil.error(getClass(), "no pyramid service");
+                return;
+            }
+            try {
+                FramePyramid pyramid = service.acquire(message);
+                if (pyramid == null) {
+                    SimpleLoggingUtil.error(getClass(), "not supported image: " + message.getType());
+                    return;
+                }
+                BlobMessage blobs;
+                try {
+                    blobs = track(pyramid);
+                } finally {
+                    pyramid.release();
+                }
+                if (target != null) {
+                    getContext().getReference(target).sendMessage(blobs);
+                }
+            } catch (IOException e) {
+                SimpleLoggingUtil.error(getClass(), e.getMessage());
+            }
+        } else {
+            SimpleLoggingUtil.error(getClass(), "no image");
+        }
+    }
+
+    /**
+     * the model and the tracks depend on the frame order, frames are therefore processed one at a time
+     */
+    private synchronized BlobMessage track(FramePyramid pyramid) {
+        final long timestamp = pyramid.getTimestamp();
+        final int level = pyramid.levelForWidth(processingWidth);
+        final int scale = 1 << level;
+        final int width = pyramid.getWidth(level);
+        final int height = pyramid.getHeight(level);
+        if (width != lastWidth || height != lastHeight) {
+            lastWidth = width;
+            lastHeight = height;
+            subtractor.reset();
+            tracker.reset();
+        }
+        final byte[] luminance = pyramid.luminance(level);
+        byte[] mask = subtractor.process(luminance);
+        labeler.process(mask, width, height);
+        List<Blob> blobs = tracker.update(labeler, timestamp);
+
+        if (imageView != null) {
+            imageView.setImage(SwingFXUtils.toFXImage(drawBlobs(pyramid.toImage(0), blobs, scale), null));
+        }
+        return new BlobMessage(timestamp, width, height, blobs);
+    }
+
+    private BufferedImage drawBlobs(BufferedImage frame, List<Blob> blobs, int scale) {
+        Graphics2D g = frame.createGraphics();
+        g.setStroke(new BasicStroke(2));
+        g.setColor(Color.GREEN);
+        for (Blob b : blobs) {
+            g.drawRect(b.getMinX() * scale, b.getMinY() * scale, (b.getMaxX() - b.getMinX() + 1) * scale,
+                    (b.getMaxY() - b.getMinY() + 1) * scale);
+            g.drawString(String.valueOf(b.getId()), b.getMinX() * scale, b.getMinY() * scale - 2);
+        }
+        g.dispose();
+        return frame;
+    }
+}
@@ -17,28 +17,46 @@
 
 package com.robo4j.tools.camera.processor;
 
+import com.robo4j.ConfigurationException;
 import com.robo4j.RoboContext;
 import com.robo4j.RoboUnit;
+import com.robo4j.configuration.Configuration;
 import com.robo4j.logging.SimpleLoggingUtil;
 import com.robo4j.socket.http.codec.CameraMessage;
 import com.robo4j.tools.camera.analysis.CannyEdgeDetector;
+import com.robo4j.tools.camera.utils.RegionDecoder;
+import com.robo4j.tools.camera.utils.RegionUtils;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 
 import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
 
 /**
+ * Shows the Canny edges of the frames. With regions of interest only the
+ * regions plus the halo of the detector are decoded and processed.
+ *
  * @author Marcus Hirt (@hirt)
  * @author Miroslav Wengner (@miragemiko)
  */
 public class CannyEdgeDetectorProcessor extends RoboUnit<CameraMessage> {
+    /* "x,y,width,height" separated by ";", see RegionUtils */
+    public static final String PROP_REGIONS = "regions";
 
+    private final CannyEdgeDetector detector = new CannyEdgeDetector();
+    private final RegionDecoder regionDecoder = new RegionDecoder();
     private volatile ImageView imageView;
+    private volatile List<Rectangle> regions = Collections.emptyList();
 
     public CannyEdgeDetectorProcessor(RoboContext context, String id) {
         super(CameraMessage.class, context, id);
@@ -46,6 +64,23 @@ public class CannyEdgeDetectorProcessor extends RoboUnit<CameraMessage> {
 
     public void setImageView(ImageView imageView){
         this.imageView = imageView;
+        RegionUtils.installSelector(imageView, this::setRegions);
+    }
+
+    /**
+     * @param regions regions of interest in frame coordinates, empty for the whole frame
+     */
+    public void setRegions(List<Rectangle> regions) {
+        this.regions = Collections.unmodifiableList(new ArrayList<>(regions));
+    }
+
+    @Override
+    protected void onInitialization(Configuration configuration) throws ConfigurationException {
+        try {
+            setRegions(RegionUtils.parse(configuration.getString(PROP_REGIONS, null)));
+        } catch (IllegalArgumentException e) {
+            throw new ConfigurationException(PROP_REGIONS + ": " + e.getMessage());
+        }
     }
 
     @Override
@@ -53,20 +88,14 @@ public class CannyEdgeDetectorProcessor extends RoboUnit<CameraMessage> {
         if(message.getImage() != null){
             final byte[] bytes = Base64.getDecoder().decode(message.getImage());
 
+            final List<Rectangle> areas = regions;
             try {
-                BufferedImage frame = ImageIO.read(new ByteArrayInputStream(bytes));
-
-                CannyEdgeDetector detector  = new CannyEdgeDetector();
-
-                //adjust its parameters as desired
-                detector.setLowThreshold(0.5f);
-                detector.setHighThreshold(1f);
-
-                //apply it to an image
-                detector.setSourceImage(frame);
-                detector.process();
-
-                BufferedImage edges = detector.getEdgesImage();
+                BufferedImage edges = areas.isEmpty() ? detectEdges(ImageIO.read(new ByteArrayInputStream(bytes))) :
+                        detectEdges(message.getType(), bytes, areas);
+                if (edges == null) {
+                    SimpleLoggingUtil.error(getClass(), "not supported image: " + message.getType());
+                    return;
+                }
 
                 ByteArrayOutputStream bos = new ByteArrayOutputStream();
                 ImageIO.write(edges,"jpg", bos);
@@ -88,4 +117,57 @@ public class CannyEdgeDetectorProcessor extends RoboUnit<CameraMessage> {
             SimpleLoggingUtil.error(getClass(), "no imageView");
         }
     }
+
+    private synchronized BufferedImage detectEdges(BufferedImage frame) {
+        if (frame == null) {
+            return null;
+        }
+        //adjust its parameters as desired
+        detector.setLowThreshold(0.5f);
+        detector.setHighThreshold(1f);
+
+        //apply it to an image
+        detector.setSourceImage(frame);
+        detector.process();
+        BufferedImage edges = new BufferedImage(detector.getWidth(), detector.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = edges.createGraphics();
+        g.drawImage(detector.getEdgesImage(), 0, 0, null);
+        g.dispose();
+        return edges;
+    }
+
+    /**
+     * decodes and processes only the regions extended by the halo of the detector
+     */
+    private synchronized BufferedImage detectEdges(String format, byte[] bytes, List<Rectangle> areas) throws IOException {
+        if (!regionDecoder.open(format, bytes)) {
+            return null;
+        }
+        final Rectangle bounds = new Rectangle(0, 0, regionDecoder.getWidth(), regionDecoder.getHeight());
+        final BufferedImage edges = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g = edges.createGraphics();
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, bounds.width, bounds.height);
+        detector.setLowThreshold(0.5f);
+        detector.setHighThreshold(1f);
+        final int halo = detector.getHalo();
+        try {
+            for (Rectangle roi : areas) {
+                Rectangle area = roi.intersection(bounds);
+                if (area.isEmpty()) {
+                    continue;
+                }
+                Rectangle source = new Rectangle(area.x - halo, area.y - halo, area.width + 2 * halo,
+                        area.height + 2 * halo).intersection(bounds);
+                detector.setSourceImage(regionDecoder.decode(source));
+                detector.process();
+                g.drawImage(detector.getEdgesImage().getSubimage(area.x - source.x, area.y - source.y, area.width, area.height),
+                        area.x, area.y, null);
+            }
+        } finally {
+            regionDecoder.close();
+            g.dispose();
+        }
+        return edges;
+    }
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.processor;
+
+import com.robo4j.ConfigurationException;
+import com.robo4j.LifecycleState;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+import com.robo4j.configuration.Configuration;
+import com.robo4j.logging.SimpleLoggingUtil;
+import com.robo4j.socket.http.codec.CameraMessage;
+import com.robo4j.tools.camera.analysis.DuplicateFrameFilter;
+
+import java.util.Base64;
+
+/**
+ * Forwards only the frames which changed to the target units, e.g. the
+ * processors and the relay. Exact and near repeats are dropped before any
+ * of the targets decodes them.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class DuplicateFrameProcessor extends RoboUnit<CameraMessage> {
+    public static final String NAME = "duplicateFrameProcessor";
+    /* comma separated unit names */
+    public static final String PROP_TARGETS = "targets";
+    /* maximal differing bits of the perceptual hash, -1 (default) drops exact repeats only, near repeats cost a preview decode */
+    public static final String PROP_THRESHOLD = "threshold";
+
+    private final DuplicateFrameFilter filter = new DuplicateFrameFilter();
+    private String[] targets;
+
+    public DuplicateFrameProcessor(RoboContext context, String id) {
+        super(CameraMessage.class, context, id);
+    }
+
+    @Override
+    protected void onInitialization(Configuration configuration) throws ConfigurationException {
+        String value = configuration.getString(PROP_TARGETS, null);
+        if (value == null) {
+            throw ConfigurationException.createMissingConfigNameException(PROP_TARGETS);
+        }
+        targets = value.trim().split("\\s*,\\s*");
+        filter.setThreshold(configuration.getInteger(PROP_THRESHOLD, filter.getThreshold()));
+    }
+
+    public DuplicateFrameFilter getFilter() {
+        return filter;
+    }
+
+    @Override
+    public void stop() {
+        setState(LifecycleState.STOPPING);
+        SimpleLoggingUtil.info(getClass(), getId() + ": " + filter);
+        setState(LifecycleState.STOPPED);
+    }
+
+    @Override
+    public void onMessage(CameraMessage message) {
+        if (message.getImage() != null) {
+            if (filter.accept(message.getType(), Base64.getDecoder().decode(message.getImage()))) {
+                for (String target : targets) {
+                    getContext().getReference(target).sendMessage(message);
+                }
+            }
+        } else {
+            SimpleLoggingUtil.error(getClass(), "no image");
+        }
+    }
+}
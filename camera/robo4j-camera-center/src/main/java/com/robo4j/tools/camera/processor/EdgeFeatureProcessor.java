@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.processor;
+
+import com.robo4j.ConfigurationException;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+import com.robo4j.configuration.Configuration;
+import com.robo4j.logging.SimpleLoggingUtil;
+import com.robo4j.socket.http.codec.CameraMessage;
+import com.robo4j.tools.camera.analysis.CannyEdgeDetector;
+import com.robo4j.tools.camera.analysis.ContourTracer;
+import com.robo4j.tools.camera.analysis.HoughLineTransform;
+import com.robo4j.tools.camera.model.Contour;
+import com.robo4j.tools.camera.model.EdgeFeatureMessage;
+import com.robo4j.tools.camera.model.LineSegment;
+import com.robo4j.tools.camera.utils.RegionDecoder;
+import com.robo4j.tools.camera.utils.RegionUtils;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.ImageView;
+
+import javax.imageio.ImageIO;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Extracts line segments and contours from the Canny edge map and sends only
+ * the compact {@link EdgeFeatureMessage} to the target unit. With regions of
+ * interest only the regions plus the halo of the detector are decoded and
+ * processed, the features keep the frame coordinates.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class EdgeFeatureProcessor extends RoboUnit<CameraMessage> {
+    public static final String NAME = "edgeFeatureProcessor";
+    public static final String PROP_TARGET = "target";
+    public static final String PROP_LOW_THRESHOLD = "lowThreshold";
+    public static final String PROP_HIGH_THRESHOLD = "highThreshold";
+    public static final String PROP_HOUGH_THRESHOLD = "houghThreshold";
+    public static final String PROP_MIN_LINE_LENGTH = "minLineLength";
+    public static final String PROP_MAX_LINE_GAP = "maxLineGap";
+    public static final String PROP_MIN_CONTOUR_LENGTH = "minContourLength";
+    public static final String PROP_CONTOUR_EPSILON = "contourEpsilon";
+    /* "x,y,width,height" separated by ";", see RegionUtils */
+    public static final String PROP_REGIONS = "regions";
+
+    private final CannyEdgeDetector detector = new CannyEdgeDetector();
+    private final HoughLineTransform houghTransform = new HoughLineTransform();
+    private final ContourTracer contourTracer = new ContourTracer();
+    private final RegionDecoder regionDecoder = new RegionDecoder();
+    private volatile ImageView imageView;
+    private volatile List<Rectangle> regions = Collections.emptyList();
+    private String target;
+
+    public EdgeFeatureProcessor(RoboContext context, String id) {
+        super(CameraMessage.class, context, id);
+    }
+
+    /**
+     * @param imageView shows the features, regions drawn on it replace the configured regions
+     */
+    public void setImageView(ImageView imageView) {
+        this.imageView = imageView;
+        RegionUtils.installSelector(imageView, this::setRegions);
+    }
+
+    /**
+     * @param regions regions of interest in frame coordinates, empty for the whole frame
+     */
+    public void setRegions(List<Rectangle> regions) {
+        this.regions = Collections.unmodifiableList(new ArrayList<>(regions));
+    }
+
+    public List<Rectangle> getRegions() {
+        return regions;
+    }
+
+    @Override
+    protected void onInitialization(Configuration configuration) throws ConfigurationException {
+        target = configuration.getString(PROP_TARGET, null);
+        detector.setLowThreshold(configuration.getFloat(PROP_LOW_THRESHOLD, 0.5f));
+        detector.setHighThreshold(configuration.getFloat(PROP_HIGH_THRESHOLD, 1f));
+        houghTransform.setThreshold(configuration.getInteger(PROP_HOUGH_THRESHOLD, houghTransform.getThreshold()));
+        houghTransform.setMinLineLength(configuration.getInteger(PROP_MIN_LINE_LENGTH, houghTransform.getMinLineLength()));
+        houghTransform.setMaxLineGap(configuration.getInteger(PROP_MAX_LINE_GAP, houghTransform.getMaxLineGap()));
+        contourTracer.setMinPixelLength(configuration.getInteger(PROP_MIN_CONTOUR_LENGTH, contourTracer.getMinPixelLength()));
+        contourTracer.setEpsilon(configuration.getFloat(PROP_CONTOUR_EPSILON, contourTracer.getEpsilon()));
+        try {
+            setRegions(RegionUtils.parse(configuration.getString(PROP_REGIONS, null)));
+        } catch (IllegalArgumentException e) {
+            throw new ConfigurationException(PROP_REGIONS + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(CameraMessage message) {
+        if (message.getImage() != null) {
+            final byte[] bytes = Base64.getDecoder().decode(message.getImage());
+            final List<Rectangle> areas = regions;
+            try {
+                final EdgeFeatureMessage features;
+                if (areas.isEmpty()) {
+                    BufferedImage frame = ImageIO.read(new ByteArrayInputStream(bytes));
+                    features = frame == null ? null : extractFeatures(frame);
+                } else {
+                    features = extractFeatures(message.getType(), bytes, areas);
+                }
+                if (features == null) {
+                    SimpleLoggingUtil.error(getClass(), "not supported image: " + message.getType());
+                    return;
+                }
+                if (target != null) {
+                    getContext().getReference(target).sendMessage(features);
+                }
+            } catch (IOException e) {
+                SimpleLoggingUtil.error(getClass(), e.getMessage());
+            }
+        } else {
+            SimpleLoggingUtil.error(getClass(), "no image");
+        }
+    }
+
+    /**
+     * the stages reuse their buffers, frames are therefore processed one at a time
+     */
+    private synchronized EdgeFeatureMessage extractFeatures(BufferedImage frame) {
+        detector.setSourceImage(frame);
+        detector.process();
+
+        final int width = detector.getWidth();
+        final int height = detector.getHeight();
+        final int[] edges = detector.getEdgeData();
+        final float[] orientation = detector.getOrientation();
+        final List<LineSegment> lines = houghTransform.process(edges, orientation, width, height);
+        final List<Contour> contours = contourTracer.process(edges, orientation, width, height);
+
+        if (imageView != null) {
+            imageView.setImage(SwingFXUtils.toFXImage(drawFeatures(detector.getEdgesImage(), lines, contours), null));
+        }
+        return new EdgeFeatureMessage(System.currentTimeMillis(), width, height, lines, contours);
+    }
+
+    /**
+     * decodes and processes only the regions extended by the halo of the detector
+     *
+     * @return features in frame coordinates, null if the format is not supported
+     */
+    private synchronized EdgeFeatureMessage extractFeatures(String format, byte[] bytes, List<Rectangle> areas) throws IOException {
+        if (!regionDecoder.open(format, bytes)) {
+            return null;
+        }
+        final Rectangle bounds = new Rectangle(0, 0, regionDecoder.getWidth(), regionDecoder.getHeight());
+        final int halo = detector.getHalo();
+        final List<LineSegment> lines = new ArrayList<>();
+        final List<Contour> contours = new ArrayList<>();
+        final BufferedImage edgesView = imageView == null ? null :
+                new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D g = edgesView == null ? null : edgesView.createGraphics();
+        if (g != null) {
+            g.setColor(Color.BLACK);
+            g.fillRect(0, 0, bounds.width, bounds.height);
+        }
+        try {
+            for (Rectangle roi : areas) {
+                Rectangle area = roi.intersection(bounds);
+                if (area.isEmpty()) {
+                    continue;
+                }
+                Rectangle source = new Rectangle(area.x - halo, area.y - halo, area.width + 2 * halo,
+                        area.height + 2 * halo).intersection(bounds);
+                detector.setSourceImage(regionDecoder.decode(source));
+                detector.process();
+
+                final int[] edges = detector.getEdgeData();
+                final float[] orientation = detector.getOrientation();
+                final Rectangle local = new Rectangle(area.x - source.x, area.y - source.y, area.width, area.height);
+                for (LineSegment l : houghTransform.process(edges, orientation, source.width, source.height, local)) {
+                    lines.add(l.translate(source.x, source.y));
+                }
+                for (Contour c : contourTracer.process(edges, orientation, source.width, source.height, local)) {
+                    contours.add(c.translate(source.x, source.y));
+                }
+                if (g != null) {
+                    g.drawImage(detector.getEdgesImage().getSubimage(local.x, local.y, local.width, local.height),
+                            area.x, area.y, null);
+                }
+            }
+        } finally {
+            regionDecoder.close();
+            if (g != null) {
+                g.dispose();
+            }
+        }
+
+        if (edgesView != null) {
+            imageView.setImage(SwingFXUtils.toFXImage(drawFeatures(edgesView, lines, contours), null));
+        }
+        return new EdgeFeatureMessage(System.currentTimeMillis(), bounds.width, bounds.height, lines, contours);
+    }
+
+    private BufferedImage drawFeatures(BufferedImage edges, List<LineSegment> lines, List<Contour> contours) {
+        Graphics2D g = edges.createGraphics();
+        g.setStroke(new BasicStroke(2));
+        g.setColor(Color.GREEN);
+        for (Contour c : contours) {
+            for (int i = 1; i < c.getVertexCount(); i++) {
+                g.drawLine(c.getX(i - 1), c.getY(i - 1), c.getX(i), c.getY(i));
+            }
+            if (c.isClosed()) {
+                g.drawLine(c.getX(c.getVertexCount() - 1), c.getY(c.getVertexCount() - 1), c.getX(0), c.getY(0));
+            }
+        }
+        g.setColor(Color.RED);
+        for (LineSegment l : lines) {
+            g.drawLine(l.getX1(), l.getY1(), l.getX2(), l.getY2());
+        }
+        g.dispose();
+        return edges;
+    }
+}
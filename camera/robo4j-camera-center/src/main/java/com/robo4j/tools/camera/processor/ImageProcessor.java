@@ -17,12 +17,21 @@
 
 package com.robo4j.tools.camera.processor;
 
+import com.robo4j.LifecycleState;
 import com.robo4j.RoboContext;
 import com.robo4j.RoboUnit;
 import com.robo4j.logging.SimpleLoggingUtil;
 import com.robo4j.socket.http.codec.CameraMessage;
+import com.robo4j.tools.camera.analysis.DuplicateFrameFilter;
+import com.robo4j.tools.camera.enums.StereoSide;
+import com.robo4j.tools.camera.model.FrameStatistics;
+import com.robo4j.tools.camera.model.RewindBuffer;
+import com.robo4j.tools.camera.model.StereoFrameMessage;
+import com.robo4j.tools.camera.utils.DirtyTileRenderer;
+import com.robo4j.tools.camera.utils.SnapshotWriter;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelReader;
 
 import java.io.ByteArrayInputStream;
 import java.util.Base64;
@@ -36,7 +45,17 @@ import java.util.Base64;
 public class ImageProcessor extends RoboUnit<CameraMessage> {
     public static final String NAME = "imageProcessor";
 
+    private final FrameStatistics statistics = new FrameStatistics();
     private volatile ImageView imageView;
+    private volatile DirtyTileRenderer renderer;
+    private volatile String stereoTarget;
+    private volatile String[] analysisTargets = new String[0];
+    private volatile StereoSide stereoSide;
+    private volatile RewindBuffer rewindBuffer;
+    private volatile boolean live = true;
+    private volatile DuplicateFrameFilter duplicateFilter;
+    private volatile SnapshotWriter snapshotWriter;
+    private volatile LastFrame lastFrame;
 
     public ImageProcessor(RoboContext context, String id) {
         super(CameraMessage.class, context, id);
@@ -45,17 +64,182 @@ public class ImageProcessor extends RoboUnit<CameraMessage> {
         this.imageView = imageView;
     }
 
+    /**
+     * @return renderer of the current view, it only updates the changed tiles of the view
+     */
+    public DirtyTileRenderer getRenderer() {
+        return renderer;
+    }
+
+    /**
+     * @return receive rate, decode time and number of frames waiting for display
+     */
+    public FrameStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Forwards the received frames to the stereo processor. The frames carry
+     * no capture time, the time of arrival is used instead.
+     *
+     * @param target stereo processor, null stops forwarding
+     * @param side   camera position of this processor
+     */
+    public void setStereoTarget(String target, StereoSide side) {
+        this.stereoSide = side;
+        this.stereoTarget = target;
+    }
+
+    /**
+     * Forwards the received frames, without exact or near repeats, to the
+     * analysis processors of the camera, e.g. optical flow or blob tracking.
+     *
+     * @param targets processors receiving the camera messages
+     */
+    public void setAnalysisTargets(String... targets) {
+        this.analysisTargets = targets.clone();
+    }
+
+    /**
+     * @param rewindBuffer keeps the received encoded frames, null stops recording
+     */
+    public void setRewindBuffer(RewindBuffer rewindBuffer) {
+        this.rewindBuffer = rewindBuffer;
+    }
+
+    /**
+     * @param live false keeps recording but stops decoding the received frames to the view
+     */
+    public void setLive(boolean live) {
+        this.live = live;
+    }
+
+    /**
+     * Exact repeats are neither decoded, recorded nor forwarded. Near repeats
+     * are found from the frame decoded for the live view, without a live
+     * view only exact repeats are suppressed.
+     *
+     * @param duplicateFilter suppresses unchanged frames, null accepts all frames
+     */
+    public void setDuplicateFilter(DuplicateFrameFilter duplicateFilter) {
+        this.duplicateFilter = duplicateFilter;
+    }
+
+    public DuplicateFrameFilter getDuplicateFilter() {
+        return duplicateFilter;
+    }
+
+    /**
+     * @param snapshotWriter receives the frames for the time-lapse, null stops it
+     */
+    public void setSnapshotWriter(SnapshotWriter snapshotWriter) {
+        this.snapshotWriter = snapshotWriter;
+    }
+
+    /**
+     * Saves the last received frame as it was encoded by the camera
+     *
+     * @param name file name without extension
+     * @return false if no live frame is shown or no writer is set
+     */
+    public boolean saveSnapshot(String name) {
+        final SnapshotWriter writer = snapshotWriter;
+        final LastFrame frame = lastFrame;
+        if (writer == null || frame == null || !live) {
+            return false;
+        }
+        writer.snapshot(name, frame.format, frame.bytes);
+        return true;
+    }
+
+    @Override
+    public void stop() {
+        setState(LifecycleState.STOPPING);
+        final DuplicateFrameFilter filter = duplicateFilter;
+        if (filter != null) {
+            SimpleLoggingUtil.info(getClass(), getId() + ": " + filter);
+        }
+        setState(LifecycleState.STOPPED);
+    }
+
     @Override
     public void onMessage(CameraMessage message) {
         if(message.getImage() != null){
+            final long arrival = System.currentTimeMillis();
             final byte[] bytes = Base64.getDecoder().decode(message.getImage());
-            if(imageView != null){
-                Image image = new Image(new ByteArrayInputStream(bytes));
-                imageView.setImage(image);
+            statistics.frameReceived(bytes.length);
+            final DuplicateFrameFilter filter = duplicateFilter;
+            if (filter != null && filter.isRepeat(bytes)) {
+                statistics.frameDisplayed();
+                return;
+            }
+            final ImageView view = imageView;
+            Image image = null;
+            if (view != null && live) {
+                final long decodeStart = System.nanoTime();
+                image = new Image(new ByteArrayInputStream(bytes));
+                statistics.frameDecoded(System.nanoTime() - decodeStart);
+                if (filter != null && isNearRepeat(filter, image, bytes.length)) {
+                    statistics.frameDisplayed();
+                    return;
+                }
+            }
+            final RewindBuffer rewind = rewindBuffer;
+            if (rewind != null) {
+                rewind.append(arrival, bytes);
+            }
+            lastFrame = new LastFrame(message.getType(), bytes);
+            final SnapshotWriter writer = snapshotWriter;
+            if (writer != null) {
+                writer.frame(getId(), message.getType(), bytes);
+            }
+            final String target = stereoTarget;
+            if (target != null) {
+                getContext().getReference(target).sendMessage(new StereoFrameMessage(stereoSide, arrival, bytes));
+            }
+            for (String analysisTarget : analysisTargets) {
+                getContext().getReference(analysisTarget).sendMessage(message);
+            }
+            if (image != null) {
+                getRenderer(view).render(image);
+            } else {
+                statistics.frameDisplayed();
             }
         } else {
             SimpleLoggingUtil.error(getClass(), "no imageView");
         }
     }
 
+    private static boolean isNearRepeat(DuplicateFrameFilter filter, Image image, int encodedLength) {
+        if (image.isError() || filter.getThreshold() == DuplicateFrameFilter.DISABLED) {
+            return false;
+        }
+        final PixelReader reader = image.getPixelReader();
+        if (reader == null) {
+            return false;
+        }
+        return filter.isNearRepeat(reader::getArgb, (int) image.getWidth(), (int) image.getHeight(), encodedLength);
+    }
+
+    /**
+     * frames of one view are rendered in order, the renderer compares each frame with the previous one
+     */
+    private synchronized DirtyTileRenderer getRenderer(ImageView view) {
+        DirtyTileRenderer current = renderer;
+        if (current == null || current.getImageView() != view) {
+            current = new DirtyTileRenderer(view, statistics);
+            renderer = current;
+        }
+        return current;
+    }
+
+    private static final class LastFrame {
+        private final String format;
+        private final byte[] bytes;
+
+        private LastFrame(String format, byte[] bytes) {
+            this.format = format;
+            this.bytes = bytes;
+        }
+    }
 }
@@ -36,7 +36,9 @@ import com.robo4j.socket.http.util.HttpPathConfigJsonBuilder;
 import com.robo4j.socket.http.util.RoboHttpUtils;
 import com.robo4j.tools.camera.CenterFxLookupCameraController;
 import com.robo4j.tools.camera.CenterFxLookupVideoController;
+import com.robo4j.tools.camera.analysis.DuplicateFrameFilter;
 import com.robo4j.tools.camera.model.DescRawElement;
+import com.robo4j.tools.camera.model.RewindMemory;
 import com.robo4j.tools.camera.unit.DefaultImagesUnit;
 import com.robo4j.tools.camera.unit.VideoSocketServerUnit;
 import com.robo4j.tools.camera.utils.VideoCenterUtils;
@@ -58,6 +60,7 @@ import javafx.util.Callback;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -75,6 +78,15 @@ public class LookupProcessor extends RoboUnit<Integer> implements TableViewProce
     public static final String NAME = "lookupProcessor";
     public static final String PROPERTY_DELAY = "delay";
     public static final String PROPERTY_INTERVAL = "interval";
+    /* rewind memory of all camera views and of one camera view in MB */
+    public static final String PROPERTY_REWIND_MEMORY = "rewindMemory";
+    public static final String PROPERTY_REWIND_BUDGET = "rewindBudget";
+    public static final String PROPERTY_REWIND_SECONDS = "rewindSeconds";
+    /* suppresses unchanged frames of the camera views, off by default */
+    public static final String PROPERTY_DUPLICATE_FILTER = "duplicateFilter";
+    /* maximal differing hash bits of near repeats, -1 drops exact repeats only */
+    public static final String PROPERTY_DUPLICATE_THRESHOLD = "duplicateThreshold";
+    private static final long MEGABYTE = 1024 * 1024;
     public static final String METADATA_UNIT_HTTP_CONF = "unitConf";
     public static final String METADATA_UNIT_PROCESSOR = "unitProcessor";
     public static final String METADATA_DESC = "desc";
@@ -90,8 +102,14 @@ public class LookupProcessor extends RoboUnit<Integer> implements TableViewProce
     private Map<String, RoboContext> singleCameraContexts = new HashMap<>();
     private Map<String, Button> singleContextButton = new HashMap<>();
     private Map<String, Scene> singleCameraFxScene = new HashMap<>();
+    private Map<String, CenterFxLookupCameraController> singleCameraControllers = new HashMap<>();
     private long delay;
     private long interval;
+    private RewindMemory rewindMemory;
+    private long rewindBudget;
+    private long rewindMillis;
+    private boolean duplicateFilter;
+    private int duplicateThreshold;
 
     public LookupProcessor(RoboContext context, String id) {
         super(Integer.class, context, id);
@@ -102,6 +120,11 @@ public class LookupProcessor extends RoboUnit<Integer> implements TableViewProce
 
         delay = configuration.getLong(PROPERTY_DELAY, 2L);
         interval = configuration.getLong(PROPERTY_INTERVAL, 2L);
+        rewindMemory = new RewindMemory(configuration.getLong(PROPERTY_REWIND_MEMORY, 512L) * MEGABYTE);
+        rewindBudget = configuration.getLong(PROPERTY_REWIND_BUDGET, 32L) * MEGABYTE;
+        rewindMillis = configuration.getLong(PROPERTY_REWIND_SECONDS, 30L) * 1000;
+        duplicateFilter = configuration.getBoolean(PROPERTY_DUPLICATE_FILTER, false);
+        duplicateThreshold = configuration.getInteger(PROPERTY_DUPLICATE_THRESHOLD, DuplicateFrameFilter.DISABLED);
         try {
             LookupServiceProvider.getDefaultLookupService().start();
         } catch (IOException e) {
@@ -286,6 +309,28 @@ public class LookupProcessor extends RoboUnit<Integer> implements TableViewProce
         stage.setTitle(contextName);
         stage.setScene(scene);
         stage.show();
+        stage.setOnCloseRequest((WindowEvent event) -> {
+            closeSingleCameraView(contextName);
+            singleContextButton.get(contextName).setText(BUTTON_TEXT_ACTION);
+        });
+    }
+
+    /**
+     * the camera view is created again when opened, its rewind memory is returned
+     */
+    private void closeSingleCameraView(String contextName) {
+        CenterFxLookupCameraController controller = singleCameraControllers.remove(contextName);
+        if (controller != null) {
+            controller.shutdown();
+        }
+        singleCameraContexts.remove(contextName);
+        singleCameraFxScene.remove(contextName);
+    }
+
+    @Override
+    public void stop() {
+        new ArrayList<>(singleCameraControllers.keySet()).forEach(this::closeSingleCameraView);
+        super.stop();
     }
 
     private void sendHttpConfigToMediaNode(String contextName, int port) {
@@ -328,13 +373,21 @@ public class LookupProcessor extends RoboUnit<Integer> implements TableViewProce
     private RoboContext createCameraChildViewContext(FXMLLoader fxmlLoader, String contextName, int port) {
         CenterFxLookupCameraController controller = fxmlLoader.getController();
         controller.setContextName(contextName);
+        controller.setRewindBuffer(rewindMemory.createBuffer(rewindBudget, rewindMillis));
+        if (duplicateFilter) {
+            DuplicateFrameFilter filter = new DuplicateFrameFilter();
+            filter.setThreshold(duplicateThreshold);
+            controller.setDuplicateFilter(filter);
+        }
         RoboBuilder builder = createChildViewSystemBuilder(contextName);
         try {
             createCameraChildViewUnitContext(builder, port);
             controller.init(builder);
             controller.initCameraConfig();
+            singleCameraControllers.put(contextName, controller);
             return controller.getSystem();
-        } catch (RoboBuilderException e) {
+        } catch (RoboBuilderException | ConfigurationException e) {
+            controller.shutdown();
             throw new RuntimeException(e);
         }
     }
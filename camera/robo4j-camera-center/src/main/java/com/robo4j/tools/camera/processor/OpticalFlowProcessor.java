@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.processor;
+
+import com.robo4j.ConfigurationException;
+import com.robo4j.LifecycleState;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+import com.robo4j.configuration.Configuration;
+import com.robo4j.logging.SimpleLoggingUtil;
+import com.robo4j.socket.http.codec.CameraMessage;
+import com.robo4j.tools.camera.analysis.CornerTracker;
+import com.robo4j.tools.camera.analysis.FramePyramid;
+import com.robo4j.tools.camera.model.OpticalFlowMessage;
+import com.robo4j.tools.camera.utils.FramePyramidService;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.ImageView;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Follows FAST corners with a pyramidal Lucas-Kanade tracker and sends the
+ * sparse flow vectors to the target unit, e.g. for visual odometry. The
+ * tracker works on the luminance levels of the shared frame pyramid and
+ * keeps the previous frame retained instead of building its own pyramids.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class OpticalFlowProcessor extends RoboUnit<CameraMessage> {
+    public static final String NAME = "opticalFlowProcessor";
+    public static final String PROP_TARGET = "target";
+    public static final String PROP_PROCESSING_WIDTH = "processingWidth";
+    public static final String PROP_FAST_THRESHOLD = "fastThreshold";
+    public static final String PROP_MAX_POINTS = "maxPoints";
+    public static final String PROP_PYRAMID_LEVELS = "pyramidLevels";
+    public static final String PROP_WINDOW_RADIUS = "windowRadius";
+
+    private volatile ImageView imageView;
+    private volatile FramePyramidService pyramidService;
+    private CornerTracker tracker = new CornerTracker();
+    private String target;
+    private int processingWidth = 640;
+    private int lastWidth;
+    private int lastHeight;
+
+    public OpticalFlowProcessor(RoboContext context, String id) {
+        super(CameraMessage.class, context, id);
+    }
+
+    public void setImageView(ImageView imageView) {
+        this.imageView = imageView;
+    }
+
+    /**
+     * The service is created once per camera and shared by all processors
+     * receiving its frames, each frame is then decoded only once.
+     *
+     * @param pyramidService service of the camera, required
+     */
+    public void setPyramidService(FramePyramidService pyramidService) {
+        this.pyramidService = pyramidService;
+    }
+
+    @Override
+    protected void onInitialization(Configuration configuration) throws ConfigurationException {
+        target = configuration.getString(PROP_TARGET, null);
+        processingWidth = configuration.getInteger(PROP_PROCESSING_WIDTH, processingWidth);
+        tracker = new CornerTracker(configuration.getInteger(PROP_MAX_POINTS, 300),
+                configuration.getInteger(PROP_PYRAMID_LEVELS, 3), configuration.getInteger(PROP_WINDOW_RADIUS, 7));
+        tracker.getDetector().setThreshold(configuration.getInteger(PROP_FAST_THRESHOLD, tracker.getDetector().getThreshold()));
+    }
+
+    @Override
+    public void stop() {
+        setState(LifecycleState.STOPPING);
+        synchronized (this) {
+            tracker.reset();
+        }
+        setState(LifecycleState.STOPPED);
+    }
+
+    @Override
+    public void onMessage(CameraMessage message) {
+        if (message.getImage() != null) {
+            final FramePyramidService service = pyramidService;
+            if (service == null) {
+                SimpleLoggingUtil.error(getClass(), "no pyramid service");
+                return;
+            }
+            try {
+                FramePyramid pyramid = service.acquire(message);
+                if (pyramid == null) {
+                    SimpleLoggingUtil.error(getClass(), "not supported image: " + message.getType());
+                    return;
+                }
+                OpticalFlowMessage flow;
+                try {
+                    flow = track(pyramid);
+                } finally {
+                    pyramid.release();
+                }
+                if (target != null) {
+                    getContext().getReference(target).sendMessage(flow);
+                }
+            } catch (IOException e) {
+                SimpleLoggingUtil.error(getClass(), e.getMessage());
+            }
+        } else {
+            SimpleLoggingUtil.error(getClass(), "no image");
+        }
+    }
+
+    /**
+     * the flow depends on the frame order, frames are therefore processed one at a time
+     */
+    private synchronized OpticalFlowMessage track(FramePyramid pyramid) {
+        final long timestamp = pyramid.getTimestamp();
+        final int level = pyramid.levelForWidth(processingWidth);
+        final int scale = 1 << level;
+        final int width = pyramid.getWidth(level);
+        final int height = pyramid.getHeight(level);
+        if (width != lastWidth || height != lastHeight) {
+            lastWidth = width;
+            lastHeight = height;
+            tracker.reset();
+        }
+        final int count = tracker.process(pyramid, level);
+        final float[] vectors = new float[4 * count];
+        for (int i = 0; i < count; i++) {
+            vectors[4 * i] = tracker.getFromX(i);
+            vectors[4 * i + 1] = tracker.getFromY(i);
+            vectors[4 * i + 2] = tracker.getToX(i);
+            vectors[4 * i + 3] = tracker.getToY(i);
+        }
+        final OpticalFlowMessage flow = new OpticalFlowMessage(timestamp, width, height, vectors);
+        if (imageView != null) {
+            imageView.setImage(SwingFXUtils.toFXImage(drawFlow(pyramid.toImage(0), flow, scale), null));
+        }
+        return flow;
+    }
+
+    private BufferedImage drawFlow(BufferedImage frame, OpticalFlowMessage flow, int scale) {
+        Graphics2D g = frame.createGraphics();
+        g.setStroke(new BasicStroke(2));
+        g.setColor(Color.GREEN);
+        for (int i = 0; i < flow.getCount(); i++) {
+            int x1 = Math.round(flow.getToX(i) * scale);
+            int y1 = Math.round(flow.getToY(i) * scale);
+            g.drawLine(Math.round(flow.getFromX(i) * scale), Math.round(flow.getFromY(i) * scale), x1, y1);
+            g.fillOval(x1 - 2, y1 - 2, 4, 4);
+        }
+        g.dispose();
+        return frame;
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.tools.camera.processor;
+
+import com.robo4j.ConfigurationException;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+import com.robo4j.configuration.Configuration;
+import com.robo4j.logging.SimpleLoggingUtil;
+import com.robo4j.tools.camera.analysis.LuminanceConverter;
+import com.robo4j.tools.camera.analysis.StereoBlockMatcher;
+import com.robo4j.tools.camera.analysis.StereoRectifier;
+import com.robo4j.tools.camera.enums.StereoSide;
+import com.robo4j.tools.camera.model.CameraIntrinsics;
+import com.robo4j.tools.camera.model.DepthMessage;
+import com.robo4j.tools.camera.model.StereoFrameMessage;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.ImageView;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Computes the disparity map of the two cameras. The frames are paired by
+ * their timestamps, converted to luminance at the processing resolution,
+ * rectified and block matched. The result is shown depth coloured (near is
+ * red, far is blue) and sent as {@link DepthMessage} to the target unit.
+ *
+ * Pairs arriving while the previous pair is still processed are skipped.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class StereoProcessor extends RoboUnit<StereoFrameMessage> {
+    public static final String NAME = "stereoProcessor";
+    public static final String PROP_TARGET = "target";
+    public static final String PROP_PROCESSING_WIDTH = "processingWidth";
+    public static final String PROP_MAX_TIME_DIFFERENCE = "maxTimeDifference";
+    public static final String PROP_MAX_DISPARITY = "maxDisparity";
+    public static final String PROP_BLOCK_RADIUS = "blockRadius";
+    public static final String PROP_UNIQUENESS_RATIO = "uniquenessRatio";
+    public static final String PROP_FOCAL_BASELINE = "focalBaseline";
+    /* width;height;fx;fy;cx;cy;k1;k2;k3;p1;p2, rectification is off without both intrinsics */
+    public static final String PROP_LEFT_INTRINSICS = "leftIntrinsics";
+    public static final String PROP_RIGHT_INTRINSICS = "rightIntrinsics";
+    /* row major 3x3 rectifying rotations, optional */
+    public static final String PROP_LEFT_ROTATION = "leftRotation";
+    public static final String PROP_RIGHT_ROTATION = "rightRotation";
+    private static final String VALUE_SEPARATOR = ";";
+    private static final int COLOR_INVALID = 0x000000;
+
+    private final StereoBlockMatcher matcher = new StereoBlockMatcher();
+    private final ReentrantLock processing = new ReentrantLock();
+    private volatile ImageView imageView;
+    private volatile StereoRectifier rectifier;
+    private String target;
+    private int processingWidth = 320;
+    private long maxTimeDifference = 50;
+    private double focalBaseline;
+
+    private StereoFrameMessage latestLeft;
+    private StereoFrameMessage latestRight;
+
+    /* buffers guarded by processing */
+    private final LuminanceConverter luminanceConverter = new LuminanceConverter();
+    private byte[] left = new byte[0];
+    private byte[] right = new byte[0];
+    private byte[] rectifiedLeft = new byte[0];
+    private byte[] rectifiedRight = new byte[0];
+    private int[] palette = new int[0];
+
+    public StereoProcessor(RoboContext context, String id) {
+        super(StereoFrameMessage.class, context, id);
+    }
+
+    public void setImageView(ImageView imageView) {
+        this.imageView = imageView;
+    }
+
+    /**
+     * @param rectifier rectification of the calibrated pair, null for cameras mounted parallel
+     */
+    public void setRectifier(StereoRectifier rectifier) {
+        this.rectifier = rectifier;
+    }
+
+    @Override
+    protected void onInitialization(Configuration configuration) throws ConfigurationException {
+        target = configuration.getString(PROP_TARGET, null);
+        processingWidth = configuration.getInteger(PROP_PROCESSING_WIDTH, processingWidth);
+        maxTimeDifference = configuration.getLong(PROP_MAX_TIME_DIFFERENCE, maxTimeDifference);
+        matcher.setMaxDisparity(configuration.getInteger(PROP_MAX_DISPARITY, matcher.getMaxDisparity()));
+        matcher.setBlockRadius(configuration.getInteger(PROP_BLOCK_RADIUS, matcher.getBlockRadius()));
+        matcher.setUniquenessRatio(configuration.getInteger(PROP_UNIQUENESS_RATIO, matcher.getUniquenessRatio()));
+        focalBaseline = configuration.getDouble(PROP_FOCAL_BASELINE, focalBaseline);
+        rectifier = createRectifier(configuration);
+    }
+
+    @Override
+    public void onMessage(StereoFrameMessage message) {
+        final StereoFrameMessage pairLeft;
+        final StereoFrameMessage pairRight;
+        synchronized (this) {
+            if (message.getSide() == StereoSide.LEFT) {
+                latestLeft = message;
+            } else {
+                latestRight = message;
+            }
+            if (latestLeft == null || latestRight == null) {
+                return;
+            }
+            if (Math.abs(latestLeft.getTimestamp() - latestRight.getTimestamp()) > maxTimeDifference) {
+                // the older frame has no partner anymore
+                if (latestLeft.getTimestamp() < latestRight.getTimestamp()) {
+                    latestLeft = null;
+                } else {
+                    latestRight = null;
+                }
+                return;
+            }
+            if (!processing.tryLock()) {
+                return;
+            }
+            pairLeft = latestLeft;
+            pairRight = latestRight;
+            latestLeft = null;
+            latestRight = null;
+        }
+        try {
+            processPair(pairLeft, pairRight);
+        } catch (IOException e) {
+            SimpleLoggingUtil.error(getClass(), e.getMessage());
+        } finally {
+            processing.unlock();
+        }
+    }
+
+    // private utility methods
+
+    private static StereoRectifier createRectifier(Configuration configuration) throws ConfigurationException {
+        String leftIntrinsics = configuration.getString(PROP_LEFT_INTRINSICS, null);
+        String rightIntrinsics = configuration.getString(PROP_RIGHT_INTRINSICS, null);
+        if (leftIntrinsics == null && rightIntrinsics == null) {
+            return null;
+        }
+        if (leftIntrinsics == null) {
+            throw ConfigurationException.createMissingConfigNameException(PROP_LEFT_INTRINSICS);
+        }
+        if (rightIntrinsics == null) {
+            throw ConfigurationException.createMissingConfigNameException(PROP_RIGHT_INTRINSICS);
+        }
+        CameraIntrinsics left = parseIntrinsics(PROP_LEFT_INTRINSICS, leftIntrinsics);
+        CameraIntrinsics right = parseIntrinsics(PROP_RIGHT_INTRINSICS, rightIntrinsics);
+        String leftRotation = configuration.getString(PROP_LEFT_ROTATION, null);
+        String rightRotation = configuration.getString(PROP_RIGHT_ROTATION, null);
+        if (leftRotation == null && rightRotation == null) {
+            return new StereoRectifier(left, right);
+        }
+        if (leftRotation == null) {
+            throw ConfigurationException.createMissingConfigNameException(PROP_LEFT_ROTATION);
+        }
+        if (rightRotation == null) {
+            throw ConfigurationException.createMissingConfigNameException(PROP_RIGHT_ROTATION);
+        }
+        return new StereoRectifier(left, right, parseValues(PROP_LEFT_ROTATION, leftRotation, 9),
+                parseValues(PROP_RIGHT_ROTATION, rightRotation, 9));
+    }
+
+    private static CameraIntrinsics parseIntrinsics(String name, String value) throws ConfigurationException {
+        double[] v = parseValues(name, value, 11);
+        return new CameraIntrinsics((int) v[0], (int) v[1], v[2], v[3], v[4], v[5], v[6], v[7], v[8], v[9], v[10]);
+    }
+
+    private static double[] parseValues(String name, String value, int count) throws ConfigurationException {
+        String[] parts = value.split(VALUE_SEPARATOR);
+        if (parts.length != count) {
+            throw new ConfigurationException(name + ": expected " + count + " values, got " + parts.length);
+        }
+        double[] result = new double[count];
+        try {
+            for (int i = 0; i < count; i++) {
+                result[i] = Double.parseDouble(parts[i].trim());
+            }
+        } catch (NumberFormatException e) {
+            throw new ConfigurationException(name + ": " + e.getMessage());
+        }
+        return result;
+    }
+
+    private void processPair(StereoFrameMessage leftFrame, StereoFrameMessage rightFrame) throws IOException {
+        BufferedImage leftImage = ImageIO.read(new ByteArrayInputStream(leftFrame.getImage()));
+        BufferedImage rightImage = ImageIO.read(new ByteArrayInputStream(rightFrame.getImage()));
+        if (leftImage == null || rightImage == null) {
+            SimpleLoggingUtil.error(getClass(), "not supported image");
+            return;
+        }
+        if (leftImage.getWidth() != rightImage.getWidth() || leftImage.getHeight() != rightImage.getHeight()) {
+            SimpleLoggingUtil.error(getClass(), "stereo frames differ in size");
+            return;
+        }
+        final int scale = Math.max(1, leftImage.getWidth() / processingWidth);
+        final int width = leftImage.getWidth() / scale;
+        final int height = leftImage.getHeight() / scale;
+        if (left.length != width * height) {
+            left = new byte[width * height];
+            right = new byte[width * height];
+            rectifiedLeft = new byte[width * height];
+            rectifiedRight = new byte[width * height];
+        }
+        luminanceConverter.convert(leftImage, scale, left);
+        luminanceConverter.convert(rightImage, scale, right);
+
+        byte[] matchedLeft = left;
+        byte[] matchedRight = right;
+        StereoRectifier currentRectifier = rectifier;
+        if (currentRectifier != null) {
+            currentRectifier.rectify(left, right, rectifiedLeft, rectifiedRight, width, height);
+            matchedLeft = rectifiedLeft;
+            matchedRight = rectifiedRight;
+        }
+        final byte[] disparity = new byte[width * height];
+        matcher.process(matchedLeft, matchedRight, width, height, disparity);
+
+        if (imageView != null) {
+            imageView.setImage(SwingFXUtils.toFXImage(colorize(disparity, width, height), null));
+        }
+        if (target != null) {
+            long timestamp = Math.max(leftFrame.getTimestamp(), rightFrame.getTimestamp());
+            getContext().getReference(target).sendMessage(new DepthMessage(timestamp, width, height, focalBaseline, disparity));
+        }
+    }
+
+    private BufferedImage colorize(byte[] disparity, int width, int height) {
+        final int maxDisparity = matcher.getMaxDisparity();
+        if (palette.length != maxDisparity) {
+            palette = new int[maxDisparity];
+            for (int d = 0; d < maxDisparity; d++) {
+                palette[d] = Color.HSBtoRGB(2f / 3 * (1 - d / (float) maxDisparity), 1f, 1f);
+            }
+        }
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < pixels.length; i++) {
+            int d = disparity[i] & 0xff;
+            pixels[i] = d == StereoBlockMatcher.INVALID ? COLOR_INVALID : palette[d];
+        }
+        return image;
+    }
+}
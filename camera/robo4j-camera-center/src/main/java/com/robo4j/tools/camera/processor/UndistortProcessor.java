@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.tools.camera.processor;
+
+import com.robo4j.ConfigurationException;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+import com.robo4j.configuration.Configuration;
+import com.robo4j.logging.SimpleLoggingUtil;
+import com.robo4j.socket.http.codec.CameraMessage;
+import com.robo4j.tools.camera.analysis.LensDistortionCorrector;
+import com.robo4j.tools.camera.model.CameraIntrinsics;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.ImageView;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+
+/**
+ * Removes the lens distortion from the received frames. The intrinsics are
+ * configured for the calibration resolution (see LensCalibrationMain) and
+ * scaled to the resolution of the frames.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class UndistortProcessor extends RoboUnit<CameraMessage> {
+    public static final String NAME = "undistortProcessor";
+    public static final String PROP_TARGET = "target";
+    public static final String PROP_CALIBRATION_WIDTH = "calibrationWidth";
+    public static final String PROP_CALIBRATION_HEIGHT = "calibrationHeight";
+    public static final String PROP_FX = "fx";
+    public static final String PROP_FY = "fy";
+    public static final String PROP_CX = "cx";
+    public static final String PROP_CY = "cy";
+    public static final String PROP_K1 = "k1";
+    public static final String PROP_K2 = "k2";
+    public static final String PROP_K3 = "k3";
+    public static final String PROP_P1 = "p1";
+    public static final String PROP_P2 = "p2";
+    private static final String OUTPUT_FORMAT = "jpg";
+
+    private volatile ImageView imageView;
+    private LensDistortionCorrector corrector;
+    private String target;
+    private int[] sourcePixels = new int[0];
+
+    public UndistortProcessor(RoboContext context, String id) {
+        super(CameraMessage.class, context, id);
+    }
+
+    public void setImageView(ImageView imageView) {
+        this.imageView = imageView;
+    }
+
+    @Override
+    protected void onInitialization(Configuration configuration) throws ConfigurationException {
+        target = configuration.getString(PROP_TARGET, null);
+        int width = configuration.getInteger(PROP_CALIBRATION_WIDTH, 0);
+        int height = configuration.getInteger(PROP_CALIBRATION_HEIGHT, 0);
+        if (width <= 0) {
+            throw ConfigurationException.createMissingConfigNameException(PROP_CALIBRATION_WIDTH);
+        }
+        if (height <= 0) {
+            throw ConfigurationException.createMissingConfigNameException(PROP_CALIBRATION_HEIGHT);
+        }
+        double focal = Math.hypot(width, height) / 2;
+        CameraIntrinsics intrinsics = new CameraIntrinsics(width, height,
+                configuration.getDouble(PROP_FX, focal),
+                configuration.getDouble(PROP_FY, focal),
+                configuration.getDouble(PROP_CX, width / 2.0),
+                configuration.getDouble(PROP_CY, height / 2.0),
+                configuration.getDouble(PROP_K1, 0.0),
+                configuration.getDouble(PROP_K2, 0.0),
+                configuration.getDouble(PROP_K3, 0.0),
+                configuration.getDouble(PROP_P1, 0.0),
+                configuration.getDouble(PROP_P2, 0.0));
+        corrector = new LensDistortionCorrector(intrinsics);
+    }
+
+    @Override
+    public void onMessage(CameraMessage message) {
+        if (message.getImage() != null) {
+            final byte[] bytes = Base64.getDecoder().decode(message.getImage());
+            try {
+                BufferedImage frame = ImageIO.read(new ByteArrayInputStream(bytes));
+                if (frame == null) {
+                    SimpleLoggingUtil.error(getClass(), "not supported image: " + message.getType());
+                    return;
+                }
+                BufferedImage image = undistort(frame);
+                if (imageView != null) {
+                    imageView.setImage(SwingFXUtils.toFXImage(image, null));
+                }
+                if (target != null) {
+                    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                    ImageIO.write(image, OUTPUT_FORMAT, bos);
+                    String encoded = Base64.getEncoder().encodeToString(bos.toByteArray());
+                    getContext().getReference(target).sendMessage(new CameraMessage(OUTPUT_FORMAT, message.getValue(), encoded));
+                }
+            } catch (IOException e) {
+                SimpleLoggingUtil.error(getClass(), e.getMessage());
+            }
+        } else {
+            SimpleLoggingUtil.error(getClass(), "no image");
+        }
+    }
+
+    /**
+     * the source buffer is reused, frames are therefore processed one at a time.
+     * The result is a new image because the view may still show the previous one
+     */
+    private synchronized BufferedImage undistort(BufferedImage frame) {
+        final int width = frame.getWidth();
+        final int height = frame.getHeight();
+        if (sourcePixels.length != width * height) {
+            sourcePixels = new int[width * height];
+        }
+        BufferedImage corrected = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        frame.getRGB(0, 0, width, height, sourcePixels, 0, width);
+        int[] destination = ((DataBufferInt) corrected.getRaster().getDataBuffer()).getData();
+        corrector.correct(sourcePixels, destination, width, height);
+        return corrected;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.tools.camera.unit;
+
+import com.robo4j.AttributeDescriptor;
+import com.robo4j.ConfigurationException;
+import com.robo4j.DefaultAttributeDescriptor;
+import com.robo4j.LifecycleState;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+import com.robo4j.configuration.Configuration;
+import com.robo4j.logging.SimpleLoggingUtil;
+import com.robo4j.socket.http.codec.CameraMessage;
+import com.robo4j.tools.camera.CameraCenterException;
+import com.robo4j.tools.camera.utils.JpegEncoder;
+import com.robo4j.tools.camera.utils.MjpegRelayServer;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Relays one camera stream to any number of HTTP viewers as
+ * multipart/x-mixed-replace MJPEG (e.g. a browser at http://center:port/).
+ *
+ * Every frame is encoded to JPEG at most once, JPEG frames are forwarded
+ * without encoding, and the same bytes are queued for every viewer by the
+ * {@link MjpegRelayServer}.
+ *
+ * Frames come as {@link CameraMessage}, the {@link VideoSocketServerUnit}
+ * forwards the decoded H.264 frames when its relay target is configured and
+ * {@link #DESCRIPTOR_CLIENT_COUNT} reports viewers.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class MjpegRelayUnit extends RoboUnit<CameraMessage> {
+
+    public static final String NAME = "mjpegRelay";
+    public static final String PROP_SERVER_PORT = "serverPort";
+    public static final String PROP_CLIENT_QUEUE_SIZE = "clientQueueSize";
+    public static final String PROP_MAX_CLIENTS = "maxClients";
+    public static final String PROP_QUALITY = "quality";
+    public static final AttributeDescriptor<Integer> DESCRIPTOR_CLIENT_COUNT = DefaultAttributeDescriptor.create(Integer.class, "clientCount");
+
+    private final AtomicLong framesEncoded = new AtomicLong();
+    private Integer port;
+    private int clientQueueSize;
+    private int maxClients;
+    private JpegEncoder encoder;
+    private volatile MjpegRelayServer server;
+
+    public MjpegRelayUnit(RoboContext context, String id) {
+        super(CameraMessage.class, context, id);
+    }
+
+    @Override
+    protected void onInitialization(Configuration configuration) throws ConfigurationException {
+        port = configuration.getInteger(PROP_SERVER_PORT, null);
+        if (port == null) {
+            throw ConfigurationException.createMissingConfigNameException(PROP_SERVER_PORT);
+        }
+        clientQueueSize = configuration.getInteger(PROP_CLIENT_QUEUE_SIZE, 2);
+        maxClients = configuration.getInteger(PROP_MAX_CLIENTS, 16);
+        encoder = new JpegEncoder(configuration.getFloat(PROP_QUALITY, 0.8f));
+    }
+
+    @Override
+    public void start() {
+        setState(LifecycleState.STARTING);
+        MjpegRelayServer relayServer = new MjpegRelayServer(getId(), port, maxClients, clientQueueSize);
+        try {
+            relayServer.start();
+        } catch (IOException e) {
+            throw new CameraCenterException(e);
+        }
+        server = relayServer;
+        setState(LifecycleState.STARTED);
+    }
+
+    @Override
+    public void stop() {
+        setState(LifecycleState.STOPPING);
+        MjpegRelayServer current = server;
+        server = null;
+        if (current != null) {
+            current.stop();
+        }
+        setState(LifecycleState.STOPPED);
+    }
+
+    @Override
+    public void onMessage(CameraMessage message) {
+        if (message.getImage() == null) {
+            SimpleLoggingUtil.error(getClass(), "no image");
+            return;
+        }
+        final MjpegRelayServer current = server;
+        if (current == null || current.getClientCount() == 0) {
+            return;
+        }
+        byte[] bytes = Base64.getDecoder().decode(message.getImage());
+        try {
+            if (!isJpeg(bytes)) {
+                BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+                if (image == null) {
+                    SimpleLoggingUtil.error(getClass(), "not supported image: " + message.getType());
+                    return;
+                }
+                bytes = encoder.encode(image);
+                framesEncoded.incrementAndGet();
+            }
+            current.publish(bytes);
+        } catch (IOException e) {
+            SimpleLoggingUtil.error(getClass(), e.getMessage());
+        }
+    }
+
+    public int getClientCount() {
+        final MjpegRelayServer current = server;
+        return current == null ? 0 : current.getClientCount();
+    }
+
+    @Override
+    public Collection<AttributeDescriptor<?>> getKnownAttributes() {
+        return Collections.singletonList(DESCRIPTOR_CLIENT_COUNT);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected <R> R onGetAttribute(AttributeDescriptor<R> descriptor) {
+        if (DESCRIPTOR_CLIENT_COUNT.getAttributeName().equals(descriptor.getAttributeName())
+                && descriptor.getAttributeType() == Integer.class) {
+            return (R) Integer.valueOf(getClientCount());
+        }
+        return super.onGetAttribute(descriptor);
+    }
+
+    /**
+     * @return frames which had to be encoded, the others were relayed as received
+     */
+    public long getFramesEncoded() {
+        return framesEncoded.get();
+    }
+
+    public long getFramesRelayed() {
+        final MjpegRelayServer current = server;
+        return current == null ? 0 : current.getFramesRelayed();
+    }
+
+    // private utility methods
+
+    private static boolean isJpeg(byte[] bytes) {
+        return bytes.length > 2 && (bytes[0] & 0xff) == 0xff && (bytes[1] & 0xff) == 0xd8;
+    }
+}
@@ -20,10 +20,14 @@ package com.robo4j.tools.camera.unit;
 import com.robo4j.BlockingTrait;
 import com.robo4j.ConfigurationException;
 import com.robo4j.RoboContext;
+import com.robo4j.RoboReference;
 import com.robo4j.RoboUnit;
 import com.robo4j.configuration.Configuration;
 import com.robo4j.logging.SimpleLoggingUtil;
+import com.robo4j.socket.http.codec.CameraMessage;
 import com.robo4j.tools.camera.CameraCenterException;
+import com.robo4j.tools.camera.model.FrameStatistics;
+import com.robo4j.tools.camera.utils.JpegEncoder;
 import com.twilight.h264.decoder.AVFrame;
 import com.twilight.h264.player.FrameUtils;
 import com.twilight.h264.player.H264StreamCallback;
@@ -37,6 +41,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.Base64;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.robo4j.tools.camera.CenterFxController.NO_SIGNAL_IMAGE;
@@ -57,12 +64,22 @@ public class VideoSocketServerUnit extends RoboUnit<String> {
     public static final String MESSAGE_STOP = "stop";
     public static final String PROP_SOURCE_CONTEXT = "sourceContext";
     public static final String PROP_SOURCE_VIDEO_CONFIG_UNIT = "sourceVideoConfigUnit";
+    public static final String PROP_RELAY_TARGET = "relayTarget";
+    public static final String PROP_RELAY_QUALITY = "relayQuality";
+    private static final long RELAY_CHECK_MILLIS = 500;
     private volatile AtomicBoolean active = new AtomicBoolean(false);
+    private final FrameStatistics statistics = new FrameStatistics();
     private Integer port;
     private ServerSocket server;
     private ImageView imageView;
     private String sourceContext;
     private String sourceVideoConfigUnit;
+    private String relayTarget;
+    private JpegEncoder relayEncoder;
+    /* relay viewers, touched by the decoding thread only */
+    private int relayViewers;
+    private Future<Integer> relayViewersRequest;
+    private long relayViewersChecked;
 
     public VideoSocketServerUnit(RoboContext context, String id) {
         super(String.class, context, id);
@@ -82,6 +99,17 @@ public class VideoSocketServerUnit extends RoboUnit<String> {
         if (sourceVideoConfigUnit == null) {
             throw ConfigurationException.createMissingConfigNameException(PROP_SOURCE_VIDEO_CONFIG_UNIT);
         }
+        relayTarget = configuration.getString(PROP_RELAY_TARGET, null);
+        if (relayTarget != null) {
+            relayEncoder = new JpegEncoder(configuration.getFloat(PROP_RELAY_QUALITY, 0.8f));
+        }
+    }
+
+    /**
+     * @return statistics of the decoded frames, the decode time covers the conversion for the view
+     */
+    public FrameStatistics getStatistics() {
+        return statistics;
     }
 
     public void setImageView(ImageView imageView) {
@@ -137,9 +165,16 @@ public class VideoSocketServerUnit extends RoboUnit<String> {
 
     private void playInputStream(InputStream is) {
         RGBListener listener = (AVFrame picture) -> {
+            statistics.frameReceived(0);
+            final long conversionStart = System.nanoTime();
             BufferedImage bufferedImage = FrameUtils.imageFromFrame(picture);
             Image image = SwingFXUtils.toFXImage(bufferedImage, null);
+            statistics.frameDecoded(System.nanoTime() - conversionStart);
             imageView.setImage(image);
+            statistics.frameDisplayed();
+            if (relayTarget != null && hasRelayViewers()) {
+                relayFrame(bufferedImage);
+            }
         };
         H264StreamCallback hsc = new H264StreamCallback(is, listener);
         try {
@@ -148,4 +183,46 @@ public class VideoSocketServerUnit extends RoboUnit<String> {
             throw new CameraCenterException(e);
         }
     }
+
+    /**
+     * Asks the relay for its viewer count at most every RELAY_CHECK_MILLIS
+     * without waiting for the answer, frames are only encoded while the last
+     * answer reported viewers.
+     */
+    private boolean hasRelayViewers() {
+        Future<Integer> request = relayViewersRequest;
+        if (request != null && request.isDone()) {
+            relayViewersRequest = null;
+            try {
+                Integer count = request.get();
+                relayViewers = count == null ? 0 : count;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                relayViewers = 0;
+                SimpleLoggingUtil.error(getClass(), e.getMessage());
+            }
+        }
+        long now = System.currentTimeMillis();
+        if (relayViewersRequest == null && now - relayViewersChecked >= RELAY_CHECK_MILLIS) {
+            relayViewersChecked = now;
+            RoboReference<CameraMessage> relay = getContext().getReference(relayTarget);
+            if (relay != null) {
+                relayViewersRequest = relay.getAttribute(MjpegRelayUnit.DESCRIPTOR_CLIENT_COUNT);
+            }
+        }
+        return relayViewers > 0;
+    }
+
+    /**
+     * the decoded frame is encoded once for all viewers of the relay
+     */
+    private void relayFrame(BufferedImage frame) {
+        try {
+            String image = Base64.getEncoder().encodeToString(relayEncoder.encode(frame));
+            getContext().getReference(relayTarget).sendMessage(new CameraMessage(JpegEncoder.FORMAT, NAME, image));
+        } catch (IOException e) {
+            SimpleLoggingUtil.error(getClass(), e.getMessage());
+        }
+    }
 }
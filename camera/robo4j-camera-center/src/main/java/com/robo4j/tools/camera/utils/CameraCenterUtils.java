@@ -28,18 +28,23 @@ import com.robo4j.socket.http.util.RoboHttpUtils;
 import com.robo4j.tools.camera.model.CameraCenterProperties;
 import com.robo4j.tools.camera.model.CameraDevice;
 import com.robo4j.tools.camera.model.EditableCell;
+import com.robo4j.tools.camera.model.RewindBuffer;
 import com.robo4j.tools.camera.model.SimpleRawElement;
+import com.robo4j.tools.camera.processor.ImageProcessor;
 import com.robo4j.units.rpi.camera.RpiCameraProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.scene.control.Slider;
 import javafx.scene.control.TableCell;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
 import javafx.stage.Stage;
 import javafx.util.Callback;
 
+import java.io.ByteArrayInputStream;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -59,6 +64,38 @@ public final class CameraCenterUtils {
         stage.getIcons().add(createIcon("robo4j16.png"));
     }
 
+    /**
+     * Slider scrubbing through the rewind buffer in seconds before the live
+     * image, zero is live. Leaving zero freezes the view and only the selected
+     * frame is decoded.
+     */
+    public static void initRewindSlider(Slider slider, RewindBuffer rewindBuffer, ImageProcessor imageProcessor, ImageView imageView) {
+        final long[] pause = {-1, -1};
+        slider.setMin(-rewindBuffer.getWindowMillis() / 1000d);
+        slider.setMax(0);
+        slider.setValue(0);
+        slider.valueProperty().addListener((observable, oldValue, newValue) -> {
+            if (newValue.doubleValue() >= slider.getMax()) {
+                pause[0] = -1;
+                imageProcessor.setLive(true);
+                return;
+            }
+            if (pause[0] < 0) {
+                pause[0] = rewindBuffer.getNewestTime();
+                pause[1] = -1;
+                imageProcessor.setLive(false);
+            }
+            long sequence = rewindBuffer.sequenceAt(pause[0] + (long) (newValue.doubleValue() * 1000));
+            if (sequence >= 0 && sequence != pause[1]) {
+                byte[] frame = rewindBuffer.read(sequence);
+                if (frame != null) {
+                    pause[1] = sequence;
+                    imageView.setImage(new Image(new ByteArrayInputStream(frame)));
+                }
+            }
+        });
+    }
+
     public static void sendRequestForClientConfiguration(RoboContext system, String callBackUnitName, String httpClientName, CameraDevice cameraDevice) {
         final HttpRequestDenominator denominator = new HttpRequestDenominator(HttpMethod.GET, HttpVersion.HTTP_1_1);
         final HttpDecoratedRequest request = new HttpDecoratedRequest(denominator);
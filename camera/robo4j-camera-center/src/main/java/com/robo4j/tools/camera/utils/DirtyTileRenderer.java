@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.utils;
+
+import com.robo4j.tools.camera.model.FrameStatistics;
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.util.Arrays;
+
+/**
+ * Renders decoded frames into a persistent {@link WritableImage} and updates
+ * only the tiles which changed, as found by a {@link TileDiff} against the
+ * tiles as they were last rendered. The comparison runs on the caller
+ * thread, the FX thread only copies the changed tiles. When the FX thread
+ * falls behind, the waiting frame is replaced by the newer one and the
+ * changed tiles of both are written.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class DirtyTileRenderer {
+    public static final int TILE_SIZE = TileDiff.TILE_SIZE;
+
+    private final ImageView imageView;
+    private final FrameStatistics statistics;
+
+    /* guarded by renderLock */
+    private final Object renderLock = new Object();
+    private final TileDiff diff = new TileDiff(4);
+
+    /* guarded by this */
+    private int[] pending;
+    private boolean[] pendingDirty;
+    private int pendingWidth;
+    private int pendingColumns;
+    private int pendingFrames;
+    private int[] spare;
+    private boolean[] spareDirty;
+
+    /* written by the FX thread */
+    private volatile WritableImage image;
+
+    private long renderedTiles;
+    private long totalTiles;
+
+    /**
+     * @param imageView  view showing the frames
+     * @param statistics notified when a frame is displayed, may be null
+     */
+    public DirtyTileRenderer(ImageView imageView, FrameStatistics statistics) {
+        this.imageView = imageView;
+        this.statistics = statistics;
+    }
+
+    public ImageView getImageView() {
+        return imageView;
+    }
+
+    /**
+     * @return mean cell luminance difference marking a tile as changed
+     */
+    public int getThreshold() {
+        synchronized (renderLock) {
+            return diff.getThreshold();
+        }
+    }
+
+    public void setThreshold(int threshold) {
+        synchronized (renderLock) {
+            diff.setThreshold(threshold);
+        }
+    }
+
+    /**
+     * compares the frame with the rendered image and schedules the changed tiles
+     *
+     * @param frame decoded frame
+     */
+    public void render(Image frame) {
+        synchronized (renderLock) {
+            compare(frame);
+        }
+    }
+
+    private void compare(Image frame) {
+        final int width = (int) frame.getWidth();
+        final int height = (int) frame.getHeight();
+        diff.resize(width, height);
+        final int tiles = diff.getTileCount();
+
+        int[] pixels;
+        boolean[] dirty;
+        synchronized (this) {
+            pixels = spare != null && spare.length == width * height ? spare : new int[width * height];
+            dirty = spareDirty != null && spareDirty.length == tiles ? spareDirty : new boolean[tiles];
+            spare = null;
+            spareDirty = null;
+        }
+        frame.getPixelReader().getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+        final boolean changed = diff.compare(pixels, dirty) > 0;
+
+        synchronized (this) {
+            pendingFrames++;
+            if (pending != null) {
+                if (pendingWidth == width && pending.length == pixels.length) {
+                    for (int i = 0; i < dirty.length; i++) {
+                        dirty[i] |= pendingDirty[i];
+                    }
+                } else {
+                    Arrays.fill(dirty, true);
+                }
+                spare = pending;
+                spareDirty = pendingDirty;
+                pending = pixels;
+                pendingDirty = dirty;
+                pendingWidth = width;
+                pendingColumns = diff.getColumns();
+                return;
+            }
+            if (!changed && image != null && imageView.getImage() == image) {
+                spare = pixels;
+                spareDirty = dirty;
+                pendingFrames = 0;
+                totalTiles += dirty.length;
+                if (statistics != null) {
+                    statistics.frameDisplayed();
+                }
+                return;
+            }
+            pending = pixels;
+            pendingDirty = dirty;
+            pendingWidth = width;
+            pendingColumns = diff.getColumns();
+        }
+        Platform.runLater(this::flush);
+    }
+
+    /**
+     * @return tiles written since the start
+     */
+    public synchronized long getRenderedTiles() {
+        return renderedTiles;
+    }
+
+    /**
+     * @return tiles of all rendered frames since the start
+     */
+    public synchronized long getTotalTiles() {
+        return totalTiles;
+    }
+
+    private void flush() {
+        final int[] pixels;
+        final boolean[] dirty;
+        final int frames;
+        final int frameWidth;
+        final int frameHeight;
+        final int columns;
+        synchronized (this) {
+            pixels = pending;
+            dirty = pendingDirty;
+            frames = pendingFrames;
+            pending = null;
+            pendingDirty = null;
+            pendingFrames = 0;
+            frameWidth = pendingWidth;
+            frameHeight = pixels.length / pendingWidth;
+            columns = pendingColumns;
+        }
+
+        WritableImage image = this.image;
+        final boolean full = image == null || (int) image.getWidth() != frameWidth
+                || (int) image.getHeight() != frameHeight || imageView.getImage() != image;
+        if (image == null || (int) image.getWidth() != frameWidth || (int) image.getHeight() != frameHeight) {
+            image = new WritableImage(frameWidth, frameHeight);
+            this.image = image;
+        }
+        int written = 0;
+        if (full) {
+            image.getPixelWriter().setPixels(0, 0, frameWidth, frameHeight, PixelFormat.getIntArgbInstance(), pixels, 0, frameWidth);
+            written = dirty.length;
+            imageView.setImage(image);
+        } else {
+            for (int tile = 0; tile < dirty.length; tile++) {
+                if (dirty[tile]) {
+                    int x = (tile % columns) * TILE_SIZE;
+                    int y = (tile / columns) * TILE_SIZE;
+                    image.getPixelWriter().setPixels(x, y, Math.min(TILE_SIZE, frameWidth - x), Math.min(TILE_SIZE, frameHeight - y),
+                            PixelFormat.getIntArgbInstance(), pixels, y * frameWidth + x, frameWidth);
+                    written++;
+                }
+            }
+        }
+
+        synchronized (this) {
+            renderedTiles += written;
+            totalTiles += (long) dirty.length * frames;
+            if (spare == null) {
+                spare = pixels;
+                spareDirty = dirty;
+            }
+        }
+        if (statistics != null) {
+            for (int i = 0; i < frames; i++) {
+                statistics.frameDisplayed();
+            }
+        }
+    }
+}
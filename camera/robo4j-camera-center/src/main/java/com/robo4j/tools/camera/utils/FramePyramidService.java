@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.utils;
+
+import com.robo4j.socket.http.codec.CameraMessage;
+import com.robo4j.tools.camera.analysis.FramePyramid;
+import com.robo4j.tools.camera.analysis.PyramidBufferPool;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Base64;
+
+/**
+ * Shares the decoded frame and its {@link FramePyramid} between the
+ * processors receiving the same camera message. The first processor asking
+ * for a message decodes it, the others get the cached pyramid including the
+ * levels already computed. The pyramid of the previous message is released
+ * when a new message arrives, its buffers are recycled as soon as the last
+ * processor released it as well.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class FramePyramidService {
+
+    private final PyramidBufferPool pool;
+    private CameraMessage currentMessage;
+    private FramePyramid current;
+    private long decodedFrames;
+    private long sharedFrames;
+
+    public FramePyramidService() {
+        this(new PyramidBufferPool());
+    }
+
+    public FramePyramidService(PyramidBufferPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @param message camera message
+     * @return pyramid of the message, to be released by the caller, or null
+     * if the image format is not supported
+     * @throws IOException image could not be decoded
+     */
+    public synchronized FramePyramid acquire(CameraMessage message) throws IOException {
+        if (message == currentMessage && current != null) {
+            sharedFrames++;
+            return current.retain();
+        }
+        final byte[] bytes = Base64.getDecoder().decode(message.getImage());
+        final BufferedImage frame = ImageIO.read(new ByteArrayInputStream(bytes));
+        if (frame == null) {
+            return null;
+        }
+        clear();
+        decodedFrames++;
+        currentMessage = message;
+        current = new FramePyramid(frame, System.currentTimeMillis(), pool);
+        return current.retain();
+    }
+
+    /**
+     * releases the cached pyramid
+     */
+    public synchronized void clear() {
+        if (current != null) {
+            current.release();
+            current = null;
+            currentMessage = null;
+        }
+    }
+
+    public PyramidBufferPool getPool() {
+        return pool;
+    }
+
+    public synchronized long getDecodedFrames() {
+        return decodedFrames;
+    }
+
+    /**
+     * @return number of requests served from the cached pyramid
+     */
+    public synchronized long getSharedFrames() {
+        return sharedFrames;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "FramePyramidService{" +
+                "decodedFrames=" + decodedFrames +
+                ", sharedFrames=" + sharedFrames +
+                ", allocations=" + pool.getAllocations() +
+                '}';
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.utils;
+
+import com.robo4j.logging.SimpleLoggingUtil;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HTTP server of an MJPEG relay, serves the published JPEG frames as
+ * multipart/x-mixed-replace to every connected viewer.
+ *
+ * Each frame is framed as body part once and the same bytes are queued for
+ * every viewer. A viewer has its own writer thread and a bounded queue, a
+ * viewer falling behind loses its oldest frames and does not slow down the
+ * others. A connection takes a viewer slot before its thread is started,
+ * connections over the limit are answered busy by the accepting thread.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class MjpegRelayServer {
+    public static final String BOUNDARY = "robo4jframe";
+
+    private static final String RESPONSE_HEADER = "HTTP/1.0 200 OK\r\n" +
+            "Content-Type: multipart/x-mixed-replace; boundary=" + BOUNDARY + "\r\n" +
+            "Cache-Control: no-cache, no-store\r\n" +
+            "Pragma: no-cache\r\n" +
+            "Connection: close\r\n\r\n";
+    private static final String RESPONSE_BUSY = "HTTP/1.0 503 Service Unavailable\r\nConnection: close\r\n\r\n";
+    private static final byte[] PART_END = "\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final int REQUEST_TIMEOUT = 2000;
+
+    private final String name;
+    private final int port;
+    private final int maxClients;
+    private final int clientQueueSize;
+    private final Set<Client> clients = new CopyOnWriteArraySet<>();
+    private final AtomicLong framesRelayed = new AtomicLong();
+    private final AtomicLong framesDropped = new AtomicLong();
+    private final Object slotsLock = new Object();
+    /* connections holding a viewer slot, reading their request or streaming */
+    private int slots;
+    private volatile ServerSocket server;
+
+    /**
+     * @param name            prefix of the thread names
+     * @param port            server port, 0 picks a free one
+     * @param maxClients      maximal number of viewers
+     * @param clientQueueSize frames queued per viewer
+     */
+    public MjpegRelayServer(String name, int port, int maxClients, int clientQueueSize) {
+        if (maxClients < 1 || clientQueueSize < 1) throw new IllegalArgumentException();
+        this.name = name;
+        this.port = port;
+        this.maxClients = maxClients;
+        this.clientQueueSize = clientQueueSize;
+    }
+
+    public void start() throws IOException {
+        server = new ServerSocket(port);
+        Thread acceptor = new Thread(this::acceptClients, name + "-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * closes the server and all viewer connections
+     */
+    public void stop() {
+        ServerSocket current = server;
+        server = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                SimpleLoggingUtil.error(getClass(), e.getMessage());
+            }
+        }
+        clients.forEach(Client::close);
+    }
+
+    /**
+     * @return port the server listens on, -1 if not started
+     */
+    public int getLocalPort() {
+        ServerSocket current = server;
+        return current == null ? -1 : current.getLocalPort();
+    }
+
+    /**
+     * frames the JPEG as multipart body part once and queues it for all viewers
+     */
+    public void publish(byte[] jpeg) {
+        byte[] header = ("--" + BOUNDARY + "\r\nContent-Type: image/jpeg\r\nContent-Length: " + jpeg.length + "\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
+        byte[] part = new byte[header.length + jpeg.length + PART_END.length];
+        System.arraycopy(header, 0, part, 0, header.length);
+        System.arraycopy(jpeg, 0, part, header.length, jpeg.length);
+        System.arraycopy(PART_END, 0, part, header.length + jpeg.length, PART_END.length);
+        for (Client client : clients) {
+            client.offer(part);
+        }
+        framesRelayed.incrementAndGet();
+    }
+
+    /**
+     * @return viewers receiving the stream
+     */
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    public long getFramesRelayed() {
+        return framesRelayed.get();
+    }
+
+    /**
+     * @return frames dropped from the queues of viewers falling behind
+     */
+    public long getFramesDropped() {
+        return framesDropped.get();
+    }
+
+    // private utility methods
+
+    /**
+     * only accepts, the request of a viewer is read by its own thread so that
+     * a slow viewer does not hold up the others
+     */
+    private void acceptClients() {
+        ServerSocket current;
+        while ((current = server) != null) {
+            try {
+                Socket socket = current.accept();
+                if (!takeSlot()) {
+                    rejectBusy(socket);
+                    continue;
+                }
+                Thread writer = new Thread(() -> serveClient(socket), name + "-client-" + socket.getRemoteSocketAddress());
+                writer.setDaemon(true);
+                writer.start();
+            } catch (SocketException e) {
+                // server socket closed by stop
+            } catch (IOException e) {
+                SimpleLoggingUtil.error(getClass(), e.getMessage());
+            }
+        }
+    }
+
+    private boolean takeSlot() {
+        synchronized (slotsLock) {
+            if (slots >= maxClients) {
+                return false;
+            }
+            slots++;
+            return true;
+        }
+    }
+
+    private void releaseSlot() {
+        synchronized (slotsLock) {
+            slots--;
+        }
+    }
+
+    /**
+     * answers without reading the request, the request bytes already received are discarded
+     */
+    private static void rejectBusy(Socket socket) {
+        try {
+            socket.getOutputStream().write(RESPONSE_BUSY.getBytes(StandardCharsets.US_ASCII));
+            socket.shutdownOutput();
+            InputStream is = socket.getInputStream();
+            is.skip(is.available());
+        } catch (IOException e) {
+            SimpleLoggingUtil.debug(MjpegRelayServer.class, "busy response failed: " + e.getMessage());
+        } finally {
+            closeQuietly(socket);
+        }
+    }
+
+    private void serveClient(Socket socket) {
+        Client client = null;
+        try {
+            readRequest(socket);
+            if (server != null) {
+                client = new Client(socket, clientQueueSize);
+                clients.add(client);
+                if (server == null) {
+                    // stopped meanwhile
+                    client.close();
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            SimpleLoggingUtil.debug(getClass(), "viewer request failed: " + e.getMessage());
+        } finally {
+            if (client == null) {
+                releaseSlot();
+                closeQuietly(socket);
+            }
+        }
+        if (client != null) {
+            client.run();
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            SimpleLoggingUtil.error(MjpegRelayServer.class, e.getMessage());
+        }
+    }
+
+    /**
+     * the stream is the same for every request, the request headers are only consumed
+     */
+    private static void readRequest(Socket socket) throws IOException {
+        socket.setSoTimeout(REQUEST_TIMEOUT);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        String line;
+        while ((line = reader.readLine()) != null && !line.isEmpty()) {
+            // skip
+        }
+    }
+
+    /**
+     * Viewer connection with its bounded frame queue
+     */
+    private final class Client implements Runnable {
+        private final Socket socket;
+        private final BlockingQueue<byte[]> frames;
+        private final AtomicLong dropped = new AtomicLong();
+        private volatile boolean closed;
+        private volatile Thread writer;
+
+        private Client(Socket socket, int queueSize) {
+            this.socket = socket;
+            this.frames = new ArrayBlockingQueue<>(queueSize);
+        }
+
+        /**
+         * queues the frame, the oldest queued frame is dropped when the viewer falls behind
+         */
+        private void offer(byte[] part) {
+            while (!closed && !frames.offer(part)) {
+                if (frames.poll() != null) {
+                    dropped.incrementAndGet();
+                    framesDropped.incrementAndGet();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            writer = Thread.currentThread();
+            try {
+                OutputStream os = socket.getOutputStream();
+                os.write(RESPONSE_HEADER.getBytes(StandardCharsets.US_ASCII));
+                os.flush();
+                while (!closed) {
+                    os.write(frames.take());
+                    os.flush();
+                }
+            } catch (IOException e) {
+                // viewer disconnected
+            } catch (InterruptedException e) {
+                // closed
+            } finally {
+                writer = null;
+                close();
+                SimpleLoggingUtil.print(MjpegRelayServer.class, "viewer disconnected: " + socket.getRemoteSocketAddress() + ", dropped frames: " + dropped.get());
+            }
+        }
+
+        /**
+         * closes the connection, wakes up the writer thread and frees the viewer slot once
+         */
+        private void close() {
+            closed = true;
+            if (clients.remove(this)) {
+                releaseSlot();
+            }
+            Thread current = writer;
+            if (current != null && current != Thread.currentThread()) {
+                current.interrupt();
+            }
+            frames.clear();
+            closeQuietly(socket);
+        }
+    }
+}
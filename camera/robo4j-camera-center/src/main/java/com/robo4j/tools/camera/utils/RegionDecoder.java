@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.utils;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Decodes rectangular regions of an encoded frame through
+ * {@link ImageReadParam#setSourceRegion(Rectangle)}, the rest of the frame is
+ * never converted to pixels. The image reader is created once per format and
+ * reused, calls are serialized.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class RegionDecoder {
+
+    private ImageReader reader;
+    private String readerFormat;
+    private ImageInputStream input;
+    private int width;
+    private int height;
+
+    /**
+     * reads the header of the frame, the regions are decoded by {@link #decode(Rectangle)}
+     *
+     * @param format  format name, e.g. jpg
+     * @param encoded encoded frame
+     * @return false if the format is not supported
+     */
+    public synchronized boolean open(String format, byte[] encoded) throws IOException {
+        close();
+        input = ImageIO.createImageInputStream(new ByteArrayInputStream(encoded));
+        if (reader == null || format == null || !format.equals(readerFormat)) {
+            Iterator<ImageReader> readers = format == null ? ImageIO.getImageReaders(input) : ImageIO.getImageReadersByFormatName(format);
+            if (!readers.hasNext()) {
+                close();
+                return false;
+            }
+            if (reader != null) {
+                reader.dispose();
+            }
+            reader = readers.next();
+            readerFormat = format;
+        }
+        reader.setInput(input, true, false);
+        width = reader.getWidth(0);
+        height = reader.getHeight(0);
+        return true;
+    }
+
+    public synchronized int getWidth() {
+        return width;
+    }
+
+    public synchronized int getHeight() {
+        return height;
+    }
+
+    /**
+     * @param region region of the opened frame, clipped to the frame
+     * @return decoded region or null if it does not intersect the frame
+     */
+    public synchronized BufferedImage decode(Rectangle region) throws IOException {
+        if (input == null) {
+            throw new IllegalStateException("no frame opened");
+        }
+        Rectangle area = region.intersection(new Rectangle(0, 0, width, height));
+        if (area.isEmpty()) {
+            return null;
+        }
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(area);
+        return reader.read(0, param);
+    }
+
+    /**
+     * releases the opened frame
+     */
+    public synchronized void close() throws IOException {
+        if (input != null) {
+            input.close();
+            input = null;
+        }
+    }
+}
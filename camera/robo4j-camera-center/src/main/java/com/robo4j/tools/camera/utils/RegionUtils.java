@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.utils;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.input.MouseButton;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Regions of interest of the camera processors, configured as
+ * "x,y,width,height" separated by ";" or drawn on the view.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class RegionUtils {
+    private static final String REGION_SEPARATOR = ";";
+    private static final String VALUE_SEPARATOR = ",";
+
+    private RegionUtils() {
+    }
+
+    /**
+     * @param value regions, e.g. "0,240,640,240;100,0,50,50", null or empty for the whole frame
+     * @return regions, empty for the whole frame
+     */
+    public static List<Rectangle> parse(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Rectangle> result = new ArrayList<>();
+        for (String region : value.split(REGION_SEPARATOR)) {
+            String[] values = region.trim().split("\\s*" + VALUE_SEPARATOR + "\\s*");
+            if (values.length != 4) {
+                throw new IllegalArgumentException("expected x,y,width,height, was: " + region);
+            }
+            Rectangle rectangle = new Rectangle(Integer.parseInt(values[0]), Integer.parseInt(values[1]),
+                    Integer.parseInt(values[2]), Integer.parseInt(values[3]));
+            if (rectangle.isEmpty()) {
+                throw new IllegalArgumentException("empty region: " + region);
+            }
+            result.add(rectangle);
+        }
+        return result;
+    }
+
+    public static String toString(List<Rectangle> regions) {
+        StringBuilder sb = new StringBuilder();
+        for (Rectangle r : regions) {
+            if (sb.length() > 0) {
+                sb.append(REGION_SEPARATOR);
+            }
+            sb.append(r.x).append(VALUE_SEPARATOR).append(r.y).append(VALUE_SEPARATOR)
+                    .append(r.width).append(VALUE_SEPARATOR).append(r.height);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Lets the user draw regions on the view in the coordinates of the shown
+     * image: dragging replaces the regions, dragging with shift adds one,
+     * the secondary button clears them.
+     *
+     * @param imageView view showing full frames
+     * @param listener  receives the new regions on the FX thread
+     */
+    public static void installSelector(ImageView imageView, Consumer<List<Rectangle>> listener) {
+        final double[] start = new double[2];
+        final List<Rectangle> regions = new ArrayList<>();
+        imageView.setOnMousePressed(event -> {
+            start[0] = event.getX();
+            start[1] = event.getY();
+        });
+        imageView.setOnMouseReleased(event -> {
+            if (event.getButton() == MouseButton.SECONDARY) {
+                regions.clear();
+                listener.accept(Collections.emptyList());
+                return;
+            }
+            Image image = imageView.getImage();
+            if (image == null || imageView.getBoundsInLocal().getWidth() == 0) {
+                return;
+            }
+            double scale = image.getWidth() / imageView.getBoundsInLocal().getWidth();
+            int x0 = (int) Math.max(0, Math.min(start[0], event.getX()) * scale);
+            int y0 = (int) Math.max(0, Math.min(start[1], event.getY()) * scale);
+            int x1 = (int) Math.min(image.getWidth(), Math.max(start[0], event.getX()) * scale);
+            int y1 = (int) Math.min(image.getHeight(), Math.max(start[1], event.getY()) * scale);
+            if (x1 - x0 < 2 || y1 - y0 < 2) {
+                return;
+            }
+            if (!event.isShiftDown()) {
+                regions.clear();
+            }
+            regions.add(new Rectangle(x0, y0, x1 - x0, y1 - y0));
+            listener.accept(new ArrayList<>(regions));
+        });
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.utils;
+
+import com.robo4j.logging.SimpleLoggingUtil;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes snapshots and time-lapse frames on its own thread, the callers
+ * (FX thread, image processors) only put the frame into a bounded queue.
+ * A full queue drops the frame instead of blocking the caller.
+ *
+ * Frames which need no transformation are written with their original
+ * encoded bytes, only decoded images are encoded by the writer. The writer
+ * drains the queue in batches, the frames of a batch going to the same file
+ * are written with one open, one gathering write and one sync.
+ *
+ * In the time-lapse mode every n-th frame received by any of the cameras is
+ * saved, the counter is shared by all cameras. JPEG frames are appended to
+ * one motion JPEG stream per camera, timelapse_&lt;camera&gt;_&lt;session&gt;.mjpeg,
+ * which e.g. ffmpeg converts to a video. Frames of other formats are saved
+ * as numbered files of the session. The session is the start time of the
+ * writer, a restarted writer never overwrites the frames of an earlier one.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class SnapshotWriter {
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+    public static final int DEFAULT_BATCH_SIZE = 16;
+    private static final String TIME_LAPSE_PREFIX = "timelapse_";
+    private static final String STREAM_EXTENSION = ".mjpeg";
+    private static final DateTimeFormatter SESSION_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+    private static final long POLL_MILLIS = 200;
+    private static final OpenOption[] REPLACE = {StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING};
+    private static final OpenOption[] APPEND = {StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND};
+    private static final OpenOption[] NEW = {StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE};
+
+    private final Path directory;
+    private final String session = LocalDateTime.now().format(SESSION_FORMAT);
+    private final int batchSize;
+    private final BlockingQueue<Snapshot> queue;
+    private final AtomicLong frameCounter = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong writtenBytes = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final Thread writer;
+    private volatile int timeLapse;
+    private volatile boolean running = true;
+
+    public SnapshotWriter(Path directory) {
+        this(directory, DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param directory     target directory, created if missing
+     * @param queueCapacity maximal number of frames waiting to be written
+     * @param batchSize     maximal number of frames written per batch
+     */
+    public SnapshotWriter(Path directory, int queueCapacity, int batchSize) {
+        if (queueCapacity < 1 || batchSize < 1) throw new IllegalArgumentException();
+        this.directory = directory;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writer = new Thread(this::writeLoop, "snapshot-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public int getTimeLapse() {
+        return timeLapse;
+    }
+
+    /**
+     * @param timeLapse every n-th frame is saved, 0 stops the time-lapse
+     */
+    public void setTimeLapse(int timeLapse) {
+        if (timeLapse < 0) throw new IllegalArgumentException();
+        this.timeLapse = timeLapse;
+    }
+
+    /**
+     * Saves the original encoded bytes
+     *
+     * @param name    file name without extension
+     * @param format  image format, used as file extension
+     * @param encoded encoded image, not to be modified afterwards
+     * @return false if the frame was dropped
+     */
+    public boolean snapshot(String name, String format, byte[] encoded) {
+        return enqueue(new Snapshot(directory.resolve(name + "." + format), format, encoded, null, REPLACE));
+    }
+
+    /**
+     * Saves an image which has to be encoded
+     *
+     * @param name   file name without extension
+     * @param format image format, used as file extension
+     * @param image  image, not to be modified afterwards
+     * @return false if the frame was dropped
+     */
+    public boolean snapshot(String name, String format, BufferedImage image) {
+        return enqueue(new Snapshot(directory.resolve(name + "." + format), format, null, image, REPLACE));
+    }
+
+    /**
+     * Counts a received frame and saves it if it is due for the time-lapse
+     *
+     * @param camera  camera (unit) name, part of the file name
+     * @param format  image format of the encoded bytes
+     * @param encoded encoded frame, not to be modified afterwards
+     */
+    public void frame(String camera, String format, byte[] encoded) {
+        final int every = timeLapse;
+        if (every > 0) {
+            long count = frameCounter.incrementAndGet();
+            if (count % every == 0) {
+                String name = TIME_LAPSE_PREFIX + camera + "_" + session;
+                if (isJpeg(format)) {
+                    enqueue(new Snapshot(directory.resolve(name + STREAM_EXTENSION), format, encoded, null, APPEND));
+                } else {
+                    enqueue(new Snapshot(directory.resolve(String.format("%s_%08d.%s", name, count / every, format)),
+                            format, encoded, null, NEW));
+                }
+            }
+        }
+    }
+
+    /**
+     * writes the queued frames and stops the writer
+     */
+    public void close() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        SimpleLoggingUtil.info(getClass(), toString());
+    }
+
+    /**
+     * @return start time of the writer, part of the time-lapse file names
+     */
+    public String getSession() {
+        return session;
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public String toString() {
+        return "SnapshotWriter{" +
+                "directory=" + directory +
+                ", written=" + written +
+                ", writtenBytes=" + writtenBytes +
+                ", dropped=" + dropped +
+                ", batches=" + batches +
+                '}';
+    }
+
+    // private utility methods
+
+    private boolean enqueue(Snapshot snapshot) {
+        if (running && queue.offer(snapshot)) {
+            return true;
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    private void writeLoop() {
+        final List<Snapshot> batch = new ArrayList<>(batchSize);
+        final ByteArrayOutputStream encoder = new ByteArrayOutputStream();
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            SimpleLoggingUtil.error(getClass(), "snapshot directory: " + directory, e);
+        }
+        while (running || !queue.isEmpty()) {
+            try {
+                Snapshot first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            writeBatch(batch, encoder);
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<Snapshot> batch, ByteArrayOutputStream encoder) {
+        final Map<Path, BatchFile> files = new LinkedHashMap<>();
+        for (Snapshot snapshot : batch) {
+            byte[] bytes = snapshot.encoded;
+            if (bytes == null) {
+                try {
+                    encoder.reset();
+                    if (!ImageIO.write(snapshot.image, snapshot.format, encoder)) {
+                        SimpleLoggingUtil.error(getClass(), "not supported format: " + snapshot.format);
+                        continue;
+                    }
+                } catch (IOException e) {
+                    SimpleLoggingUtil.error(getClass(), "snapshot error: " + snapshot.path, e);
+                    continue;
+                }
+                bytes = encoder.toByteArray();
+            }
+            BatchFile file = files.get(snapshot.path);
+            if (file == null || snapshot.options != APPEND) {
+                // a replaced snapshot is only written once
+                file = new BatchFile(snapshot.options);
+                files.put(snapshot.path, file);
+            }
+            file.add(bytes);
+        }
+        for (Map.Entry<Path, BatchFile> entry : files.entrySet()) {
+            BatchFile file = entry.getValue();
+            try (FileChannel channel = FileChannel.open(entry.getKey(), file.options)) {
+                ByteBuffer[] buffers = file.buffers.toArray(new ByteBuffer[file.buffers.size()]);
+                long remaining = file.length;
+                while (remaining > 0) {
+                    remaining -= channel.write(buffers);
+                }
+                channel.force(false);
+                written.addAndGet(buffers.length);
+                writtenBytes.addAndGet(file.length);
+            } catch (IOException e) {
+                SimpleLoggingUtil.error(getClass(), "snapshot error: " + entry.getKey(), e);
+            }
+        }
+        batches.incrementAndGet();
+    }
+
+    private static boolean isJpeg(String format) {
+        return "jpg".equalsIgnoreCase(format) || "jpeg".equalsIgnoreCase(format);
+    }
+
+    /**
+     * frames of one batch going to the same file
+     */
+    private static final class BatchFile {
+        private final OpenOption[] options;
+        private final List<ByteBuffer> buffers = new ArrayList<>();
+        private long length;
+
+        private BatchFile(OpenOption[] options) {
+            this.options = options;
+        }
+
+        private void add(byte[] bytes) {
+            buffers.add(ByteBuffer.wrap(bytes));
+            length += bytes.length;
+        }
+    }
+
+    private static final class Snapshot {
+        private final Path path;
+        private final String format;
+        private final byte[] encoded;
+        private final BufferedImage image;
+        private final OpenOption[] options;
+
+        private Snapshot(Path path, String format, byte[] encoded, BufferedImage image, OpenOption[] options) {
+            this.path = path;
+            this.format = format;
+            this.encoded = encoded;
+            this.image = image;
+            this.options = options;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.utils;
+
+import com.robo4j.tools.camera.analysis.LuminanceConverter;
+
+/**
+ * Finds the tiles of a frame which changed since they were last marked. Every
+ * 32x32 tile is summarized by the mean luminance of its 8x8 cells, sampled at
+ * every second pixel, and a tile is marked when one of its cells differs from
+ * the summary kept from the last time the tile was marked by more than the
+ * threshold. Slow drifts therefore add up until the tile is marked.
+ *
+ * Not thread safe.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class TileDiff {
+    public static final int TILE_SIZE = 32;
+    private static final int CELL_SIZE = 8;
+    private static final int CELLS_PER_TILE = (TILE_SIZE / CELL_SIZE) * (TILE_SIZE / CELL_SIZE);
+    private static final int SAMPLE_STEP = 2;
+
+    private final int[] cells = new int[CELLS_PER_TILE];
+    private int threshold;
+    private int width;
+    private int height;
+    private int columns;
+    private int rows;
+    private int[] markedCells = new int[0];
+    private boolean resized;
+
+    /**
+     * @param threshold mean cell luminance difference marking a tile as changed
+     */
+    public TileDiff(int threshold) {
+        this.threshold = threshold;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * sets the frame size, a new size marks all tiles on the next compare
+     *
+     * @param width  frame width
+     * @param height frame height
+     * @return true if the size changed
+     */
+    public boolean resize(int width, int height) {
+        if (width == this.width && height == this.height) {
+            return false;
+        }
+        this.width = width;
+        this.height = height;
+        columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+        rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+        markedCells = new int[columns * rows * CELLS_PER_TILE];
+        resized = true;
+        return true;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getTileCount() {
+        return columns * rows;
+    }
+
+    /**
+     * @param pixels argb pixels of a frame of the current size
+     * @param dirty  set to the changed tiles, row by row
+     * @return number of changed tiles
+     */
+    public int compare(int[] pixels, boolean[] dirty) {
+        int changed = 0;
+        for (int ty = 0; ty < rows; ty++) {
+            for (int tx = 0; tx < columns; tx++) {
+                int tile = ty * columns + tx;
+                summarize(pixels, tx * TILE_SIZE, ty * TILE_SIZE);
+                int offset = tile * CELLS_PER_TILE;
+                boolean tileChanged = resized;
+                for (int i = 0; i < CELLS_PER_TILE && !tileChanged; i++) {
+                    tileChanged = Math.abs(cells[i] - markedCells[offset + i]) > threshold;
+                }
+                if (tileChanged) {
+                    System.arraycopy(cells, 0, markedCells, offset, CELLS_PER_TILE);
+                    changed++;
+                }
+                dirty[tile] = tileChanged;
+            }
+        }
+        resized = false;
+        return changed;
+    }
+
+    private void summarize(int[] pixels, int x0, int y0) {
+        int cell = 0;
+        for (int cy = y0; cy < y0 + TILE_SIZE; cy += CELL_SIZE) {
+            for (int cx = x0; cx < x0 + TILE_SIZE; cx += CELL_SIZE) {
+                int sum = 0;
+                int count = 0;
+                for (int y = cy; y < Math.min(cy + CELL_SIZE, height); y += SAMPLE_STEP) {
+                    int row = y * width;
+                    for (int x = cx; x < Math.min(cx + CELL_SIZE, width); x += SAMPLE_STEP) {
+                        sum += LuminanceConverter.luminance(pixels[row + x]);
+                        count++;
+                    }
+                }
+                cells[cell++] = count == 0 ? 0 : sum / count;
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.analysis;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BlobLabeler}
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class BlobLabelerTest {
+
+    private static final int WIDTH = 40;
+    private static final int HEIGHT = 30;
+
+    @Test
+    public void labelsSeparateBlobs() {
+        byte[] mask = new byte[WIDTH * HEIGHT];
+        fill(mask, 2, 3, 6, 5);
+        fill(mask, 20, 10, 10, 10);
+        // below the minimal area
+        fill(mask, 35, 25, 2, 2);
+
+        BlobLabeler labeler = new BlobLabeler();
+        Assert.assertEquals(2, labeler.process(mask, WIDTH, HEIGHT));
+        int small = labeler.getArea(0) < labeler.getArea(1) ? 0 : 1;
+        int large = 1 - small;
+        Assert.assertEquals(30, labeler.getArea(small));
+        Assert.assertEquals(4.5f, labeler.getCentroidX(small), 1e-6f);
+        Assert.assertEquals(5f, labeler.getCentroidY(small), 1e-6f);
+        Assert.assertEquals(100, labeler.getArea(large));
+        Assert.assertEquals(20, labeler.getMinX(large));
+        Assert.assertEquals(10, labeler.getMinY(large));
+        Assert.assertEquals(29, labeler.getMaxX(large));
+        Assert.assertEquals(19, labeler.getMaxY(large));
+
+        labeler.setMinArea(1);
+        Assert.assertEquals(3, labeler.process(mask, WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void mergesLabelsOfOneShape() {
+        // U shape, both arms get their own label before the bottom joins them
+        byte[] mask = new byte[WIDTH * HEIGHT];
+        fill(mask, 5, 5, 3, 15);
+        fill(mask, 20, 5, 3, 15);
+        fill(mask, 5, 20, 18, 3);
+        // diagonal neighbours are connected
+        fill(mask, 30, 5, 3, 3);
+        fill(mask, 33, 8, 3, 3);
+
+        BlobLabeler labeler = new BlobLabeler();
+        labeler.setMinArea(1);
+        Assert.assertEquals(2, labeler.process(mask, WIDTH, HEIGHT));
+        int u = labeler.getArea(0) > labeler.getArea(1) ? 0 : 1;
+        Assert.assertEquals(3 * 15 * 2 + 18 * 3, labeler.getArea(u));
+        Assert.assertEquals(5, labeler.getMinX(u));
+        Assert.assertEquals(22, labeler.getMaxX(u));
+        Assert.assertEquals(18, labeler.getArea(1 - u));
+    }
+
+    private static void fill(byte[] mask, int x, int y, int width, int height) {
+        for (int j = y; j < y + height; j++) {
+            for (int i = x; i < x + width; i++) {
+                mask[j * WIDTH + i] = 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.analysis;
+
+import com.robo4j.tools.camera.model.Contour;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Tests for {@link ContourTracer}
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class ContourTracerTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    private static final int LINES = 10;
+
+    @Test
+    public void tracesSeparateLines() {
+        ContourTracer tracer = new ContourTracer();
+        List<Contour> contours = tracer.process(verticalLines(), null, WIDTH, HEIGHT);
+        Assert.assertEquals(LINES, contours.size());
+        for (Contour contour : contours) {
+            Assert.assertFalse(contour.isClosed());
+            Assert.assertEquals(2, contour.getVertexCount());
+            Assert.assertEquals(30, contour.getPixelLength());
+        }
+    }
+
+    @Test
+    public void stopsAtMaxContoursWithinRow() {
+        ContourTracer tracer = new ContourTracer();
+        tracer.setMaxContours(4);
+        // all lines start in the same row
+        List<Contour> contours = tracer.process(verticalLines(), null, WIDTH, HEIGHT);
+        Assert.assertEquals(4, contours.size());
+    }
+
+    @Test
+    public void ignoresShortChains() {
+        ContourTracer tracer = new ContourTracer();
+        tracer.setMinPixelLength(31);
+        Assert.assertTrue(tracer.process(verticalLines(), null, WIDTH, HEIGHT).isEmpty());
+    }
+
+    private static int[] verticalLines() {
+        int[] edges = new int[WIDTH * HEIGHT];
+        for (int line = 0; line < LINES; line++) {
+            int x = 2 + line * 4;
+            for (int y = 5; y < 35; y++) {
+                edges[y * WIDTH + x] = -1;
+            }
+        }
+        return edges;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.analysis;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Tests for {@link DuplicateFrameFilter}
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class DuplicateFrameFilterTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+
+    @Test
+    public void findsExactRepeats() {
+        DuplicateFrameFilter filter = new DuplicateFrameFilter();
+        byte[] frame = {1, 2, 3, 4};
+        Assert.assertFalse(filter.isRepeat(frame));
+        Assert.assertTrue(filter.isRepeat(frame.clone()));
+        Assert.assertFalse(filter.isRepeat(new byte[]{1, 2, 3, 5}));
+        Assert.assertEquals(3, filter.getReceived());
+        Assert.assertEquals(1, filter.getExactDuplicates());
+        Assert.assertEquals(4, filter.getSkippedBytes());
+
+        filter.reset();
+        Assert.assertFalse(filter.isRepeat(new byte[]{1, 2, 3, 5}));
+    }
+
+    @Test
+    public void nearRepeatsAreOptIn() {
+        DuplicateFrameFilter filter = new DuplicateFrameFilter();
+        Assert.assertEquals(DuplicateFrameFilter.DISABLED, filter.getThreshold());
+        BufferedImage image = gradient(0);
+        Assert.assertFalse(filter.isNearRepeat(image::getRGB, WIDTH, HEIGHT, 100));
+        Assert.assertFalse(filter.isNearRepeat(image::getRGB, WIDTH, HEIGHT, 100));
+        Assert.assertEquals(0, filter.getNearDuplicates());
+    }
+
+    @Test
+    public void findsNearRepeats() {
+        DuplicateFrameFilter filter = new DuplicateFrameFilter();
+        filter.setThreshold(3);
+        BufferedImage image = gradient(0);
+        Assert.assertFalse(filter.isNearRepeat(image::getRGB, WIDTH, HEIGHT, 100));
+        // a little noise does not change the hash
+        BufferedImage noisy = gradient(0);
+        noisy.setRGB(10, 10, 0xffffff);
+        Assert.assertTrue(filter.isNearRepeat(noisy::getRGB, WIDTH, HEIGHT, 100));
+        // the mirrored gradient flips every bit
+        BufferedImage mirrored = gradient(1);
+        Assert.assertFalse(filter.isNearRepeat(mirrored::getRGB, WIDTH, HEIGHT, 100));
+        Assert.assertEquals(1, filter.getNearDuplicates());
+        Assert.assertEquals(100, filter.getSkippedBytes());
+    }
+
+    @Test
+    public void hashesBrightnessSteps() {
+        Assert.assertEquals(0, DuplicateFrameFilter.differenceHash(gradient(1)));
+        Assert.assertEquals(-1L, DuplicateFrameFilter.differenceHash(gradient(0)));
+    }
+
+    /**
+     * @param direction 0 gets darker to the right, 1 brighter
+     */
+    private static BufferedImage gradient(int direction) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int value = direction == 0 ? 255 - x * 4 : x * 4;
+                image.setRGB(x, y, value << 16 | value << 8 | value);
+            }
+        }
+        return image;
+    }
+}
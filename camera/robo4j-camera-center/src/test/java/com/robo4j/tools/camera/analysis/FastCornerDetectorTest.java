@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.analysis;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link FastCornerDetector}
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class FastCornerDetectorTest {
+
+    private static final int WIDTH = 80;
+    private static final int HEIGHT = 80;
+    private static final int[][] SQUARE_CORNERS = {{30, 30}, {49, 30}, {30, 49}, {49, 49}};
+
+    @Test
+    public void findsSquareCorners() {
+        FastCornerDetector detector = new FastCornerDetector();
+        int count = detector.process(square(), WIDTH, HEIGHT);
+        Assert.assertEquals(4, count);
+        boolean[] found = new boolean[SQUARE_CORNERS.length];
+        for (int i = 0; i < count; i++) {
+            for (int c = 0; c < SQUARE_CORNERS.length; c++) {
+                if (Math.abs(detector.getX(i) - SQUARE_CORNERS[c][0]) <= 1 && Math.abs(detector.getY(i) - SQUARE_CORNERS[c][1]) <= 1) {
+                    found[c] = true;
+                }
+            }
+            Assert.assertTrue(detector.getScore(i) > 0);
+        }
+        for (boolean f : found) {
+            Assert.assertTrue(f);
+        }
+    }
+
+    @Test
+    public void ignoresUniformAndLowContrast() {
+        FastCornerDetector detector = new FastCornerDetector();
+        Assert.assertEquals(0, detector.process(new byte[WIDTH * HEIGHT], WIDTH, HEIGHT));
+        detector.setThreshold(200);
+        Assert.assertEquals(0, detector.process(square(), WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void keepsStrongestCorners() {
+        FastCornerDetector detector = new FastCornerDetector();
+        detector.setMaxCorners(2);
+        Assert.assertEquals(2, detector.process(square(), WIDTH, HEIGHT));
+    }
+
+    private static byte[] square() {
+        byte[] result = new byte[WIDTH * HEIGHT];
+        for (int y = 30; y < 50; y++) {
+            for (int x = 30; x < 50; x++) {
+                result[y * WIDTH + x] = (byte) 200;
+            }
+        }
+        return result;
+    }
+}
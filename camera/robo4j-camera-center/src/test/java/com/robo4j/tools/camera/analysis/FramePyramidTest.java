@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.analysis;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Tests for {@link FramePyramid}
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class FramePyramidTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+
+    @Test
+    public void buildsLevelsOnRequest() {
+        PyramidBufferPool pool = new PyramidBufferPool();
+        FramePyramid pyramid = new FramePyramid(image(WIDTH, HEIGHT), 100, pool);
+        Assert.assertEquals(100, pyramid.getTimestamp());
+        Assert.assertEquals(FramePyramid.MAX_LEVELS, pyramid.getLevels());
+        Assert.assertEquals(8, pyramid.getWidth(3));
+        Assert.assertEquals(6, pyramid.getHeight(3));
+        Assert.assertEquals(1, pool.getAllocations());
+
+        // level 2 needs level 1 first, both are kept
+        int[] level2 = pyramid.level(2);
+        Assert.assertEquals(3, pool.getAllocations());
+        Assert.assertSame(level2, pyramid.level(2));
+        pyramid.level(1);
+        Assert.assertEquals(3, pool.getAllocations());
+
+        byte[] luminance = pyramid.luminance(1);
+        Assert.assertEquals(5, pool.getAllocations());
+        Assert.assertSame(luminance, pyramid.luminance(1));
+        Assert.assertEquals(WIDTH / 2 * HEIGHT / 2, luminance.length);
+        pyramid.release();
+    }
+
+    @Test
+    public void averagesBlocks() {
+        BufferedImage image = new BufferedImage(4, 2, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, 0x000000);
+        image.setRGB(1, 0, 0x408000);
+        image.setRGB(0, 1, 0x400080);
+        image.setRGB(1, 1, 0x808080);
+        for (int x = 2; x < 4; x++) {
+            image.setRGB(x, 0, 0x102030);
+            image.setRGB(x, 1, 0x102030);
+        }
+        FramePyramid pyramid = new FramePyramid(image, 0, new PyramidBufferPool());
+        Assert.assertEquals(2, pyramid.getLevels());
+        Assert.assertArrayEquals(new int[]{0xff404040, 0xff102030}, pyramid.level(1));
+        Assert.assertEquals(LuminanceConverter.luminance(0x102030), pyramid.luminance(0)[2] & 0xff);
+        pyramid.release();
+    }
+
+    @Test
+    public void stopsAtEmptyLevel() {
+        FramePyramid pyramid = new FramePyramid(image(10, 6), 0, new PyramidBufferPool());
+        Assert.assertEquals(3, pyramid.getLevels());
+        Assert.assertEquals(2, pyramid.getWidth(2));
+        Assert.assertEquals(1, pyramid.getHeight(2));
+        Assert.assertEquals(0, pyramid.levelForWidth(6));
+        Assert.assertEquals(1, pyramid.levelForWidth(5));
+        Assert.assertEquals(2, pyramid.levelForWidth(1));
+        pyramid.release();
+    }
+
+    @Test
+    public void releasesBuffersWithLastReference() {
+        PyramidBufferPool pool = new PyramidBufferPool();
+        FramePyramid pyramid = new FramePyramid(image(WIDTH, HEIGHT), 0, pool);
+        int[] level0 = pyramid.level(0);
+        int[] level1 = pyramid.level(1);
+        byte[] luminance0 = pyramid.luminance(0);
+        Assert.assertSame(pyramid, pyramid.retain());
+        pyramid.release();
+
+        // still held by the second user
+        Assert.assertSame(level1, pyramid.level(1));
+        Assert.assertNotSame(level0, pool.takeColour(level0.length));
+        pyramid.release();
+
+        Assert.assertSame(level1, pool.takeColour(level1.length));
+        Assert.assertSame(level0, pool.takeColour(level0.length));
+        Assert.assertSame(luminance0, pool.takeLuminance(luminance0.length));
+    }
+
+    @Test
+    public void reusesPooledBuffers() {
+        PyramidBufferPool pool = new PyramidBufferPool();
+        FramePyramid first = new FramePyramid(image(WIDTH, HEIGHT), 0, pool);
+        first.level(3);
+        first.luminance(3);
+        first.release();
+        long allocations = pool.getAllocations();
+        Assert.assertEquals(2 * FramePyramid.MAX_LEVELS, allocations);
+
+        for (int i = 0; i < 10; i++) {
+            FramePyramid pyramid = new FramePyramid(image(WIDTH, HEIGHT), i, pool);
+            pyramid.level(3);
+            pyramid.luminance(3);
+            pyramid.release();
+        }
+        Assert.assertEquals(allocations, pool.getAllocations());
+    }
+
+    @Test
+    public void rejectsUseAfterRelease() {
+        FramePyramid pyramid = new FramePyramid(image(WIDTH, HEIGHT), 0, new PyramidBufferPool());
+        pyramid.release();
+        assertReleased(() -> pyramid.level(0));
+        assertReleased(() -> pyramid.luminance(0));
+        assertReleased(pyramid::retain);
+        assertReleased(pyramid::release);
+    }
+
+    /* frame with a different colour in every pixel */
+    private static BufferedImage image(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, (x * 4) << 16 | (y * 5) << 8 | (x + y));
+            }
+        }
+        return image;
+    }
+
+    private static void assertReleased(Runnable use) {
+        try {
+            use.run();
+            Assert.fail("released frame used");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.tools.camera.analysis;
+
+import com.robo4j.tools.camera.model.LineSegment;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.Rectangle;
+import java.util.List;
+
+/**
+ * Tests for {@link HoughLineTransform}
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class HoughLineTransformTest {
+
+    private static final int WIDTH = 80;
+    private static final int HEIGHT = 64;
+
+    @Test
+    public void findsHorizontalLine() {
+        int[] edges = new int[WIDTH * HEIGHT];
+        line(edges, 5, 10, 54, 10);
+        assertSegment(single(edges), 5, 10, 54, 10);
+    }
+
+    @Test
+    public void findsVerticalLine() {
+        int[] edges = new int[WIDTH * HEIGHT];
+        line(edges, 70, 5, 70, 44);
+        assertSegment(single(edges), 70, 5, 70, 44);
+    }
+
+    @Test
+    public void findsDiagonalLine() {
+        int[] edges = new int[WIDTH * HEIGHT];
+        line(edges, 10, 20, 49, 59);
+        assertSegment(single(edges), 10, 20, 49, 59);
+    }
+
+    @Test
+    public void findsSeparateLines() {
+        int[] edges = new int[WIDTH * HEIGHT];
+        line(edges, 5, 10, 54, 10);
+        line(edges, 70, 5, 70, 44);
+        line(edges, 10, 20, 49, 59);
+        List<LineSegment> segments = new HoughLineTransform().process(edges, null, WIDTH, HEIGHT);
+        Assert.assertEquals(segments.toString(), 3, segments.size());
+    }
+
+    @Test
+    public void ignoresShortLines() {
+        int[] edges = new int[WIDTH * HEIGHT];
+        line(edges, 5, 10, 24, 10);
+        Assert.assertTrue(new HoughLineTransform().process(edges, null, WIDTH, HEIGHT).isEmpty());
+    }
+
+    @Test
+    public void reportsRegionSegmentsInFrameCoordinates() {
+        int[] edges = new int[WIDTH * HEIGHT];
+        line(edges, 5, 10, 54, 10);
+        line(edges, 70, 5, 70, 44);
+        List<LineSegment> segments = new HoughLineTransform().process(edges, null, WIDTH, HEIGHT, new Rectangle(60, 0, 20, HEIGHT));
+        Assert.assertEquals(1, segments.size());
+        assertSegment(segments.get(0), 70, 5, 70, 44);
+    }
+
+    private static LineSegment single(int[] edges) {
+        List<LineSegment> segments = new HoughLineTransform().process(edges, null, WIDTH, HEIGHT);
+        Assert.assertEquals(1, segments.size());
+        return segments.get(0);
+    }
+
+    /* the walk may start from either end */
+    private static void assertSegment(LineSegment segment, int x1, int y1, int x2, int y2) {
+        boolean reversed = Math.abs(segment.getX1() - x2) + Math.abs(segment.getY1() - y2)
+                < Math.abs(segment.getX1() - x1) + Math.abs(segment.getY1() - y1);
+        Assert.assertEquals(segment.toString(), x1, reversed ? segment.getX2() : segment.getX1(), 1);
+        Assert.assertEquals(segment.toString(), y1, reversed ? segment.getY2() : segment.getY1(), 1);
+        Assert.assertEquals(segment.toString(), x2, reversed ? segment.getX1() : segment.getX2(), 1);
+        Assert.assertEquals(segment.toString(), y2, reversed ? segment.getY1() : segment.getY2(), 1);
+    }
+
+    /* horizontal, vertical or 45 degree line of edge pixels */
+    private static void line(int[] edges, int x1, int y1, int x2, int y2) {
+        int steps = Math.max(Math.abs(x2 - x1), Math.abs(y2 - y1));
+        for (int i = 0; i <= steps; i++) {
+            int x = x1 + Integer.signum(x2 - x1) * i;
+            int y = y1 + Integer.signum(y2 - y1) * i;
+            edges[y * WIDTH + x] = -1;
+        }
+    }
+}
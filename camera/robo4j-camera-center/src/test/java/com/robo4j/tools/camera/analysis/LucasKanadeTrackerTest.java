@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.analysis;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Tests for {@link LucasKanadeTracker} on a smooth synthetic texture moved
+ * by a known subpixel displacement
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class LucasKanadeTrackerTest {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+    private static final float DX = 3.4f;
+    private static final float DY = -2.2f;
+
+    @Test
+    public void tracksDisplacement() {
+        float[][] result = track(new float[]{40, 80, 120}, new float[]{40, 60, 80});
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(result[2][i] > 0);
+            Assert.assertEquals(DX, result[0][i], 0.1f);
+            Assert.assertEquals(DY, result[1][i], 0.1f);
+        }
+    }
+
+    @Test
+    public void tracksPointsNearTheBorder() {
+        // outside of the window of the coarsest level, inside of the full resolution one
+        float[][] result = track(new float[]{12, WIDTH - 14, 80}, new float[]{60, 60, 12});
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue("point " + i, result[2][i] > 0);
+            Assert.assertEquals(DX, result[0][i], 0.1f);
+            Assert.assertEquals(DY, result[1][i], 0.1f);
+        }
+    }
+
+    @Test
+    public void losesPointsAtTheBorder() {
+        float[][] result = track(new float[]{3}, new float[]{60});
+        Assert.assertEquals(0, result[2][0], 0);
+    }
+
+    @Test
+    public void needsPreviousFrame() {
+        LucasKanadeTracker tracker = new LucasKanadeTracker();
+        Assert.assertFalse(tracker.nextFrame(texture(0, 0), WIDTH, HEIGHT));
+        Assert.assertTrue(tracker.nextFrame(texture(DX, DY), WIDTH, HEIGHT));
+        Assert.assertFalse(tracker.nextFrame(new byte[80 * 60], 80, 60));
+    }
+
+    @Test
+    public void tracksOnFramePyramidLevels() {
+        PyramidBufferPool pool = new PyramidBufferPool();
+        FramePyramid first = framePyramid(0, 0, pool);
+        FramePyramid second = framePyramid(2 * DX, 2 * DY, pool);
+        LucasKanadeTracker tracker = new LucasKanadeTracker();
+        Assert.assertFalse(tracker.nextFrame(first, 1));
+        Assert.assertTrue(tracker.nextFrame(second, 1));
+        // the tracker keeps its own references
+        first.release();
+        second.release();
+
+        float[] x = {20, 40, 60};
+        float[] y = {20, 30, 40};
+        float[] toX = new float[3];
+        float[] toY = new float[3];
+        boolean[] status = new boolean[3];
+        Assert.assertEquals(3, tracker.track(x, y, 3, toX, toY, status));
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(DX, toX[i] - x[i], 0.15f);
+            Assert.assertEquals(DY, toY[i] - y[i], 0.15f);
+        }
+    }
+
+    @Test
+    public void releasesFramePyramids() {
+        PyramidBufferPool pool = new PyramidBufferPool();
+        FramePyramid first = framePyramid(0, 0, pool);
+        FramePyramid second = framePyramid(DX, DY, pool);
+        FramePyramid third = framePyramid(2 * DX, 2 * DY, pool);
+        LucasKanadeTracker tracker = new LucasKanadeTracker();
+        tracker.nextFrame(first, 0);
+        tracker.nextFrame(second, 0);
+        tracker.nextFrame(third, 0);
+        first.release();
+        second.release();
+        third.release();
+        assertReleased(first);
+        second.luminance(0);
+        tracker.reset();
+        assertReleased(second);
+        assertReleased(third);
+        // built frames still work after the shared levels were dropped
+        Assert.assertFalse(tracker.nextFrame(texture(0, 0), WIDTH, HEIGHT));
+        Assert.assertTrue(tracker.nextFrame(texture(DX, DY), WIDTH, HEIGHT));
+    }
+
+    private static void assertReleased(FramePyramid frame) {
+        try {
+            frame.luminance(0);
+            Assert.fail("frame not released");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    private static FramePyramid framePyramid(float dx, float dy, PyramidBufferPool pool) {
+        byte[] luminance = texture(dx, dy);
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        for (int i = 0; i < luminance.length; i++) {
+            int value = luminance[i] & 0xff;
+            image.setRGB(i % WIDTH, i / WIDTH, value << 16 | value << 8 | value);
+        }
+        return new FramePyramid(image, 0, pool);
+    }
+
+    /**
+     * @return displacement x, y and 1 for tracked, 0 for lost points
+     */
+    private static float[][] track(float[] x, float[] y) {
+        LucasKanadeTracker tracker = new LucasKanadeTracker();
+        tracker.nextFrame(texture(0, 0), WIDTH, HEIGHT);
+        tracker.nextFrame(texture(DX, DY), WIDTH, HEIGHT);
+        float[] toX = new float[x.length];
+        float[] toY = new float[x.length];
+        boolean[] status = new boolean[x.length];
+        tracker.track(x, y, x.length, toX, toY, status);
+        float[][] result = new float[3][x.length];
+        for (int i = 0; i < x.length; i++) {
+            result[0][i] = toX[i] - x[i];
+            result[1][i] = toY[i] - y[i];
+            result[2][i] = status[i] ? 1 : 0;
+        }
+        return result;
+    }
+
+    private static byte[] texture(float dx, float dy) {
+        byte[] result = new byte[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                double u = x - dx;
+                double v = y - dy;
+                double value = 128 + 45 * Math.sin(u / 7) + 45 * Math.cos(v / 9) + 20 * Math.sin((u + v) / 5);
+                result[y * WIDTH + x] = (byte) Math.round(value);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.analysis;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PyramidBufferPool}
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class PyramidBufferPoolTest {
+
+    @Test
+    public void reusesBuffersOfSameLength() {
+        PyramidBufferPool pool = new PyramidBufferPool();
+        int[] colour = pool.takeColour(16);
+        byte[] luminance = pool.takeLuminance(16);
+        Assert.assertEquals(2, pool.getAllocations());
+        pool.give(colour);
+        pool.give(luminance);
+
+        Assert.assertSame(colour, pool.takeColour(16));
+        Assert.assertSame(luminance, pool.takeLuminance(16));
+        Assert.assertEquals(2, pool.getAllocations());
+
+        // taken again, nothing left to reuse
+        Assert.assertNotSame(colour, pool.takeColour(16));
+        Assert.assertEquals(3, pool.getAllocations());
+    }
+
+    @Test
+    public void poolsByLengthAndType() {
+        PyramidBufferPool pool = new PyramidBufferPool();
+        pool.give(new int[16]);
+        pool.give(new byte[8]);
+        Assert.assertEquals(8, pool.takeColour(8).length);
+        Assert.assertEquals(16, pool.takeLuminance(16).length);
+        Assert.assertEquals(2, pool.getAllocations());
+        Assert.assertEquals(16, pool.takeColour(16).length);
+        Assert.assertEquals(8, pool.takeLuminance(8).length);
+        Assert.assertEquals(2, pool.getAllocations());
+    }
+
+    @Test
+    public void keepsAtMostMaxPerSize() {
+        PyramidBufferPool pool = new PyramidBufferPool(2);
+        for (int i = 0; i < 3; i++) {
+            pool.give(new int[4]);
+        }
+        pool.takeColour(4);
+        pool.takeColour(4);
+        Assert.assertEquals(0, pool.getAllocations());
+        pool.takeColour(4);
+        Assert.assertEquals(1, pool.getAllocations());
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.analysis;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link RemapTable}
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class RemapTableTest {
+
+    private static final int WIDTH = 8;
+    private static final int HEIGHT = 6;
+
+    @Test
+    public void identityKeepsPixels() {
+        RemapTable table = RemapTable.create(WIDTH, HEIGHT, WIDTH, HEIGHT, (x, y, result) -> {
+            result[0] = x;
+            result[1] = y;
+        });
+        byte[] source = gradient();
+        byte[] destination = new byte[WIDTH * HEIGHT];
+        table.apply(source, destination);
+        Assert.assertArrayEquals(source, destination);
+
+        int[] rgb = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < rgb.length; i++) {
+            rgb[i] = 0xff000000 | (i * 5) << 16 | (i * 3) << 8 | i;
+        }
+        int[] rgbDestination = new int[WIDTH * HEIGHT];
+        table.apply(rgb, rgbDestination);
+        Assert.assertArrayEquals(rgb, rgbDestination);
+    }
+
+    @Test
+    public void interpolatesBetweenPixels() {
+        RemapTable table = RemapTable.create(WIDTH - 1, HEIGHT, WIDTH, HEIGHT, (x, y, result) -> {
+            result[0] = x + 0.5;
+            result[1] = y;
+        });
+        byte[] source = gradient();
+        byte[] destination = new byte[(WIDTH - 1) * HEIGHT];
+        table.apply(source, destination);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH - 1; x++) {
+                int expected = ((source[y * WIDTH + x] & 0xff) + (source[y * WIDTH + x + 1] & 0xff) + 1) / 2;
+                Assert.assertEquals(expected, destination[y * (WIDTH - 1) + x] & 0xff);
+            }
+        }
+    }
+
+    @Test
+    public void blacksOutsidePixels() {
+        RemapTable table = RemapTable.create(WIDTH, HEIGHT, WIDTH, HEIGHT, (x, y, result) -> {
+            result[0] = x < 2 ? -1 : x;
+            result[1] = y == 0 ? Double.NaN : y;
+        });
+        byte[] destination = new byte[WIDTH * HEIGHT];
+        table.apply(gradient(), destination);
+        Assert.assertEquals(0, destination[WIDTH + 1]);
+        Assert.assertEquals(0, destination[4]);
+        Assert.assertEquals(gradient()[WIDTH + 4], destination[WIDTH + 4]);
+
+        int[] rgb = new int[WIDTH * HEIGHT];
+        java.util.Arrays.fill(rgb, 0xffffffff);
+        int[] rgbDestination = new int[WIDTH * HEIGHT];
+        table.apply(rgb, rgbDestination);
+        Assert.assertEquals(0xff000000, rgbDestination[WIDTH]);
+        Assert.assertEquals(0xffffffff, rgbDestination[WIDTH + 4]);
+    }
+
+    private static byte[] gradient() {
+        byte[] result = new byte[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                result[y * WIDTH + x] = (byte) (x * 30 + y * 7);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.tools.camera.analysis;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests for {@link StereoBlockMatcher}
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class StereoBlockMatcherTest {
+
+    private static final int WIDTH = 96;
+    private static final int HEIGHT = 50;
+    private static final int MAX_DISPARITY = 16;
+    private static final int RADIUS = 3;
+
+    @Test
+    public void recoversShiftOfTexturedImage() {
+        for (int shift : new int[]{0, 5, 11}) {
+            byte[] left = texture(new Random(shift));
+            byte[] disparity = match(left, shifted(left, shift));
+            // pixels closer to the border than the block or the shift have no match in the right image
+            for (int y = RADIUS; y < HEIGHT - RADIUS; y++) {
+                for (int x = shift + RADIUS; x < WIDTH - RADIUS; x++) {
+                    Assert.assertEquals("x=" + x + " y=" + y, shift, disparity[y * WIDTH + x] & 0xff);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void marksUntexturedPixelsInvalid() {
+        byte[] flat = new byte[WIDTH * HEIGHT];
+        Arrays.fill(flat, (byte) 128);
+        byte[] disparity = match(flat, flat.clone());
+        // from two pixels after the block on a distant disparity is searched, all of them cost the same
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = RADIUS + 2; x < WIDTH; x++) {
+                Assert.assertEquals("x=" + x + " y=" + y, StereoBlockMatcher.INVALID, disparity[y * WIDTH + x] & 0xff);
+            }
+        }
+        // without a block around them pixels are never matched
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < RADIUS; x++) {
+                Assert.assertEquals("x=" + x + " y=" + y, StereoBlockMatcher.INVALID, disparity[y * WIDTH + x] & 0xff);
+            }
+        }
+    }
+
+    @Test
+    public void marksRepeatingPatternInvalid() {
+        // vertical stripes with a period of 4 pixels match at every fourth disparity
+        byte[] stripes = new byte[WIDTH * HEIGHT];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = (byte) ((i % WIDTH) % 4 < 2 ? 40 : 200);
+        }
+        byte[] disparity = match(stripes, shifted(stripes, 6));
+        for (int y = RADIUS; y < HEIGHT - RADIUS; y++) {
+            for (int x = MAX_DISPARITY + RADIUS; x < WIDTH - RADIUS; x++) {
+                Assert.assertEquals("x=" + x + " y=" + y, StereoBlockMatcher.INVALID, disparity[y * WIDTH + x] & 0xff);
+            }
+        }
+    }
+
+    private static byte[] match(byte[] left, byte[] right) {
+        StereoBlockMatcher matcher = new StereoBlockMatcher();
+        matcher.setMaxDisparity(MAX_DISPARITY);
+        matcher.setBlockRadius(RADIUS);
+        byte[] disparity = new byte[WIDTH * HEIGHT];
+        matcher.process(left, right, WIDTH, HEIGHT, disparity);
+        return disparity;
+    }
+
+    private static byte[] texture(Random random) {
+        byte[] image = new byte[WIDTH * HEIGHT];
+        random.nextBytes(image);
+        return image;
+    }
+
+    /* the right camera sees the scene moved to the left by the disparity */
+    private static byte[] shifted(byte[] left, int shift) {
+        byte[] right = new byte[left.length];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                right[y * WIDTH + x] = left[y * WIDTH + Math.min(WIDTH - 1, x + shift)];
+            }
+        }
+        return right;
+    }
+}
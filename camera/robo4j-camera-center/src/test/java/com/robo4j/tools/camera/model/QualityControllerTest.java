@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests for {@link QualityController} fed by {@link FrameStatistics}
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class QualityControllerTest {
+
+    /* 2.5, 5 and 10 frames per second */
+    private static final List<QualityLevel> LEVELS = QualityLevel.parse("320x240@400,480x360@200,640x480@100");
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private final AtomicLong clock = new AtomicLong();
+    private final FrameStatistics statistics = new FrameStatistics(clock::get);
+
+    @Test
+    public void downgradesAfterConsecutiveBehindSamples() {
+        QualityController controller = createController(2);
+        Assert.assertFalse(controller.update(window(20, 3)));
+        Assert.assertTrue(controller.update(window(20, 3)));
+        Assert.assertEquals(1, controller.getLevelIndex());
+
+        // the sample after a change is ignored, then the rate counts again
+        Assert.assertFalse(controller.update(window(2, 0)));
+        Assert.assertFalse(controller.update(window(2, 0)));
+        Assert.assertTrue(controller.update(window(2, 0)));
+        Assert.assertEquals(0, controller.getLevelIndex());
+        Assert.assertEquals(LEVELS.get(0), controller.getCurrentLevel());
+
+        // nothing below the lowest level
+        for (int i = 0; i < 10; i++) {
+            Assert.assertFalse(controller.update(window(1, 0)));
+        }
+    }
+
+    @Test
+    public void ignoresAlternatingSamples() {
+        QualityController controller = createController(1);
+        for (int i = 0; i < 50; i++) {
+            // behind and headroom in turns, never enough in a row
+            Assert.assertFalse(controller.update(window(i % 2 == 0 ? 4 : 10, 0)));
+        }
+        Assert.assertEquals(1, controller.getLevelIndex());
+    }
+
+    @Test
+    public void keepsLevelInMiddleBand() {
+        QualityController controller = createController(1);
+        for (int i = 0; i < 50; i++) {
+            // 4 frames per second of 5 are neither behind nor headroom
+            Assert.assertFalse(controller.update(window(8, 0)));
+        }
+        Assert.assertEquals(1, controller.getLevelIndex());
+    }
+
+    @Test
+    public void upgradesAfterHeadroom() {
+        QualityController controller = createController(0);
+        for (int i = 0; i < 4; i++) {
+            Assert.assertFalse(controller.update(window(5, 0)));
+        }
+        Assert.assertTrue(controller.update(window(5, 0)));
+        Assert.assertEquals(1, controller.getLevelIndex());
+    }
+
+    @Test
+    public void backsOffAtBoundary() {
+        QualityController controller = createController(1);
+        // 5.5 frames per second: headroom for 5 requested, behind for 10 requested
+        List<Integer> upgrades = new ArrayList<>();
+        int changes = 0;
+        for (int i = 0; i < 300; i++) {
+            if (controller.update(window(11, 0))) {
+                changes++;
+                if (controller.getLevelIndex() == 2) {
+                    upgrades.add(i);
+                }
+            }
+            Assert.assertTrue(controller.getLevelIndex() >= 1);
+        }
+        for (int i = 2; i < upgrades.size(); i++) {
+            Assert.assertTrue("upgrade intervals " + upgrades,
+                    upgrades.get(i) - upgrades.get(i - 1) >= upgrades.get(i - 1) - upgrades.get(i - 2));
+        }
+        Assert.assertEquals(8, controller.getUpgradeBackoff());
+        // without the back off it would be one change every four samples
+        Assert.assertTrue("changes " + changes, changes <= 16);
+    }
+
+    @Test
+    public void resetForgetsSamples() {
+        QualityController controller = createController(2);
+        controller.update(window(20, 3));
+        controller.reset();
+        Assert.assertFalse(controller.update(window(20, 3)));
+        Assert.assertEquals(2, controller.getLevelIndex());
+    }
+
+    /* controller with the default thresholds */
+    private static QualityController createController(int startLevel) {
+        return new QualityController(LEVELS, startLevel, 2, 5, 2, 0.7, 0.6);
+    }
+
+    /* frames over one window, the last ones still queued for display */
+    private FrameStatistics.Sample window(int frames, int queued) {
+        for (int i = 0; i < frames; i++) {
+            statistics.frameReceived(1000);
+            statistics.frameDecoded(TimeUnit.MILLISECONDS.toNanos(5));
+            if (i < frames - queued) {
+                statistics.frameDisplayed();
+            }
+        }
+        clock.addAndGet(WINDOW_NANOS);
+        FrameStatistics.Sample sample = statistics.sample();
+        for (int i = 0; i < queued; i++) {
+            statistics.frameDisplayed();
+        }
+        return sample;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link RewindBuffer} and its {@link RewindMemory}
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class RewindBufferTest {
+
+    private static final int BLOCK_SIZE = 16;
+
+    @Test
+    public void readsFramesAcrossBlocks() {
+        RewindMemory memory = new RewindMemory(8 * BLOCK_SIZE, BLOCK_SIZE);
+        RewindBuffer buffer = memory.createBuffer(8 * BLOCK_SIZE, 10_000);
+        Assert.assertTrue(buffer.append(100, frame(1, 10)));
+        Assert.assertTrue(buffer.append(200, frame(2, 25)));
+        Assert.assertTrue(buffer.append(300, frame(3, 7)));
+        Assert.assertEquals(3, buffer.getFrameCount());
+        Assert.assertArrayEquals(frame(1, 10), buffer.read(0));
+        Assert.assertArrayEquals(frame(2, 25), buffer.read(1));
+        Assert.assertArrayEquals(frame(3, 7), buffer.read(2));
+        Assert.assertNull(buffer.read(3));
+        Assert.assertEquals(3 * BLOCK_SIZE, buffer.getUsedBytes());
+
+        Assert.assertEquals(0, buffer.sequenceAt(50));
+        Assert.assertEquals(1, buffer.sequenceAt(250));
+        Assert.assertEquals(2, buffer.sequenceAt(1000));
+        Assert.assertEquals(200, buffer.getTime(1));
+    }
+
+    @Test
+    public void evictsByWindowAndBudget() {
+        RewindMemory memory = new RewindMemory(8 * BLOCK_SIZE, BLOCK_SIZE);
+        RewindBuffer buffer = memory.createBuffer(2 * BLOCK_SIZE, 1000);
+        buffer.append(0, frame(1, 10));
+        buffer.append(500, frame(2, 10));
+        buffer.append(1600, frame(3, 10));
+        // the first frame is out of the window, the second one out of the budget
+        Assert.assertEquals(1, buffer.getFrameCount());
+        Assert.assertNull(buffer.read(0));
+        Assert.assertArrayEquals(frame(3, 10), buffer.read(2));
+        Assert.assertEquals(1600, buffer.getOldestTime());
+        Assert.assertFalse(buffer.append(1700, new byte[3 * BLOCK_SIZE]));
+    }
+
+    @Test
+    public void sharesGlobalBudget() {
+        RewindMemory memory = new RewindMemory(2 * BLOCK_SIZE, BLOCK_SIZE);
+        RewindBuffer first = memory.createBuffer(2 * BLOCK_SIZE, 10_000);
+        RewindBuffer second = memory.createBuffer(2 * BLOCK_SIZE, 10_000);
+        first.append(100, frame(1, 2 * BLOCK_SIZE));
+        Assert.assertTrue(second.append(200, frame(2, BLOCK_SIZE)));
+        // the oldest frame of any buffer makes room
+        Assert.assertEquals(0, first.getFrameCount());
+        Assert.assertEquals(BLOCK_SIZE, memory.getUsedBytes());
+    }
+
+    @Test
+    public void camerasKeepRecordingInSharedMemory() {
+        RewindMemory memory = new RewindMemory(4 * BLOCK_SIZE, BLOCK_SIZE);
+        RewindBuffer first = memory.createBuffer(4 * BLOCK_SIZE, 10_000);
+        RewindBuffer second = memory.createBuffer(4 * BLOCK_SIZE, 10_000);
+        for (int i = 0; i < 50; i++) {
+            Assert.assertTrue(first.append(i * 10, frame(i, 20)));
+            Assert.assertTrue(second.append(i * 10 + 5, frame(100 + i, 20)));
+            Assert.assertTrue(memory.getUsedBytes() <= 4 * BLOCK_SIZE);
+        }
+        Assert.assertTrue(first.getFrameCount() > 0);
+        Assert.assertTrue(second.getFrameCount() > 0);
+        Assert.assertArrayEquals(frame(49, 20), first.read(49));
+        Assert.assertArrayEquals(frame(149, 20), second.read(49));
+        Assert.assertEquals(memory.getUsedBytes(), first.getUsedBytes() + second.getUsedBytes());
+    }
+
+    @Test
+    public void closeReturnsMemory() {
+        RewindMemory memory = new RewindMemory(4 * BLOCK_SIZE, BLOCK_SIZE);
+        RewindBuffer buffer = memory.createBuffer(4 * BLOCK_SIZE, 10_000);
+        buffer.append(100, frame(1, 3 * BLOCK_SIZE));
+        Assert.assertEquals(3 * BLOCK_SIZE, memory.getUsedBytes());
+        buffer.close();
+        Assert.assertEquals(0, memory.getUsedBytes());
+        Assert.assertFalse(buffer.append(200, frame(2, BLOCK_SIZE)));
+        Assert.assertEquals(0, memory.getUsedBytes());
+    }
+
+    private static byte[] frame(int id, int length) {
+        byte[] result = new byte[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = (byte) (id * 31 + i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.tools.camera.utils;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link MjpegRelayServer} with viewers on local sockets
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class MjpegRelayServerTest {
+
+    private static final long TIMEOUT = 5000;
+
+    private MjpegRelayServer server;
+
+    @After
+    public void stopServer() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void framesJpegAsMultipart() throws Exception {
+        server = start(4, 2);
+        try (Viewer viewer = new Viewer(server.getLocalPort(), 0)) {
+            Assert.assertEquals("HTTP/1.0 200 OK", viewer.readLine());
+            String header;
+            boolean multipart = false;
+            while (!(header = viewer.readLine()).isEmpty()) {
+                multipart |= header.equals("Content-Type: multipart/x-mixed-replace; boundary=" + MjpegRelayServer.BOUNDARY);
+            }
+            Assert.assertTrue(multipart);
+            awaitClients(1);
+
+            byte[] first = frame(1, 16);
+            server.publish(first);
+            Assert.assertArrayEquals(first, viewer.readPart());
+            byte[] second = frame(2, 300);
+            server.publish(second);
+            Assert.assertArrayEquals(second, viewer.readPart());
+            Assert.assertEquals(2, server.getFramesRelayed());
+        }
+    }
+
+    @Test
+    public void answersBusyOverMaxClients() throws Exception {
+        server = start(1, 2);
+        try (Viewer first = new Viewer(server.getLocalPort(), 0)) {
+            Assert.assertEquals("HTTP/1.0 200 OK", first.readLine());
+            awaitClients(1);
+            try (Viewer second = new Viewer(server.getLocalPort(), 0)) {
+                Assert.assertEquals("HTTP/1.0 503 Service Unavailable", second.readLine());
+            }
+            Assert.assertEquals(1, server.getClientCount());
+        }
+        // a closed viewer is noticed when writing to it, its slot is free again
+        long end = System.currentTimeMillis() + TIMEOUT;
+        while (server.getClientCount() > 0 && System.currentTimeMillis() < end) {
+            server.publish(frame(0, 16));
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(0, server.getClientCount());
+        try (Viewer third = new Viewer(server.getLocalPort(), 0)) {
+            Assert.assertEquals("HTTP/1.0 200 OK", third.readLine());
+        }
+    }
+
+    @Test
+    public void slowViewerDropsFrames() throws Exception {
+        final int frames = 200;
+        server = start(2, 2);
+        try (Viewer slow = new Viewer(server.getLocalPort(), 4096);
+             Viewer fast = new Viewer(server.getLocalPort(), 0)) {
+            fast.skipHeaders();
+            awaitClients(2);
+            AtomicInteger lastReceived = new AtomicInteger(-1);
+            Thread reader = new Thread(() -> {
+                try {
+                    while (lastReceived.get() < frames - 1) {
+                        lastReceived.set(ByteBuffer.wrap(fast.readPart()).getInt());
+                    }
+                } catch (IOException e) {
+                    // reported by the assertion below
+                }
+            });
+            reader.start();
+
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < frames; i++) {
+                server.publish(frame(i, 256 * 1024));
+            }
+            // the slow viewer does not hold up publishing
+            Assert.assertTrue(System.currentTimeMillis() - start < TIMEOUT);
+            reader.join(TIMEOUT);
+            // the newest frame is never dropped
+            Assert.assertEquals(frames - 1, lastReceived.get());
+            Assert.assertTrue(server.getFramesDropped() > 0);
+            Assert.assertEquals(2, server.getClientCount());
+        }
+    }
+
+    private static MjpegRelayServer start(int maxClients, int queueSize) throws IOException {
+        MjpegRelayServer relay = new MjpegRelayServer("relayTest", 0, maxClients, queueSize);
+        relay.start();
+        return relay;
+    }
+
+    private void awaitClients(int count) throws InterruptedException {
+        long end = System.currentTimeMillis() + TIMEOUT;
+        while (server.getClientCount() != count && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(count, server.getClientCount());
+    }
+
+    /* frame number in the first four bytes */
+    private static byte[] frame(int number, int length) {
+        byte[] frame = new byte[length];
+        ByteBuffer.wrap(frame).putInt(number);
+        for (int i = 4; i < frame.length; i++) {
+            frame[i] = (byte) (number + i);
+        }
+        return frame;
+    }
+
+    /**
+     * HTTP viewer reading the stream with blocking reads
+     */
+    private static final class Viewer implements AutoCloseable {
+        private final Socket socket = new Socket();
+        private final DataInputStream in;
+
+        private Viewer(int port, int receiveBuffer) throws IOException {
+            if (receiveBuffer > 0) {
+                socket.setReceiveBufferSize(receiveBuffer);
+            }
+            socket.connect(new InetSocketAddress("localhost", port), (int) TIMEOUT);
+            socket.setSoTimeout((int) TIMEOUT);
+            socket.getOutputStream().write("GET / HTTP/1.0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            in = new DataInputStream(socket.getInputStream());
+        }
+
+        private String readLine() throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b < 0) {
+                    throw new IOException("end of stream");
+                }
+                if (b != '\r') {
+                    line.write(b);
+                }
+            }
+            return new String(line.toByteArray(), StandardCharsets.US_ASCII);
+        }
+
+        private void skipHeaders() throws IOException {
+            while (!readLine().isEmpty()) {
+                // skip
+            }
+        }
+
+        private byte[] readPart() throws IOException {
+            Assert.assertEquals("--" + MjpegRelayServer.BOUNDARY, readLine());
+            Assert.assertEquals("Content-Type: image/jpeg", readLine());
+            String length = readLine();
+            Assert.assertTrue(length, length.startsWith("Content-Length: "));
+            Assert.assertEquals("", readLine());
+            byte[] jpeg = new byte[Integer.parseInt(length.substring("Content-Length: ".length()))];
+            in.readFully(jpeg);
+            Assert.assertEquals("", readLine());
+            return jpeg;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
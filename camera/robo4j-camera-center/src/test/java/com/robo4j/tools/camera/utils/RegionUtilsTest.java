@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for {@link RegionUtils}
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class RegionUtilsTest {
+
+    @Test
+    public void parsesRegions() {
+        List<Rectangle> regions = RegionUtils.parse(" 0,240,640,240; 100 , 0, 50,50 ");
+        Assert.assertEquals(Arrays.asList(new Rectangle(0, 240, 640, 240), new Rectangle(100, 0, 50, 50)), regions);
+        Assert.assertEquals("0,240,640,240;100,0,50,50", RegionUtils.toString(regions));
+    }
+
+    @Test
+    public void emptyIsWholeFrame() {
+        Assert.assertTrue(RegionUtils.parse(null).isEmpty());
+        Assert.assertTrue(RegionUtils.parse("  ").isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMissingValues() {
+        RegionUtils.parse("0,0,10");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyRegion() {
+        RegionUtils.parse("0,0,0,10");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void rejectsNonNumbers() {
+        RegionUtils.parse("0,0,a,10");
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.utils;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Tests for {@link SnapshotWriter}
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class SnapshotWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void appendsJpegTimeLapseToStream() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        SnapshotWriter writer = new SnapshotWriter(directory, 64, 2);
+        writer.setTimeLapse(2);
+        for (int i = 0; i < 6; i++) {
+            writer.frame("camera", "jpg", new byte[]{(byte) i, (byte) i});
+        }
+        writer.close();
+
+        Path stream = directory.resolve("timelapse_camera_" + writer.getSession() + ".mjpeg");
+        Assert.assertArrayEquals(new byte[]{1, 1, 3, 3, 5, 5}, Files.readAllBytes(stream));
+        Assert.assertEquals(3, writer.getWritten());
+        Assert.assertEquals(1, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void numbersOtherTimeLapseFramesPerSession() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        Path existing = directory.resolve("timelapse_camera_00000001.png");
+        Files.write(existing, new byte[]{42});
+        SnapshotWriter writer = new SnapshotWriter(directory);
+        writer.setTimeLapse(1);
+        writer.frame("camera", "png", new byte[]{1});
+        writer.frame("camera", "png", new byte[]{2});
+        writer.close();
+
+        Assert.assertArrayEquals(new byte[]{42}, Files.readAllBytes(existing));
+        String prefix = "timelapse_camera_" + writer.getSession();
+        Assert.assertArrayEquals(new byte[]{1}, Files.readAllBytes(directory.resolve(prefix + "_00000001.png")));
+        Assert.assertArrayEquals(new byte[]{2}, Files.readAllBytes(directory.resolve(prefix + "_00000002.png")));
+    }
+
+    @Test
+    public void replacesNamedSnapshot() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        SnapshotWriter writer = new SnapshotWriter(directory);
+        writer.snapshot("name", "jpg", new byte[]{1, 2, 3});
+        writer.snapshot("name", "jpg", new byte[]{4});
+        writer.close();
+
+        File[] files = folder.getRoot().listFiles();
+        Assert.assertEquals(1, files.length);
+        Assert.assertArrayEquals(new byte[]{4}, Files.readAllBytes(files[0].toPath()));
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2014, 2018, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.robo4j.tools.camera.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * Tests for {@link TileDiff}
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class TileDiffTest {
+
+    /* three columns, the last one half a tile wide, and two rows */
+    private static final int WIDTH = 80;
+    private static final int HEIGHT = 64;
+
+    @Test
+    public void marksAllTilesOfNewSize() {
+        TileDiff diff = new TileDiff(4);
+        Assert.assertTrue(diff.resize(WIDTH, HEIGHT));
+        Assert.assertEquals(3, diff.getColumns());
+        Assert.assertEquals(6, diff.getTileCount());
+        boolean[] dirty = new boolean[diff.getTileCount()];
+        Assert.assertEquals(6, diff.compare(frame(100), dirty));
+        assertDirty(dirty, 0, 1, 2, 3, 4, 5);
+
+        Assert.assertFalse(diff.resize(WIDTH, HEIGHT));
+        Assert.assertEquals(0, diff.compare(frame(100), dirty));
+        assertDirty(dirty);
+    }
+
+    @Test
+    public void marksOnlyChangedTiles() {
+        TileDiff diff = new TileDiff(4);
+        diff.resize(WIDTH, HEIGHT);
+        boolean[] dirty = new boolean[diff.getTileCount()];
+        diff.compare(frame(100), dirty);
+
+        int[] pixels = frame(100);
+        fill(pixels, 40, 8, 8, 8, 200);
+        fill(pixels, 70, 40, 8, 8, 200);
+        Assert.assertEquals(2, diff.compare(pixels, dirty));
+        assertDirty(dirty, 1, 5);
+
+        // the changed tiles are now the reference
+        Assert.assertEquals(0, diff.compare(pixels, dirty));
+        Assert.assertEquals(2, diff.compare(frame(100), dirty));
+        assertDirty(dirty, 1, 5);
+    }
+
+    @Test
+    public void accumulatesSmallChanges() {
+        TileDiff diff = new TileDiff(4);
+        diff.resize(WIDTH, HEIGHT);
+        boolean[] dirty = new boolean[diff.getTileCount()];
+        diff.compare(frame(100), dirty);
+
+        // below the threshold, compared with the marked tiles and not the previous frame
+        Assert.assertEquals(0, diff.compare(frame(103), dirty));
+        Assert.assertEquals(6, diff.compare(frame(106), dirty));
+        Assert.assertEquals(0, diff.compare(frame(104), dirty));
+
+        diff.setThreshold(10);
+        Assert.assertEquals(0, diff.compare(frame(115), dirty));
+        Assert.assertEquals(6, diff.compare(frame(117), dirty));
+    }
+
+    @Test
+    public void marksAllTilesAfterResize() {
+        TileDiff diff = new TileDiff(4);
+        diff.resize(WIDTH, HEIGHT);
+        diff.compare(frame(100), new boolean[diff.getTileCount()]);
+        Assert.assertTrue(diff.resize(64, 64));
+        boolean[] dirty = new boolean[diff.getTileCount()];
+        Assert.assertEquals(4, diff.compare(new int[64 * 64], dirty));
+        assertDirty(dirty, 0, 1, 2, 3);
+    }
+
+    /* uniform gray frame of the default size */
+    private static int[] frame(int gray) {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        fill(pixels, 0, 0, WIDTH, HEIGHT, gray);
+        return pixels;
+    }
+
+    private static void fill(int[] pixels, int x0, int y0, int width, int height, int gray) {
+        int argb = 0xff000000 | gray << 16 | gray << 8 | gray;
+        for (int y = y0; y < y0 + height; y++) {
+            Arrays.fill(pixels, y * WIDTH + x0, y * WIDTH + x0 + width, argb);
+        }
+    }
+
+    private static void assertDirty(boolean[] dirty, int... tiles) {
+        boolean[] expected = new boolean[dirty.length];
+        for (int tile : tiles) {
+            expected[tile] = true;
+        }
+        Assert.assertArrayEquals(expected, dirty);
+    }
+}